@@ -21,6 +21,7 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -30,12 +31,13 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.signature.ObjectKey;
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.User;
 import com.example.pdm2_projeto.repositories.UsersRepository;
 import com.example.pdm2_projeto.roomdb.AppDatabase;
 import com.example.pdm2_projeto.roomdb.Daos.AccountDao;
+import com.example.pdm2_projeto.utils.AsyncResult;
 import com.google.firebase.auth.AuthCredential;
 import com.google.firebase.auth.EmailAuthProvider;
 import com.google.firebase.auth.FirebaseAuth;
@@ -48,6 +50,7 @@ import java.util.Locale;
 public class AccountFragment extends Fragment {
 
     private ImageView profilePicture;
+    private ProgressBar uploadProgress;
     private EditText editTextName, editTextEmail;
     private TextView changePassword, accountCreationDate, deleteAccountWarning;
     private Button deleteAccountButton;
@@ -69,10 +72,11 @@ public class AccountFragment extends Fragment {
 
         // Initialize Firebase Authentication and Firestore Repository
         auth = FirebaseAuth.getInstance();
-        usersRepository = new UsersRepository();
+        usersRepository = AppContainer.from(requireContext()).getUsersRepository();
 
         // Bind UI elements to Java variables
         profilePicture = view.findViewById(R.id.profile_picture);
+        uploadProgress = view.findViewById(R.id.upload_progress);
         editTextName = view.findViewById(R.id.editText_name);
         editTextEmail = view.findViewById(R.id.editText_email);
         changePassword = view.findViewById(R.id.change_password);
@@ -89,9 +93,6 @@ public class AccountFragment extends Fragment {
         // Ensure UI elements are correctly referenced before updating them
         updateLocalizedTexts(view);
 
-        // Load user data from Firebase Firestore
-        loadUserData();
-
         // Remove header and navBar
         updateMainActivity();
 
@@ -123,6 +124,18 @@ public class AccountFragment extends Fragment {
 
         // Load user data AFTER initializing UI components
         loadUserData();
+
+        // Continue a profile picture upload interrupted when the app was closed (or still running)
+        if (usersRepository.hasPendingProfilePictureUpload()) {
+            observeUpload(usersRepository.resumeProfilePictureUpload(this::showUploadProgress));
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        profilePicture = null;
+        uploadProgress = null;
     }
 
     private void updateMainActivity() {
@@ -160,7 +173,7 @@ public class AccountFragment extends Fragment {
 
         // If only the name changed, update it directly
         if (!emailChanged) {
-            usersRepository.updateUserDetails(currentUser.getUid(), newName, newEmail, new FirestoreCallback<Void>() {
+            usersRepository.updateUserDetails(currentUser.getUid(), newName, newEmail).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
                 @Override
                 public void onSuccess(Void result) {
                     Toast.makeText(getContext(), getString(R.string.profile_updated), Toast.LENGTH_SHORT).show();
@@ -195,7 +208,7 @@ public class AccountFragment extends Fragment {
                 // Proceed with email update after successful reauthentication
                 currentUser.updateEmail(newEmail)
                         .addOnSuccessListener(aVoid -> {
-                            usersRepository.updateUserDetails(currentUser.getUid(), newName, newEmail, new FirestoreCallback<Void>() {
+                            usersRepository.updateUserDetails(currentUser.getUid(), newName, newEmail).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
                                 @Override
                                 public void onSuccess(Void result) {
                                     Toast.makeText(getContext(), getString(R.string.profile_updated), Toast.LENGTH_SHORT).show();
@@ -248,11 +261,14 @@ public class AccountFragment extends Fragment {
             return;
         }
 
-        usersRepository.getCurrentUser(new FirestoreCallback() {
+        usersRepository.getCurrentUser().observe(getViewLifecycleOwner(), new FirestoreCallback<User>() {
+            // Name shown from the first answer, to tell whether the user has started editing it
+            private String shownName;
+
             @Override
-            public void onSuccess(Object result) {
-                User user = (User) result;
+            public void onSuccess(User user) {
                 if (user != null) {
+                    shownName = user.getName();
                     if (editTextName != null) editTextName.setText(user.getName());
                     if (editTextEmail != null) editTextEmail.setText(currentUser.getEmail());
 
@@ -261,11 +277,11 @@ public class AccountFragment extends Fragment {
                         profilePicture.setImageResource(R.drawable.ic_profile);
                     }
                     // Carregar imagem de perfil
+                    // Cached by version: a new picture has a new version, so it is never shown stale
                     Glide.with(requireContext())
                             .load(user.getProfilePictureUrl())
+                            .signature(new ObjectKey(user.getProfilePictureVersion()))
                             .placeholder(R.drawable.ic_profile)
-                            .diskCacheStrategy(DiskCacheStrategy.NONE)
-                            .skipMemoryCache(true)  // Evita usar cache da memória
                             .error(R.drawable.ic_profile)
                             .into(profilePicture);
 
@@ -279,6 +295,15 @@ public class AccountFragment extends Fragment {
                 }
             }
 
+            @Override
+            public void onUpdated(User user) {
+                // The profile first read from the local cache was outdated; keep what the user is typing
+                if (user != null && editTextName != null
+                        && editTextName.getText().toString().equals(shownName == null ? "" : shownName)) {
+                    onSuccess(user);
+                }
+            }
+
             @Override
             public void onFailure(Exception e) {
                 Toast.makeText(getContext(), getString(R.string.failed_to_fetch_locations), Toast.LENGTH_SHORT).show();
@@ -493,32 +518,64 @@ public class AccountFragment extends Fragment {
             }
 
             if (selectedImageUri != null) {
-                usersRepository.uploadProfilePicture(selectedImageUri, new FirestoreCallback() {
-                    @Override
-                    public void onSuccess(Object result) {
-                        String downloadUrl = (String) result; // A URL da imagem salva no Firebase
-                        if (profilePicture != null) {
-                            Glide.with(requireContext())
-                                    .load(downloadUrl)
-                                    .placeholder(R.drawable.ic_profile)
-                                    .diskCacheStrategy(DiskCacheStrategy.NONE)
-                                    .skipMemoryCache(true)
-                                    .into(profilePicture);
-                        }
-                        Toast.makeText(requireContext(), "Imagem de perfil atualizada!", Toast.LENGTH_SHORT).show();
-                    }
-
-                    @Override
-                    public void onFailure(Exception e) {
-                        Toast.makeText(requireContext(), "Erro ao atualizar: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
+                // The picture is downscaled before it is sent
+                observeUpload(usersRepository.uploadProfilePicture(selectedImageUri, this::showUploadProgress));
             } else {
                 Toast.makeText(requireContext(), "Erro ao obter a imagem.", Toast.LENGTH_SHORT).show();
             }
         }
     }
 
+    /*
+     * Shows the uploaded profile picture once the upload ends, or the error
+     */
+    private void observeUpload(AsyncResult<User> upload) {
+        showUploadProgress(0, 0);
+
+        // Bound to the fragment: the result may arrive before the view is recreated
+        upload.observe(this, new FirestoreCallback<User>() {
+            @Override
+            public void onSuccess(User user) {
+                hideUploadProgress();
+                if (profilePicture != null) {
+                    Glide.with(requireContext())
+                            .load(user.getProfilePictureUrl()) // A URL da imagem salva no Firebase
+                            .signature(new ObjectKey(user.getProfilePictureVersion()))
+                            .placeholder(R.drawable.ic_profile)
+                            .into(profilePicture);
+                }
+                Toast.makeText(requireContext(), "Imagem de perfil atualizada!", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                hideUploadProgress();
+                Toast.makeText(requireContext(), "Erro ao atualizar: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /*
+     * Shows the progress of the profile picture upload (indeterminate while the picture is being prepared)
+     */
+    private void showUploadProgress(long bytesSent, long totalBytes) {
+        if (uploadProgress == null) return;
+        uploadProgress.setVisibility(View.VISIBLE);
+        uploadProgress.setIndeterminate(totalBytes <= 0);
+        if (totalBytes > 0) {
+            uploadProgress.setProgress((int) (100 * bytesSent / totalBytes));
+        }
+    }
+
+    /*
+     * Hides the upload progress bar
+     */
+    private void hideUploadProgress() {
+        if (uploadProgress != null) {
+            uploadProgress.setVisibility(View.GONE);
+        }
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -573,9 +630,9 @@ public class AccountFragment extends Fragment {
             profilePicture.setImageResource(R.drawable.ic_profile); // Define uma imagem padrão
         }
 
-        usersRepository.updateProfilePicture(null, new FirestoreCallback() {
+        usersRepository.updateProfilePicture(null).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
             @Override
-            public void onSuccess(Object result) {
+            public void onSuccess(Void result) {
                 Toast.makeText(getContext(), getString(R.string.profile_picture_removed), Toast.LENGTH_SHORT).show();
             }
 
@@ -640,16 +697,13 @@ public class AccountFragment extends Fragment {
 
         currentUser.reauthenticate(credential)
                 .addOnSuccessListener(authResult -> {
-                    usersRepository.deleteUser(currentUser.getUid(), new FirestoreCallback() {
+                    usersRepository.deleteUser(currentUser.getUid()).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
                         @Override
-                        public void onSuccess(Object result) {
+                        public void onSuccess(Void result) {
                             currentUser.delete()
                                     .addOnSuccessListener(aVoid -> {
                                         Toast.makeText(getContext(), getString(R.string.account_deleted), Toast.LENGTH_SHORT).show();
-                                        requireActivity().getSupportFragmentManager()
-                                                .beginTransaction()
-                                                .replace(R.id.fragment_container, new LoginFragment())
-                                                .commit();
+                                        showLoginOverProfile();
                                     });
                         }
 
@@ -657,10 +711,7 @@ public class AccountFragment extends Fragment {
                         public void onFailure(Exception e) {
                             Toast.makeText(getContext(), getString(R.string.account_delete_failed), Toast.LENGTH_SHORT).show();
                             e.printStackTrace();
-                            requireActivity().getSupportFragmentManager()
-                                    .beginTransaction()
-                                    .replace(R.id.fragment_container, new LoginFragment())
-                                    .commit();
+                            showLoginOverProfile();
                         }
                     });
                 })
@@ -669,6 +720,16 @@ public class AccountFragment extends Fragment {
                     Toast.makeText(getContext(), getString(R.string.account_delete_failed), Toast.LENGTH_SHORT).show();
                 });
     }
+
+    /**
+     * Closes the account screens and shows the LoginFragment over the Profile tab.
+     */
+    private void showLoginOverProfile() {
+        MainActivity activity = (MainActivity) requireActivity();
+        activity.showProfileTab();
+        activity.showLoginFragment();
+    }
+
     private void loadLastLoginTimestamp(TextView lastLoginTextView) {
         new Thread(() -> {
             AppDatabase db = AppDatabase.getInstance(requireContext());
@@ -0,0 +1,156 @@
+package com.example.pdm2_projeto;
+
+import android.content.Context;
+
+import com.example.pdm2_projeto.interfaces.CommentDataSource;
+import com.example.pdm2_projeto.interfaces.LocationDataSource;
+import com.example.pdm2_projeto.interfaces.UserDataSource;
+import com.example.pdm2_projeto.repositories.CommentsRepository;
+import com.example.pdm2_projeto.repositories.FavoritesRepository;
+import com.example.pdm2_projeto.repositories.FirestoreCommentDataSource;
+import com.example.pdm2_projeto.repositories.FirestoreLocationDataSource;
+import com.example.pdm2_projeto.repositories.FirestoreUserDataSource;
+import com.example.pdm2_projeto.repositories.LocationCache;
+import com.example.pdm2_projeto.repositories.LocationCategoryRepository;
+import com.example.pdm2_projeto.repositories.LocationSearchRepository;
+import com.example.pdm2_projeto.repositories.LocationsRepository;
+import com.example.pdm2_projeto.repositories.UserProfileCache;
+import com.example.pdm2_projeto.repositories.UsersRepository;
+import com.example.pdm2_projeto.utils.InstrumentedExecutor;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.FirebaseStorage;
+
+/**
+ * Application-scoped container that owns the single instance of every repository
+ * and the executor shared by all background work.
+ * Screens and adapters get their dependencies from here instead of creating them,
+ * so setup is done once and caches survive between screens.
+ */
+public class AppContainer {
+
+    /**
+     * Number of threads used for background work (database reads and writes, map clustering).
+     */
+    private static final int BACKGROUND_THREADS = 2;
+
+    /**
+     * Maximum number of background tasks waiting to run.
+     */
+    private static final int BACKGROUND_QUEUE_CAPACITY = 128;
+
+    private final InstrumentedExecutor backgroundExecutor;
+    private final LocationsRepository locationsRepository;
+    private final LocationSearchRepository locationSearchRepository;
+    private final FavoritesRepository favoritesRepository;
+    private final CommentsRepository commentsRepository;
+    private final UsersRepository usersRepository;
+    private final LocationCategoryRepository locationCategoryRepository;
+
+    /**
+     * Creates the shared executor and repositories, reading from Firestore.
+     * Reads deliver the documents of the local Firestore cache first, so screens are drawn without
+     * waiting for the network, and the server documents afterwards if they differ.
+     *
+     * @param context The application context.
+     */
+    AppContainer(Context context) {
+        this(context, FirebaseFirestore.getInstance());
+    }
+
+    private AppContainer(Context context, FirebaseFirestore db) {
+        this(context, db, FirebaseAuth.getInstance(), FirebaseStorage.getInstance(),
+                new FirestoreLocationDataSource(db, true), new FirestoreCommentDataSource(db, true),
+                new FirestoreUserDataSource(db, true));
+    }
+
+    /**
+     * Creates the shared executor and repositories, reading locations, comments and users from the
+     * given data sources (e.g. an in-memory stand-in, to run the screens over a large dataset offline).
+     * Everything else (writes, favorites, categories, map areas) goes to the given Firebase instances,
+     * which are created nowhere else, so tests can pass stand-ins.
+     *
+     * @param context             The application context.
+     * @param db                  The Firestore database.
+     * @param auth                The authentication of the current user.
+     * @param storage             The storage of the profile pictures.
+     * @param locationDataSource  Store the locations are read from.
+     * @param commentDataSource   Store the comments are read from and written to.
+     * @param userDataSource      Store the user profiles are read from.
+     */
+    AppContainer(Context context, FirebaseFirestore db, FirebaseAuth auth, FirebaseStorage storage,
+                 LocationDataSource locationDataSource, CommentDataSource commentDataSource,
+                 UserDataSource userDataSource) {
+        backgroundExecutor = new InstrumentedExecutor("background", BACKGROUND_THREADS, BACKGROUND_QUEUE_CAPACITY);
+
+        LocationCache locationCache = new LocationCache(context, backgroundExecutor);
+        locationsRepository = new LocationsRepository(db, locationCache, locationDataSource);
+        locationSearchRepository = new LocationSearchRepository(context, locationCache, locationsRepository);
+        favoritesRepository = new FavoritesRepository(db, auth);
+        commentsRepository = new CommentsRepository(commentDataSource);
+        usersRepository = new UsersRepository(db, auth, storage, context, backgroundExecutor, userDataSource);
+        locationCategoryRepository = new LocationCategoryRepository(db, context, backgroundExecutor);
+
+        // Profiles shown next to comments are read through the same data source
+        UserProfileCache.initialize(usersRepository);
+    }
+
+    /**
+     * Returns the container of the application.
+     *
+     * @param context Any context of the application.
+     * @return The application's container.
+     */
+    public static AppContainer from(Context context) {
+        return ((PdmApplication) context.getApplicationContext()).getContainer();
+    }
+
+    /**
+     * Retrieves the executor shared by all background work.
+     */
+    public InstrumentedExecutor getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    /**
+     * Retrieves the repository of locations (backed by the local cache).
+     */
+    public LocationsRepository getLocationsRepository() {
+        return locationsRepository;
+    }
+
+    /**
+     * Retrieves the repository of local location searches.
+     */
+    public LocationSearchRepository getLocationSearchRepository() {
+        return locationSearchRepository;
+    }
+
+    /**
+     * Retrieves the repository of favorites.
+     */
+    public FavoritesRepository getFavoritesRepository() {
+        return favoritesRepository;
+    }
+
+    /**
+     * Retrieves the repository of comments.
+     */
+    public CommentsRepository getCommentsRepository() {
+        return commentsRepository;
+    }
+
+    /**
+     * Retrieves the repository of users.
+     */
+    public UsersRepository getUsersRepository() {
+        return usersRepository;
+    }
+
+    /**
+     * Retrieves the repository of location categories (backed by the local cache).
+     */
+    public LocationCategoryRepository getLocationCategoryRepository() {
+        return locationCategoryRepository;
+    }
+}
@@ -11,6 +11,7 @@ import android.widget.Spinner;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.LocationCategory;
 import com.example.pdm2_projeto.repositories.LocationCategoryRepository;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
@@ -56,37 +57,30 @@ public class FilterBottomSheetDialogFragment extends BottomSheetDialogFragment {
         Button applyButton = view.findViewById(R.id.btn_apply_filters);
         Button btnClearFilters = view.findViewById(R.id.btn_remove_filters);
 
-        // Repository instance for fetching location categories from Firestore
-        LocationCategoryRepository repository = new LocationCategoryRepository();
+        // Repository instance for fetching location categories (cached, so the list is usually shown immediately)
+        LocationCategoryRepository repository = AppContainer.from(requireContext()).getLocationCategoryRepository();
 
-        // Fetch categories from Firestore and populate the Spinner
-        repository.getCategories(new LocationCategoryRepository.CategoryCallback() {
+        // Fetch categories and populate the Spinner
+        repository.getCategories().observe(this, new FirestoreCallback<List<LocationCategory>>() {
             @Override
             public void onSuccess(List<LocationCategory> fetchedCategories) {
-                categories = fetchedCategories;
-
-                // Convert categories into a list of display names based on language preference
-                List<String> categoryNames = new ArrayList<>();
-                for (LocationCategory category : categories) {
-                    String categoryName = "";
-
-                    if (getContext().getString(R.string.language).equals("en")) {
-                        categoryName = category.getDescriptionEn();
-                    } else {
-                        categoryName = category.getDescription();
-                    }
-                    categoryNames.add(categoryName);
-                }
+                showCategories(categorySpinner, fetchedCategories);
+            }
 
-                // Create and set the adapter for the Spinner
-                ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_spinner_dropdown_item, categoryNames);
-                categorySpinner.setAdapter(adapter);
+            @Override
+            public void onUpdated(List<LocationCategory> fetchedCategories) {
+                // The cached categories were outdated
+                if (isAdded()) {
+                    showCategories(categorySpinner, fetchedCategories);
+                }
             }
 
             @Override
             public void onFailure(Exception e) {
                 // Display error message in case of failure
-                Toast.makeText(getContext(), "Erro ao carregar categorias", Toast.LENGTH_SHORT).show();
+                if (isAdded()) {
+                    Toast.makeText(getContext(), "Erro ao carregar categorias", Toast.LENGTH_SHORT).show();
+                }
             }
         });
 
@@ -121,4 +115,41 @@ public class FilterBottomSheetDialogFragment extends BottomSheetDialogFragment {
 
         return view;
     }
+
+    /**
+     * Populates the Spinner with the category names, keeping the current selection if possible.
+     *
+     * @param categorySpinner The Spinner to populate.
+     * @param fetchedCategories The categories to show.
+     */
+    private void showCategories(Spinner categorySpinner, List<LocationCategory> fetchedCategories) {
+        String previousSelection = selectedCategoryId;
+        categories = fetchedCategories;
+
+        // Convert categories into a list of display names based on language preference
+        List<String> categoryNames = new ArrayList<>();
+        int selectedPosition = 0;
+        for (int i = 0; i < categories.size(); i++) {
+            LocationCategory category = categories.get(i);
+            String categoryName = "";
+
+            if (requireContext().getString(R.string.language).equals("en")) {
+                categoryName = category.getDescriptionEn();
+            } else {
+                categoryName = category.getDescription();
+            }
+            categoryNames.add(categoryName);
+
+            if (category.getId() != null && category.getId().equals(previousSelection)) {
+                selectedPosition = i;
+            }
+        }
+
+        // Create and set the adapter for the Spinner
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(requireContext(), android.R.layout.simple_spinner_dropdown_item, categoryNames);
+        categorySpinner.setAdapter(adapter);
+        if (!categories.isEmpty()) {
+            categorySpinner.setSelection(selectedPosition);
+        }
+    }
 }
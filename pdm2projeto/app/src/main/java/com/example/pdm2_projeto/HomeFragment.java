@@ -15,8 +15,11 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.pdm2_projeto.adapters.LocationAdapter;
 import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.repositories.LocationSearchRepository;
 import com.example.pdm2_projeto.repositories.LocationsRepository;
-import java.util.ArrayList;
+import com.example.pdm2_projeto.utils.Debouncer;
+import com.example.pdm2_projeto.utils.PagingEngine;
+import com.example.pdm2_projeto.utils.PagingSession;
 import java.util.List;
 
 /**
@@ -28,17 +31,18 @@ public class HomeFragment extends Fragment {
 
     // Adapter for managing location display in RecyclerView
     private LocationAdapter locationAdapter;
-    // List that holds the location data fetched from the repository
-    private List<Location> locationList;
+    // Loads the locations of the current query as the user scrolls (kept while the fragment exists)
+    private PagingEngine<Location> engine;
     // Repository responsible for retrieving locations from a data source
     private LocationsRepository locationsRepository;
+    // Repository that answers searches from the local full-text index
+    private LocationSearchRepository locationSearchRepository;
     // SearchView widget for searching locations by name or description
     private SearchView searchView;
 
     // Stores the currently applied filters for locations
     private String currentFilter = null;
     private String currentSearchQuery = null;
-    private int currentPage = 1;
 
     // UI elements for the header section
     TextView headerTitle;
@@ -46,8 +50,25 @@ public class HomeFragment extends Fragment {
 
     // Pagination settings to control data loading in chunks
     private static final int PAGE_SIZE = 10; // Number of locations per page
-    private boolean isLastPage = false; // Flag to indicate if all pages have been loaded
-    private boolean isLoading = false; // Flag to prevent multiple loads at the same time
+    private static final int PREFETCH_DISTANCE = 20; // Locations loaded ahead of the last visible one (10 rows)
+    private static final int MAX_LOADED_PAGES = 10; // Pages kept in memory; farther ones are dropped and read again
+
+    // Search pipeline: waits for the user to stop typing before starting the query
+    private static final long SEARCH_DEBOUNCE_MS = 300; // Delay after the last keystroke before searching
+    private final Debouncer searchDebouncer = new Debouncer(SEARCH_DEBOUNCE_MS);
+
+    // Shows the locations of the engine in the grid
+    private final PagingEngine.Listener<Location> engineListener = new PagingEngine.Listener<Location>() {
+        @Override
+        public void onItemsChanged(List<Location> items) {
+            locationAdapter.updateList(items);
+        }
+
+        @Override
+        public void onLoadFailed(Exception e) {
+            Log.e("HomeFragment", "Error loading locations", e);
+        }
+    };
 
     /**
      * Inflates the fragment's layout.
@@ -66,26 +87,41 @@ public class HomeFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        // Initialize necessary components
-        locationList = new ArrayList<>();
-        locationsRepository = new LocationsRepository();
+        AppContainer container = AppContainer.from(requireContext());
+        locationsRepository = container.getLocationsRepository();
+        locationSearchRepository = container.getLocationSearchRepository();
 
         setupFilters(view);
         setupSearchView(view);
 
-        updateMainActivity();
         setupRecyclerView(view);
 
-        resetPagination();
-        loadLocations();
+        if (engine == null) {
+            startQuery();
+        } else {
+            // Back from another screen: show the locations already loaded, without reading them again.
+            // The RecyclerView restores its scroll position once the items are set
+            engine.setListener(engineListener);
+            locationAdapter.updateList(engine.getItems());
+            engine.start(); // Reads again the pages cancelled when the view was destroyed
+        }
+    }
+
+    /**
+     * Updates the header each time the screen is shown (the tab is kept when hidden).
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateMainActivity();
     }
 
     /**
      * Configures the RecyclerView to display locations in a grid format
-     * and adds scroll listener for pagination.
+     * and reports the visible range to the paging engine, which loads the pages around it.
      */
     private void setupRecyclerView(View view) {
-        locationAdapter = new LocationAdapter(getContext(), locationList, this::openDetailFragment);
+        locationAdapter = new LocationAdapter(getContext(), this::openDetailFragment);
 
         RecyclerView recyclerView = view.findViewById(R.id.recycler_view);
         recyclerView.setAdapter(locationAdapter);
@@ -99,15 +135,9 @@ public class HomeFragment extends Fragment {
             @Override
             public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
-                int visibleItemCount = layoutManager.getChildCount();
-                int totalItemCount = layoutManager.getItemCount();
-                int firstVisibleItemPosition = layoutManager.findFirstVisibleItemPosition();
-
-                // If we are not already loading and we haven't reached the last page
-                if (!isLoading && !isLastPage) {
-                    if ((visibleItemCount + firstVisibleItemPosition) >= totalItemCount && firstVisibleItemPosition >= 0) {
-                        loadLocations(); // Load the next set of locations
-                    }
+                if (engine != null) {
+                    engine.onViewportChanged(layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
                 }
             }
         });
@@ -122,9 +152,8 @@ public class HomeFragment extends Fragment {
         btnFilter.setOnClickListener(v -> {
             FilterBottomSheetDialogFragment bottomSheet = new FilterBottomSheetDialogFragment();
             bottomSheet.setFilterListener(categoryId -> {
-                resetPagination();
                 currentFilter = categoryId.isEmpty() ? null : categoryId;
-                loadLocations();
+                startQuery();
             });
             bottomSheet.show(getChildFragmentManager(), "FilterBottomSheet");
         });
@@ -148,80 +177,48 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Resets pagination state and clears location data before reloading.
+     * Stops pending searches and page reads when the view is destroyed.
+     * The loaded locations are kept and shown again with the next view.
      */
-    private void resetPagination() {
-        isLastPage = false;
-        isLoading = false;
-        locationsRepository.lastDocumentSnapshot = null;
-        locationList.clear();
-        locationAdapter.notifyDataSetChanged();
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        searchDebouncer.cancel();
+        if (engine != null) {
+            engine.cancel();
+            engine.setListener(null);
+        }
     }
 
     /**
-     * Loads locations from the repository, either all locations or filtered by category.
-     * Implements pagination to load data in chunks.
+     * Starts a new query with the current search text and filter.
+     * Recent queries resume their pagination session, whose pages are shown without being read again.
      */
-    private void loadLocations() {
-        if (isLoading || isLastPage) return;
-        isLoading = true;
-
-        if (currentFilter != null || (currentSearchQuery != null && !currentSearchQuery.isEmpty())) {
-            locationsRepository.getLocationsByCategoryPaginated(
-                    currentFilter,
-                    currentSearchQuery,
-                    PAGE_SIZE,
-                    currentPage,
-                    new LocationsRepository.LocationCallback() {
-                        @Override
-                        public void onSuccess(List<Location> locations) {
-                            processLocations(locations);
-                            isLoading = false;
-
-                            if (locations.size() < PAGE_SIZE) {
-                                isLastPage = true;
-                            } else {
-                                currentPage++;
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Exception e) {
-                            e.printStackTrace();
-                            isLoading = false;
-                        }
-                    }
-            );
-        }else {
-            locationsRepository.getPaginatedLocations(PAGE_SIZE, new LocationsRepository.LocationCallback() {
-                @Override
-                public void onSuccess(List<Location> locations) {
-                    processLocations(locations);
-                }
-
-                @Override
-                public void onFailure(Exception e) {
-                    e.printStackTrace();
-                    isLoading = false;
-                }
-            });
+    private void startQuery() {
+        if (engine != null) {
+            engine.cancel();
+            engine.setListener(null);
         }
+
+        engine = new PagingEngine<>(openSession(), Location::getId, PAGE_SIZE, PREFETCH_DISTANCE, MAX_LOADED_PAGES);
+        engine.setListener(engineListener);
+        locationAdapter.updateList(engine.getItems());
+        engine.start();
     }
 
     /**
-     * Processes loaded locations and updates the UI.
-     * Determines if the last page has been reached based on the loaded data size.
-     * Updates the location list and refreshes the adapter to display new data.
+     * Opens the pagination session of the current query. The source is picked once per query,
+     * so all pages of a query come from the same one.
      *
-     * @param locations List of locations retrieved from the repository.
+     * @return The session of the local index for searches when it is available, otherwise the repository's.
      */
-    private void processLocations(List<Location> locations) {
-        if (locations.size() < PAGE_SIZE) {
-            isLastPage = true;
+    private PagingSession<Location> openSession() {
+        boolean hasSearchQuery = currentSearchQuery != null && !currentSearchQuery.isEmpty();
+        if (hasSearchQuery && locationSearchRepository.isIndexAvailable()) {
+            // Answer searches from the local index, without going to the network
+            return locationSearchRepository.openSession(currentSearchQuery, currentFilter);
         }
-        locationList.addAll(locations); // Append new locations to the list
-        locationAdapter.notifyDataSetChanged(); // Notify adapter to refresh UI
-        isLoading = false; // Reset loading flag
+        return locationsRepository.openSession(currentFilter, currentSearchQuery);
     }
 
     /**
@@ -244,12 +241,12 @@ public class HomeFragment extends Fragment {
                     currentSearchQuery = query;
                 }
 
-                resetPagination();
-                loadLocations();*/
+                startQuery();*/
                 return true;
             }
 
-            private String lastQuery = "";
+            // Query of the locations kept, so restoring the search text does not restart the query
+            private String lastQuery = currentSearchQuery != null ? currentSearchQuery : "";
 
             @Override
             public boolean onQueryTextChange(String newText) {
@@ -259,14 +256,18 @@ public class HomeFragment extends Fragment {
 
                 lastQuery = newText;
 
-                if (newText.isEmpty()) {
+                if (newText.trim().isEmpty()) {
+                    // Clearing the search shows all locations right away
+                    searchDebouncer.cancel();
                     currentSearchQuery = null;
+                    startQuery();
                 } else {
-                    currentSearchQuery = newText;
+                    // Wait until the user stops typing before searching
+                    searchDebouncer.submit(() -> {
+                        currentSearchQuery = newText;
+                        startQuery();
+                    });
                 }
-
-                resetPagination();
-                loadLocations();
                 return true;
             }
         });
@@ -284,10 +285,6 @@ public class HomeFragment extends Fragment {
         bundle.putString("locationId", location.getId()); // Pass location ID to detail fragment
         detailFragment.setArguments(bundle);
 
-        requireActivity().getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, detailFragment) // Replace current fragment
-                .addToBackStack(null) // Add transaction to back stack
-                .commit(); // Commit fragment transaction
+        ((MainActivity) requireActivity()).openScreen(detailFragment); // Keeps the grid and its scroll position
     }
 }
-
@@ -1,5 +1,6 @@
 package com.example.pdm2_projeto;
 
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -14,12 +15,15 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.example.pdm2_projeto.adapters.CommentAdapter;
+import com.example.pdm2_projeto.interfaces.CommentStream;
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Comment;
 import com.example.pdm2_projeto.models.Location;
@@ -44,6 +48,7 @@ public class LocationDetailFragment extends Fragment {
     private EditText editComment;
     private LinearLayout commentInputContainer;
     private RecyclerView recyclerComments;
+    private CommentAdapter commentAdapter;
 
     // Location details
     private double latitude, longitude;
@@ -55,8 +60,15 @@ public class LocationDetailFragment extends Fragment {
     // Repositories for data handling
     private LocationsRepository locationsRepository;
     private FavoritesRepository favoritesRepository;
+    // Refreshes the favorite icon when the user's favorites change (e.g. a failed write was reverted)
+    private final FavoritesRepository.FavoritesListener favoritesListener = this::refreshFavoriteIcon;
     private CommentsRepository commentsRepository;
 
+    // Live list of comments, loaded one page at a time
+    private static final int COMMENTS_PAGE_SIZE = 20;
+    private static final int LOAD_MORE_THRESHOLD_PX = 300; // Older comments are loaded when the bottom is this close
+    private CommentStream commentStream;
+
     /**
      * Inflates the layout for this fragment.
      */
@@ -77,15 +89,47 @@ public class LocationDetailFragment extends Fragment {
         initializeUI(view);
         initializeRepositories();
 
-        updateHeader();
         loadArguments();
         setClickListeners();
 
-        // Initialize RecyclerView for comments
+        // Initialize RecyclerView for comments, reusing the same adapter on every reload
         recyclerComments.setLayoutManager(new LinearLayoutManager(getContext()));
+        commentAdapter = new CommentAdapter(getContext(), comment -> deleteCommentFromFirestore(comment));
+        recyclerComments.setAdapter(commentAdapter);
 
-        // Load comments from Firestore
+        // Load comments from Firestore, and older ones when the user scrolls to the bottom
         loadCommentsFromFirestore();
+        ((NestedScrollView) view).setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener) (v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+            View content = v.getChildAt(0);
+            if (content != null && scrollY + v.getHeight() >= content.getHeight() - LOAD_MORE_THRESHOLD_PX) {
+                loadOlderComments();
+            }
+        });
+    }
+
+    /**
+     * Updates the header each time the screen is shown, including when going back to it
+     * from a screen opened on top of it.
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+        requireActivity().findViewById(R.id.bottom_navigation).setVisibility(View.VISIBLE);
+        requireActivity().findViewById(R.id.top_header).setVisibility(View.VISIBLE);
+        updateHeader();
+    }
+
+    /**
+     * Stops listening to the comments and favorites when the view is destroyed.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        favoritesRepository.removeFavoritesListener(favoritesListener);
+        if (commentStream != null) {
+            commentStream.stop();
+            commentStream = null;
+        }
     }
 
     /**
@@ -123,9 +167,10 @@ public class LocationDetailFragment extends Fragment {
      * Initializes repositories to manage location, favorites, and comments.
      */
     private void initializeRepositories() {
-        locationsRepository = new LocationsRepository();
-        favoritesRepository = new FavoritesRepository();
-        commentsRepository = new CommentsRepository();
+        AppContainer container = AppContainer.from(requireContext());
+        locationsRepository = container.getLocationsRepository();
+        favoritesRepository = container.getFavoritesRepository();
+        commentsRepository = container.getCommentsRepository();
     }
 
     /**
@@ -139,7 +184,6 @@ public class LocationDetailFragment extends Fragment {
             if (locationId != null) {
                 fetchLocationDetails(locationId);
                 checkIfLocationIsFavorited();
-                loadCommentsFromFirestore(); // Ensure comments are loaded when locationId is set
             }
         }
     }
@@ -177,13 +221,21 @@ public class LocationDetailFragment extends Fragment {
     }
 
     /*
-    * Checks if the current location is marked as a favorite
+    * Shows whether the current location is marked as a favorite, and keeps the icon up to date
+    * while the view exists (the status is kept in memory by the repository)
     */
     private void checkIfLocationIsFavorited() {
         if (locationId == null) return;
-        favoritesRepository.isLocationFavorited(locationId)
-                .addOnSuccessListener(this::updateFavoriteIcon)
-                .addOnFailureListener(e -> Log.e("Firestore", "Error checking favorite", e));
+        favoritesRepository.addFavoritesListener(favoritesListener);
+    }
+
+    /*
+    * Updates the favorite icon from the favorites held by the repository
+    */
+    private void refreshFavoriteIcon() {
+        if (locationId != null && favoritesRepository.areFavoritesLoaded()) {
+            updateFavoriteIcon(favoritesRepository.isFavorite(locationId));
+        }
     }
 
     /*
@@ -195,50 +247,20 @@ public class LocationDetailFragment extends Fragment {
     }
 
     /*
-    * Toggles the favorite status of the location
+    * Toggles the favorite status of the location. The icon changes immediately;
+    * the repository writes the change shortly after and reverts it if the write fails
      */
     private void toggleFavorite() {
         if (locationId == null) return;
-        favoritesRepository.isLocationFavorited(locationId)
-                .addOnSuccessListener(isFav -> {
-                    if (isFav) {
-                        removeFavorite();
-                    } else {
-                        addFavorite();
-                    }
-                })
-                .addOnFailureListener(e -> Log.e("Firestore", "Error checking favorite", e));
-    }
-
-    /*
-    * Removes the location from favorites
-    */
-    private void removeFavorite() {
-        favoritesRepository.removeFavorite(locationId, new FirestoreCallback<>() {
-            @Override
-            public void onSuccess(Void result) {
-                updateFavoriteIcon(false);
-            }
-
+        favoritesRepository.toggleFavorite(locationId).observe(getViewLifecycleOwner(), new FirestoreCallback<Boolean>() {
             @Override
-            public void onFailure(Exception e) {
-                Log.e("Firestore", "Error removing favorite", e);
+            public void onSuccess(Boolean isFavorite) {
+                updateFavoriteIcon(isFavorite);
             }
-        });
-    }
 
-    /*
-    * Adds the location to favorites
-     */
-    private void addFavorite() {
-        favoritesRepository.addFavorite(locationId, new FirestoreCallback<Void>() {
-            @Override
-            public void onSuccess(Void result) {
-                updateFavoriteIcon(true);
-            }
             @Override
             public void onFailure(Exception e) {
-                Log.e("Firestore", "Error adding favorite", e);
+                Log.e("Firestore", "Error toggling favorite", e);
             }
         });
     }
@@ -256,11 +278,11 @@ public class LocationDetailFragment extends Fragment {
         String userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
         Comment newComment = new Comment(userId, locationId, commentText, Timestamp.now());
 
-        commentsRepository.addComment(newComment, new FirestoreCallback<Void>() {
+        commentsRepository.addComment(newComment).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
+                // The comment is already shown: the comment listener receives local writes immediately
                 Log.d("Comments", "Comment added successfully!");
-                new android.os.Handler().postDelayed(() -> loadCommentsFromFirestore(), 1000); // Wait 1 sec before reloading
             }
 
             @Override
@@ -287,11 +309,10 @@ public class LocationDetailFragment extends Fragment {
             return;
         }
 
-        commentsRepository.deleteComment(comment, new FirestoreCallback<>() {
+        commentsRepository.deleteComment(comment).observe(getViewLifecycleOwner(), new FirestoreCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
-                Toast.makeText(getContext(), "Comment deleted", Toast.LENGTH_SHORT).show();
-                loadCommentsFromFirestore(); // Reload comments after deletion
+                Toast.makeText(getContext(), "Comment deleted", Toast.LENGTH_SHORT).show(); // The comment listener removes it from the list
             }
 
             @Override
@@ -303,13 +324,14 @@ public class LocationDetailFragment extends Fragment {
 
 
     /*
-    * Loads comments from Firestore and updates the UI
+    * Starts listening to the latest comments from Firestore and updates the UI on every change
      */
     private void loadCommentsFromFirestore() {
-        commentsRepository.getCommentsByLocation(locationId, new FirestoreCallback<>() {
+        if (locationId == null) return;
+        commentStream = commentsRepository.streamCommentsByLocation(locationId, COMMENTS_PAGE_SIZE, new CommentStream.Listener() {
             @Override
-            public void onSuccess(List<Comment> comments) {
-                recyclerComments.setAdapter(new CommentAdapter(getContext(), comments, comment -> deleteCommentFromFirestore(comment)));
+            public void onCommentsChanged(List<Comment> comments) {
+                commentAdapter.submitList(comments); // Only changed comments are rebound
             }
 
             @Override
@@ -317,20 +339,36 @@ public class LocationDetailFragment extends Fragment {
                 Log.e("Firestore", "Error fetching comments", e);
             }
         });
+        commentStream.start();
+    }
+
+    /*
+    * Loads the next page of older comments, if any
+     */
+    private void loadOlderComments() {
+        if (commentStream != null && commentStream.hasMore() && !commentStream.isLoading()) {
+            commentStream.loadOlder();
+        }
     }
 
 
     /**
      * Fetches location details from Firestore and updates the UI.
+     * The request is cancelled if the view is destroyed before it answers.
      * @param locationId The ID of the location to fetch details for
      */
     private void fetchLocationDetails(String locationId) {
-        locationsRepository.getLocationById(locationId, new LocationsRepository.SingleLocationCallback() {
+        locationsRepository.getLocationById(locationId).observe(getViewLifecycleOwner(), new FirestoreCallback<Location>() {
             @Override
             public void onSuccess(Location location) {
                 updateUIWithLocationDetails(location);
             }
             @Override
+            public void onUpdated(Location location) {
+                // The cached copy was outdated
+                updateUIWithLocationDetails(location);
+            }
+            @Override
             public void onFailure(Exception e) {
                 Toast.makeText(getContext(), "Error loading location", Toast.LENGTH_SHORT).show();
             }
@@ -362,8 +400,13 @@ public class LocationDetailFragment extends Fragment {
         locationName.setText(name);
         locationCountry.setText(country);
 
-        // Ensure image loads properly
-        Glide.with(requireContext()).load(imageUrl).into(locationImage);
+        // Ensure image loads properly. The detail screen is the only one showing the full resolution image;
+        // the thumbnail from the list (usually already cached) is shown while it loads
+        RequestBuilder<Drawable> request = Glide.with(requireContext()).load(imageUrl);
+        if (location.getThumbnailUrl() != null) {
+            request = request.thumbnail(Glide.with(requireContext()).load(location.getThumbnailUrl()));
+        }
+        request.into(locationImage);
     }
 
     /*
@@ -382,14 +425,12 @@ public class LocationDetailFragment extends Fragment {
 
         mapFragment.setArguments(bundle);
 
-        BottomNavigationView bottomNavigationView = requireActivity().findViewById(R.id.bottom_navigation);
+        // Switching to the map tab closes this screen, so the activity is kept before
+        MainActivity activity = (MainActivity) requireActivity();
+        BottomNavigationView bottomNavigationView = activity.findViewById(R.id.bottom_navigation);
         if (bottomNavigationView != null) {
             bottomNavigationView.setSelectedItemId(R.id.nav_map);
         }
-
-        requireActivity().getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, mapFragment)
-                .addToBackStack(null)
-                .commit();
+        activity.openScreen(mapFragment);
     }
 }
@@ -42,7 +42,7 @@ public class LoginFragment extends Fragment {
 
         // Initialize FirebaseAuth and the user repository
         auth = FirebaseAuth.getInstance();
-        usersRepository = new UsersRepository();
+        usersRepository = AppContainer.from(requireContext()).getUsersRepository();
 
         // Bind UI elements to variables
         emailField = view.findViewById(R.id.email_field);
@@ -85,17 +85,11 @@ public class LoginFragment extends Fragment {
     }
 
     /*
-    * Configures the back button to navigate back to the ProfileFragment.
+    * Configures the back button to navigate back to the Profile tab.
     * @param backButton The back button to configure.
      */
     private void configureBackButton(ImageView backButton) {
-        backButton.setOnClickListener(v -> {
-            Fragment profileFragment = new ProfileFragment();
-            requireActivity().getSupportFragmentManager()
-                    .beginTransaction()
-                    .replace(R.id.fragment_container, profileFragment)
-                    .commit();
-        });
+        backButton.setOnClickListener(v -> ((MainActivity) requireActivity()).showProfileTab());
     }
 
     /**
@@ -141,11 +135,7 @@ public class LoginFragment extends Fragment {
     private void configureRegisterButton(TextView registerButton) {
         registerButton.setOnClickListener(v -> {
             Fragment registerFragment = new RegisterFragment();
-            requireActivity().getSupportFragmentManager()
-                    .beginTransaction()
-                    .replace(R.id.fragment_container, registerFragment) // Adjust container ID as necessary
-                    .addToBackStack(null)
-                    .commit();
+            ((MainActivity) requireActivity()).openScreen(registerFragment);
         });
     }
 
@@ -170,11 +160,8 @@ public class LoginFragment extends Fragment {
 
             FirebaseAuth.getInstance().sendPasswordResetEmail(email)
                     .addOnSuccessListener(aVoid -> {
+                        // The user stays on this screen to log in with the new password
                         Toast.makeText(requireContext(), getString(R.string.reset_email_sent), Toast.LENGTH_SHORT).show();
-                        requireActivity().getSupportFragmentManager()
-                                .beginTransaction()
-                                .replace(R.id.fragment_container, new LoginFragment())
-                                .commit();
                     })
                     .addOnFailureListener(e ->
                             Toast.makeText(requireContext(), getString(R.string.reset_email_failed) + e.getMessage(), Toast.LENGTH_SHORT).show());
@@ -223,18 +210,13 @@ public class LoginFragment extends Fragment {
      * Fetches user data from Firestore after successful login.
      */
     private void fetchUserData() {
-        usersRepository.getCurrentUser(new FirestoreCallback() {
+        usersRepository.getCurrentUser().observe(this, new FirestoreCallback<User>() {
             @Override
-            public void onSuccess(Object result) {
-                User user = (User) result;
+            public void onSuccess(User user) {
                 showToast(getString(R.string.welcome) + ", " + user.getName());
 
-                // Replace LoginFragment with ProfileFragment after successful login
-                Fragment profileFragment = new ProfileFragment();
-                requireActivity().getSupportFragmentManager()
-                        .beginTransaction()
-                        .replace(R.id.fragment_container, profileFragment) // Adjust container ID as necessary
-                        .commit();
+                // Close the login screen and show the Profile tab of the user
+                ((MainActivity) requireActivity()).showProfileTab();
             }
 
             @Override
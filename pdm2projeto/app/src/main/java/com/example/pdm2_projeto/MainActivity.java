@@ -6,17 +6,43 @@ import android.os.Bundle;
 import android.view.View;
 import android.widget.ImageView;
 
+import androidx.activity.OnBackPressedCallback;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import java.util.Locale;
 
+/**
+ * Main activity hosting the screens of the app.
+ * The bottom navigation tabs (Home, Map, Profile) are created once and shown or hidden when the
+ * user switches tabs, so they keep their views, scroll position and loaded data. Only the screens
+ * opened from a tab (details, settings, ...) go on the back stack, which is cleared on a tab switch.
+ * They are added on top of the tab, which is only hidden, so going back shows it as it was.
+ */
 public class MainActivity extends AppCompatActivity {
 
+    // Tags of the tab fragments in the fragment manager
+    private static final String TAB_HOME = "tab_home";
+    private static final String TAB_MAP = "tab_map";
+    private static final String TAB_PROFILE = "tab_profile";
+    private static final String KEY_CURRENT_TAB = "current_tab";
+
     private BottomNavigationView bottomNavigationView;
+    private String currentTab = TAB_HOME; // Tag of the tab shown
+
+    // Goes back to the Home tab when back is pressed on the root of another tab
+    private final OnBackPressedCallback backToHome = new OnBackPressedCallback(false) {
+        @Override
+        public void handleOnBackPressed() {
+            bottomNavigationView.setSelectedItemId(R.id.nav_home);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,40 +60,121 @@ public class MainActivity extends AppCompatActivity {
 
         bottomNavigationView = findViewById(R.id.bottom_navigation);
 
-        // Set default fragment
+        // Set default fragment; after a recreation the fragment manager restores the tabs
         if (savedInstanceState == null) {
-            loadFragment(new HomeFragment(), false); // Show bottom navigation by default
+            showTab(TAB_HOME); // Show bottom navigation by default
+        } else {
+            currentTab = savedInstanceState.getString(KEY_CURRENT_TAB, TAB_HOME);
         }
 
         // Set click listener for bottom navigation
         bottomNavigationView.setOnItemSelectedListener(item -> {
-            Fragment selectedFragment = null;
-
             if (item.getItemId() == R.id.nav_home) {
-                selectedFragment = new HomeFragment();
+                showTab(TAB_HOME);
             } else if (item.getItemId() == R.id.nav_profile) {
-                selectedFragment = new ProfileFragment();
+                showTab(TAB_PROFILE);
             } else if (item.getItemId() == R.id.nav_map) {
-                selectedFragment = new MapFragment();
-            }
-
-            if (selectedFragment != null) {
-                loadFragment(selectedFragment, false);
+                showTab(TAB_MAP);
             }
             return true;
         });
+        // Tapping the current tab again goes back to its root screen
+        bottomNavigationView.setOnItemReselectedListener(item -> showTab(currentTab));
+
+        getOnBackPressedDispatcher().addCallback(this, backToHome);
+        getSupportFragmentManager().addOnBackStackChangedListener(this::updateBackToHome);
+        updateBackToHome();
 
         // Set click listener for menu icon
         ImageView settingsButton = this.findViewById(R.id.menu_icon);
         if (settingsButton != null) {
-            settingsButton.setOnClickListener(v -> {
-                this.getSupportFragmentManager()
-                        .beginTransaction()
-                        .replace(R.id.fragment_container, new SettingsFragment())
-                        .addToBackStack(null)
-                        .commit();
-            });
+            settingsButton.setOnClickListener(v -> openScreen(new SettingsFragment()));
+        }
+    }
+
+    /**
+     * Remembers the tab shown, to restore it after a recreation.
+     */
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(KEY_CURRENT_TAB, currentTab);
+    }
+
+    /**
+     * Shows a tab, creating its fragment the first time. The screens opened on top of the
+     * current tab are closed, and the other tabs are hidden and paused (their views are kept).
+     * Tab switches are not added to the back stack.
+     *
+     * @param tag The tag of the tab to show.
+     */
+    private void showTab(String tag) {
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        if (fragmentManager.getBackStackEntryCount() > 0) {
+            fragmentManager.popBackStackImmediate(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        }
+        bottomNavigationView.setVisibility(View.VISIBLE);
+
+        FragmentTransaction transaction = fragmentManager.beginTransaction().setReorderingAllowed(true);
+        for (String tab : new String[]{TAB_HOME, TAB_MAP, TAB_PROFILE}) {
+            Fragment fragment = fragmentManager.findFragmentByTag(tab);
+            if (tab.equals(tag)) {
+                if (fragment == null) {
+                    transaction.add(R.id.fragment_container, createTab(tab), tab);
+                } else {
+                    transaction.show(fragment).setMaxLifecycle(fragment, Lifecycle.State.RESUMED);
+                }
+            } else if (fragment != null && fragment.isAdded()) {
+                transaction.hide(fragment).setMaxLifecycle(fragment, Lifecycle.State.STARTED);
+            }
+        }
+        transaction.commit();
+
+        currentTab = tag;
+        updateBackToHome();
+    }
+
+    /**
+     * Creates the fragment of a tab.
+     */
+    private static Fragment createTab(String tag) {
+        switch (tag) {
+            case TAB_MAP:
+                return new MapFragment();
+            case TAB_PROFILE:
+                return new ProfileFragment();
+            default:
+                return new HomeFragment();
+        }
+    }
+
+    /**
+     * Opens a screen on top of the current one and adds it to the back stack.
+     * The current screen (a tab or another screen) is hidden and paused instead of being replaced,
+     * so it keeps its view and state, and is shown again when going back.
+     *
+     * @param screen The fragment of the screen to open.
+     */
+    public void openScreen(@NonNull Fragment screen) {
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        fragmentManager.executePendingTransactions(); // e.g. a tab switch just before, so the right screen is hidden
+        FragmentTransaction transaction = fragmentManager.beginTransaction().setReorderingAllowed(true);
+        for (Fragment fragment : fragmentManager.getFragments()) {
+            if (fragment.getId() == R.id.fragment_container && fragment.isAdded() && !fragment.isHidden()) {
+                transaction.hide(fragment).setMaxLifecycle(fragment, Lifecycle.State.STARTED);
+            }
         }
+        transaction.add(R.id.fragment_container, screen)
+                .addToBackStack(null)
+                .commit();
+    }
+
+    /**
+     * Enables going back to Home only on the root screen of another tab.
+     */
+    private void updateBackToHome() {
+        backToHome.setEnabled(getSupportFragmentManager().getBackStackEntryCount() == 0
+                && !TAB_HOME.equals(currentTab));
     }
 
     /**
@@ -83,14 +190,19 @@ public class MainActivity extends AppCompatActivity {
             bottomNavigationView.setVisibility(View.VISIBLE);
         }
 
-        getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, fragment)
-                .addToBackStack(null) // Add fragment to back stack for navigation
-                .commit();
+        openScreen(fragment);
+    }
+
+    /**
+     * Closes the screens opened on top of the tabs and shows the Profile tab, which shows the state
+     * of the user signed in at that moment (e.g. after a login, logout or account deletion).
+     */
+    public void showProfileTab() {
+        bottomNavigationView.setSelectedItemId(R.id.nav_profile); // Also selects the tab when it is already the current one
     }
 
     /**
-     * Replaces the current fragment with the LoginFragment and hides the bottom navigation bar.
+     * Opens the LoginFragment on top of the current screen and hides the bottom navigation bar.
      */
     public void showLoginFragment() {
         loadFragment(new LoginFragment(), true); // Hide bottom navigation for LoginFragment
@@ -1,7 +1,14 @@
 package com.example.pdm2_projeto;
 
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,21 +23,31 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Location;
 import com.example.pdm2_projeto.repositories.LocationsRepository;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.GridClusterer;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Fragment that displays a map with user location and markers from Firestore.
@@ -42,6 +59,28 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private LocationsRepository locationRepository;
     private final HashMap<Marker, LocationInfo> markerData = new HashMap<>();
 
+    // Viewport-bounded loading: only the locations inside the visible region plus a margin are loaded
+    private static final double VIEWPORT_MARGIN = 0.5; // Fraction of the visible span added on each side
+    private LatLngBounds loadedBounds; // Region covered by loadedLocations
+    private LatLng userLatLng; // Last known position of the user, the loaded locations are sorted by distance from it
+    private List<Location> loadedLocations = new ArrayList<>();
+    private AsyncResult<List<Location>> regionRequest; // Region being loaded, cancelled when the camera moves to another one
+
+    // Camera position when the view was destroyed, restored when the user comes back to the map
+    private static final String KEY_CAMERA = "camera";
+    private CameraPosition savedCamera;
+
+    // Clustering, computed on a background thread when the camera stops moving
+    private static final int CLUSTER_CELL_SIZE_PX = 120; // Locations closer than this on screen are grouped
+    private static final int MAX_POOLED_MARKERS = 50; // Hidden markers kept for reuse
+    private Executor clusterExecutor; // The app's shared background executor
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int clusterGeneration = 0; // Results of outdated clustering runs are ignored
+    private final Map<String, Marker> clusterMarkers = new HashMap<>(); // Visible markers by cluster key
+    private final Map<Marker, GridClusterer.Cluster> markerClusters = new HashMap<>();
+    private final ArrayDeque<Marker> markerPool = new ArrayDeque<>(); // Hidden markers ready to be reused
+    private final LruCache<Integer, BitmapDescriptor> clusterIcons = new LruCache<>(32);
+
     // Inner class to store location information
     static class LocationInfo {
         String title;
@@ -69,9 +108,14 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
+        if (savedInstanceState != null && savedCamera == null) {
+            savedCamera = savedInstanceState.getParcelable(KEY_CAMERA);
+        }
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireContext());
-        locationRepository = new LocationsRepository();
+        AppContainer container = AppContainer.from(requireContext());
+        locationRepository = container.getLocationsRepository();
+        clusterExecutor = container.getBackgroundExecutor();
 
         SupportMapFragment mapFragment = (SupportMapFragment) getChildFragmentManager().findFragmentById(R.id.map);
         if (mapFragment != null) {
@@ -80,20 +124,35 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             showToast("Map fragment is null.");
         }
 
+        ImageView settingsButton = requireActivity().findViewById(R.id.menu_icon);
+        if (settingsButton != null) {
+            settingsButton.setOnClickListener(v -> ((MainActivity) requireActivity()).openScreen(new SettingsFragment()));
+        }
+    }
+
+    /**
+     * Shows the navigation and header each time the screen is shown (the tab is kept when hidden).
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
         requireActivity().findViewById(R.id.bottom_navigation).setVisibility(View.VISIBLE);
         requireActivity().findViewById(R.id.top_header).setVisibility(View.VISIBLE);
 
         updateHeader();
+    }
 
-        ImageView settingsButton = requireActivity().findViewById(R.id.menu_icon);
-        if (settingsButton != null) {
-            settingsButton.setOnClickListener(v -> {
-                requireActivity().getSupportFragmentManager()
-                        .beginTransaction()
-                        .replace(R.id.fragment_container, new SettingsFragment())
-                        .addToBackStack(null)
-                        .commit();
-            });
+    /**
+     * Saves the camera position, restored when the map is shown again.
+     */
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mMap != null) {
+            savedCamera = mMap.getCameraPosition();
+        }
+        if (savedCamera != null) {
+            outState.putParcelable(KEY_CAMERA, savedCamera);
         }
     }
 
@@ -128,10 +187,20 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
 
         mMap.setInfoWindowAdapter(new CustomInfoWindowAdapter());
+        mMap.setOnCameraIdleListener(this::onCameraIdle);
+        mMap.setOnMarkerClickListener(this::onMarkerClick);
 
         // Check if there are arguments (clicked location)
         Bundle bundle = getArguments();
-        if (bundle != null) {
+        if (savedCamera != null) {
+            // Back to this screen: keep the camera where the user left it
+            mMap.moveCamera(CameraUpdateFactory.newCameraPosition(savedCamera));
+            if (userLatLng != null) {
+                mMap.addMarker(new MarkerOptions()
+                        .position(userLatLng)
+                        .title(getString(R.string.your_location)));
+            }
+        } else if (bundle != null) {
             String locationName = bundle.getString("locationName");
             String address = bundle.getString("address");
             String imageUrl = bundle.getString("imageUrl");
@@ -157,8 +226,26 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             getUserLocation();
         }
 
-        // Load other locations, such as those from Firestore
-        fetchLocationsFromFirestore();
+        // Other locations are loaded for the visible region when the camera stops moving
+    }
+
+    /**
+     * Stops clustering and forgets the markers when the view is destroyed.
+     * The region request is bound to the view lifecycle and cancelled with it.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mMap != null) {
+            savedCamera = mMap.getCameraPosition();
+        }
+        regionRequest = null;
+        clusterGeneration++;
+        clusterMarkers.clear();
+        markerClusters.clear();
+        markerPool.clear();
+        markerData.clear();
+        mMap = null;
     }
 
     /*
@@ -174,9 +261,10 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             // Get the last known location
             fusedLocationClient.getLastLocation()
                     .addOnSuccessListener(location -> {
+                        if (mMap == null) return; // The view was destroyed meanwhile
                         if (location != null) {
                             // Convert the location to LatLng and add a marker
-                            LatLng userLatLng = new LatLng(location.getLatitude(), location.getLongitude());
+                            userLatLng = new LatLng(location.getLatitude(), location.getLongitude());
                             mMap.addMarker(new MarkerOptions()
                                     .position(userLatLng)
                                     .title(getString(R.string.your_location))); // Use default marker
@@ -232,46 +320,218 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     }
 
     /*
-    * Fetches locations from Firestore and adds them to the map.
+    * Called when the camera stops moving. Loads the locations of the new region if it is not
+    * covered yet, and recomputes the clusters for the new zoom level.
+     */
+    private void onCameraIdle() {
+        if (mMap == null) return;
+        LatLngBounds visible = mMap.getProjection().getVisibleRegion().latLngBounds;
+
+        if (loadedBounds != null && loadedBounds.contains(visible.southwest) && loadedBounds.contains(visible.northeast)) {
+            recomputeClusters();
+        } else {
+            fetchLocationsFromFirestore(expandBounds(visible, VIEWPORT_MARGIN));
+        }
+    }
+
+    /*
+    * Fetches the locations inside the given region and clusters them.
      */
-    private void fetchLocationsFromFirestore() {
-        locationRepository.getAllLocations(new LocationsRepository.LocationCallback() {
+    private void fetchLocationsFromFirestore(LatLngBounds bounds) {
+        // The camera moved to another region: the previous one is no longer needed
+        if (regionRequest != null) {
+            regionRequest.cancel();
+        }
+        regionRequest = locationRepository.getLocationsWithinBounds(bounds, userLatLng);
+        regionRequest.observe(getViewLifecycleOwner(), new FirestoreCallback<List<Location>>() {
             @Override
             public void onSuccess(List<Location> locations) {
-                for (Location location : locations) {
-
-                    String name = "";
-                    String country = "";
-
-                    if(getContext().getString(R.string.language).equals("en")){
-                        name = location.getNameEn();
-                        country = location.getCountryEn();
-                    } else {
-                        name = location.getName();
-                        country = location.getCountry();
-                    }
-                    LatLng position = new LatLng(location.getLatitude(), location.getLongitude());
-                    Marker marker = mMap.addMarker(new MarkerOptions()
-                            .position(position)
-                            .title(name)
-                            .snippet(country)
-                            .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_VIOLET)));
-
-                    // Ensure marker is not null before adding to markerData
-                    if (marker != null) {
-                        markerData.put(marker, new LocationInfo(name, country, location.getImageUrl()));
-                    }
-                }
+                loadedBounds = bounds;
+                loadedLocations = locations;
+                recomputeClusters();
+            }
+
+            @Override
+            public void onUpdated(List<Location> locations) {
+                // Cached locations were outdated
+                onSuccess(locations);
             }
 
             @Override
             public void onFailure(Exception e) {
+                if (!isAdded()) return;
                 showToast(getString(R.string.failed_to_fetch_locations));
                 e.printStackTrace();
             }
         });
     }
 
+    /*
+    * Groups the loaded locations into clusters on a background thread, then updates the markers.
+     */
+    private void recomputeClusters() {
+        if (mMap == null) return;
+        final int generation = ++clusterGeneration;
+        final float zoom = mMap.getCameraPosition().zoom;
+        final List<Location> locations = loadedLocations;
+
+        clusterExecutor.execute(() -> {
+            List<GridClusterer.Cluster> clusters = GridClusterer.cluster(locations, zoom, CLUSTER_CELL_SIZE_PX);
+            mainHandler.post(() -> {
+                if (generation == clusterGeneration && mMap != null && isAdded()) {
+                    renderClusters(clusters);
+                }
+            });
+        });
+    }
+
+    /*
+    * Shows one marker per cluster. Markers of clusters that are still present are kept,
+    * and markers that are no longer needed are hidden and reused for new clusters.
+     */
+    private void renderClusters(List<GridClusterer.Cluster> clusters) {
+        Map<String, Marker> previous = new HashMap<>(clusterMarkers);
+        clusterMarkers.clear();
+
+        for (GridClusterer.Cluster cluster : clusters) {
+            Marker marker = previous.remove(cluster.key);
+            if (marker == null) {
+                marker = markerPool.poll();
+            }
+            if (marker == null) {
+                marker = mMap.addMarker(new MarkerOptions().position(new LatLng(cluster.latitude, cluster.longitude)));
+                if (marker == null) continue;
+            }
+            bindClusterMarker(marker, cluster);
+            clusterMarkers.put(cluster.key, marker);
+        }
+
+        // Hide the markers that are no longer used, keeping a few for reuse
+        for (Marker marker : previous.values()) {
+            markerData.remove(marker);
+            markerClusters.remove(marker);
+            if (markerPool.size() < MAX_POOLED_MARKERS) {
+                marker.hideInfoWindow();
+                marker.setVisible(false);
+                markerPool.push(marker);
+            } else {
+                marker.remove();
+            }
+        }
+    }
+
+    /*
+    * Updates a (possibly reused) marker to display the given cluster.
+     */
+    private void bindClusterMarker(Marker marker, GridClusterer.Cluster cluster) {
+        marker.setPosition(new LatLng(cluster.latitude, cluster.longitude));
+        markerClusters.put(marker, cluster);
+
+        if (cluster.size() == 1) {
+            Location location = cluster.locations.get(0);
+            String name;
+            String country;
+
+            if(getContext().getString(R.string.language).equals("en")){
+                name = location.getNameEn();
+                country = location.getCountryEn();
+            } else {
+                name = location.getName();
+                country = location.getCountry();
+            }
+            marker.setTitle(name);
+            marker.setSnippet(country);
+            marker.setIcon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_VIOLET));
+            markerData.put(marker, new LocationInfo(name, country, location.getListImageUrl()));
+        } else {
+            marker.setTitle(null);
+            marker.setSnippet(null);
+            marker.setIcon(getClusterIcon(cluster.size()));
+            markerData.remove(marker); // Clusters have no info window
+        }
+        marker.setVisible(true);
+    }
+
+    /*
+    * Zooms into a cluster when it is clicked. Single locations keep the default behaviour (info window).
+     */
+    private boolean onMarkerClick(Marker marker) {
+        GridClusterer.Cluster cluster = markerClusters.get(marker);
+        if (cluster == null || cluster.size() == 1) {
+            return false;
+        }
+
+        LatLngBounds.Builder builder = new LatLngBounds.Builder();
+        for (Location location : cluster.locations) {
+            builder.include(new LatLng(location.getLatitude(), location.getLongitude()));
+        }
+        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(builder.build(), 100));
+        return true;
+    }
+
+    /*
+    * Returns the icon of a cluster marker: a circle with the number of locations.
+    * Icons are cached by the number displayed.
+     */
+    private BitmapDescriptor getClusterIcon(int size) {
+        int label = size < 100 ? size : (size < 1000 ? size / 100 * 100 : size / 1000 * 1000);
+        BitmapDescriptor icon = clusterIcons.get(label);
+        if (icon != null) {
+            return icon;
+        }
+
+        float density = getResources().getDisplayMetrics().density;
+        int diameter = (int) (40 * density);
+        Bitmap bitmap = Bitmap.createBitmap(diameter, diameter, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint circle = new Paint(Paint.ANTI_ALIAS_FLAG);
+        circle.setColor(Color.rgb(123, 31, 162)); // Same hue as the location markers
+        canvas.drawCircle(diameter / 2f, diameter / 2f, diameter / 2f, circle);
+
+        Paint text = new Paint(Paint.ANTI_ALIAS_FLAG);
+        text.setColor(Color.WHITE);
+        text.setTextSize(14 * density);
+        text.setTextAlign(Paint.Align.CENTER);
+        String value = size < 100 ? String.valueOf(label) : label + "+";
+        canvas.drawText(value, diameter / 2f, diameter / 2f - (text.descent() + text.ascent()) / 2, text);
+
+        icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+        clusterIcons.put(label, icon);
+        return icon;
+    }
+
+    /*
+    * Returns the given bounds enlarged by a fraction of their size on each side.
+     */
+    private static LatLngBounds expandBounds(LatLngBounds bounds, double margin) {
+        double south = bounds.southwest.latitude;
+        double north = bounds.northeast.latitude;
+        double west = bounds.southwest.longitude;
+        double east = bounds.northeast.longitude;
+
+        double latitudeSpan = north - south;
+        double longitudeSpan = east >= west ? east - west : east + 360 - west; // Bounds may cross the antimeridian
+
+        south = Math.max(-90, south - latitudeSpan * margin);
+        north = Math.min(90, north + latitudeSpan * margin);
+        if (longitudeSpan * (1 + 2 * margin) >= 360) {
+            west = -180;
+            east = 180;
+        } else {
+            west = wrapLongitude(west - longitudeSpan * margin);
+            east = wrapLongitude(east + longitudeSpan * margin);
+        }
+        return new LatLngBounds(new LatLng(south, west), new LatLng(north, east));
+    }
+
+    /*
+    * Brings a longitude back into the [-180, 180) range.
+     */
+    private static double wrapLongitude(double longitude) {
+        return ((longitude + 180) % 360 + 360) % 360 - 180;
+    }
+
 
     /*
     * Handles the click event on a marker.
@@ -295,11 +555,13 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
             ImageView image = view.findViewById(R.id.info_window_image);
 
-            // Load image asynchronously using Glide
+            // Load image asynchronously using Glide, decoded at the size of the info window image
+            int imageSize = getResources().getDimensionPixelSize(R.dimen.info_window_image_size);
             Glide.with(getContext())
                     .load(locationInfo.imageUrl)
                     .placeholder(R.drawable.default_placeholder) // Show a placeholder while loading
-                    .into(new com.bumptech.glide.request.target.CustomTarget<android.graphics.drawable.Drawable>() {
+                    .centerCrop()
+                    .into(new com.bumptech.glide.request.target.CustomTarget<android.graphics.drawable.Drawable>(imageSize, imageSize) {
                         @Override
                         public void onResourceReady(@NonNull android.graphics.drawable.Drawable resource, @Nullable com.bumptech.glide.request.transition.Transition<? super android.graphics.drawable.Drawable> transition) {
                             image.setImageDrawable(resource);
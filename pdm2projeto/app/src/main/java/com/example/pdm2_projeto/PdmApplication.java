@@ -0,0 +1,119 @@
+package com.example.pdm2_projeto;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+
+import com.example.pdm2_projeto.repositories.LocationCache;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheIndexManager;
+import com.google.firebase.firestore.PersistentCacheSettings;
+
+/**
+ * Application class that creates the {@link AppContainer} when the app starts.
+ */
+public class PdmApplication extends Application {
+
+    /**
+     * Size of the local Firestore cache. Large enough for every location, the profiles and the recent
+     * comments, so screens opened offline or before the server answers can be drawn from it.
+     */
+    private static final long FIRESTORE_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private AppContainer container;
+
+    /**
+     * Configures Firestore, creates the container, restores the recording of Firestore metrics,
+     * starts loading the data needed by the first screens and synchronizes the search index.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        configureFirestore();
+        container = createContainer();
+
+        // Keep recording Firestore calls if the performance panel left it on (debug builds only)
+        FirestoreMetrics.setEnabled(SettingsFragment.isDebuggable(this)
+                && getSharedPreferences("settings", MODE_PRIVATE).getBoolean(SettingsFragment.METRICS_PREFERENCE, false));
+
+        // Load the location categories in the background, so the filter opens without waiting
+        container.getLocationCategoryRepository().prefetch();
+
+        syncSearchIndex();
+    }
+
+    /**
+     * Synchronizes the local search index with Firestore in the background, once each time the process
+     * starts (including after it was killed while in the background). Only locations changed since the
+     * last sync are downloaded.
+     */
+    private void syncSearchIndex() {
+        container.getLocationSearchRepository().sync().observe(new FirestoreCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                Log.d("PdmApplication", "Search index synchronized");
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("PdmApplication", "Error synchronizing search index", e);
+            }
+        });
+    }
+
+    /**
+     * Sets the size of the local Firestore cache and lets Firestore index it, so the location queries
+     * answered from the cache (filtered by category or search keyword) do not scan every cached document.
+     * Must run before Firestore is used.
+     */
+    private void configureFirestore() {
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        db.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                        .setSizeBytes(FIRESTORE_CACHE_BYTES)
+                        .build())
+                .build());
+
+        PersistentCacheIndexManager indexManager = db.getPersistentCacheIndexManager();
+        if (indexManager != null) {
+            indexManager.enableIndexAutoCreation();
+        }
+    }
+
+    /**
+     * Creates the container of the application. Test applications override it to build the
+     * container over other data sources (see {@link com.example.pdm2_projeto.repositories.InMemoryDataSource}).
+     *
+     * @return The new container.
+     */
+    protected AppContainer createContainer() {
+        return new AppContainer(this);
+    }
+
+    /**
+     * Logs the cache and background executor counters when the app goes to the background,
+     * and writes the pending favorite changes.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Write the favorite changes still waiting, before the process may be killed
+            container.getFavoritesRepository().flush();
+            LocationCache.logStats();
+            container.getBackgroundExecutor().logStats();
+        }
+    }
+
+    /**
+     * Retrieves the container that owns the repositories of the app.
+     *
+     * @return The application's container.
+     */
+    public AppContainer getContainer() {
+        return container;
+    }
+}
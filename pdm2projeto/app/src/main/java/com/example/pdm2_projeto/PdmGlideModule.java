@@ -0,0 +1,54 @@
+package com.example.pdm2_projeto;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+/**
+ * Configures the image caches used by Glide.
+ * The memory cache holds a few screens of images, so the grid cells preloaded while scrolling
+ * are still in memory when they appear, and the downloaded images are kept on disk between sessions.
+ */
+@GlideModule
+public class PdmGlideModule extends AppGlideModule {
+
+    /**
+     * Maximum size of the image cache on disk.
+     */
+    private static final long DISK_CACHE_SIZE = 150L * 1024 * 1024;
+
+    /**
+     * Number of screens of images kept in the memory cache and in the bitmap pool.
+     */
+    private static final float MEMORY_CACHE_SCREENS = 3;
+
+    /**
+     * Sets the size of the memory cache, the bitmap pool and the disk cache.
+     */
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(MEMORY_CACHE_SCREENS)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize()));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, "images", DISK_CACHE_SIZE));
+    }
+
+    /**
+     * Disables the lookup of Glide modules declared in the manifest, which the app does not use.
+     */
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
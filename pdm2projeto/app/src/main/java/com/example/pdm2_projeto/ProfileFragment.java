@@ -1,6 +1,5 @@
 package com.example.pdm2_projeto;
 
-import android.annotation.SuppressLint;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -17,6 +16,7 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.signature.ObjectKey;
 import com.example.pdm2_projeto.adapters.LocationAdapter;
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Favorite;
@@ -28,7 +28,10 @@ import com.example.pdm2_projeto.repositories.UsersRepository;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public class ProfileFragment extends Fragment {
 
@@ -40,6 +43,7 @@ public class ProfileFragment extends Fragment {
     private LocationsRepository locationsRepository;
     private List<Location> favoriteLocations;
     private LocationAdapter locationAdapter;
+    private String shownUserId; // User whose profile is shown
 
     @Nullable
     @Override
@@ -50,23 +54,33 @@ public class ProfileFragment extends Fragment {
         initializeViews(view);
 
         // Set up the user repository
-        usersRepository = new UsersRepository();
-        favoritesRepository = new FavoritesRepository();
-        locationsRepository = new LocationsRepository();
+        AppContainer appContainer = AppContainer.from(requireContext());
+        usersRepository = appContainer.getUsersRepository();
+        favoritesRepository = appContainer.getFavoritesRepository();
+        locationsRepository = appContainer.getLocationsRepository();
         favoriteLocations = new ArrayList<>();
 
         RecyclerView recyclerView = view.findViewById(R.id.favorites_recycler_view);
         recyclerView.setLayoutManager(new GridLayoutManager(getContext(), 2));
 
-        locationAdapter = new LocationAdapter(getContext(), favoriteLocations, this::openDetailFragment);
+        locationAdapter = new LocationAdapter(getContext(), this::openDetailFragment);
         recyclerView.setAdapter(locationAdapter);
 
+        return view;
+    }
+
+    /**
+     * Loads the user data once the view exists, so the requests can be bound to the view lifecycle
+     * and cancelled if the user leaves the screen before they answer.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
         // Check user authentication state
         checkUserAuthentication();
 
         loadFavorites();
-
-        return view;
     }
 
     /**
@@ -84,9 +98,6 @@ public class ProfileFragment extends Fragment {
         // Update the header title
         updateHeader();
 
-        // Set up navigation for settings button
-        usersRepository = new UsersRepository();
-
         // Set up navigation for login and register actions
         setupAuthenticationNavigation(view);
 
@@ -100,32 +111,34 @@ public class ProfileFragment extends Fragment {
     * Load user favorites from Firestore and update the UI
      */
     private void loadFavorites() {
-        favoritesRepository.getUserFavorites(new FavoritesRepository.FavoritesCallback() {
-            @Override
-            public void onSuccess(List<Favorite> favorites) {
-                favoriteLocations.clear();
-                for (Favorite favorite : favorites) {
-                    locationsRepository.getLocationById(favorite.getLocationId(), new LocationsRepository.SingleLocationCallback() {
-                        @SuppressLint("NotifyDataSetChanged")
-                        @Override
-                        public void onSuccess(Location location) {
-                            favoriteLocations.add(location);
-                            locationAdapter.notifyDataSetChanged();
-                        }
-
-                        @Override
-                        public void onFailure(Exception e) {
-                            e.printStackTrace();
-                        }
-                    });
-                }
-            }
-
-            @Override
-            public void onFailure(Exception e) {
-                e.printStackTrace();
-            }
-        });
+        favoritesRepository.getUserFavorites()
+                .then(favorites -> {
+                    List<String> locationIds = new ArrayList<>();
+                    for (Favorite favorite : favorites) {
+                        locationIds.add(favorite.getLocationId());
+                    }
+
+                    // Fetch all favorite locations at once and redraw the grid a single time
+                    return locationsRepository.getLocationsByIds(locationIds);
+                })
+                .observe(getViewLifecycleOwner(), new FirestoreCallback<List<Location>>() {
+                    @Override
+                    public void onSuccess(List<Location> locations) {
+                        favoriteLocations.clear();
+                        favoriteLocations.addAll(locations);
+                        locationAdapter.updateList(favoriteLocations);
+                    }
+
+                    @Override
+                    public void onUpdated(List<Location> locations) {
+                        onSuccess(locations); // The locations first read from the local cache were outdated
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        e.printStackTrace();
+                    }
+                });
     }
 
     /**
@@ -138,10 +151,7 @@ public class ProfileFragment extends Fragment {
         bundle.putString("locationId", location.getId());
         detailFragment.setArguments(bundle);
 
-        requireActivity().getSupportFragmentManager().beginTransaction()
-                .replace(R.id.fragment_container, detailFragment)
-                .addToBackStack(null)
-                .commit();
+        ((MainActivity) requireActivity()).openScreen(detailFragment);
     }
 
 
@@ -182,11 +192,7 @@ public class ProfileFragment extends Fragment {
      * Navigates to the specified fragment.
      */
     private void navigateToFragment(Fragment fragment) {
-        requireActivity().getSupportFragmentManager()
-                .beginTransaction()
-                .replace(R.id.fragment_container, fragment)
-                .addToBackStack(null)
-                .commit();
+        ((MainActivity) requireActivity()).openScreen(fragment);
     }
 
 
@@ -195,6 +201,7 @@ public class ProfileFragment extends Fragment {
      */
     private void checkUserAuthentication() {
         FirebaseUser currentUser = usersRepository.getAuthenticatedUser();
+        shownUserId = currentUser != null ? currentUser.getUid() : null;
 
         if (currentUser != null) {
             handleLoggedInState(currentUser);
@@ -209,10 +216,9 @@ public class ProfileFragment extends Fragment {
     private void handleLoggedInState(FirebaseUser currentUser) {
         toggleVisibility(true);
 
-        usersRepository.getCurrentUser(new FirestoreCallback() {
+        usersRepository.getCurrentUser().observe(getViewLifecycleOwner(), new FirestoreCallback<User>() {
             @Override
-            public void onSuccess(Object result) {
-                User user = (User) result;
+            public void onSuccess(User user) {
                 String name = user.getName();
                 welcomeText.setText(getString(R.string.hello) + " " + (name != null ? name : getString(R.string.user)));
 
@@ -223,6 +229,7 @@ public class ProfileFragment extends Fragment {
                 if (user.getProfilePictureUrl() != null && !user.getProfilePictureUrl().isEmpty()) {
                     Glide.with(requireContext())
                             .load(user.getProfilePictureUrl())
+                            .signature(new ObjectKey(user.getProfilePictureVersion())) // Reloaded only when the picture changes
                             .placeholder(R.drawable.ic_profile) // Default profile picture
                             .into(profileImage);
                 }
@@ -231,6 +238,11 @@ public class ProfileFragment extends Fragment {
                 profileImage.setOnClickListener(v -> navigateToFragment(new AccountFragment()));
             }
 
+            @Override
+            public void onUpdated(User user) {
+                onSuccess(user); // The profile first read from the local cache was outdated
+            }
+
             @Override
             public void onFailure(Exception e) {
                 Log.e("ProfileFragment", "Error fetching user data: " + e.getMessage());
@@ -261,5 +273,40 @@ public class ProfileFragment extends Fragment {
     public void onResume() {
         super.onResume();
         setNavigationAndHeaderVisibility();
+        updateHeader();
+    }
+
+    /*
+    * Refreshes the screen when the tab is shown again, only if the user or the favorites changed meanwhile
+     */
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden || getView() == null) return;
+
+        FirebaseUser currentUser = usersRepository.getAuthenticatedUser();
+        String userId = currentUser != null ? currentUser.getUid() : null;
+        if (!Objects.equals(userId, shownUserId)) {
+            checkUserAuthentication();
+            loadFavorites();
+            return;
+        }
+
+        // Compare with the favorites held in memory, so nothing is read if they did not change
+        Set<String> favoriteIds = favoritesRepository.getFavoriteLocationIds();
+        if (favoriteIds != null && !favoriteIds.equals(shownFavoriteIds())) {
+            loadFavorites();
+        }
+    }
+
+    /*
+    * Returns the IDs of the favorite locations shown
+     */
+    private Set<String> shownFavoriteIds() {
+        Set<String> ids = new HashSet<>();
+        for (Location location : favoriteLocations) {
+            ids.add(location.getId());
+        }
+        return ids;
     }
 }
\ No newline at end of file
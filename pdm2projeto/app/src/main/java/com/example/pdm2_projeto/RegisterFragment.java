@@ -43,7 +43,7 @@ public class RegisterFragment extends Fragment {
         hideHeaderAndFooter();
 
         // Initialize the users repository
-        usersRepository = new UsersRepository();
+        usersRepository = AppContainer.from(requireContext()).getUsersRepository();
 
         // Bind UI elements
         EditText nameField = view.findViewById(R.id.name_field);
@@ -166,9 +166,9 @@ public class RegisterFragment extends Fragment {
                     String userId = Objects.requireNonNull(authResult.getUser()).getUid();
                     User user = new User(userId, name, email, null, createdAt);
 
-                    usersRepository.registerUser(user, new FirestoreCallback() {
+                    usersRepository.registerUser(user).observe(new FirestoreCallback<Void>() {
                         @Override
-                        public void onSuccess(Object result) {
+                        public void onSuccess(Void result) {
                             showToast("Account created successfully!");
                             navigateToLogin();
                         }
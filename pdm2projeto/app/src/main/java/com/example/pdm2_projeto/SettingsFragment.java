@@ -2,12 +2,17 @@ package com.example.pdm2_projeto;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -16,7 +21,9 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.pdm2_projeto.adapters.SettingsAdapter;
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.repositories.UsersRepository;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -39,6 +46,7 @@ public class SettingsFragment extends Fragment {
     private UsersRepository usersRepository; // Repository for user-related operations
 
     private static final String LANGUAGE_PREFERENCE = "language_preference"; // Key for storing language preferences in SharedPreferences
+    static final String METRICS_PREFERENCE = "performance_metrics"; // Key for storing whether Firestore calls are recorded
 
     /**
      * Inflates the settings fragment layout and initializes UI components.
@@ -111,7 +119,7 @@ public class SettingsFragment extends Fragment {
         settingsOptions.add(getString(R.string.language_option)); // Option for changing language
         settingsOptions.add(getString(R.string.github_option)); // Option to open GitHub repository
 
-        usersRepository = new UsersRepository();
+        usersRepository = AppContainer.from(requireContext()).getUsersRepository();
         FirebaseUser currentUser = usersRepository.getAuthenticatedUser();
 
         // If user is logged in, show account settings and logout options
@@ -120,6 +128,12 @@ public class SettingsFragment extends Fragment {
             settingsOptions.add(getString(R.string.logout_option)); // Logout button
         }
 
+        // Performance panel and maintenance of the location documents, only in debug builds
+        if (isDebuggable(requireContext())) {
+            settingsOptions.add(getString(R.string.performance_option));
+            settingsOptions.add(getString(R.string.backfill_option));
+        }
+
         return settingsOptions;
     }
 
@@ -137,9 +151,114 @@ public class SettingsFragment extends Fragment {
             openGitHubRepository(); // Open GitHub repository in browser
         } else if (option.equals(getString(R.string.logout_option))) {
             logoutUser(); // Log the user out of the application
+        } else if (option.equals(getString(R.string.performance_option))) {
+            showPerformanceDialog(); // Show the Firestore metrics
+        } else if (option.equals(getString(R.string.backfill_option))) {
+            showBackfillDialog(); // Rebuild the search fields and geohash of the locations
         }
     }
 
+    /**
+     * Indicates whether the app is a debug build, where the performance panel is available.
+     *
+     * @param context Any context of the application.
+     * @return True if the app is debuggable.
+     */
+    static boolean isDebuggable(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /**
+     * Displays the performance panel: the Firestore metrics recorded by each repository call,
+     * a switch to turn the recording on or off, and buttons to export the metrics as JSON or reset them.
+     */
+    private void showPerformanceDialog() {
+        View content = getLayoutInflater().inflate(R.layout.dialog_performance, null);
+        CheckBox recordCheckBox = content.findViewById(R.id.performance_record);
+        TextView summaryText = content.findViewById(R.id.performance_summary);
+
+        recordCheckBox.setChecked(FirestoreMetrics.isEnabled());
+        recordCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            FirestoreMetrics.setEnabled(isChecked);
+            requireContext().getSharedPreferences("settings", Context.MODE_PRIVATE)
+                    .edit()
+                    .putBoolean(METRICS_PREFERENCE, isChecked)
+                    .apply();
+        });
+        showPerformanceSummary(summaryText);
+
+        AlertDialog dialog = new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.performance_option))
+                .setView(content)
+                .setPositiveButton(getString(R.string.performance_export), (dialogInterface, which) -> exportMetrics())
+                .setNeutralButton(getString(R.string.performance_reset), null) // Set below, so the dialog stays open
+                .setNegativeButton(getString(R.string.close), (dialogInterface, which) -> dialogInterface.dismiss())
+                .create();
+
+        dialog.show();
+
+        dialog.getButton(AlertDialog.BUTTON_NEUTRAL).setOnClickListener(v -> {
+            FirestoreMetrics.reset();
+            showPerformanceSummary(summaryText);
+        });
+    }
+
+    /**
+     * Asks for confirmation, then computes the search fields and geohash of every location document.
+     * Needed once for the documents created before these fields existed; until then, searches and
+     * map areas use slower queries.
+     */
+    private void showBackfillDialog() {
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.backfill_option))
+                .setMessage(getString(R.string.backfill_message))
+                .setPositiveButton(getString(R.string.backfill_start), (dialogInterface, which) -> rebuildLocationFields())
+                .setNegativeButton(getString(R.string.cancel), (dialogInterface, which) -> dialogInterface.dismiss())
+                .show();
+    }
+
+    /**
+     * Runs the backfill of the location documents and reports when it is done.
+     * Not bound to the screen: the writes are worth finishing even if the user leaves it.
+     */
+    private void rebuildLocationFields() {
+        Context appContext = requireContext().getApplicationContext();
+        Toast.makeText(appContext, getString(R.string.backfill_running), Toast.LENGTH_SHORT).show();
+        AppContainer.from(appContext).getLocationsRepository().rebuildSearchFields().observe(new FirestoreCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                Toast.makeText(appContext, appContext.getString(R.string.backfill_done), Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("SettingsFragment", "Error rebuilding location fields", e);
+                Toast.makeText(appContext, appContext.getString(R.string.backfill_failed), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Shows the current Firestore metrics in the performance panel.
+     *
+     * @param summaryText The TextView of the panel.
+     */
+    private void showPerformanceSummary(TextView summaryText) {
+        String summary = FirestoreMetrics.getSummary();
+        summaryText.setText(summary.isEmpty() ? getString(R.string.performance_empty) : summary);
+    }
+
+    /**
+     * Shares the Firestore metrics as JSON (e.g. by e-mail or to a file), so they can be compared between builds.
+     */
+    private void exportMetrics() {
+        Intent shareIntent = new Intent(Intent.ACTION_SEND);
+        shareIntent.setType("application/json");
+        shareIntent.putExtra(Intent.EXTRA_SUBJECT, "firestore-metrics.json");
+        shareIntent.putExtra(Intent.EXTRA_TEXT, FirestoreMetrics.toJson());
+        startActivity(Intent.createChooser(shareIntent, getString(R.string.performance_export)));
+    }
+
     /**
      * Displays a dialog that allows users to change the app's language.
      * The dialog presents a list of available languages and applies the selected language when confirmed.
@@ -212,16 +331,12 @@ public class SettingsFragment extends Fragment {
     }
 
     /**
-     * Restarts the SettingsFragment to ensure UI updates reflect the new language setting.
+     * Recreates the view of the SettingsFragment to ensure UI updates reflect the new language setting.
+     * The screens below it are not touched.
      */
     private void restartFragment() {
-        requireActivity().getSupportFragmentManager()
-                .beginTransaction()
-                .replace(R.id.fragment_container, new SettingsFragment()) // Replace current fragment
-                .addToBackStack(null) // Allow going back to previous fragment
-                .commit();
-
-        requireActivity().getSupportFragmentManager().popBackStack(); // Navigate back
+        getParentFragmentManager().beginTransaction().detach(this).commitNow();
+        getParentFragmentManager().beginTransaction().attach(this).commitNow();
     }
 
     /**
@@ -243,11 +358,7 @@ public class SettingsFragment extends Fragment {
      * Opens the AccountFragment, allowing users to manage their account details.
      */
     private void openAccountScreen() {
-        requireActivity().getSupportFragmentManager()
-                .beginTransaction()
-                .replace(R.id.fragment_container, new AccountFragment()) // Navigate to AccountFragment
-                .addToBackStack(null) // Allow going back to settings
-                .commit();
+        ((MainActivity) requireActivity()).openScreen(new AccountFragment()); // Going back returns to settings
     }
 
     /**
@@ -260,14 +371,13 @@ public class SettingsFragment extends Fragment {
 
     /**
      * Logs out the current user by signing them out from Firebase authentication.
-     * After logout, the app navigates to the LoginFragment.
+     * After logout, the app shows the LoginFragment over the Profile tab.
      */
     private void logoutUser() {
         auth.signOut(); // Sign out the user
-        requireActivity().getSupportFragmentManager()
-                .beginTransaction()
-                .replace(R.id.fragment_container, new LoginFragment()) // Navigate to LoginFragment
-                .commit();
+        MainActivity activity = (MainActivity) requireActivity();
+        activity.showProfileTab(); // Closes this screen
+        activity.showLoginFragment();
     }
 
     /**
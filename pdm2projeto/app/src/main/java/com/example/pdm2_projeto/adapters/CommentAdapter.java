@@ -9,29 +9,42 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.signature.ObjectKey;
 import com.example.pdm2_projeto.R;
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Comment;
 import com.example.pdm2_projeto.models.User;
-import com.example.pdm2_projeto.repositories.UsersRepository;
+import com.example.pdm2_projeto.repositories.UserProfileCache;
+import com.example.pdm2_projeto.utils.AsyncResult;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Adapter class for displaying a list of comments in a RecyclerView.
  * Handles user comments, including displaying author details, timestamps, and deletion options.
+ * Reloads are diffed on a background thread, so only the changed comments are rebound.
  */
 public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.ViewHolder> {
     private Context context; // Context for accessing resources and UI components
-    private List<Comment> commentsList; // List of comments to be displayed
+    private final AsyncListDiffer<Comment> differ; // Holds the displayed comments and diffs updates off the main thread
+    private final Map<String, Long> stableIds = new HashMap<>(); // Stable item ID assigned to each comment ID
     private OnCommentDeleteListener deleteListener; // Listener for handling comment deletions
+    private final UserProfileCache userProfileCache; // Shared cache of comment authors
 
     /**
      * Interface for handling comment deletion events.
@@ -40,17 +53,66 @@ public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.ViewHold
         void onDeleteComment(Comment comment);
     }
 
+    /**
+     * Identifies comments by their ID and compares their displayed content.
+     */
+    private static final DiffUtil.ItemCallback<Comment> DIFF_CALLBACK = new DiffUtil.ItemCallback<Comment>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Comment oldItem, @NonNull Comment newItem) {
+            return oldItem.getId() != null && oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Comment oldItem, @NonNull Comment newItem) {
+            return Objects.equals(oldItem.getComment(), newItem.getComment())
+                    && Objects.equals(oldItem.getUserId(), newItem.getUserId())
+                    && Objects.equals(oldItem.getCreatedAt(), newItem.getCreatedAt());
+        }
+    };
+
     /**
      * Constructor for initializing the adapter with necessary dependencies.
      *
      * @param context        Application context.
-     * @param comments       List of comments to be displayed.
      * @param deleteListener Listener for handling comment deletions.
      */
-    public CommentAdapter(Context context, List<Comment> comments, OnCommentDeleteListener deleteListener) {
+    public CommentAdapter(Context context, OnCommentDeleteListener deleteListener) {
         this.context = context;
-        this.commentsList = comments;
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
         this.deleteListener = deleteListener;
+        this.userProfileCache = UserProfileCache.getInstance();
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the displayed comments. The difference with the current list is computed
+     * on a background thread and only the inserted, removed or changed comments are notified.
+     *
+     * @param comments New list of comments.
+     */
+    public void submitList(List<Comment> comments) {
+        // Fetch the authors of all comments in batches, instead of one read per row
+        Set<String> authorIds = new HashSet<>();
+        for (Comment comment : comments) {
+            authorIds.add(comment.getUserId());
+        }
+        userProfileCache.prefetch(authorIds);
+
+        differ.submitList(new ArrayList<>(comments));
+    }
+
+    /**
+     * Returns a stable ID for the item, so the RecyclerView can keep track of it across updates.
+     */
+    @Override
+    public long getItemId(int position) {
+        String commentId = differ.getCurrentList().get(position).getId();
+        Long stableId = stableIds.get(commentId);
+        if (stableId == null) {
+            stableId = (long) stableIds.size();
+            stableIds.put(commentId, stableId);
+        }
+        return stableId;
     }
 
     @NonNull
@@ -64,34 +126,35 @@ public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.ViewHold
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         // Get the comment object for the current position
-        Comment comment = commentsList.get(position);
+        Comment comment = differ.getCurrentList().get(position);
         holder.commentText.setText(comment.getComment()); // Set comment text
 
-        // Fetch and display user details
-        UsersRepository usersRepository = new UsersRepository();
-        usersRepository.getUserById(comment.getUserId(), new FirestoreCallback<User>() {
-            @Override
-            public void onSuccess(User user) {
-                holder.commentAuthor.setText(user.getName()); // Display user name
-
-                // Load user profile image using Glide
-                if (user.getProfilePictureUrl() != null && !user.getProfilePictureUrl().isEmpty()) {
-                    Glide.with(context)
-                            .load(user.getProfilePictureUrl())
-                            .placeholder(R.drawable.ic_profile)
-                            .error(R.drawable.ic_profile)
-                            .circleCrop()
-                            .into(holder.commentProfileImage);
-                } else {
-                    holder.commentProfileImage.setImageResource(R.drawable.ic_profile);
+        // Display user details, from the shared cache when available
+        cancelAuthorRequest(holder); // The holder may still be waiting for the author of its previous comment
+        User cachedAuthor = userProfileCache.getCached(comment.getUserId());
+        if (cachedAuthor != null) {
+            bindAuthor(holder, cachedAuthor);
+        } else {
+            holder.commentAuthor.setText("");
+            holder.commentProfileImage.setImageResource(R.drawable.ic_profile);
+            holder.authorRequest = userProfileCache.getUser(comment.getUserId());
+            holder.authorRequest.observe(new FirestoreCallback<User>() {
+                @Override
+                public void onSuccess(User user) {
+                    // Skip if the holder was recycled for another comment in the meantime
+                    if (isBoundTo(holder, comment)) {
+                        bindAuthor(holder, user);
+                    }
                 }
-            }
 
-            @Override
-            public void onFailure(Exception e) {
-                holder.commentProfileImage.setImageResource(R.drawable.ic_profile); // Default profile image on error
-            }
-        });
+                @Override
+                public void onFailure(Exception e) {
+                    if (isBoundTo(holder, comment)) {
+                        holder.commentProfileImage.setImageResource(R.drawable.ic_profile); // Default profile image on error
+                    }
+                }
+            });
+        }
 
         // Convert Firestore timestamp to a formatted date
         Timestamp timestamp = comment.getCreatedAt();
@@ -121,9 +184,64 @@ public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.ViewHold
         }
     }
 
+    /**
+     * Stops waiting for the author of a recycled row, so reads nobody will see can be dropped.
+     */
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        cancelAuthorRequest(holder);
+    }
+
+    /**
+     * Cancels the author read started for the holder, if any.
+     */
+    private void cancelAuthorRequest(ViewHolder holder) {
+        if (holder.authorRequest != null) {
+            holder.authorRequest.cancel();
+            holder.authorRequest = null;
+        }
+    }
+
+    /**
+     * Displays the author's name and profile picture.
+     *
+     * @param holder ViewHolder of the comment.
+     * @param user   Author of the comment (may be null if the profile could not be read).
+     */
+    private void bindAuthor(ViewHolder holder, User user) {
+        if (user == null) {
+            holder.commentProfileImage.setImageResource(R.drawable.ic_profile);
+            return;
+        }
+        holder.commentAuthor.setText(user.getName()); // Display user name
+
+        // Load user profile image using Glide, preferring the small avatar made for lists
+        String pictureUrl = user.getAvatarUrl() != null ? user.getAvatarUrl() : user.getProfilePictureUrl();
+        if (pictureUrl != null && !pictureUrl.isEmpty()) {
+            Glide.with(context)
+                    .load(pictureUrl)
+                    .signature(new ObjectKey(user.getProfilePictureVersion())) // Reloaded only when the picture changes
+                    .placeholder(R.drawable.ic_profile)
+                    .error(R.drawable.ic_profile)
+                    .circleCrop()
+                    .into(holder.commentProfileImage);
+        } else {
+            holder.commentProfileImage.setImageResource(R.drawable.ic_profile);
+        }
+    }
+
+    /**
+     * Checks whether a ViewHolder still displays the given comment.
+     */
+    private boolean isBoundTo(ViewHolder holder, Comment comment) {
+        int position = holder.getAdapterPosition();
+        return position != RecyclerView.NO_POSITION && differ.getCurrentList().get(position) == comment;
+    }
+
     @Override
     public int getItemCount() {
-        return commentsList.size(); // Return total number of comments in the list
+        return differ.getCurrentList().size(); // Return total number of comments in the list
     }
 
     /**
@@ -132,6 +250,7 @@ public class CommentAdapter extends RecyclerView.Adapter<CommentAdapter.ViewHold
     public static class ViewHolder extends RecyclerView.ViewHolder {
         TextView commentText, commentDate, commentAuthor;
         ImageView commentProfileImage, btnDeleteComment;
+        AsyncResult<User> authorRequest; // Author read in progress for the bound comment
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
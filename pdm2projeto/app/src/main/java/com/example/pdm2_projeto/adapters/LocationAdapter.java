@@ -3,6 +3,7 @@ package com.example.pdm2_projeto.adapters;
 import static android.provider.Settings.System.getString;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,9 +12,19 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
+import com.example.pdm2_projeto.AppContainer;
 import com.example.pdm2_projeto.R;
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Location;
@@ -21,19 +32,43 @@ import com.example.pdm2_projeto.repositories.FavoritesRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Adapter for displaying a list of locations in a RecyclerView.
  * Handles item clicks, favorites functionality, and image loading.
+ * List changes are diffed on a background thread, so only the changed items are rebound.
+ * Images are decoded at the size of the grid cell, and the images of the next rows are
+ * loaded while scrolling, so they are usually in memory when the cells appear.
+ * Null items are placeholders for locations not loaded yet and are shown as empty cells.
  */
 public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.ViewHolder> {
 
     private final Context context; // Context for inflating views
-    private final List<Location> locationList; // List of locations to be displayed
+    private final AsyncListDiffer<Location> differ; // Holds the displayed list and diffs updates off the main thread
     private final OnItemClickListener onItemClickListener; // Click listener for item selection
     private final FavoritesRepository favoritesRepository; // Repository for handling favorites
     private String userId; // ID of the logged-in user
+    private boolean english; // Whether names are shown in English, resolved once instead of on every bind
+    private final RequestManager glide; // Loads the location images
+    private final ViewPreloadSizeProvider<Location> imageSizeProvider = new ViewPreloadSizeProvider<>(); // Size of the image of a cell
+    private RecyclerViewPreloader<Location> imagePreloader; // Loads the images ahead of the scroll position
+    // Refreshes the favorite icons when the user's favorites change
+    private final FavoritesRepository.FavoritesListener favoritesListener =
+            () -> notifyItemRangeChanged(0, getItemCount(), PAYLOAD_FAVORITE);
+
+    // Payload used to rebind only the favorite icon of an item
+    private static final Object PAYLOAD_FAVORITE = new Object();
+
+    // Number of items whose images are loaded ahead of the last visible one (5 rows of the 2-column grid)
+    private static final int PRELOAD_ITEMS = 10;
+
+    // Grid images fill their cell and have no transparency, so they are decoded with half the memory
+    private static final RequestOptions GRID_IMAGE_OPTIONS = new RequestOptions()
+            .centerCrop()
+            .format(DecodeFormat.PREFER_RGB_565);
 
     /**
      * Interface for handling item click events.
@@ -42,33 +77,137 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.ViewHo
         void onItemClick(Location location);
     }
 
+    /**
+     * Identifies locations by their ID and compares their displayed content.
+     */
+    private static final DiffUtil.ItemCallback<Location> DIFF_CALLBACK = new DiffUtil.ItemCallback<Location>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Location oldItem, @NonNull Location newItem) {
+            return oldItem.getId() != null && oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Location oldItem, @NonNull Location newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
     /**
      * Constructor for initializing adapter with necessary dependencies.
      *
      * @param context       Application context.
-     * @param locationList  List of locations to be displayed.
      * @param listener      Click listener for handling item selections.
      */
-    public LocationAdapter(Context context, List<Location> locationList, OnItemClickListener listener) {
+    public LocationAdapter(Context context, OnItemClickListener listener) {
         this.context = context;
-        this.locationList = locationList;
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
         this.onItemClickListener = listener;
-        this.favoritesRepository = new FavoritesRepository();
+        this.favoritesRepository = AppContainer.from(context).getFavoritesRepository();
+        this.glide = Glide.with(context);
+        this.english = isEnglish();
 
         // Get currently logged-in user, if any, to manage favorite locations
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         this.userId = (currentUser != null) ? currentUser.getUid() : null;
+
+        setHasStableIds(true);
     }
 
     /**
-     * Updates the location list with a filtered list and refreshes the UI.
+     * Replaces the displayed locations. The difference with the current list is computed
+     * on a background thread and only the inserted, removed or changed items are notified.
      *
-     * @param filteredResults Filtered list of locations.
+     * @param locations New list of locations (copied, so the caller may keep modifying it).
      */
-    public void updateList(List<Location> filteredResults) {
-        this.locationList.clear();
-        this.locationList.addAll(filteredResults);
-        notifyDataSetChanged(); // Notify adapter about data changes
+    public void updateList(List<Location> locations) {
+        differ.submitList(new ArrayList<>(locations));
+    }
+
+    /**
+     * Returns a stable ID for the item, so the RecyclerView can keep track of it across updates.
+     * The ID is computed from the location ID, so nothing is kept for the locations no longer shown.
+     * Placeholders get negative IDs, which never match a location.
+     */
+    @Override
+    public long getItemId(int position) {
+        Location location = differ.getCurrentList().get(position);
+        if (location == null) {
+            return -1L - position;
+        }
+        return stableIdOf(location.getId());
+    }
+
+    /**
+     * Computes a non-negative 64-bit hash (FNV-1a) of a location ID. Two IDs of the same list sharing
+     * a hash is very unlikely, unlike with the 32-bit {@link String#hashCode()}.
+     */
+    private static long stableIdOf(String locationId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < locationId.length(); i++) {
+            hash ^= locationId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
+    /**
+     * Observes the user's favorites only while the RecyclerView is on screen,
+     * since a destroyed fragment view does not detach its adapter.
+     */
+    private final View.OnAttachStateChangeListener windowListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(@NonNull View view) {
+            startObservingFavorites();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(@NonNull View view) {
+            favoritesRepository.removeFavoritesListener(favoritesListener);
+        }
+    };
+
+    /**
+     * Starts observing the user's favorites when the adapter is attached to a RecyclerView.
+     * Also resolves the language again, since the list is attached again after the language is changed.
+     */
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        english = isEnglish();
+        imagePreloader = new RecyclerViewPreloader<>(glide, imagePreloadProvider, imageSizeProvider, PRELOAD_ITEMS);
+        recyclerView.addOnScrollListener(imagePreloader);
+        recyclerView.addOnAttachStateChangeListener(windowListener);
+        if (recyclerView.isAttachedToWindow()) {
+            startObservingFavorites();
+        }
+    }
+
+    /**
+     * Stops observing the user's favorites when the adapter is detached.
+     */
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(imagePreloader);
+        imagePreloader = null;
+        recyclerView.removeOnAttachStateChangeListener(windowListener);
+        favoritesRepository.removeFavoritesListener(favoritesListener);
+    }
+
+    /**
+     * Indicates whether the app is shown in English.
+     */
+    private boolean isEnglish() {
+        return context.getString(R.string.language).equals("en");
+    }
+
+    /**
+     * Registers the favorites listener if a user is logged in.
+     */
+    private void startObservingFavorites() {
+        if (userId != null) {
+            favoritesRepository.addFavoritesListener(favoritesListener);
+        }
     }
 
     @NonNull
@@ -76,42 +215,35 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.ViewHo
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Inflate the layout for each list item
         View view = LayoutInflater.from(context).inflate(R.layout.item_location, parent, false);
-        return new ViewHolder(view);
+        ViewHolder holder = new ViewHolder(view);
+        // The preloaded images are requested at the measured size of the cell image
+        imageSizeProvider.setView(holder.locationImage);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         // Get the location item at the current position
-        Location location = locationList.get(position);
-
-        String name;
-        String country;
-
-        // Determine language preference and set name and country accordingly
-        if (context.getString(R.string.language).equals("en")) {
-            name = location.getNameEn();
-            country = location.getCountryEn();
-        } else {
-            name = location.getName();
-            country = location.getCountry();
+        Location location = differ.getCurrentList().get(position);
+        if (location == null) {
+            bindPlaceholder(holder);
+            return;
         }
 
-        Log.d("LocationAdapter", "Binding item: " + position + " - " + name);
+        // Set location name and country in the respective TextViews, in the app's language
+        holder.locationName.setText(location.nameIn(english));
+        holder.locationCountry.setText(location.countryIn(english));
 
-        // Set location name and country in the respective TextViews
-        holder.locationName.setText(name);
-        holder.locationCountry.setText(country);
-
-        // Load location image using Glide
-        Glide.with(context).load(location.getImageUrl()).into(holder.locationImage);
+        // Load location image using Glide, with the same request as the preloader so it is found in memory
+        imageRequest(location).into(holder.locationImage);
 
         // Manage favorite status only if the user is logged in
         if (userId != null) {
-            favoritesRepository.isLocationFavorited(location.getId())
-                    .addOnSuccessListener(isFav -> updateFavoriteIcon(holder.favoriteIcon, isFav))
-                    .addOnFailureListener(e -> Log.e("Firestore", "Failed to fetch favorite status", e));
+            // Favorite status is looked up in memory, never on the network
+            updateFavoriteIcon(holder.favoriteIcon, favoritesRepository.isFavorite(location.getId()));
+            holder.favoriteIcon.setVisibility(View.VISIBLE); // May have been hidden by a placeholder
 
-            holder.favoriteIcon.setOnClickListener(v -> toggleFavorite(holder.favoriteIcon, location));
+            holder.favoriteIcon.setOnClickListener(v -> toggleFavorite(holder, location));
         } else {
             holder.favoriteIcon.setVisibility(View.GONE); // Hide favorite icon if user is not logged in
         }
@@ -120,11 +252,70 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.ViewHo
         holder.itemView.setOnClickListener(v -> onItemClickListener.onItemClick(location));
     }
 
+    /**
+     * Shows an empty cell for a location that is not loaded yet, with the size of a real one
+     * so the grid does not move when it arrives.
+     */
+    private void bindPlaceholder(ViewHolder holder) {
+        holder.locationName.setText("");
+        holder.locationCountry.setText("");
+        glide.clear(holder.locationImage); // Stops the image of the location previously shown in the cell
+        holder.locationImage.setImageResource(android.R.color.darker_gray);
+        holder.favoriteIcon.setVisibility(View.INVISIBLE);
+        holder.favoriteIcon.setOnClickListener(null);
+        holder.itemView.setOnClickListener(null);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        Location location = differ.getCurrentList().get(position);
+        if (payloads.contains(PAYLOAD_FAVORITE) && userId != null) {
+            // Only the favorites changed, skip rebinding the text and image (placeholders have no icon)
+            if (location != null) {
+                updateFavoriteIcon(holder.favoriteIcon, favoritesRepository.isFavorite(location.getId()));
+            }
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
     @Override
     public int getItemCount() {
-        return locationList.size(); // Return total number of items in the list
+        return differ.getCurrentList().size(); // Return total number of items in the list
+    }
+
+    /**
+     * Builds the request for the image of a grid cell: the thumbnail if the location has one,
+     * downsampled to the size of the cell.
+     *
+     * @param location The location shown in the cell.
+     * @return The image request.
+     */
+    private RequestBuilder<Drawable> imageRequest(Location location) {
+        return glide.load(location.getListImageUrl()).apply(GRID_IMAGE_OPTIONS);
     }
 
+    /**
+     * Provides the images to load ahead of the scroll position.
+     */
+    private final ListPreloader.PreloadModelProvider<Location> imagePreloadProvider = new ListPreloader.PreloadModelProvider<Location>() {
+        @NonNull
+        @Override
+        public List<Location> getPreloadItems(int position) {
+            List<Location> locations = differ.getCurrentList();
+            if (position < 0 || position >= locations.size() || locations.get(position) == null
+                    || locations.get(position).getListImageUrl() == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(locations.get(position));
+        }
+
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Location location) {
+            return imageRequest(location);
+        }
+    };
+
     /**
      * ViewHolder class to hold UI components for each list item.
      */
@@ -145,41 +336,27 @@ public class LocationAdapter extends RecyclerView.Adapter<LocationAdapter.ViewHo
      * Toggles the favorite status of a location.
      * Adds or removes from favorites and updates the UI accordingly.
      *
-     * @param favoriteIcon ImageView representing the favorite icon.
-     * @param location     The location object to be toggled.
+     * @param holder   ViewHolder showing the location.
+     * @param location The location object to be toggled.
      */
-    private void toggleFavorite(ImageView favoriteIcon, Location location) {
+    private void toggleFavorite(ViewHolder holder, Location location) {
         if (userId == null) return; // Skip if user is not logged in
 
-        favoritesRepository.isLocationFavorited(location.getId())
-                .addOnSuccessListener(isFav -> {
-                    if (isFav) {
-                        favoritesRepository.removeFavorite(location.getId(), new FirestoreCallback<Void>() {
-                            @Override
-                            public void onSuccess(Void result) {
-                                updateFavoriteIcon(favoriteIcon, false);
-                            }
-
-                            @Override
-                            public void onFailure(Exception e) {
-                                Log.e("Firestore", "Error removing favorite", e);
-                            }
-                        });
-                    } else {
-                        favoritesRepository.addFavorite(location.getId(), new FirestoreCallback<Void>() {
-                            @Override
-                            public void onSuccess(Void result) {
-                                updateFavoriteIcon(favoriteIcon, true);
-                            }
-
-                            @Override
-                            public void onFailure(Exception e) {
-                                Log.e("Firestore", "Error adding favorite", e);
-                            }
-                        });
-                    }
-                })
-                .addOnFailureListener(e -> Log.e("Firestore", "Error checking favorite status", e));
+        favoritesRepository.toggleFavorite(location.getId()).observe(new FirestoreCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean isFavorite) {
+                // The holder may have been recycled for another location in the meantime
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && differ.getCurrentList().get(position) == location) {
+                    updateFavoriteIcon(holder.favoriteIcon, isFavorite);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("Firestore", "Error toggling favorite", e);
+            }
+        });
     }
 
     /**
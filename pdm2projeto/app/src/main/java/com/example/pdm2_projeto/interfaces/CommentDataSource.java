@@ -0,0 +1,49 @@
+package com.example.pdm2_projeto.interfaces;
+
+import com.example.pdm2_projeto.models.Comment;
+import com.example.pdm2_projeto.utils.AsyncResult;
+
+import java.util.List;
+
+/**
+ * Interface for the store the comments are read from and written to: Firestore in the app, or an
+ * in-memory stand-in used to exercise large datasets offline (tests, benchmarks).
+ * Results are delivered on the main thread. A read may deliver cached data first, then the
+ * up-to-date data as an update (see {@link FirestoreCallback#onUpdated(Object)}).
+ */
+public interface CommentDataSource {
+
+    /**
+     * Reads the comments of a location.
+     *
+     * @param locationId The ID of the location.
+     * @return The comments, latest first, or the error.
+     */
+    AsyncResult<List<Comment>> getCommentsByLocation(String locationId);
+
+    /**
+     * Creates a live, paginated list of the comments of a location, latest first.
+     *
+     * @param locationId The ID of the location.
+     * @param pageSize   The number of comments loaded per page.
+     * @param listener   Listener notified with the loaded comments after every change.
+     * @return The comment stream (not started).
+     */
+    CommentStream streamCommentsByLocation(String locationId, int pageSize, CommentStream.Listener listener);
+
+    /**
+     * Stores a new comment. Its ID is assigned by the store.
+     *
+     * @param comment The comment, with its location, user, text and creation date.
+     * @return The result of the operation.
+     */
+    AsyncResult<Void> addComment(Comment comment);
+
+    /**
+     * Deletes a comment.
+     *
+     * @param commentId The ID of the comment.
+     * @return The result of the operation.
+     */
+    AsyncResult<Void> deleteComment(String commentId);
+}
@@ -0,0 +1,64 @@
+package com.example.pdm2_projeto.interfaces;
+
+import com.example.pdm2_projeto.models.Comment;
+
+import java.util.List;
+
+/**
+ * Live, paginated list of the comments of a location, newest first.
+ * Call {@link #start()} to load the first page, {@link #loadOlder()} for the next ones,
+ * and {@link #stop()} when the comments are no longer shown.
+ * Comments added, edited or deleted while the stream runs are applied to the loaded pages.
+ * Created by a {@link CommentDataSource}; only used on the main thread.
+ */
+public interface CommentStream {
+
+    /**
+     * Loads the newest page of comments and starts listening to it.
+     */
+    void start();
+
+    /**
+     * Loads the next page of older comments, if there is one and no page is being loaded.
+     */
+    void loadOlder();
+
+    /**
+     * Indicates whether there may be older comments to load.
+     *
+     * @return False once the oldest comment was loaded.
+     */
+    boolean hasMore();
+
+    /**
+     * Indicates whether a page is being loaded.
+     *
+     * @return True while a page is being loaded.
+     */
+    boolean isLoading();
+
+    /**
+     * Stops listening to the comments. The stream cannot be started again.
+     */
+    void stop();
+
+    /**
+     * Listener notified when the loaded comments change.
+     */
+    interface Listener {
+
+        /**
+         * Called with every loaded comment, newest first, after each change.
+         *
+         * @param comments The loaded comments.
+         */
+        void onCommentsChanged(List<Comment> comments);
+
+        /**
+         * Called when a page cannot be loaded or a listener fails.
+         *
+         * @param e The error.
+         */
+        void onFailure(Exception e);
+    }
+}
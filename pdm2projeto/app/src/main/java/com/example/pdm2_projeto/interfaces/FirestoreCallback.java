@@ -21,4 +21,12 @@ public interface FirestoreCallback<T> {
      * @param e The exception describing the failure.
      */
     void onFailure(Exception e);
+
+    /**
+     * Called after {@link #onSuccess(Object)} when the result delivered first (e.g. from a cache)
+     * turned out to be outdated.
+     *
+     * @param result The up-to-date result, replacing the one delivered before.
+     */
+    default void onUpdated(T result) {}
 }
@@ -0,0 +1,41 @@
+package com.example.pdm2_projeto.interfaces;
+
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.utils.AsyncResult;
+
+import java.util.List;
+
+/**
+ * Interface for the store the locations are read from: Firestore in the app, or an in-memory
+ * stand-in used to exercise large datasets offline (tests, benchmarks).
+ * The repositories keep the caching and request sharing; a data source only answers reads.
+ * Results are delivered on the main thread. A read may deliver cached data first, then the
+ * up-to-date data as an update (see {@link FirestoreCallback#onUpdated(Object)}).
+ */
+public interface LocationDataSource {
+
+    /**
+     * Reads one page of locations, filtered and ordered as described by the query.
+     *
+     * @param query The filters, the page size and the cursor of the page.
+     * @return The locations of the page, ordered by name then ID, or the error.
+     */
+    AsyncResult<List<Location>> getPage(LocationQuery query);
+
+    /**
+     * Reads a single location.
+     *
+     * @param id The ID of the location.
+     * @return The location, null if it does not exist, or the error.
+     */
+    AsyncResult<Location> getById(String id);
+
+    /**
+     * Reads several locations.
+     *
+     * @param ids The IDs of the locations.
+     * @return The locations found, in any order (missing ones are left out), or the error.
+     */
+    AsyncResult<List<Location>> getByIds(List<String> ids);
+}
@@ -0,0 +1,16 @@
+package com.example.pdm2_projeto.interfaces;
+
+/**
+ * Interface for following the progress of a file upload to Firebase Storage.
+ * Called on the main thread.
+ */
+public interface UploadProgressListener {
+
+    /**
+     * Called each time more bytes have been sent.
+     *
+     * @param bytesSent  Number of bytes sent so far.
+     * @param totalBytes Size of the upload in bytes.
+     */
+    void onProgress(long bytesSent, long totalBytes);
+}
@@ -0,0 +1,31 @@
+package com.example.pdm2_projeto.interfaces;
+
+import com.example.pdm2_projeto.models.User;
+import com.example.pdm2_projeto.utils.AsyncResult;
+
+import java.util.List;
+
+/**
+ * Interface for the store the user profiles are read from: Firestore in the app, or an in-memory
+ * stand-in used to exercise large datasets offline (tests, benchmarks).
+ * Results are delivered on the main thread. A read may deliver cached data first, then the
+ * up-to-date data as an update (see {@link FirestoreCallback#onUpdated(Object)}).
+ */
+public interface UserDataSource {
+
+    /**
+     * Reads a single user.
+     *
+     * @param userId The ID of the user.
+     * @return The user, null if it does not exist, or the error.
+     */
+    AsyncResult<User> getUser(String userId);
+
+    /**
+     * Reads several users.
+     *
+     * @param userIds The IDs of the users.
+     * @return The users found, in any order (missing ones are left out), or the error.
+     */
+    AsyncResult<List<User>> getUsersByIds(List<String> userIds);
+}
@@ -1,10 +1,21 @@
 package com.example.pdm2_projeto.models;
 
+import com.example.pdm2_projeto.query.QueryableLocation;
+import com.example.pdm2_projeto.query.TextNormalizer;
+import com.example.pdm2_projeto.utils.GeoHash;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.ServerTimestamp;
+
+import java.util.List;
+import java.util.Objects;
+
 /**
  * Model that represents a Location.
  * This class stores information about a location including its name, description, coordinates, and category.
+ * Lists of locations can be filtered, sorted and paged in memory with {@link com.example.pdm2_projeto.query.LocationQuery}.
  */
-public class Location {
+public class Location implements QueryableLocation {
 
     /**
      * Unique identifier for the location.
@@ -56,6 +67,11 @@ public class Location {
      */
     private String imageUrl;
 
+    /**
+     * URL of a small version of the image, shown in lists (optional).
+     */
+    private String thumbnailUrl;
+
     /**
      * Country where the location is situated.
      */
@@ -66,6 +82,33 @@ public class Location {
      */
     private String countryEn;
 
+    /**
+     * Normalized (lowercase, accent-free) name, used for search queries.
+     */
+    private String searchName;
+
+    /**
+     * Normalized (lowercase, accent-free) English name, used for search queries.
+     */
+    private String searchNameEn;
+
+    /**
+     * Prefixes of the normalized names, queried with array-contains to search server-side.
+     */
+    private List<String> searchKeywords;
+
+    /**
+     * Geohash of the coordinates, queried with range filters to find the locations in an area.
+     */
+    private String geohash;
+
+    /**
+     * Timestamp of the last write, filled in by the Firestore server.
+     * Used to synchronize only the locations that changed since the last sync.
+     */
+    @ServerTimestamp
+    private Timestamp updatedAt;
+
     /**
      * Default constructor required for serialization.
      */
@@ -251,6 +294,35 @@ public class Location {
         this.imageUrl = imageUrl;
     }
 
+    /**
+     * Retrieves the URL of the small version of the location's image.
+     *
+     * @return The thumbnail URL, or null if the location has none.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * Sets the URL of the small version of the location's image.
+     *
+     * @param thumbnailUrl The thumbnail URL to set.
+     */
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    /**
+     * Retrieves the image to show in lists: the thumbnail if there is one, otherwise the full image
+     * (which is then downsampled to the size of the list cell).
+     *
+     * @return The URL of the image to show in lists.
+     */
+    @Exclude
+    public String getListImageUrl() {
+        return thumbnailUrl != null && !thumbnailUrl.isEmpty() ? thumbnailUrl : imageUrl;
+    }
+
     /**
      * Retrieves the country where the location is situated.
      *
@@ -286,4 +358,142 @@ public class Location {
     public void setCountryEn(String countryEn) {
         this.countryEn = countryEn;
     }
+
+    /**
+     * Retrieves the normalized name used for searches.
+     *
+     * @return The normalized name.
+     */
+    public String getSearchName() {
+        return searchName;
+    }
+
+    /**
+     * Sets the normalized name used for searches.
+     *
+     * @param searchName The normalized name to set.
+     */
+    public void setSearchName(String searchName) {
+        this.searchName = searchName;
+    }
+
+    /**
+     * Retrieves the normalized English name used for searches.
+     *
+     * @return The normalized English name.
+     */
+    public String getSearchNameEn() {
+        return searchNameEn;
+    }
+
+    /**
+     * Sets the normalized English name used for searches.
+     *
+     * @param searchNameEn The normalized English name to set.
+     */
+    public void setSearchNameEn(String searchNameEn) {
+        this.searchNameEn = searchNameEn;
+    }
+
+    /**
+     * Retrieves the search keywords (name prefixes) of the location.
+     *
+     * @return The list of search keywords.
+     */
+    public List<String> getSearchKeywords() {
+        return searchKeywords;
+    }
+
+    /**
+     * Sets the search keywords (name prefixes) of the location.
+     *
+     * @param searchKeywords The list of search keywords to set.
+     */
+    public void setSearchKeywords(List<String> searchKeywords) {
+        this.searchKeywords = searchKeywords;
+    }
+
+    /**
+     * Retrieves the geohash of the location's coordinates.
+     *
+     * @return The geohash.
+     */
+    public String getGeohash() {
+        return geohash;
+    }
+
+    /**
+     * Sets the geohash of the location's coordinates.
+     *
+     * @param geohash The geohash to set.
+     */
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    /**
+     * Retrieves the timestamp of the last write to the location.
+     *
+     * @return The last update timestamp, or null if not yet written.
+     */
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets the timestamp of the last write to the location.
+     * A null value is replaced by the server time when the location is written.
+     *
+     * @param updatedAt The last update timestamp.
+     */
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Recomputes the normalized search fields from the current name and English name.
+     * Must be called before the location is written to Firestore.
+     */
+    public void updateSearchFields() {
+        this.searchName = TextNormalizer.normalize(name);
+        this.searchNameEn = TextNormalizer.normalize(nameEn);
+        this.searchKeywords = TextNormalizer.buildSearchKeywords(name, nameEn);
+    }
+
+    /**
+     * Recomputes the geohash from the current coordinates.
+     * Must be called before the location is written to Firestore.
+     */
+    public void updateGeohash() {
+        this.geohash = GeoHash.encode(latitude, longitude, GeoHash.STORED_PRECISION);
+    }
+
+    /**
+     * Compares this location with another copy of the same location (e.g. cached and fresh).
+     * Uses the update timestamps when both are known, and compares the fields otherwise.
+     *
+     * @param other The other copy of the location.
+     * @return True if both copies hold the same data.
+     */
+    public boolean hasSameContent(Location other) {
+        if (!Objects.equals(id, other.id)) {
+            return false;
+        }
+        if (updatedAt != null && other.updatedAt != null) {
+            // Compared in milliseconds, the precision kept by the local cache
+            return updatedAt.toDate().getTime() == other.updatedAt.toDate().getTime();
+        }
+        return Objects.equals(name, other.name)
+                && Objects.equals(nameEn, other.nameEn)
+                && Objects.equals(description, other.description)
+                && Objects.equals(descriptionEn, other.descriptionEn)
+                && Objects.equals(address, other.address)
+                && Objects.equals(imageUrl, other.imageUrl)
+                && Objects.equals(thumbnailUrl, other.thumbnailUrl)
+                && Objects.equals(country, other.country)
+                && Objects.equals(countryEn, other.countryEn)
+                && Objects.equals(categoryId, other.categoryId)
+                && latitude == other.latitude
+                && longitude == other.longitude;
+    }
 }
@@ -0,0 +1,116 @@
+package com.example.pdm2_projeto.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Represents a location category stored in the local Room database.
+ * This entity is a local copy of the Firestore "location_category" collection,
+ * used to show the categories without waiting for the network.
+ */
+@Entity(tableName = "location_categories")
+public class LocationCategoryEntity {
+
+    /**
+     * ID of the category.
+     */
+    @PrimaryKey
+    @NonNull
+    private String id = "";
+
+    private String description;
+    private String descriptionEn;
+
+    /**
+     * Time at which this copy was downloaded from Firestore, in milliseconds.
+     */
+    private long cachedAt;
+
+    /**
+     * Default constructor required by Room.
+     */
+    public LocationCategoryEntity() {}
+
+    /**
+     * Creates a local entity from a Firestore category.
+     *
+     * @param category The category retrieved from Firestore.
+     * @param cachedAt The time at which the category was downloaded, in milliseconds.
+     * @return The entity to be stored in Room.
+     */
+    public static LocationCategoryEntity fromCategory(LocationCategory category, long cachedAt) {
+        LocationCategoryEntity entity = new LocationCategoryEntity();
+        entity.id = category.getId();
+        entity.description = category.getDescription();
+        entity.descriptionEn = category.getDescriptionEn();
+        entity.cachedAt = cachedAt;
+        return entity;
+    }
+
+    /**
+     * Converts this entity back into the LocationCategory model used by the UI.
+     *
+     * @return The corresponding LocationCategory object.
+     */
+    public LocationCategory toCategory() {
+        return new LocationCategory(id, description, descriptionEn);
+    }
+
+    /**
+     * Retrieves the ID of the category.
+     */
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the ID of the category.
+     */
+    public void setId(@NonNull String id) {
+        this.id = id;
+    }
+
+    /**
+     * Retrieves the description in the default language of the category.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the description in the default language of the category.
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Retrieves the description in English of the category.
+     */
+    public String getDescriptionEn() {
+        return descriptionEn;
+    }
+
+    /**
+     * Sets the description in English of the category.
+     */
+    public void setDescriptionEn(String descriptionEn) {
+        this.descriptionEn = descriptionEn;
+    }
+
+    /**
+     * Retrieves the time in milliseconds at which the category was cached.
+     */
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    /**
+     * Sets the time in milliseconds at which the category was cached.
+     */
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.pdm2_projeto.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.google.firebase.Timestamp;
+
+import java.util.Date;
+
+/**
+ * Represents a location stored in the local Room database.
+ * This entity is a local copy of the Firestore "locations" collection,
+ * used to answer searches and to show locations without waiting for the network.
+ */
+@Entity(tableName = "locations")
+public class LocationEntity {
+
+    /**
+     * Firestore document ID of the location.
+     */
+    @PrimaryKey
+    @NonNull
+    private String id = "";
+
+    private String name;
+    private String nameEn;
+    private String description;
+    private String descriptionEn;
+    private String address;
+    private double latitude;
+    private double longitude;
+    private String categoryId;
+    private String imageUrl;
+    private String thumbnailUrl;
+    private String country;
+    private String countryEn;
+
+    /**
+     * Time of the last write to the Firestore document, in milliseconds (0 if unknown).
+     */
+    private long updatedAt;
+
+    /**
+     * Time at which this copy was downloaded from Firestore, in milliseconds (0 if unknown).
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long cachedAt;
+
+    /**
+     * Default constructor required by Room.
+     */
+    public LocationEntity() {}
+
+    /**
+     * Creates a local entity from a Firestore location.
+     *
+     * @param location The location retrieved from Firestore.
+     * @return The entity to be stored in Room.
+     */
+    public static LocationEntity fromLocation(Location location) {
+        LocationEntity entity = new LocationEntity();
+        entity.id = location.getId();
+        entity.name = location.getName();
+        entity.nameEn = location.getNameEn();
+        entity.description = location.getDescription();
+        entity.descriptionEn = location.getDescriptionEn();
+        entity.address = location.getAddress();
+        entity.latitude = location.getLatitude();
+        entity.longitude = location.getLongitude();
+        entity.categoryId = location.getCategoryId();
+        entity.imageUrl = location.getImageUrl();
+        entity.thumbnailUrl = location.getThumbnailUrl();
+        entity.country = location.getCountry();
+        entity.countryEn = location.getCountryEn();
+        entity.updatedAt = location.getUpdatedAt() != null ? location.getUpdatedAt().toDate().getTime() : 0;
+        return entity;
+    }
+
+    /**
+     * Converts this entity back into the Location model used by the UI.
+     *
+     * @return The corresponding Location object.
+     */
+    public Location toLocation() {
+        Location location = new Location(id, name, nameEn, description, descriptionEn, address,
+                latitude, longitude, categoryId, imageUrl, country, countryEn);
+        location.setThumbnailUrl(thumbnailUrl);
+        if (updatedAt > 0) {
+            location.setUpdatedAt(new Timestamp(new Date(updatedAt)));
+        }
+        return location;
+    }
+
+    /**
+     * Retrieves the Firestore document ID of the location.
+     */
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Sets the Firestore document ID of the location.
+     */
+    public void setId(@NonNull String id) {
+        this.id = id;
+    }
+
+    /**
+     * Retrieves the name in the default language of the location.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name in the default language of the location.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieves the name in English of the location.
+     */
+    public String getNameEn() {
+        return nameEn;
+    }
+
+    /**
+     * Sets the name in English of the location.
+     */
+    public void setNameEn(String nameEn) {
+        this.nameEn = nameEn;
+    }
+
+    /**
+     * Retrieves the description in the default language of the location.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the description in the default language of the location.
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Retrieves the description in English of the location.
+     */
+    public String getDescriptionEn() {
+        return descriptionEn;
+    }
+
+    /**
+     * Sets the description in English of the location.
+     */
+    public void setDescriptionEn(String descriptionEn) {
+        this.descriptionEn = descriptionEn;
+    }
+
+    /**
+     * Retrieves the address of the location.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Sets the address of the location.
+     */
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    /**
+     * Retrieves the latitude of the location.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Sets the latitude of the location.
+     */
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Retrieves the longitude of the location.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Sets the longitude of the location.
+     */
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Retrieves the category ID of the location.
+     */
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Sets the category ID of the location.
+     */
+    public void setCategoryId(String categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    /**
+     * Retrieves the image URL of the location.
+     */
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    /**
+     * Sets the image URL of the location.
+     */
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    /**
+     * Retrieves the thumbnail URL of the location.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * Sets the thumbnail URL of the location.
+     */
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    /**
+     * Retrieves the country of the location.
+     */
+    public String getCountry() {
+        return country;
+    }
+
+    /**
+     * Sets the country of the location.
+     */
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    /**
+     * Retrieves the country name in English of the location.
+     */
+    public String getCountryEn() {
+        return countryEn;
+    }
+
+    /**
+     * Sets the country name in English of the location.
+     */
+    public void setCountryEn(String countryEn) {
+        this.countryEn = countryEn;
+    }
+
+    /**
+     * Retrieves the last update time in milliseconds of the location.
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Sets the last update time in milliseconds of the location.
+     */
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Retrieves the time in milliseconds at which the location was cached.
+     */
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    /**
+     * Sets the time in milliseconds at which the location was cached.
+     */
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+}
+
@@ -0,0 +1,172 @@
+package com.example.pdm2_projeto.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+import com.example.pdm2_projeto.query.TextNormalizer;
+
+/**
+ * Full-text search entry for a location stored in the local Room database.
+ * All text columns hold normalized (lowercase, accent-free) values, so that
+ * Portuguese and English queries match regardless of case and accents.
+ */
+@Fts4
+@Entity(tableName = "locations_fts")
+public class LocationFts {
+
+    /**
+     * Internal row ID of the full-text search table.
+     */
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "rowid")
+    private int rowid;
+
+    /**
+     * ID of the location this entry refers to (matches LocationEntity.id).
+     */
+    private String locationId;
+
+    private String name;
+    private String nameEn;
+    private String description;
+    private String descriptionEn;
+    private String country;
+    private String countryEn;
+
+    /**
+     * Default constructor required by Room.
+     */
+    public LocationFts() {}
+
+    /**
+     * Creates the full-text search entry of a location, normalizing every indexed field.
+     *
+     * @param location The location to index.
+     * @return The search entry to be stored in Room.
+     */
+    public static LocationFts fromLocation(Location location) {
+        LocationFts fts = new LocationFts();
+        fts.locationId = location.getId();
+        fts.name = TextNormalizer.normalize(location.getName());
+        fts.nameEn = TextNormalizer.normalize(location.getNameEn());
+        fts.description = TextNormalizer.normalize(location.getDescription());
+        fts.descriptionEn = TextNormalizer.normalize(location.getDescriptionEn());
+        fts.country = TextNormalizer.normalize(location.getCountry());
+        fts.countryEn = TextNormalizer.normalize(location.getCountryEn());
+        return fts;
+    }
+
+    /**
+     * Retrieves the internal row ID of the entry.
+     */
+    public int getRowid() {
+        return rowid;
+    }
+
+    /**
+     * Sets the internal row ID of the entry.
+     */
+    public void setRowid(int rowid) {
+        this.rowid = rowid;
+    }
+
+    /**
+     * Retrieves the ID of the indexed location of the entry.
+     */
+    public String getLocationId() {
+        return locationId;
+    }
+
+    /**
+     * Sets the ID of the indexed location of the entry.
+     */
+    public void setLocationId(String locationId) {
+        this.locationId = locationId;
+    }
+
+    /**
+     * Retrieves the normalized name of the entry.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the normalized name of the entry.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Retrieves the normalized English name of the entry.
+     */
+    public String getNameEn() {
+        return nameEn;
+    }
+
+    /**
+     * Sets the normalized English name of the entry.
+     */
+    public void setNameEn(String nameEn) {
+        this.nameEn = nameEn;
+    }
+
+    /**
+     * Retrieves the normalized description of the entry.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the normalized description of the entry.
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Retrieves the normalized English description of the entry.
+     */
+    public String getDescriptionEn() {
+        return descriptionEn;
+    }
+
+    /**
+     * Sets the normalized English description of the entry.
+     */
+    public void setDescriptionEn(String descriptionEn) {
+        this.descriptionEn = descriptionEn;
+    }
+
+    /**
+     * Retrieves the normalized country of the entry.
+     */
+    public String getCountry() {
+        return country;
+    }
+
+    /**
+     * Sets the normalized country of the entry.
+     */
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    /**
+     * Retrieves the normalized English country name of the entry.
+     */
+    public String getCountryEn() {
+        return countryEn;
+    }
+
+    /**
+     * Sets the normalized English country name of the entry.
+     */
+    public void setCountryEn(String countryEn) {
+        this.countryEn = countryEn;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.pdm2_projeto.models;
+
+/**
+ * Result row of a full-text location search in the local Room database.
+ * Holds the ID and name of the matched location and the raw FTS4 match information used to rank it;
+ * the locations themselves are only read for the page being shown.
+ */
+public class LocationSearchResult {
+
+    /**
+     * ID of the matched location.
+     */
+    public String locationId;
+
+    /**
+     * Name of the matched location, used to order results with the same score.
+     */
+    public String name;
+
+    /**
+     * Output of matchinfo(locations_fts, 'pcx') for this row.
+     */
+    public byte[] matchInfo;
+}
@@ -30,6 +30,17 @@ public class User implements Serializable {
      */
     private String profilePictureUrl;
 
+    /**
+     * URL of the small square version of the profile picture, shown in comment lists.
+     */
+    private String avatarUrl;
+
+    /**
+     * Time in milliseconds at which the profile picture was last changed. The picture keeps the same
+     * URL when it is replaced, so this version is used as the image cache key instead.
+     */
+    private long profilePictureVersion;
+
     /**
      * Timestamp indicating when the user account was created.
      */
@@ -129,6 +140,42 @@ public class User implements Serializable {
         this.profilePictureUrl = profilePictureUrl;
     }
 
+    /**
+     * Retrieves the URL of the small square version of the profile picture, shown in lists.
+     *
+     * @return The avatar URL, or null if the user has none.
+     */
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    /**
+     * Sets the URL of the small square version of the profile picture.
+     *
+     * @param avatarUrl The avatar URL to set.
+     */
+    public void setAvatarUrl(String avatarUrl) {
+        this.avatarUrl = avatarUrl;
+    }
+
+    /**
+     * Retrieves the version of the profile picture, used to tell cached copies of an older picture apart.
+     *
+     * @return The time in milliseconds at which the picture was last changed (0 if never).
+     */
+    public long getProfilePictureVersion() {
+        return profilePictureVersion;
+    }
+
+    /**
+     * Sets the version of the profile picture.
+     *
+     * @param profilePictureVersion The time in milliseconds at which the picture was last changed.
+     */
+    public void setProfilePictureVersion(long profilePictureVersion) {
+        this.profilePictureVersion = profilePictureVersion;
+    }
+
     /**
      * Retrieves the timestamp indicating when the user account was created.
      *
@@ -1,83 +1,77 @@
 package com.example.pdm2_projeto.repositories;
 
-import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.CommentDataSource;
+import com.example.pdm2_projeto.interfaces.CommentStream;
 import com.example.pdm2_projeto.models.Comment;
-import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.example.pdm2_projeto.utils.AsyncResult;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Repository class for managing comments in Firestore.
- * Provides methods to add, retrieve, and delete comments from the Firestore database.
+ * Repository class for managing comments.
+ * Provides methods to add, retrieve, and delete comments, through a data source
+ * (Firestore in the app, or an in-memory stand-in in tests).
  */
 public class CommentsRepository {
 
     /**
-     * Reference to the Firestore collection where comments are stored.
+     * Store the comments are read from and written to.
      */
-    private final CollectionReference commentsCollection;
+    private final CommentDataSource dataSource;
 
     /**
-     * Constructor that initializes the Firestore database and sets the reference to the "comments" collection.
+     * Constructor that reads and writes the comments through the given data source.
+     *
+     * @param dataSource Store the comments are read from and written to.
      */
-    public CommentsRepository() {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        this.commentsCollection = db.collection("comments");
+    public CommentsRepository(CommentDataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     /**
-     * Adds a new comment to Firestore.
+     * Adds a new comment.
      *
-     * @param comment  The Comment object to be added.
-     * @param callback Callback to handle success or failure of the operation.
+     * @param comment The Comment object to be added.
+     * @return The result of the operation.
      */
-    public void addComment(Comment comment, FirestoreCallback<Void> callback) {
-        commentsCollection.add(comment)
-                .addOnSuccessListener(documentReference -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+    public AsyncResult<Void> addComment(Comment comment) {
+        return dataSource.addComment(comment);
     }
 
     /**
-     * Retrieves all comments associated with a specific location.
+     * Retrieves all comments associated with a specific location, latest first.
      *
      * @param locationId The ID of the location for which comments are to be fetched.
-     * @param callback   Callback to handle the retrieved list of comments or failure.
+     * @return The comments, or the error.
      */
-    public void getCommentsByLocation(String locationId, FirestoreCallback<List<Comment>> callback) {
-        commentsCollection.whereEqualTo("locationId", locationId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Comment> comments = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Comment comment = document.toObject(Comment.class);
-                        comment.setId(document.getId()); // Assign Firestore document ID
-                        comments.add(comment);
-                    }
-                    // Sort comments by creation timestamp in descending order (latest first)
-                    comments.sort((c1, c2) -> c2.getCreatedAt().compareTo(c1.getCreatedAt()));
-                    callback.onSuccess(comments);
-                })
-                .addOnFailureListener(callback::onFailure);
+    public AsyncResult<List<Comment>> getCommentsByLocation(String locationId) {
+        return dataSource.getCommentsByLocation(locationId);
     }
 
     /**
-     * Deletes a comment from Firestore.
+     * Creates a live, paginated list of the comments of a location, latest first.
+     * Call {@link CommentStream#start()} to load the first page, {@link CommentStream#loadOlder()}
+     * for the next ones, and {@link CommentStream#stop()} when the comments are no longer shown.
      *
-     * @param comment  The Comment object to be deleted.
-     * @param callback Callback to handle success or failure of the operation.
+     * @param locationId The ID of the location for which comments are to be streamed.
+     * @param pageSize   The number of comments loaded per page.
+     * @param listener   Listener notified with the loaded comments after every change.
+     * @return The comment stream (not started).
      */
-    public void deleteComment(Comment comment, FirestoreCallback<Void> callback) {
+    public CommentStream streamCommentsByLocation(String locationId, int pageSize, CommentStream.Listener listener) {
+        return dataSource.streamCommentsByLocation(locationId, pageSize, listener);
+    }
+
+    /**
+     * Deletes a comment.
+     *
+     * @param comment The Comment object to be deleted.
+     * @return The result of the operation.
+     */
+    public AsyncResult<Void> deleteComment(Comment comment) {
         if (comment.getId() == null || comment.getId().isEmpty()) {
-            callback.onFailure(new Exception("Comment ID is missing"));
-            return;
+            return AsyncResult.failure(new Exception("Comment ID is missing"));
         }
-
-        commentsCollection.document(comment.getId())
-                .delete()
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        return dataSource.deleteComment(comment.getId());
     }
 }
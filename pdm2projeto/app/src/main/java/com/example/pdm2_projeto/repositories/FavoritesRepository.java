@@ -1,19 +1,29 @@
 package com.example.pdm2_projeto.repositories;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
-import com.example.pdm2_projeto.interfaces.FirestoreCallback;
 import com.example.pdm2_projeto.models.Favorite;
-import com.example.pdm2_projeto.models.Location;
-import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.example.pdm2_projeto.utils.InFlightRequests;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Repository class for managing user favorites in Firestore.
@@ -21,6 +31,11 @@ import java.util.List;
  *
  * It interacts with Firebase Authentication to get the current logged-in user and uses Firestore
  * to store and manage the user's favorite locations.
+ *
+ * A favorite is stored in the document "userId_locationId", so adding it twice cannot create duplicates
+ * and removing it needs no query. Toggles are applied to the local state immediately and written
+ * behind: repeated toggles of the same location are coalesced, and the changes are sent together
+ * in a WriteBatch. If a batch is rejected, the favorites go back to the state stored in Firestore.
  */
 public class FavoritesRepository {
 
@@ -35,100 +50,442 @@ public class FavoritesRepository {
     private final FirebaseFirestore db;
 
     /**
-     * Constructor that initializes Firebase Authentication and Firestore instances.
-     * These instances will be used to interact with Firestore and retrieve authentication details.
+     * Favorites of the current user, mapping each favorited location ID to the IDs of its favorite documents
+     * (several for the duplicates created before the IDs were deterministic, all deleted on removal).
+     * Shared by every instance and kept up to date by a single snapshot listener,
+     * so favorite checks are answered from memory. Only accessed on the main thread.
      */
-    public FavoritesRepository() {
-        this.auth = FirebaseAuth.getInstance();
-        this.db = FirebaseFirestore.getInstance();
-    }
+    private static final Map<String, Set<String>> favoriteDocumentIds = new HashMap<>();
+
+    /**
+     * ID of the user whose favorites are held in {@link #favoriteDocumentIds}.
+     */
+    private static String favoritesUserId;
+
+    /**
+     * Whether the first snapshot of the favorites listener has been received.
+     */
+    private static boolean favoritesLoaded;
+
+    /**
+     * Registration of the snapshot listener on the user's favorites, or null if not listening.
+     */
+    private static ListenerRegistration favoritesRegistration;
+
+    /**
+     * Listeners notified when the favorites of the current user change.
+     */
+    private static final List<FavoritesListener> favoritesListeners = new ArrayList<>();
+
+    /**
+     * Time to wait after a toggle before writing, so repeated taps produce a single write.
+     */
+    private static final long FLUSH_DELAY_MS = 1000;
+
+    /**
+     * Maximum number of writes in a Firestore WriteBatch.
+     */
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Favorite status wanted by the user and not written yet, by location ID, for {@link #pendingUserId}.
+     */
+    private static final Map<String, Boolean> pendingChanges = new LinkedHashMap<>();
 
     /**
-     * Callback interface for retrieving a list of favorite locations.
-     * Used to return a list of Favorite objects or handle errors when fetching user favorites.
+     * Favorite status sent in batches that Firestore has not acknowledged yet, by location ID.
+     * Kept until the batch completes, so the icons do not flicker back in the meantime.
+     */
+    private static final Map<String, Boolean> writingChanges = new HashMap<>();
+
+    /**
+     * ID of the user who made the pending changes.
+     */
+    private static String pendingUserId;
+
+    /**
+     * Writes the pending changes after {@link #FLUSH_DELAY_MS}.
+     */
+    private final Runnable flushTask = this::flush;
+
+    /**
+     * Reads of the favorites list in flight, by user ID.
+     */
+    private final InFlightRequests<String, List<Favorite>> favoritesRequests = new InFlightRequests<>();
+
+    /**
+     * Constructor that keeps the given Firebase Authentication and Firestore instances.
+     * These instances will be used to interact with Firestore and retrieve authentication details.
+     *
+     * @param db   The Firestore database the favorites are stored in.
+     * @param auth The authentication of the current user.
      */
-    public interface FavoritesCallback {
-        void onSuccess(List<Favorite> favorites);
-        void onFailure(Exception e);
+    public FavoritesRepository(FirebaseFirestore db, FirebaseAuth auth) {
+        this.auth = auth;
+        this.db = db;
     }
 
     /**
-     * Callback interface for operations that return a single Favorite object.
-     * Used when a specific favorite entry needs to be retrieved.
+     * Listener interface notified when the set of favorite locations changes.
      */
-    public interface SingleFavoritesCallback {
-        void onSuccess(Favorite favorite);
-        void onFailure(Exception e);
+    public interface FavoritesListener {
+        void onFavoritesChanged();
     }
 
     /**
-     * Adds a location to the user's list of favorite locations in Firestore.
+     * Starts observing the favorites of the current user.
+     * The first listener attaches a single Firestore snapshot listener on the user's favorites;
+     * later listeners share it. If the favorites are already loaded, the listener is notified immediately.
      *
-     * @param locationId The unique ID of the location to be added as a favorite.
-     * @param callback   Callback to handle success or failure of the operation.
+     * @param listener Listener to notify when the favorites change.
      */
-    public void addFavorite(String locationId, FirestoreCallback<Void> callback) {
-        String userId = auth.getCurrentUser().getUid(); // Get the current user's UID
+    public void addFavoritesListener(FavoritesListener listener) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUid() : null;
+
+        // Start over if the user changed since the favorites were loaded
+        if (userId == null || !userId.equals(favoritesUserId)) {
+            stopListeningToFavorites();
+        }
+        if (!favoritesListeners.contains(listener)) {
+            favoritesListeners.add(listener);
+        }
         if (userId == null) {
-            callback.onFailure(new Exception("No authenticated user.")); // Fail if no user is authenticated
             return;
         }
 
-        String favoriteId = db.collection("favorites").document().getId(); // Generate a unique ID for the favorite entry
-        Favorite favorite = new Favorite(favoriteId, userId, locationId, String.valueOf(System.currentTimeMillis()));
+        if (favoritesRegistration == null) {
+            favoritesUserId = userId;
+            favoritesRegistration = db.collection("favorites")
+                    .whereEqualTo("userId", userId)
+                    .addSnapshotListener((snapshots, e) -> {
+                        FirestoreMetrics.recordSnapshot("FavoritesRepository.addFavoritesListener", snapshots);
+                        if (e != null || snapshots == null) {
+                            Log.e("FavoritesRepository", "Error listening to favorites", e);
+                            return;
+                        }
 
-        db.collection("favorites")
-                .document(favoriteId)
-                .set(favorite)
-                .addOnSuccessListener(unused -> callback.onSuccess(null)) // Successfully added favorite
-                .addOnFailureListener(callback::onFailure); // Handle failure
+                        favoriteDocumentIds.clear();
+                        for (QueryDocumentSnapshot document : snapshots) {
+                            String locationId = document.getString("locationId");
+                            if (locationId != null) {
+                                Set<String> documentIds = favoriteDocumentIds.get(locationId);
+                                if (documentIds == null) {
+                                    documentIds = new HashSet<>();
+                                    favoriteDocumentIds.put(locationId, documentIds);
+                                }
+                                documentIds.add(document.getId());
+                            }
+                        }
+                        favoritesLoaded = true;
+                        notifyFavoritesListeners();
+                    });
+        } else if (favoritesLoaded) {
+            listener.onFavoritesChanged();
+        }
     }
 
     /**
-     * Removes a location from the user's favorites list in Firestore.
+     * Stops notifying the given listener. The Firestore listener is removed when no listeners are left.
      *
-     * @param locationId The unique ID of the location to be removed from favorites.
-     * @param callback   Callback to handle success or failure of the operation.
+     * @param listener The listener previously added.
      */
-    public void removeFavorite(String locationId, FirestoreCallback<Void> callback) {
-        String userId = auth.getCurrentUser().getUid(); // Get the current user's UID
-        if (userId == null) {
-            callback.onFailure(new Exception("No authenticated user.")); // Fail if no user is authenticated
+    public void removeFavoritesListener(FavoritesListener listener) {
+        favoritesListeners.remove(listener);
+        if (favoritesListeners.isEmpty()) {
+            stopListeningToFavorites();
+        }
+    }
+
+    /**
+     * Checks, without going to the network, whether a location is a favorite of the current user.
+     * Only meaningful after the favorites are loaded (see {@link #areFavoritesLoaded()}).
+     *
+     * @param locationId The ID of the location to check.
+     * @return True if the location is in the user's favorites.
+     */
+    public boolean isFavorite(String locationId) {
+        if (!isCurrentUsersFavorites()) {
+            return false;
+        }
+        Boolean pending = favoritesUserId.equals(pendingUserId) ? pendingChanges.get(locationId) : null;
+        return pending != null ? pending : isWrittenFavorite(locationId);
+    }
+
+    /**
+     * Returns, without going to the network, the IDs of the current user's favorite locations,
+     * including the changes not written yet.
+     *
+     * @return The IDs of the favorite locations, or null if the favorites are not loaded.
+     */
+    public Set<String> getFavoriteLocationIds() {
+        if (!isCurrentUsersFavorites()) {
+            return null;
+        }
+        Set<String> locationIds = new HashSet<>(favoriteDocumentIds.keySet());
+        Map<String, Boolean> changes = new HashMap<>(writingChanges);
+        if (favoritesUserId.equals(pendingUserId)) {
+            changes.putAll(pendingChanges);
+        }
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                locationIds.add(change.getKey());
+            } else {
+                locationIds.remove(change.getKey());
+            }
+        }
+        return locationIds;
+    }
+
+    /**
+     * Returns the favorite status of a location without the changes that are not written yet.
+     */
+    private static boolean isWrittenFavorite(String locationId) {
+        Boolean writing = writingChanges.get(locationId);
+        return writing != null ? writing : favoriteDocumentIds.containsKey(locationId);
+    }
+
+    /**
+     * Indicates whether the favorites of the current user are loaded in memory.
+     *
+     * @return True if favorite checks can be answered from memory.
+     */
+    public boolean areFavoritesLoaded() {
+        return isCurrentUsersFavorites();
+    }
+
+    /**
+     * Adds the location to the user's favorites, or removes it if it is already a favorite.
+     * The current status is read from the favorites kept in memory. The new status is applied
+     * immediately and written to Firestore shortly after, together with the other changes.
+     *
+     * @param locationId The ID of the location.
+     * @return The new favorite status, or the error.
+     */
+    public AsyncResult<Boolean> toggleFavorite(String locationId) {
+        if (!isCurrentUsersFavorites()) {
+            return AsyncResult.failure(new Exception("Favorites not loaded."));
+        }
+
+        boolean favorite = !isFavorite(locationId);
+        if (!favoritesUserId.equals(pendingUserId)) {
+            flush(); // Changes of a previous user are written with their own user ID
+            pendingUserId = favoritesUserId;
+        }
+
+        // Toggling back to the written status cancels the pending change instead of writing it twice
+        if (favorite == isWrittenFavorite(locationId)) {
+            pendingChanges.remove(locationId);
+        } else {
+            pendingChanges.put(locationId, favorite);
+        }
+        notifyFavoritesListeners();
+
+        mainHandler.removeCallbacks(flushTask);
+        mainHandler.postDelayed(flushTask, FLUSH_DELAY_MS);
+        return AsyncResult.success(favorite);
+    }
+
+    /**
+     * Writes the pending favorite changes now, in as few WriteBatches as possible.
+     * Called when the favorites are about to be read from Firestore and when the app goes to the background.
+     */
+    public void flush() {
+        mainHandler.removeCallbacks(flushTask);
+        if (pendingChanges.isEmpty() || pendingUserId == null) {
+            pendingChanges.clear();
             return;
         }
 
-        // Query Firestore to find the favorite entry for the user and location
-        db.collection("favorites")
-                .whereEqualTo("userId", userId)
-                .whereEqualTo("locationId", locationId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        document.getReference().delete()
-                                .addOnSuccessListener(unused -> callback.onSuccess(null)) // Successfully removed favorite
-                                .addOnFailureListener(callback::onFailure); // Handle failure
-                    }
-                })
-                .addOnFailureListener(callback::onFailure); // Handle failure in fetching favorites
+        String userId = pendingUserId;
+        CollectionReference favorites = db.collection("favorites");
+        Map<String, Boolean> batchChanges = new HashMap<>();
+        Set<String> batchDeletes = new HashSet<>();
+        WriteBatch batch = db.batch();
+        int writes = 0;
+        for (Map.Entry<String, Boolean> change : pendingChanges.entrySet()) {
+            String locationId = change.getKey();
+            boolean favorite = change.getValue();
+            // A removal deletes every document of the location, duplicates included
+            Set<String> documentIds = favorite
+                    ? Collections.singleton(favoriteDocumentId(userId, locationId))
+                    : documentIdsOf(userId, locationId);
+
+            // Start a new batch rather than split a change, unless it alone exceeds a batch
+            if (writes > 0 && writes + documentIds.size() > MAX_BATCH_WRITES) {
+                commit(userId, batch, batchChanges, batchDeletes);
+                batch = db.batch();
+                batchChanges = new HashMap<>();
+                batchDeletes = new HashSet<>();
+                writes = 0;
+            }
+            for (String documentId : documentIds) {
+                if (writes == MAX_BATCH_WRITES) {
+                    commit(userId, batch, batchChanges, batchDeletes);
+                    batch = db.batch();
+                    batchChanges = new HashMap<>();
+                    batchDeletes = new HashSet<>();
+                    writes = 0;
+                }
+                if (favorite) {
+                    batch.set(favorites.document(documentId),
+                            new Favorite(documentId, userId, locationId, String.valueOf(System.currentTimeMillis())));
+                } else {
+                    batch.delete(favorites.document(documentId));
+                    batchDeletes.add(documentId);
+                }
+                batchChanges.put(locationId, favorite);
+                writes++;
+            }
+        }
+        if (writes > 0) {
+            commit(userId, batch, batchChanges, batchDeletes);
+        }
+        pendingChanges.clear();
+    }
+
+    /**
+     * Commits a batch of favorite changes. If Firestore rejects it, the changes are dropped and the
+     * favorites shown go back to the documents in Firestore (the snapshot listener reverts its local copy).
+     * If a removed favorite still has documents once the batch is written (duplicates the snapshot
+     * listener had not reported when the batch was built), they are removed with the next flush.
+     *
+     * @param userId  The ID of the user who made the changes.
+     * @param batch   The writes.
+     * @param changes The favorite status written, by location ID.
+     * @param deletes The IDs of the documents deleted by the batch.
+     */
+    private void commit(String userId, WriteBatch batch, Map<String, Boolean> changes, Set<String> deletes) {
+        writingChanges.putAll(changes);
+        FirestoreMetrics.track("FavoritesRepository.flush", batch.commit()).addOnCompleteListener(task -> {
+            for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+                // A later batch for the same location keeps its own status
+                if (change.getValue().equals(writingChanges.get(change.getKey()))) {
+                    writingChanges.remove(change.getKey());
+                }
+            }
+            if (task.isSuccessful()) {
+                removeRemainingDocuments(userId, changes, deletes);
+            } else {
+                Log.e("FavoritesRepository", "Error writing favorites, rolling back", task.getException());
+            }
+            notifyFavoritesListeners();
+        });
+    }
+
+    /**
+     * Queues the removal again for the removed favorites that still have documents the batch did not delete.
+     */
+    private void removeRemainingDocuments(String userId, Map<String, Boolean> changes, Set<String> deletes) {
+        if (!userId.equals(favoritesUserId) || (pendingUserId != null && !userId.equals(pendingUserId))) {
+            return; // The user changed meanwhile
+        }
+        boolean queued = false;
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            Set<String> remaining = favoriteDocumentIds.get(change.getKey());
+            if (!change.getValue() && remaining != null && !deletes.containsAll(remaining)
+                    && !pendingChanges.containsKey(change.getKey())) {
+                pendingChanges.put(change.getKey(), false);
+                queued = true;
+            }
+        }
+        if (queued) {
+            pendingUserId = userId;
+            mainHandler.removeCallbacks(flushTask);
+            mainHandler.postDelayed(flushTask, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Returns the ID of the document that stores a favorite.
+     *
+     * @param userId     The ID of the user.
+     * @param locationId The ID of the location.
+     * @return The favorite document ID.
+     */
+    public static String favoriteDocumentId(String userId, String locationId) {
+        return userId + "_" + locationId;
+    }
+
+    /**
+     * Returns the IDs of every document that stores a favorite: the deterministic one, and the duplicates
+     * with a random ID created before, as seen by the snapshot listener.
+     *
+     * @param userId     The ID of the user.
+     * @param locationId The ID of the location.
+     * @return The document IDs, the deterministic one first.
+     */
+    private static Set<String> documentIdsOf(String userId, String locationId) {
+        Set<String> documentIds = new LinkedHashSet<>();
+        documentIds.add(favoriteDocumentId(userId, locationId));
+        Set<String> known = userId.equals(favoritesUserId) ? favoriteDocumentIds.get(locationId) : null;
+        if (known != null) {
+            documentIds.addAll(known);
+        }
+        return documentIds;
+    }
+
+    /**
+     * Indicates whether the favorites in memory are loaded and belong to the current user.
+     */
+    private boolean isCurrentUsersFavorites() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        return favoritesLoaded && currentUser != null && currentUser.getUid().equals(favoritesUserId);
+    }
+
+    /**
+     * Notifies every registered listener that the favorites changed.
+     */
+    private static void notifyFavoritesListeners() {
+        for (FavoritesListener listener : new ArrayList<>(favoritesListeners)) {
+            listener.onFavoritesChanged();
+        }
+    }
+
+    /**
+     * Removes the Firestore listener and forgets the favorites held in memory.
+     */
+    private static void stopListeningToFavorites() {
+        if (favoritesRegistration != null) {
+            favoritesRegistration.remove();
+            favoritesRegistration = null;
+        }
+        favoriteDocumentIds.clear();
+        favoritesUserId = null;
+        favoritesLoaded = false;
     }
 
     /**
      * Retrieves a list of all favorite locations for the currently authenticated user.
+     * Concurrent calls share the same read.
      *
-     * @param callback Callback to return the list of favorites or handle errors.
+     * @return The user's favorites, or the error.
      */
-    public void getUserFavorites(FavoritesCallback callback) {
+    public AsyncResult<List<Favorite>> getUserFavorites() {
         if (auth.getCurrentUser() == null) {
-            callback.onFailure(new Exception("No authenticated user.")); // Fail if no user is authenticated
-            return;
+            return AsyncResult.failure(new Exception("No authenticated user.")); // Fail if no user is authenticated
         }
 
         String userId = auth.getCurrentUser().getUid(); // Get the current user's UID
+        flush(); // Send the pending changes first, so the list includes them
+        return favoritesRequests.run(userId, () -> fetchUserFavorites(userId));
+    }
 
-        db.collection("favorites")
-                .whereEqualTo("userId", userId)
-                .get()
+    /**
+     * Reads the favorites of a user from Firestore.
+     *
+     * @param userId The ID of the user.
+     * @return The user's favorites, or the error.
+     */
+    private AsyncResult<List<Favorite>> fetchUserFavorites(String userId) {
+        AsyncResult<List<Favorite>> result = new AsyncResult<>();
+        FirestoreMetrics.track("FavoritesRepository.getUserFavorites", db.collection("favorites")
+                        .whereEqualTo("userId", userId)
+                        .get())
                 .addOnCompleteListener(task -> {
+                    if (result.isCancelled()) return; // Nobody is waiting for the favorites anymore
                     if (task.isSuccessful() && task.getResult() != null) {
                         List<Favorite> favorites = new ArrayList<>();
                         for (QueryDocumentSnapshot document : task.getResult()) {
@@ -146,39 +503,13 @@ public class FavoritesRepository {
                                 Log.e("FavoritesRepository", "Error parsing favorite document: " + document.getId(), e);
                             }
                         }
-                        callback.onSuccess(favorites);
+                        result.complete(favorites);
                     } else {
                         Exception e = task.getException();
                         Log.e("FavoritesRepository", "Error fetching favorites", e);
-                        callback.onFailure(e);
-                    }
-                });
-    }
-
-    /**
-     * Checks if a specific location is favorited by the currently authenticated user.
-     *
-     * @param locationId The ID of the location to check.
-     * @return Task that resolves to true if the location is favorited, false otherwise.
-     */
-    public Task<Boolean> isLocationFavorited(String locationId) {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser == null) {
-            return Tasks.forException(new Exception("No authenticated user.")); // Fail if no user is authenticated
-        }
-
-        String userId = currentUser.getUid(); // Get the current user's UID
-
-        return db.collection("favorites")
-                .whereEqualTo("userId", userId)
-                .whereEqualTo("locationId", locationId)
-                .get()
-                .continueWith(task -> {
-                    if (task.isSuccessful()) {
-                        return !task.getResult().isEmpty(); // Return true if there are results
-                    } else {
-                        throw task.getException(); // Handle query failure
+                        result.fail(e);
                     }
                 });
+        return result;
     }
 }
@@ -0,0 +1,88 @@
+package com.example.pdm2_projeto.repositories;
+
+import com.example.pdm2_projeto.interfaces.CommentDataSource;
+import com.example.pdm2_projeto.interfaces.CommentStream;
+import com.example.pdm2_projeto.models.Comment;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes comments in the Firestore "comments" collection.
+ */
+public class FirestoreCommentDataSource implements CommentDataSource {
+
+    private final CollectionReference commentsCollection;
+
+    /**
+     * Whether reads deliver the documents of the local cache before the server ones.
+     */
+    private final boolean cacheFirst;
+
+    /**
+     * Constructor that points to the "comments" collection of the given Firestore database.
+     *
+     * @param db         The Firestore database.
+     * @param cacheFirst Whether reads deliver the documents of the local cache first, then the server
+     *                   ones as an update if they differ (see {@link FirestoreReads}).
+     */
+    public FirestoreCommentDataSource(FirebaseFirestore db, boolean cacheFirst) {
+        this.commentsCollection = db.collection("comments");
+        this.cacheFirst = cacheFirst;
+    }
+
+    @Override
+    public AsyncResult<List<Comment>> getCommentsByLocation(String locationId) {
+        return FirestoreReads.get("FirestoreCommentDataSource.getCommentsByLocation",
+                        commentsByLocation(locationId), cacheFirst)
+                .map(FirestoreCommentDataSource::toComments);
+    }
+
+    @Override
+    public CommentStream streamCommentsByLocation(String locationId, int pageSize, CommentStream.Listener listener) {
+        return new FirestoreCommentStream(commentsByLocation(locationId), pageSize, listener);
+    }
+
+    @Override
+    public AsyncResult<Void> addComment(Comment comment) {
+        return AsyncResult.fromTask(FirestoreMetrics.track("FirestoreCommentDataSource.addComment", commentsCollection.add(comment)))
+                .map(documentReference -> null);
+    }
+
+    @Override
+    public AsyncResult<Void> deleteComment(String commentId) {
+        return AsyncResult.fromTask(FirestoreMetrics.track("FirestoreCommentDataSource.deleteComment",
+                commentsCollection.document(commentId).delete()));
+    }
+
+    /**
+     * Query for the comments of a location, ordered by creation timestamp in descending order (latest first).
+     *
+     * @param locationId The ID of the location.
+     * @return The query.
+     */
+    private Query commentsByLocation(String locationId) {
+        return commentsCollection.whereEqualTo("locationId", locationId)
+                .orderBy("createdAt", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Converts the documents of a query result into Comment objects.
+     */
+    private static List<Comment> toComments(QuerySnapshot queryDocumentSnapshots) {
+        List<Comment> comments = new ArrayList<>();
+        for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
+            Comment comment = document.toObject(Comment.class);
+            comment.setId(document.getId()); // Assign Firestore document ID
+            comments.add(comment);
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.CommentStream;
+import com.example.pdm2_projeto.models.Comment;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live, paginated list of the comments of a location, newest first, read from Firestore.
+ *
+ * Comments are loaded one page at a time with a cursor (startAfter). Each loaded page is then kept
+ * up to date by a snapshot listener bounded to the range of that page, so comments that are added,
+ * edited or deleted are applied incrementally, without reloading the whole list.
+ * The newest page has no upper bound, so new comments (including the user's own, before the server
+ * confirms them) appear at the top immediately.
+ *
+ * Created by {@link FirestoreCommentDataSource#streamCommentsByLocation(String, int, Listener)}.
+ * Only used on the main thread, where Firestore delivers its results.
+ */
+class FirestoreCommentStream implements CommentStream {
+
+    /**
+     * Order of the comments: newest first, then by ID (the order used by Firestore for ties).
+     * The query only returns comments that have a "createdAt" date.
+     */
+    private static final Comparator<Comment> NEWEST_FIRST = (first, second) -> {
+        int byDate = second.getCreatedAt().compareTo(first.getCreatedAt());
+        return byDate != 0 ? byDate : second.getId().compareTo(first.getId());
+    };
+
+    /**
+     * Comments of the location ordered by "createdAt", newest first.
+     */
+    private final Query query;
+    private final int pageSize;
+    private final Listener listener;
+
+    /**
+     * One listener per loaded page.
+     */
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+
+    /**
+     * Loaded comments, kept sorted with {@link #NEWEST_FIRST}.
+     */
+    private final List<Comment> comments = new ArrayList<>();
+    private final Map<String, Comment> commentsById = new HashMap<>();
+
+    /**
+     * Last (oldest) document loaded. The next page starts after it.
+     */
+    private DocumentSnapshot oldestDocument;
+    private boolean hasMore = true;
+    private boolean loading = false;
+    private boolean stopped = false;
+
+    /**
+     * Creates a stream; call {@link #start()} to load the first page.
+     *
+     * @param query    The comments of the location, ordered by creation date (newest first).
+     * @param pageSize The number of comments loaded per page.
+     * @param listener Listener to notify when the comments change.
+     */
+    FirestoreCommentStream(Query query, int pageSize, Listener listener) {
+        this.query = query;
+        this.pageSize = pageSize;
+        this.listener = listener;
+    }
+
+    @Override
+    public void start() {
+        loadPage();
+    }
+
+    @Override
+    public void loadOlder() {
+        loadPage();
+    }
+
+    @Override
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return loading;
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+    }
+
+    /**
+     * Reads the next page with a cursor, then attaches a listener bounded to the range of that page.
+     * The read only serves to find the oldest document of the page: pages with fixed bounds
+     * (instead of a limit) do not drop their oldest comment when a new one is added.
+     */
+    private void loadPage() {
+        if (loading || !hasMore || stopped) {
+            return;
+        }
+        loading = true;
+
+        final DocumentSnapshot after = oldestDocument;
+        Query page = after == null ? query : query.startAfter(after);
+        FirestoreMetrics.track("CommentStream.loadPage", page.limit(pageSize).get())
+                .addOnSuccessListener(snapshot -> {
+                    loading = false;
+                    if (stopped) return;
+
+                    List<DocumentSnapshot> documents = snapshot.getDocuments();
+                    if (documents.size() < pageSize) {
+                        hasMore = false;
+                    }
+
+                    Query range;
+                    if (!hasMore) {
+                        // Last page: everything older than the previous page
+                        range = page;
+                    } else {
+                        oldestDocument = documents.get(documents.size() - 1);
+                        range = page.endAt(oldestDocument);
+                    }
+
+                    if (after == null || !documents.isEmpty()) {
+                        registrations.add(range.addSnapshotListener(this::applyChanges));
+                    } else {
+                        listener.onCommentsChanged(new ArrayList<>(comments)); // Report that there is nothing more
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    loading = false;
+                    Log.e("CommentStream", "Error loading comments", e);
+                    if (!stopped) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    /**
+     * Applies the added, modified and removed comments of a page and notifies the listener.
+     */
+    private void applyChanges(QuerySnapshot snapshot, Exception e) {
+        FirestoreMetrics.recordSnapshot("CommentStream.applyChanges", snapshot);
+        if (stopped) return;
+        if (e != null || snapshot == null) {
+            Log.e("CommentStream", "Error listening to comments", e);
+            if (e != null) {
+                listener.onFailure(e);
+            }
+            return;
+        }
+
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            String id = change.getDocument().getId();
+            remove(id);
+            if (change.getType() != DocumentChange.Type.REMOVED) {
+                Comment comment = change.getDocument().toObject(Comment.class);
+                comment.setId(id); // Assign Firestore document ID
+                insert(comment);
+            }
+        }
+
+        // The first snapshot of a page is delivered even if it is empty, so the UI learns there are no comments
+        listener.onCommentsChanged(new ArrayList<>(comments));
+    }
+
+    /**
+     * Inserts a comment at its sorted position.
+     */
+    private void insert(Comment comment) {
+        int index = Collections.binarySearch(comments, comment, NEWEST_FIRST);
+        comments.add(index < 0 ? -index - 1 : index, comment);
+        commentsById.put(comment.getId(), comment);
+    }
+
+    /**
+     * Removes the loaded copy of a comment, if any.
+     */
+    private void remove(String id) {
+        Comment previous = commentsById.remove(id);
+        if (previous != null) {
+            int index = Collections.binarySearch(comments, previous, NEWEST_FIRST);
+            if (index >= 0) {
+                comments.remove(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.LocationDataSource;
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads locations from the Firestore "locations" collection.
+ */
+public class FirestoreLocationDataSource implements LocationDataSource {
+
+    /**
+     * Maximum number of values accepted by a Firestore "in" filter.
+     */
+    private static final int MAX_IN_VALUES = 10;
+
+    /**
+     * Maximum number of documents read by the search fallback; larger categories are only searched in part.
+     */
+    private static final int MAX_FALLBACK_DOCUMENTS = 1000;
+
+    /**
+     * Time during which the pages of a search reuse the category read by the fallback, in milliseconds.
+     */
+    private static final long FALLBACK_TTL_MS = 5 * 60 * 1000;
+
+    private final CollectionReference locationCollection;
+
+    // Category read by the search fallback, shared by the pages of the searches in that category
+    private String fallbackCategoryId;
+    private AsyncResult<List<Location>> fallbackLocations;
+    private long fallbackReadAt;
+
+    /**
+     * Whether reads deliver the documents of the local cache before the server ones.
+     */
+    private final boolean cacheFirst;
+
+    /**
+     * Constructor that points to the "locations" collection of the given Firestore database.
+     *
+     * @param db         The Firestore database.
+     * @param cacheFirst Whether reads deliver the documents of the local cache first, then the server
+     *                   ones as an update if they differ (see {@link FirestoreReads}).
+     */
+    public FirestoreLocationDataSource(FirebaseFirestore db, boolean cacheFirst) {
+        this.locationCollection = db.collection("locations");
+        this.cacheFirst = cacheFirst;
+    }
+
+    /**
+     * Reads a page with a server-side query: the category is matched on "category_id" and the
+     * search keyword against the normalized name prefixes stored in "searchKeywords".
+     * Results are ordered by name and document ID, and the cursor is the name and ID of the last
+     * location of the previous page, so each page only reads as many documents as the page size.
+     * Searches fall back to {@link #getPageFromCategory(LocationQuery)} while some documents have no
+     * "searchKeywords" (see {@link LocationFieldsBackfill}), so no location goes missing from the results.
+     * The fallback is logged, so a collection that was never backfilled shows up in the logs.
+     */
+    @Override
+    public AsyncResult<List<Location>> getPage(LocationQuery locationQuery) {
+        if (locationQuery.getKeyword().isEmpty()) {
+            return getPageFromServerQuery(locationQuery);
+        }
+        return LocationFieldsBackfill.isComplete(locationCollection).then(complete -> complete
+                ? getPageFromServerQuery(locationQuery)
+                : getPageFromCategory(locationQuery));
+    }
+
+    /**
+     * Reads a page with a query that filters, sorts and limits on the server.
+     */
+    private AsyncResult<List<Location>> getPageFromServerQuery(LocationQuery locationQuery) {
+        Query query = locationCollection;
+        if (locationQuery.getCategoryId() != null) {
+            query = query.whereEqualTo("category_id", locationQuery.getCategoryId());
+        }
+        if (!locationQuery.getKeyword().isEmpty()) {
+            query = query.whereArrayContains("searchKeywords", locationQuery.getKeyword());
+        }
+
+        query = query.orderBy("name").orderBy(FieldPath.documentId()).limit(locationQuery.getPageSize());
+        if (locationQuery.getAfterName() != null) {
+            query = query.startAfter(locationQuery.getAfterName(), locationQuery.getAfterId());
+        }
+
+        return FirestoreReads.get("FirestoreLocationDataSource.getPage", query, cacheFirst)
+                .map(FirestoreLocationDataSource::toLocations);
+    }
+
+    /**
+     * Selects the page on the device from the locations of the category (or of the collection).
+     * The category is read once, at most {@link #MAX_FALLBACK_DOCUMENTS} documents, and shared by the
+     * following pages and searches in it for {@link #FALLBACK_TTL_MS}, so a search does not read the
+     * whole category for each page. Only used until the documents are backfilled.
+     */
+    private AsyncResult<List<Location>> getPageFromCategory(LocationQuery locationQuery) {
+        String categoryId = locationQuery.getCategoryId();
+        AsyncResult<List<Location>> locations = fallbackLocations;
+        if (locations == null || locations.isCancelled()
+                || !Objects.equals(fallbackCategoryId, categoryId)
+                || System.currentTimeMillis() - fallbackReadAt > FALLBACK_TTL_MS) {
+            locations = readCategory(categoryId);
+        }
+        return locations.share().map(locationQuery::page);
+    }
+
+    /**
+     * Reads the locations of a category for the search fallback, computing the search fields of the
+     * documents that do not have them yet, and keeps the read for the next pages.
+     *
+     * @return The read, whose locations are not sorted.
+     */
+    private AsyncResult<List<Location>> readCategory(String categoryId) {
+        Query query = locationCollection;
+        if (categoryId != null) {
+            query = query.whereEqualTo("category_id", categoryId);
+        }
+        query = query.limit(MAX_FALLBACK_DOCUMENTS);
+
+        AsyncResult<List<Location>> read = FirestoreReads.get("FirestoreLocationDataSource.getPageFromCategory", query, cacheFirst)
+                .map(snapshot -> {
+                    List<Location> locations = toLocations(snapshot);
+                    int missing = 0;
+                    for (Location location : locations) {
+                        if (location.getSearchKeywords() == null) {
+                            location.updateSearchFields();
+                            missing++;
+                        }
+                    }
+                    Log.w("FirestoreLocationDataSource", "Searching " + snapshot.size() + " documents of category "
+                            + categoryId + " on the device (" + missing + " without search fields); run"
+                            + " LocationsRepository.rebuildSearchFields() to use the indexed queries");
+                    if (snapshot.size() >= MAX_FALLBACK_DOCUMENTS) {
+                        Log.w("FirestoreLocationDataSource", "Only the first " + MAX_FALLBACK_DOCUMENTS
+                                + " documents of category " + categoryId + " are searched");
+                    }
+                    return locations;
+                });
+        fallbackCategoryId = categoryId;
+        fallbackLocations = read;
+        fallbackReadAt = System.currentTimeMillis();
+        // A failed read is not kept: the next page reads the category again
+        read.observe(new FirestoreCallback<List<Location>>() {
+            @Override
+            public void onSuccess(List<Location> result) {}
+
+            @Override
+            public void onFailure(Exception e) {
+                if (fallbackLocations == read) {
+                    fallbackLocations = null;
+                }
+            }
+        });
+        return read;
+    }
+
+    @Override
+    public AsyncResult<Location> getById(String id) {
+        return FirestoreReads.get("FirestoreLocationDataSource.getById", locationCollection.document(id), cacheFirst)
+                .map(FirestoreLocationDataSource::toLocation);
+    }
+
+    /**
+     * Splits the IDs into chunks queried in parallel with a "whereIn" filter on the document ID,
+     * so N locations cost N/10 queries instead of N document reads.
+     */
+    @Override
+    public AsyncResult<List<Location>> getByIds(List<String> ids) {
+        List<AsyncResult<List<Location>>> queries = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IN_VALUES) {
+            List<String> chunk = ids.subList(from, Math.min(from + MAX_IN_VALUES, ids.size()));
+            queries.add(FirestoreReads.get("FirestoreLocationDataSource.getByIds",
+                    locationCollection.whereIn(FieldPath.documentId(), new ArrayList<>(chunk)), cacheFirst)
+                    .map(FirestoreLocationDataSource::toLocations));
+        }
+
+        return AsyncResult.all(queries).map(results -> {
+            List<Location> locations = new ArrayList<>();
+            for (List<Location> chunkLocations : results) {
+                locations.addAll(chunkLocations);
+            }
+            return locations;
+        });
+    }
+
+    /**
+     * Converts the documents of a query result into Location objects,
+     * skipping documents that are missing required fields.
+     *
+     * @param snapshot The query result.
+     * @return The list of valid locations.
+     */
+    static List<Location> toLocations(QuerySnapshot snapshot) {
+        List<Location> locations = new ArrayList<>();
+        for (QueryDocumentSnapshot document : snapshot) {
+            try {
+                Location location = document.toObject(Location.class);
+                location.setId(document.getId());
+                if (location.getCategoryId() == null) {
+                    location.setCategoryId(document.getString("category_id")); // Category is stored as "category_id"
+                }
+
+                if (location.getName() != null && location.getNameEn() != null) {
+                    locations.add(location);
+                } else {
+                    Log.w("LocationsRepository", "Skipping document due to missing required fields: " + document.getId());
+                }
+            } catch (Exception e) {
+                Log.e("LocationsRepository", "Error parsing location document: " + document.getId(), e);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Converts a location document into a Location object.
+     *
+     * @param document The document.
+     * @return The location, or null if the document does not exist.
+     */
+    static Location toLocation(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Location location = document.toObject(Location.class);
+        if (location != null) {
+            location.setId(document.getId()); // Set the Firestore document ID
+            if (location.getCategoryId() == null) {
+                location.setCategoryId(document.getString("category_id"));
+            }
+        }
+        return location;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads Firestore queries and documents in one of two modes:
+ * <ul>
+ *     <li>Default: a single read with the default source (the server, or the local cache when offline).</li>
+ *     <li>Cache first: the local Firestore cache and the server are read in parallel. The cached
+ *     documents are delivered as soon as they are read, and the server ones only if they differ
+ *     (as an update, through onUpdated). The screen can then be drawn without waiting for the network.</li>
+ * </ul>
+ * If the server cannot be reached, the cached documents are kept, as with the default source.
+ */
+final class FirestoreReads {
+
+    private FirestoreReads() {}
+
+    /**
+     * Reads a query.
+     *
+     * @param callSite   Name of the call, for {@link FirestoreMetrics}.
+     * @param query      The query.
+     * @param cacheFirst Whether to deliver the cached documents before the server ones.
+     * @return The query result, possibly delivered twice (cache, then server), or the error.
+     */
+    static AsyncResult<QuerySnapshot> get(String callSite, Query query, boolean cacheFirst) {
+        if (!cacheFirst) {
+            return AsyncResult.fromTask(FirestoreMetrics.track(callSite, query.get()));
+        }
+
+        TwoPhaseRead<QuerySnapshot> read = new TwoPhaseRead<QuerySnapshot>() {
+            @Override
+            boolean isEmpty(QuerySnapshot snapshot) {
+                return snapshot.isEmpty();
+            }
+
+            @Override
+            boolean isSame(QuerySnapshot cached, QuerySnapshot server) {
+                return sameDocuments(cached.getDocuments(), server.getDocuments());
+            }
+        };
+        FirestoreMetrics.track(callSite + " (cache)", query.get(Source.CACHE))
+                .addOnCompleteListener(task -> read.onCacheRead(task.isSuccessful() ? task.getResult() : null));
+        FirestoreMetrics.track(callSite, query.get(Source.SERVER))
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        read.onServerRead(task.getResult());
+                    } else {
+                        read.onServerFailed(callSite, task.getException());
+                    }
+                });
+        return read.result;
+    }
+
+    /**
+     * Reads a document.
+     *
+     * @param callSite   Name of the call, for {@link FirestoreMetrics}.
+     * @param document   The document.
+     * @param cacheFirst Whether to deliver the cached document before the server one.
+     * @return The document, possibly delivered twice (cache, then server), or the error.
+     */
+    static AsyncResult<DocumentSnapshot> get(String callSite, DocumentReference document, boolean cacheFirst) {
+        if (!cacheFirst) {
+            return AsyncResult.fromTask(FirestoreMetrics.track(callSite, document.get()));
+        }
+
+        TwoPhaseRead<DocumentSnapshot> read = new TwoPhaseRead<DocumentSnapshot>() {
+            @Override
+            boolean isEmpty(DocumentSnapshot snapshot) {
+                return !snapshot.exists();
+            }
+
+            @Override
+            boolean isSame(DocumentSnapshot cached, DocumentSnapshot server) {
+                return sameDocument(cached, server);
+            }
+        };
+        // Reading a document that is not cached fails; the server read then answers alone
+        FirestoreMetrics.track(callSite + " (cache)", document.get(Source.CACHE))
+                .addOnCompleteListener(task -> read.onCacheRead(task.isSuccessful() ? task.getResult() : null));
+        FirestoreMetrics.track(callSite, document.get(Source.SERVER))
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        read.onServerRead(task.getResult());
+                    } else {
+                        read.onServerFailed(callSite, task.getException());
+                    }
+                });
+        return read.result;
+    }
+
+    /**
+     * Indicates whether two lists of documents have the same IDs and data, in the same order.
+     * Metadata (e.g. whether they came from the cache) is ignored.
+     */
+    private static boolean sameDocuments(List<DocumentSnapshot> cached, List<DocumentSnapshot> server) {
+        if (cached.size() != server.size()) {
+            return false;
+        }
+        for (int i = 0; i < cached.size(); i++) {
+            if (!sameDocument(cached.get(i), server.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether two snapshots of a document have the same ID and data.
+     */
+    private static boolean sameDocument(DocumentSnapshot cached, DocumentSnapshot server) {
+        return cached.getId().equals(server.getId()) && Objects.equals(cached.getData(), server.getData());
+    }
+
+    /**
+     * State of a cache-first read. Both reads complete on the main thread, in any order.
+     *
+     * @param <S> The type of snapshot.
+     */
+    private abstract static class TwoPhaseRead<S> {
+        final AsyncResult<S> result = new AsyncResult<>();
+
+        private boolean cacheDone = false;
+        private boolean serverDone = false;
+        private S cached; // Cached snapshot, null if the cache had nothing or failed
+        private boolean cachedDelivered = false;
+        private Exception serverError;
+
+        /**
+         * Indicates whether a snapshot holds no documents, in which case it is not delivered from the cache.
+         */
+        abstract boolean isEmpty(S snapshot);
+
+        /**
+         * Indicates whether the server snapshot holds the same documents as the cached one.
+         */
+        abstract boolean isSame(S cached, S server);
+
+        void onCacheRead(S snapshot) {
+            cacheDone = true;
+            cached = snapshot;
+            if (serverDone) {
+                if (serverError != null) {
+                    // Offline: answer from the cache, like the default source does
+                    if (cached != null) {
+                        result.complete(cached);
+                    } else {
+                        result.fail(serverError);
+                    }
+                }
+                return;
+            }
+            if (cached != null && !isEmpty(cached)) {
+                cachedDelivered = true;
+                result.deliver(cached);
+            }
+        }
+
+        void onServerRead(S snapshot) {
+            serverDone = true;
+            if (cachedDelivered && isSame(cached, snapshot)) {
+                result.finish();
+            } else {
+                result.complete(snapshot);
+            }
+        }
+
+        void onServerFailed(String callSite, Exception e) {
+            serverDone = true;
+            serverError = e;
+            if (!cacheDone) {
+                return; // Wait for the cache
+            }
+            if (cachedDelivered) {
+                Log.w("FirestoreReads", callSite + ": could not reach the server, keeping cached documents", e);
+                result.finish();
+            } else if (cached != null) {
+                result.complete(cached);
+            } else {
+                result.fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.pdm2_projeto.repositories;
+
+import com.example.pdm2_projeto.interfaces.UserDataSource;
+import com.example.pdm2_projeto.models.User;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads user profiles from the Firestore "users" collection.
+ */
+public class FirestoreUserDataSource implements UserDataSource {
+
+    /**
+     * Maximum number of values accepted by a Firestore "in" filter.
+     */
+    private static final int MAX_IN_VALUES = 10;
+
+    private final CollectionReference userCollection;
+
+    /**
+     * Whether reads deliver the documents of the local cache before the server ones.
+     */
+    private final boolean cacheFirst;
+
+    /**
+     * Constructor that points to the "users" collection of the given Firestore database.
+     *
+     * @param db         The Firestore database.
+     * @param cacheFirst Whether reads deliver the documents of the local cache first, then the server
+     *                   ones as an update if they differ (see {@link FirestoreReads}).
+     */
+    public FirestoreUserDataSource(FirebaseFirestore db, boolean cacheFirst) {
+        this.userCollection = db.collection("users");
+        this.cacheFirst = cacheFirst;
+    }
+
+    @Override
+    public AsyncResult<User> getUser(String userId) {
+        return FirestoreReads.get("FirestoreUserDataSource.getUser", userCollection.document(userId), cacheFirst)
+                .map(FirestoreUserDataSource::toUser);
+    }
+
+    /**
+     * Splits the IDs into chunks queried in parallel with a "whereIn" filter on the document ID,
+     * so N users cost N/10 queries instead of N document reads.
+     */
+    @Override
+    public AsyncResult<List<User>> getUsersByIds(List<String> userIds) {
+        List<AsyncResult<QuerySnapshot>> queries = new ArrayList<>();
+        for (int start = 0; start < userIds.size(); start += MAX_IN_VALUES) {
+            List<String> chunk = userIds.subList(start, Math.min(start + MAX_IN_VALUES, userIds.size()));
+            queries.add(FirestoreReads.get("FirestoreUserDataSource.getUsersByIds",
+                    userCollection.whereIn(FieldPath.documentId(), new ArrayList<>(chunk)), cacheFirst));
+        }
+
+        return AsyncResult.all(queries).map(results -> {
+            List<User> users = new ArrayList<>();
+            for (QuerySnapshot result : results) {
+                for (QueryDocumentSnapshot document : result) {
+                    User user = document.toObject(User.class);
+                    user.setId(document.getId());
+                    users.add(user);
+                }
+            }
+            return users;
+        });
+    }
+
+    /**
+     * Converts a user document into a User object.
+     *
+     * @param document The document.
+     * @return The user, or null if the document does not exist.
+     */
+    static User toUser(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        User user = document.toObject(User.class);
+        if (user != null) {
+            user.setId(document.getId());
+        }
+        return user;
+    }
+}
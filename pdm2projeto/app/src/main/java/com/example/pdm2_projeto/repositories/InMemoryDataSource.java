@@ -0,0 +1,524 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.pdm2_projeto.interfaces.CommentDataSource;
+import com.example.pdm2_projeto.interfaces.CommentStream;
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.LocationDataSource;
+import com.example.pdm2_projeto.interfaces.UserDataSource;
+import com.example.pdm2_projeto.models.Comment;
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.models.User;
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for Firestore that keeps locations, users and comments in memory, used to exercise the
+ * app with large datasets offline (Robolectric tests, benchmarks, load tests on a device).
+ *
+ * Reads run on the given executor and are delivered on the main thread after a configurable latency,
+ * measured from the start of the read, so slow networks can be simulated without a live project.
+ * Pages are selected with {@link LocationQuery}, which has the same meaning as the Firestore queries.
+ *
+ * {@link #synthetic(int, int, int, long)} generates a reproducible dataset (e.g. 100k locations,
+ * 1M comments and 10k users). Generated comments are not stored: they are created again from the seed
+ * each time the comments of a location are read, so a million of them cost no memory.
+ * Comments can be added and deleted; the comment streams of the location are then updated.
+ * Returned objects are shared with the data source and must not be modified by the caller.
+ */
+public class InMemoryDataSource implements LocationDataSource, UserDataSource, CommentDataSource {
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static final int CATEGORY_COUNT = 8;
+
+    private static final String[] SYLLABLES = {
+            "bel", "tor", "sa", "pa", "lá", "cio", "mon", "te", "ri", "o", "ca", "sé",
+            "al", "fa", "ma", "cas", "te", "lo", "por", "to", "ju", "de", "vi", "la"
+    };
+
+    private static final String[] COMMENTS = {
+            "Lindo lugar!", "Vale muito a pena.", "Muita gente ao fim de semana.",
+            "Great view at sunset.", "Worth the visit.", "Bilhetes caros, mas recomendo."
+    };
+
+    /**
+     * Order of the comments: newest first, then by ID, like the Firestore query.
+     */
+    private static final Comparator<Comment> NEWEST_FIRST = (first, second) -> {
+        int byDate = second.getCreatedAt().compareTo(first.getCreatedAt());
+        return byDate != 0 ? byDate : second.getId().compareTo(first.getId());
+    };
+
+    /**
+     * Time of the most recent generated comment, in seconds; older comments are one hour apart or more.
+     */
+    private static final long LATEST_COMMENT_SECONDS = 1_700_000_000L;
+
+    private final ExecutorService executor;
+    private volatile long latencyMs;
+
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<String, List<Comment>> comments = new ConcurrentHashMap<>();
+    private final Set<String> deletedCommentIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong nextCommentId = new AtomicLong();
+
+    // Comment streams started and not stopped; only used on the main thread
+    private final List<InMemoryCommentStream> streams = new ArrayList<>();
+
+    // Generated comments: the index of each synthetic location, and how to recreate its comments
+    private final Map<String, Integer> syntheticLocationIndexes = new ConcurrentHashMap<>();
+    private final int syntheticLocationCount;
+    private final int syntheticCommentCount;
+    private final int syntheticUserCount;
+    private final long seed;
+
+    /**
+     * Creates an empty data source.
+     *
+     * @param executor  Background executor the reads run on.
+     * @param latencyMs Minimum time between the start of a read and the delivery of its result.
+     */
+    public InMemoryDataSource(ExecutorService executor, long latencyMs) {
+        this(executor, latencyMs, 0, 0, 0, 0);
+    }
+
+    private InMemoryDataSource(ExecutorService executor, long latencyMs,
+                               int syntheticLocationCount, int syntheticCommentCount, int syntheticUserCount, long seed) {
+        this.executor = executor;
+        this.latencyMs = latencyMs;
+        this.syntheticLocationCount = syntheticLocationCount;
+        this.syntheticCommentCount = syntheticCommentCount;
+        this.syntheticUserCount = syntheticUserCount;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a data source filled with a reproducible synthetic dataset.
+     * Locations are named with random Portuguese-like words and spread over 8 categories
+     * ("category-0" to "category-7"); every comment is written by one of the generated users.
+     *
+     * @param locationCount Number of locations (IDs "loc0000000", "loc0000001", ...).
+     * @param commentCount  Number of comments, spread evenly over the locations.
+     * @param userCount     Number of users (IDs "user00000", "user00001", ...).
+     * @param seed          Seed of the generator; the same seed always gives the same dataset.
+     * @return The generator; {@link Generator#withExecutor(ExecutorService, long)} creates the data source.
+     */
+    public static Generator synthetic(int locationCount, int commentCount, int userCount, long seed) {
+        return new Generator(locationCount, commentCount, userCount, seed);
+    }
+
+    /**
+     * Changes the simulated latency of the next reads.
+     *
+     * @param latencyMs Minimum time between the start of a read and the delivery of its result.
+     */
+    public void setLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Adds or replaces a location. Its search fields are computed, as the app does before writing to Firestore.
+     *
+     * @param location The location, with its ID.
+     */
+    public void putLocation(Location location) {
+        location.updateSearchFields();
+        locations.put(location.getId(), location);
+    }
+
+    /**
+     * Adds or replaces a user.
+     *
+     * @param user The user, with its ID.
+     */
+    public void putUser(User user) {
+        users.put(user.getId(), user);
+    }
+
+    /**
+     * Adds a comment to its location, in addition to the generated ones.
+     * A comment without ID gets one ("added0", "added1", ...), and one without date gets the current time.
+     */
+    @Override
+    public AsyncResult<Void> addComment(Comment comment) {
+        if (comment.getId() == null) {
+            comment.setId("added" + nextCommentId.getAndIncrement());
+        }
+        if (comment.getCreatedAt() == null) {
+            comment.setCreatedAt(Timestamp.now());
+        }
+        comments.computeIfAbsent(comment.getLocationId(), id -> new CopyOnWriteArrayList<>()).add(comment);
+        return write();
+    }
+
+    /**
+     * Deletes a comment, added or generated.
+     */
+    @Override
+    public AsyncResult<Void> deleteComment(String commentId) {
+        deletedCommentIds.add(commentId);
+        for (List<Comment> added : comments.values()) {
+            added.removeIf(comment -> commentId.equals(comment.getId()));
+        }
+        return write();
+    }
+
+    /**
+     * Returns the number of locations stored.
+     *
+     * @return The number of locations.
+     */
+    public int getLocationCount() {
+        return locations.size();
+    }
+
+    @Override
+    public AsyncResult<List<Location>> getPage(LocationQuery query) {
+        return read(() -> query.page(locations.values()));
+    }
+
+    @Override
+    public AsyncResult<Location> getById(String id) {
+        return read(() -> locations.get(id));
+    }
+
+    @Override
+    public AsyncResult<List<Location>> getByIds(List<String> ids) {
+        return read(() -> {
+            List<Location> found = new ArrayList<>();
+            for (String id : ids) {
+                Location location = locations.get(id);
+                if (location != null) {
+                    found.add(location);
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public AsyncResult<User> getUser(String userId) {
+        return read(() -> users.get(userId));
+    }
+
+    @Override
+    public AsyncResult<List<User>> getUsersByIds(List<String> userIds) {
+        return read(() -> {
+            List<User> found = new ArrayList<>();
+            for (String userId : userIds) {
+                User user = users.get(userId);
+                if (user != null) {
+                    found.add(user);
+                }
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public AsyncResult<List<Comment>> getCommentsByLocation(String locationId) {
+        return read(() -> commentsOf(locationId));
+    }
+
+    @Override
+    public CommentStream streamCommentsByLocation(String locationId, int pageSize, CommentStream.Listener listener) {
+        return new InMemoryCommentStream(locationId, pageSize, listener);
+    }
+
+    /**
+     * Returns the generated and added comments of a location that were not deleted, latest first.
+     */
+    private List<Comment> commentsOf(String locationId) {
+        List<Comment> locationComments = generatedComments(locationId);
+        List<Comment> added = comments.get(locationId);
+        if (added != null) {
+            locationComments.addAll(added);
+            locationComments.sort(NEWEST_FIRST);
+        }
+        if (!deletedCommentIds.isEmpty()) {
+            locationComments.removeIf(comment -> deletedCommentIds.contains(comment.getId()));
+        }
+        return locationComments;
+    }
+
+    /**
+     * Completes a write after the latency, like a read, then updates the running comment streams.
+     */
+    private AsyncResult<Void> write() {
+        return read(() -> null).map(nothing -> {
+            for (InMemoryCommentStream stream : new ArrayList<>(streams)) {
+                stream.refresh();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a read on the executor and delivers its result on the main thread once the latency has passed.
+     * Cancelling the result cancels the read if it has not started yet.
+     */
+    private <T> AsyncResult<T> read(Callable<T> read) {
+        AsyncResult<T> result = new AsyncResult<>();
+        long deliverAt = SystemClock.uptimeMillis() + latencyMs;
+        Future<?> task = executor.submit(() -> {
+            try {
+                T value = read.call();
+                mainHandler.postAtTime(() -> result.complete(value), deliverAt);
+            } catch (Exception e) {
+                mainHandler.postAtTime(() -> result.fail(e), deliverAt);
+            }
+        });
+        result.onCancel(() -> task.cancel(false));
+        return result;
+    }
+
+    /**
+     * Recreates the generated comments of a location, latest first.
+     *
+     * @return A new list with the comments, empty if the location was not generated.
+     */
+    private List<Comment> generatedComments(String locationId) {
+        Integer index = syntheticLocationIndexes.get(locationId);
+        if (index == null || syntheticCommentCount == 0) {
+            return new ArrayList<>();
+        }
+
+        // Every location gets the same share, the first ones one more until the remainder is used
+        int count = syntheticCommentCount / syntheticLocationCount
+                + (index < syntheticCommentCount % syntheticLocationCount ? 1 : 0);
+        Random random = new Random(seed * 31 + index);
+        List<Comment> generated = new ArrayList<>(count);
+        long createdAt = LATEST_COMMENT_SECONDS - random.nextInt(3600);
+        for (int i = 0; i < count; i++) {
+            Comment comment = new Comment(userId(random.nextInt(syntheticUserCount)), locationId,
+                    COMMENTS[random.nextInt(COMMENTS.length)], new Timestamp(createdAt, 0));
+            comment.setId(locationId + "-c" + i);
+            generated.add(comment);
+            createdAt -= 3600 + random.nextInt(24 * 3600);
+        }
+        return generated;
+    }
+
+    private static String userId(int index) {
+        return String.format(Locale.ROOT, "user%05d", index);
+    }
+
+    /**
+     * Live, paginated list of the comments of a location. Pages are read like the Firestore stream
+     * (after the oldest loaded comment); after every write through the data source, the comments of
+     * the loaded range are read again and delivered, so added comments appear at the top.
+     */
+    private class InMemoryCommentStream implements CommentStream {
+        private final String locationId;
+        private final int pageSize;
+        private final Listener listener;
+
+        // Oldest comment loaded; null before the first page, and once every comment is loaded
+        private Comment oldest;
+        private boolean hasMore = true;
+        private boolean loading = false;
+        private boolean stopped = false;
+
+        InMemoryCommentStream(String locationId, int pageSize, Listener listener) {
+            this.locationId = locationId;
+            this.pageSize = pageSize;
+            this.listener = listener;
+        }
+
+        @Override
+        public void start() {
+            streams.add(this);
+            loadOlder();
+        }
+
+        @Override
+        public void loadOlder() {
+            if (loading || !hasMore || stopped) {
+                return;
+            }
+            loading = true;
+
+            final Comment after = oldest;
+            read(() -> commentsOf(locationId)).observe(new FirestoreCallback<List<Comment>>() {
+                @Override
+                public void onSuccess(List<Comment> all) {
+                    loading = false;
+                    if (stopped) return;
+
+                    int start = after == null ? 0 : countUpTo(all, after);
+                    int end = Math.min(start + pageSize, all.size());
+                    hasMore = end - start == pageSize;
+                    oldest = hasMore ? all.get(end - 1) : null;
+                    listener.onCommentsChanged(loaded(all));
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    loading = false;
+                    if (!stopped) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        @Override
+        public boolean isLoading() {
+            return loading;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+            streams.remove(this);
+        }
+
+        /**
+         * Reads the comments again and delivers those of the loaded range.
+         */
+        void refresh() {
+            if (stopped || (hasMore && oldest == null)) {
+                return; // Nothing loaded yet; the first page will include the change
+            }
+            read(() -> commentsOf(locationId)).observe(new FirestoreCallback<List<Comment>>() {
+                @Override
+                public void onSuccess(List<Comment> all) {
+                    if (!stopped) {
+                        listener.onCommentsChanged(loaded(all));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    if (!stopped) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Returns the comments of the loaded range: all of them once the last page was loaded.
+         */
+        private List<Comment> loaded(List<Comment> all) {
+            return oldest == null ? all : new ArrayList<>(all.subList(0, countUpTo(all, oldest)));
+        }
+
+        /**
+         * Counts the comments that come before the given one in list order, or are the same.
+         */
+        private int countUpTo(List<Comment> all, Comment last) {
+            int count = 0;
+            while (count < all.size() && NEWEST_FIRST.compare(all.get(count), last) <= 0) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Generates the synthetic dataset of {@link #synthetic(int, int, int, long)}.
+     */
+    public static class Generator {
+        private final int locationCount;
+        private final int commentCount;
+        private final int userCount;
+        private final long seed;
+
+        private Generator(int locationCount, int commentCount, int userCount, long seed) {
+            if (commentCount > 0 && (locationCount == 0 || userCount == 0)) {
+                throw new IllegalArgumentException("Comments need at least one location and one user");
+            }
+            this.locationCount = locationCount;
+            this.commentCount = commentCount;
+            this.userCount = userCount;
+            this.seed = seed;
+        }
+
+        /**
+         * Generates the dataset into a new data source. Takes a few seconds for 100k locations;
+         * call it off the main thread.
+         *
+         * @param executor  Background executor the reads run on.
+         * @param latencyMs Minimum time between the start of a read and the delivery of its result.
+         * @return The filled data source.
+         */
+        public InMemoryDataSource withExecutor(ExecutorService executor, long latencyMs) {
+            InMemoryDataSource dataSource = new InMemoryDataSource(executor, latencyMs,
+                    locationCount, commentCount, userCount, seed);
+            Random random = new Random(seed);
+
+            // Names are made of few syllables, so most search prefixes repeat: share one copy of each
+            Map<String, String> keywordPool = new HashMap<>();
+            for (int i = 0; i < locationCount; i++) {
+                String name = word(random) + " " + word(random);
+                String nameEn = word(random) + " " + word(random);
+                Location location = new Location(String.format(Locale.ROOT, "loc%07d", i), name, nameEn,
+                        null, null, null,
+                        37 + random.nextDouble() * 5, -9.5 + random.nextDouble() * 3,
+                        "category-" + random.nextInt(CATEGORY_COUNT), null, "Portugal", "Portugal");
+                location.setUpdatedAt(new Timestamp(LATEST_COMMENT_SECONDS, 0));
+                dataSource.putLocation(location);
+
+                List<String> keywords = location.getSearchKeywords();
+                for (int k = 0; k < keywords.size(); k++) {
+                    String keyword = keywords.get(k);
+                    String pooled = keywordPool.get(keyword);
+                    if (pooled == null) {
+                        keywordPool.put(keyword, keyword);
+                    } else {
+                        keywords.set(k, pooled);
+                    }
+                }
+                dataSource.syntheticLocationIndexes.put(location.getId(), i);
+            }
+
+            for (int i = 0; i < userCount; i++) {
+                String name = word(random) + " " + word(random);
+                User user = new User(userId(i), name, userId(i) + "@example.com", null,
+                        new Timestamp(LATEST_COMMENT_SECONDS - random.nextInt(365 * 24 * 3600), 0));
+                dataSource.putUser(user);
+            }
+            return dataSource;
+        }
+
+        /**
+         * Creates a capitalized word of two to four syllables.
+         */
+        private static String word(Random random) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            return word.toString();
+        }
+    }
+}
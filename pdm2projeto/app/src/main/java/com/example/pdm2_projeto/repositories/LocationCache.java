@@ -0,0 +1,381 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.models.LocationEntity;
+import com.example.pdm2_projeto.models.LocationFts;
+import com.example.pdm2_projeto.roomdb.AppDatabase;
+import com.example.pdm2_projeto.roomdb.Daos.LocationDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Persistent cache of locations stored in Room.
+ * Used by the repositories to serve locations from disk immediately (stale-while-revalidate),
+ * and to keep the full-text search index in sync with every write.
+ * All database work runs on the app's background executor; results are delivered on the main thread.
+ */
+public class LocationCache {
+
+    /**
+     * Time during which a cached location is considered fresh and is not revalidated.
+     */
+    public static final long TTL_MS = 5 * 60 * 1000L;
+
+    /**
+     * Name of the SharedPreferences file where the cache state is stored.
+     */
+    private static final String CACHE_PREFERENCES = "location_cache";
+    private static final String KEY_LAST_FULL_VALIDATION = "last_full_validation";
+
+    /**
+     * Maximum number of rows updated per transaction (keeps the IN (...) parameters below SQLite's limit).
+     */
+    private static final int WRITE_CHUNK_SIZE = 500;
+
+    // Cache counters, shared by every instance
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong staleHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong updates = new AtomicLong();
+
+    private final LocationDao locationDao;
+    private final ExecutorService executor;
+    private final AtomicLong writeVersion = new AtomicLong(); // Incremented after every write, so results derived from the cache can tell they are outdated
+    private final SharedPreferences preferences;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructor that opens the Room database and the cache state storage.
+     *
+     * @param context  Context used to open the database and the preferences.
+     * @param executor Background executor used for all Room operations on locations.
+     */
+    public LocationCache(Context context, ExecutorService executor) {
+        this.locationDao = AppDatabase.getInstance(context).locationDao();
+        this.executor = executor;
+        this.preferences = context.getApplicationContext().getSharedPreferences(CACHE_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the DAO used by this cache, for queries that are not covered here (e.g. searches).
+     *
+     * @return The location DAO.
+     */
+    public LocationDao getDao() {
+        return locationDao;
+    }
+
+    /**
+     * Runs a task on the cache's background executor.
+     *
+     * @param task The task to run.
+     * @return Future that can be used to cancel the task before it runs.
+     */
+    public Future<?> execute(Runnable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Runs a task on the main thread.
+     *
+     * @param task The task to run.
+     */
+    public void postToMain(Runnable task) {
+        mainHandler.post(task);
+    }
+
+    /**
+     * Reads all cached locations, ordered by name.
+     *
+     * @param consumer Receives the cached locations on the main thread (empty if nothing is cached).
+     * @return Future that can be used to cancel the read before it runs.
+     */
+    public Future<?> getAll(Consumer<List<Location>> consumer) {
+        return executor.submit(() -> {
+            List<Location> locations = toLocations(locationDao.getAll());
+            mainHandler.post(() -> consumer.accept(locations));
+        });
+    }
+
+    /**
+     * Reads a page of cached locations ordered by name, starting after the given location.
+     *
+     * @param after    The last location of the previous page, or null for the first page.
+     * @param pageSize The maximum number of locations to return.
+     * @param consumer Receives the cached page and whether all its rows are fresh, on the main thread.
+     * @return Future that can be used to cancel the read before it runs.
+     */
+    public Future<?> getPage(Location after, int pageSize, PageConsumer consumer) {
+        String afterName = after != null && after.getName() != null ? after.getName() : "";
+        String afterId = after != null && after.getId() != null ? after.getId() : "";
+
+        return executor.submit(() -> {
+            List<LocationEntity> entities = locationDao.getPageAfter(afterName, afterId, pageSize);
+            boolean fresh = !entities.isEmpty();
+            for (LocationEntity entity : entities) {
+                fresh &= isFresh(entity.getCachedAt());
+            }
+            List<Location> locations = toLocations(entities);
+            boolean usable = locations.size() == pageSize || isComplete();
+            boolean allFresh = fresh;
+            mainHandler.post(() -> consumer.accept(usable ? locations : new ArrayList<>(), allFresh));
+        });
+    }
+
+    /**
+     * Reads the cached locations between two latitudes, ordered by latitude.
+     *
+     * @param south    The minimum latitude.
+     * @param north    The maximum latitude.
+     * @param consumer Receives the cached locations on the main thread.
+     * @return Future that can be used to cancel the read before it runs.
+     */
+    public Future<?> getInLatitudeRange(double south, double north, Consumer<List<Location>> consumer) {
+        return executor.submit(() -> {
+            List<Location> locations = toLocations(locationDao.getInLatitudeRange(south, north));
+            mainHandler.post(() -> consumer.accept(locations));
+        });
+    }
+
+    /**
+     * Reads a single cached location.
+     *
+     * @param id       The ID of the location.
+     * @param consumer Receives the cached location (or null) and whether it is fresh, on the main thread.
+     * @return Future that can be used to cancel the read before it runs.
+     */
+    public Future<?> getById(String id, SingleConsumer consumer) {
+        return executor.submit(() -> {
+            LocationEntity entity = locationDao.getById(id);
+            Location location = entity != null ? entity.toLocation() : null;
+            boolean fresh = entity != null && isFresh(entity.getCachedAt());
+            mainHandler.post(() -> consumer.accept(location, fresh));
+        });
+    }
+
+    /**
+     * Stores (inserts or updates) the given locations and their search entries.
+     *
+     * @param locations The locations retrieved from Firestore.
+     */
+    public void put(List<Location> locations) {
+        executor.execute(() -> putNow(locations));
+    }
+
+    /**
+     * Stores the given locations on the calling thread. Must be called from the cache thread.
+     *
+     * @param locations The locations retrieved from Firestore.
+     */
+    void putNow(List<Location> locations) {
+        for (int start = 0; start < locations.size(); start += WRITE_CHUNK_SIZE) {
+            List<Location> chunk = locations.subList(start, Math.min(start + WRITE_CHUNK_SIZE, locations.size()));
+            locationDao.upsertWithSearchEntries(toEntities(chunk), toSearchEntries(chunk));
+        }
+        writeVersion.incrementAndGet();
+    }
+
+    /**
+     * Replaces the whole cache with the complete list of locations and marks it as fully validated.
+     *
+     * @param locations Every location of the Firestore collection.
+     */
+    public void replaceAll(List<Location> locations) {
+        executor.execute(() -> replaceAllNow(locations));
+    }
+
+    /**
+     * Replaces the whole cache on the calling thread. Must be called from the cache thread.
+     *
+     * @param locations Every location of the Firestore collection.
+     */
+    void replaceAllNow(List<Location> locations) {
+        locationDao.replaceAll(toEntities(locations), toSearchEntries(locations));
+        writeVersion.incrementAndGet();
+        preferences.edit().putLong(KEY_LAST_FULL_VALIDATION, System.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Removes a location and its search entry from the cache.
+     *
+     * @param id The ID of the location to remove.
+     */
+    public void remove(String id) {
+        executor.execute(() -> {
+            locationDao.deleteWithSearchEntry(id);
+            writeVersion.incrementAndGet();
+        });
+    }
+
+    /**
+     * Returns a number that changes every time locations are written or removed, so results
+     * computed from the cache (e.g. a ranked search) can tell whether they are outdated.
+     *
+     * @return The current write version.
+     */
+    public long getWriteVersion() {
+        return writeVersion.get();
+    }
+
+    /**
+     * Indicates whether the cache has held the complete collection at some point.
+     *
+     * @return True if a full download has been stored.
+     */
+    public boolean isComplete() {
+        return preferences.getLong(KEY_LAST_FULL_VALIDATION, 0) > 0;
+    }
+
+    /**
+     * Indicates whether the whole collection was validated against Firestore within the TTL.
+     *
+     * @return True if the complete cache is fresh.
+     */
+    public boolean isCollectionFresh() {
+        return isFresh(preferences.getLong(KEY_LAST_FULL_VALIDATION, 0));
+    }
+
+    /**
+     * Compares a cached list with a freshly downloaded one.
+     * Locations are compared by ID and update timestamp, or by content when a timestamp is missing.
+     *
+     * @param cached The list previously served from the cache.
+     * @param fresh  The list retrieved from Firestore.
+     * @return True if the fresh list differs from the cached one.
+     */
+    public static boolean hasChanged(List<Location> cached, List<Location> fresh) {
+        if (cached.size() != fresh.size()) {
+            return true;
+        }
+        for (int i = 0; i < cached.size(); i++) {
+            if (hasChanged(cached.get(i), fresh.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares a cached location with a freshly downloaded one.
+     *
+     * @param cached The location previously served from the cache.
+     * @param fresh  The location retrieved from Firestore.
+     * @return True if the fresh location differs from the cached one.
+     */
+    public static boolean hasChanged(Location cached, Location fresh) {
+        return !cached.hasSameContent(fresh);
+    }
+
+    /**
+     * Records a request served from a fresh cache entry.
+     */
+    public static void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Records a request served from a stale cache entry (revalidated in the background).
+     */
+    public static void recordStaleHit() {
+        staleHits.incrementAndGet();
+    }
+
+    /**
+     * Records a request that could not be served from the cache.
+     */
+    public static void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Records a revalidation that found changed data and emitted a second update.
+     */
+    public static void recordUpdate() {
+        updates.incrementAndGet();
+    }
+
+    /**
+     * Returns a summary of the cache counters, e.g. for logging.
+     *
+     * @return The counters formatted as text.
+     */
+    public static String getStats() {
+        return "hits=" + hits.get() + ", staleHits=" + staleHits.get()
+                + ", misses=" + misses.get() + ", updates=" + updates.get();
+    }
+
+    /**
+     * Logs the current cache counters.
+     */
+    public static void logStats() {
+        Log.d("LocationCache", getStats());
+    }
+
+    /**
+     * Indicates whether a row cached at the given time is still within the TTL.
+     */
+    private static boolean isFresh(long cachedAt) {
+        return cachedAt > 0 && System.currentTimeMillis() - cachedAt < TTL_MS;
+    }
+
+    /**
+     * Converts Room entities into locations.
+     */
+    private static List<Location> toLocations(List<LocationEntity> entities) {
+        List<Location> locations = new ArrayList<>(entities.size());
+        for (LocationEntity entity : entities) {
+            locations.add(entity.toLocation());
+        }
+        return locations;
+    }
+
+    /**
+     * Converts locations into Room entities, stamped with the current time.
+     */
+    private static List<LocationEntity> toEntities(List<Location> locations) {
+        long now = System.currentTimeMillis();
+        List<LocationEntity> entities = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            LocationEntity entity = LocationEntity.fromLocation(location);
+            entity.setCachedAt(now);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * Converts locations into full-text search entries.
+     */
+    private static List<LocationFts> toSearchEntries(List<Location> locations) {
+        List<LocationFts> entries = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            entries.add(LocationFts.fromLocation(location));
+        }
+        return entries;
+    }
+
+    /**
+     * Receives a page of cached locations.
+     */
+    public interface PageConsumer {
+        void accept(List<Location> locations, boolean fresh);
+    }
+
+    /**
+     * Receives a single cached location.
+     */
+    public interface SingleConsumer {
+        void accept(Location location, boolean fresh);
+    }
+}
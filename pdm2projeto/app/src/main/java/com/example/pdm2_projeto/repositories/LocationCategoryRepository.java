@@ -1,51 +1,219 @@
 package com.example.pdm2_projeto.repositories;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.example.pdm2_projeto.models.LocationCategory;
+import com.example.pdm2_projeto.models.LocationCategoryEntity;
+import com.example.pdm2_projeto.roomdb.AppDatabase;
+import com.example.pdm2_projeto.roomdb.Daos.LocationCategoryDao;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
 import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Repository class for managing location categories in Firestore.
  * This class allows fetching location categories stored in Firestore.
+ * Categories are kept in memory (shared by every instance) and, when created with a Context,
+ * in Room, so they can be shown immediately. Copies older than {@link #TTL_MS} are
+ * revalidated in the background (stale-while-revalidate).
+ * Concurrent requests wait for a single load; cancelled requests stop waiting.
+ * Only used on the main thread, where Firestore delivers its results.
  */
 public class LocationCategoryRepository {
 
+    /**
+     * Time during which the cached categories are considered fresh and are not revalidated.
+     */
+    public static final long TTL_MS = 6 * 60 * 60 * 1000L;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Categories shared by every instance, null until loaded
+    private static List<LocationCategory> cachedCategories;
+    private static final Map<String, LocationCategory> categoriesById = new HashMap<>();
+    private static long cachedAt;
+
+    // Requests waiting for the load in progress: the first ones have no categories yet,
+    // the others already received a stale copy and only want to know if it changed
+    private static boolean loading = false;
+    private static final List<AsyncResult<List<LocationCategory>>> waitingForCategories = new ArrayList<>();
+    private static final List<AsyncResult<List<LocationCategory>>> waitingForUpdate = new ArrayList<>();
+
     /**
      * Reference to the Firestore collection where location categories are stored.
      */
     private final CollectionReference categoryCollection;
 
     /**
-     * Callback interface for retrieving location categories.
-     * Provides success and failure methods for handling Firestore operations.
+     * Local copy of the categories.
      */
-    public interface CategoryCallback {
-        void onSuccess(List<LocationCategory> categories);
-        void onFailure(Exception e);
-    }
+    private final LocationCategoryDao categoryDao;
+    private final ExecutorService executor;
 
     /**
-     * Constructor that initializes the Firestore database and sets the reference to the "location_category" collection.
+     * Constructor that reads the "location_category" collection of the given Firestore database
+     * and caches the categories in the local database.
+     *
+     * @param db       The Firestore database.
+     * @param context  Context used to open the local database.
+     * @param executor Background executor used for the Room operations on categories.
      */
-    public LocationCategoryRepository() {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
+    public LocationCategoryRepository(FirebaseFirestore db, Context context, ExecutorService executor) {
         categoryCollection = db.collection("location_category");
+        categoryDao = AppDatabase.getInstance(context).locationCategoryDao();
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the categories in the background so later calls are answered from memory.
+     * Called when the app starts.
+     */
+    public void prefetch() {
+        if (cachedCategories == null) {
+            load();
+        } else if (isStale()) {
+            revalidate();
+        }
     }
 
     /**
-     * Fetches all location categories from Firestore.
+     * Fetches all location categories, from the cache if possible.
+     * If the cached categories are outdated, they are delivered first and
+     * delivered again (onUpdated) if Firestore returns different ones.
      *
-     * @param callback Callback to handle the retrieved list of categories or failure.
+     * @return The categories, or the error.
+     */
+    public AsyncResult<List<LocationCategory>> getCategories() {
+        AsyncResult<List<LocationCategory>> result = new AsyncResult<>();
+        if (cachedCategories == null) {
+            waitFor(waitingForCategories, result);
+            load();
+            return result;
+        }
+
+        if (!isStale()) {
+            result.complete(new ArrayList<>(cachedCategories));
+            return result;
+        }
+        result.deliver(new ArrayList<>(cachedCategories));
+        waitFor(waitingForUpdate, result);
+        revalidate();
+        return result;
+    }
+
+    /**
+     * Adds a request to a waiting list, from which it is removed if it is cancelled.
+     */
+    private static void waitFor(List<AsyncResult<List<LocationCategory>>> waiting,
+                                AsyncResult<List<LocationCategory>> result) {
+        waiting.add(result);
+        result.onCancel(() -> waiting.remove(result));
+    }
+
+    /**
+     * Returns a cached category without going to the network.
+     *
+     * @param categoryId The ID of the category.
+     * @return The category, or null if the categories are not loaded yet or the ID is unknown.
+     */
+    public LocationCategory getCachedCategory(String categoryId) {
+        return categoryId != null ? categoriesById.get(categoryId) : null;
+    }
+
+    /**
+     * Returns the name of a cached category, so lists can show it without reading the category.
+     *
+     * @param categoryId The ID of the category.
+     * @param english    Whether to return the English name.
+     * @return The name of the category, or null if it is not cached.
+     */
+    public String getCategoryName(String categoryId, boolean english) {
+        LocationCategory category = getCachedCategory(categoryId);
+        if (category == null) {
+            return null;
+        }
+        return english ? category.getDescriptionEn() : category.getDescription();
+    }
+
+    /**
+     * Reads the categories from the local database, or from Firestore if none are stored.
+     */
+    private void load() {
+        if (loading) return;
+        loading = true;
+
+        executor.execute(() -> {
+            List<LocationCategoryEntity> entities = categoryDao.getAll();
+            mainHandler.post(() -> {
+                if (entities.isEmpty()) {
+                    fetchCategories();
+                    return;
+                }
+
+                List<LocationCategory> categories = new ArrayList<>();
+                long oldest = Long.MAX_VALUE;
+                for (LocationCategoryEntity entity : entities) {
+                    categories.add(entity.toCategory());
+                    oldest = Math.min(oldest, entity.getCachedAt());
+                }
+                setCachedCategories(categories, oldest);
+
+                // Deliver the stored copy; the requests are told again if it changed
+                List<AsyncResult<List<LocationCategory>>> requests = new ArrayList<>(waitingForCategories);
+                waitingForCategories.clear();
+                boolean stale = isStale();
+                for (AsyncResult<List<LocationCategory>> request : requests) {
+                    request.deliver(new ArrayList<>(categories));
+                    if (stale) {
+                        waitFor(waitingForUpdate, request);
+                    } else {
+                        request.finish();
+                    }
+                }
+
+                if (stale) {
+                    fetchCategories();
+                } else {
+                    loading = false;
+                }
+            });
+        });
+    }
+
+    /**
+     * Fetches the categories from Firestore in the background, unless a load is already in progress.
+     */
+    private void revalidate() {
+        if (loading) return;
+        loading = true;
+        fetchCategories();
+    }
+
+    /**
+     * Fetches all location categories from Firestore, stores them and completes the waiting requests.
      */
-    public void getCategories(CategoryCallback callback) {
-        categoryCollection.get()
+    private void fetchCategories() {
+        FirestoreMetrics.track("LocationCategoryRepository.getCategories", categoryCollection.get())
                 .addOnCompleteListener(task -> {
+                    loading = false;
+                    List<AsyncResult<List<LocationCategory>>> forCategories = new ArrayList<>(waitingForCategories);
+                    List<AsyncResult<List<LocationCategory>>> forUpdate = new ArrayList<>(waitingForUpdate);
+                    waitingForCategories.clear();
+                    waitingForUpdate.clear();
+
                     if (task.isSuccessful() && task.getResult() != null) {
                         List<LocationCategory> categories = new ArrayList<>();
 
@@ -53,6 +221,9 @@ public class LocationCategoryRepository {
                         for (QueryDocumentSnapshot document : task.getResult()) {
                             try {
                                 LocationCategory locationCategory = document.toObject(LocationCategory.class);
+                                if (locationCategory.getId() == null) {
+                                    locationCategory.setId(document.getId());
+                                }
 
                                 // Only add the category if it contains a valid description
                                 if (locationCategory.getDescription() != null) {
@@ -65,14 +236,83 @@ public class LocationCategoryRepository {
                             }
                         }
 
+                        boolean changed = hasChanged(cachedCategories, categories);
+                        long now = System.currentTimeMillis();
+                        setCachedCategories(categories, now);
+                        store(categories, now);
+
                         // Return the successfully retrieved categories
-                        callback.onSuccess(categories);
+                        for (AsyncResult<List<LocationCategory>> request : forCategories) {
+                            request.complete(new ArrayList<>(categories));
+                        }
+                        for (AsyncResult<List<LocationCategory>> request : forUpdate) {
+                            if (changed) {
+                                request.complete(new ArrayList<>(categories));
+                            } else {
+                                request.finish();
+                            }
+                        }
                     } else {
                         Exception e = task.getException();
                         Log.e("LocationCategoryRepo", "Error fetching categories from Firestore", e);
-                        callback.onFailure(e);
+                        for (AsyncResult<List<LocationCategory>> request : forCategories) {
+                            request.fail(e);
+                        }
+                        for (AsyncResult<List<LocationCategory>> request : forUpdate) {
+                            request.fail(e); // Keeps the stale copy already delivered
+                        }
                     }
                 });
     }
-}
 
+    /**
+     * Replaces the categories kept in memory.
+     */
+    private static void setCachedCategories(List<LocationCategory> categories, long time) {
+        cachedCategories = Collections.unmodifiableList(new ArrayList<>(categories));
+        cachedAt = time;
+        categoriesById.clear();
+        for (LocationCategory category : categories) {
+            categoriesById.put(category.getId(), category);
+        }
+    }
+
+    /**
+     * Replaces the categories stored in the local database.
+     */
+    private void store(List<LocationCategory> categories, long time) {
+        List<LocationCategoryEntity> entities = new ArrayList<>();
+        for (LocationCategory category : categories) {
+            if (category.getId() != null) {
+                entities.add(LocationCategoryEntity.fromCategory(category, time));
+            }
+        }
+        executor.execute(() -> categoryDao.replaceAll(entities));
+    }
+
+    /**
+     * Indicates whether the categories in memory are older than the TTL.
+     */
+    private static boolean isStale() {
+        return System.currentTimeMillis() - cachedAt > TTL_MS;
+    }
+
+    /**
+     * Compares the cached categories with the ones fetched from Firestore.
+     */
+    private static boolean hasChanged(List<LocationCategory> cached, List<LocationCategory> fresh) {
+        if (cached == null || cached.size() != fresh.size()) {
+            return true;
+        }
+        for (int i = 0; i < fresh.size(); i++) {
+            LocationCategory a = cached.get(i);
+            LocationCategory b = fresh.get(i);
+            if (!Objects.equals(a.getId(), b.getId())
+                    || !Objects.equals(a.getDescription(), b.getDescription())
+                    || !Objects.equals(a.getDescriptionEn(), b.getDescriptionEn())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
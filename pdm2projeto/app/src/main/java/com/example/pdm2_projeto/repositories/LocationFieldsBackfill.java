@@ -0,0 +1,94 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tells whether every location document has the fields computed by the app since the search and map
+ * changes ("searchName", "searchKeywords" and "geohash"). Documents created before them only get these
+ * fields from {@link LocationsRepository#rebuildSearchFields()}; until it has run, the reads that rely on
+ * them (keyword search, area queries) use slower queries that also work on the old documents.
+ *
+ * The state is checked with three count queries (all documents, documents with a search name, documents
+ * with a geohash), which cost one read per thousand documents. Once every document has the fields, the check
+ * is not repeated; while some lack them, it is repeated every {@link #RECHECK_INTERVAL_MS}, so the slower
+ * queries stop as soon as the backfill was run (from this device or another one).
+ * If the check fails (e.g. offline), the old documents are assumed to be there and checked again next time.
+ * Only used on the main thread.
+ */
+final class LocationFieldsBackfill {
+
+    /**
+     * Time after which a check that found documents without the fields is made again, in milliseconds.
+     */
+    private static final long RECHECK_INTERVAL_MS = 10 * 60 * 1000;
+
+    private static AsyncResult<Boolean> check; // Check in progress or done, null if not started or failed
+    private static long recheckAt = Long.MAX_VALUE; // When to check again, only set while fields are missing
+
+    private LocationFieldsBackfill() {}
+
+    /**
+     * Indicates whether all location documents have their search fields and geohash.
+     *
+     * @param locations The "locations" collection.
+     * @return True if the fast queries can be used; false if some documents lack the fields,
+     *         or if the check could not be made.
+     */
+    static AsyncResult<Boolean> isComplete(CollectionReference locations) {
+        // A check cancelled by all of its readers (e.g. a search replaced while typing) is started again
+        if (check == null || check.isCancelled() || System.currentTimeMillis() >= recheckAt) {
+            AsyncResult<Boolean> started = new AsyncResult<>();
+            check = started;
+            recheckAt = Long.MAX_VALUE;
+            List<Task<AggregateQuerySnapshot>> counts = Arrays.asList(
+                    count(locations.count().get(AggregateSource.SERVER)),
+                    count(locations.whereGreaterThanOrEqualTo("searchName", "").count().get(AggregateSource.SERVER)),
+                    count(locations.whereGreaterThanOrEqualTo("geohash", "").count().get(AggregateSource.SERVER)));
+
+            Tasks.whenAllComplete(counts).addOnCompleteListener(task -> {
+                for (Task<AggregateQuerySnapshot> count : counts) {
+                    if (!count.isSuccessful()) {
+                        Log.w("LocationFieldsBackfill", "Could not count the location documents", count.getException());
+                        check = null; // Try again on the next read
+                        started.complete(false);
+                        return;
+                    }
+                }
+                long total = counts.get(0).getResult().getCount();
+                long withSearchName = counts.get(1).getResult().getCount();
+                long withGeohash = counts.get(2).getResult().getCount();
+                if (withSearchName < total || withGeohash < total) {
+                    recheckAt = System.currentTimeMillis() + RECHECK_INTERVAL_MS;
+                    Log.w("LocationFieldsBackfill", (total - Math.min(withSearchName, withGeohash))
+                            + " location documents lack their search fields or geohash; using the slower queries"
+                            + " until LocationsRepository.rebuildSearchFields() is run");
+                }
+                started.complete(withSearchName >= total && withGeohash >= total);
+            });
+        }
+        return check.share();
+    }
+
+    /**
+     * Records that the backfill has just written the fields of every document.
+     */
+    static void markComplete() {
+        check = AsyncResult.success(true);
+        recheckAt = Long.MAX_VALUE;
+    }
+
+    private static Task<AggregateQuerySnapshot> count(Task<AggregateQuerySnapshot> task) {
+        return FirestoreMetrics.track("LocationFieldsBackfill.count", task);
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.models.LocationEntity;
+import com.example.pdm2_projeto.models.LocationSearchResult;
+import com.example.pdm2_projeto.query.TextNormalizer;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.PagingSession;
+import com.google.firebase.Timestamp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Repository class for searching locations on the device.
+ * Keeps a local copy of the Firestore "locations" collection in Room, with a full-text
+ * search index, and synchronizes it incrementally using the "updatedAt" field of each location.
+ */
+public class LocationSearchRepository {
+
+    /**
+     * Name of the SharedPreferences file where the synchronization state is stored.
+     */
+    private static final String SYNC_PREFERENCES = "location_sync";
+    private static final String KEY_LAST_UPDATE = "last_update"; // Milliseconds, written by older versions
+    private static final String KEY_LAST_UPDATE_SECONDS = "last_update_seconds";
+    private static final String KEY_LAST_UPDATE_NANOS = "last_update_nanos";
+    private static final String KEY_LAST_FULL_SYNC = "last_full_sync";
+
+    /**
+     * Interval after which the whole collection is downloaded again,
+     * so that locations deleted on the server are also removed locally.
+     */
+    private static final long FULL_SYNC_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Ranking weight of each column of the full-text index, in table order:
+     * locationId, name, nameEn, description, descriptionEn, country, countryEn.
+     */
+    private static final double[] COLUMN_WEIGHTS = {0, 10, 10, 1, 1, 3, 3};
+
+    /**
+     * Number of recent searches whose pagination sessions are kept, and how long their pages are reused.
+     */
+    private static final int MAX_SESSIONS = 16;
+    private static final long SESSION_TTL_MS = 60 * 1000L;
+
+    private final LocationCache cache;
+    private final LocationsRepository locationsRepository;
+    private final SharedPreferences preferences;
+    private final PagingSession.Cache<Location> sessions = new PagingSession.Cache<>(MAX_SESSIONS, SESSION_TTL_MS);
+
+    /**
+     * Constructor that initializes the local cache, the Firestore repository and the sync state storage.
+     *
+     * @param context             Context used to open the preferences.
+     * @param cache               The local cache of locations, which holds the search index.
+     * @param locationsRepository Repository used to download the locations.
+     */
+    public LocationSearchRepository(Context context, LocationCache cache, LocationsRepository locationsRepository) {
+        this.cache = cache;
+        this.locationsRepository = locationsRepository;
+        this.preferences = context.getApplicationContext().getSharedPreferences(SYNC_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Indicates whether the local index has been fully synchronized at least once
+     * and can be used to answer searches.
+     *
+     * @return True if the local index is available.
+     */
+    public boolean isIndexAvailable() {
+        return preferences.getLong(KEY_LAST_FULL_SYNC, 0) > 0;
+    }
+
+    /**
+     * Synchronizes the local copy with Firestore.
+     * Only downloads locations updated since the last sync, except when no full sync has
+     * been made in the last 24 hours, in which case the whole collection is reloaded.
+     * Cancelling the result before the download finishes drops it; once downloaded,
+     * the locations are always stored so the download is not wasted.
+     *
+     * @return The result of the synchronization.
+     */
+    public AsyncResult<Void> sync() {
+        AsyncResult<Void> result = new AsyncResult<>();
+        long lastFullSync = preferences.getLong(KEY_LAST_FULL_SYNC, 0);
+        Timestamp lastUpdate = readLastUpdate();
+
+        if (System.currentTimeMillis() - lastFullSync > FULL_SYNC_INTERVAL_MS) {
+            AsyncResult<List<Location>> download = locationsRepository.getAllLocationsForSync();
+            result.onCancel(download::cancel);
+            download.observe(new FirestoreCallback<List<Location>>() {
+                @Override
+                public void onSuccess(List<Location> locations) {
+                    cache.execute(() -> {
+                        cache.replaceAllNow(locations);
+                        SharedPreferences.Editor editor = preferences.edit()
+                                .putLong(KEY_LAST_FULL_SYNC, System.currentTimeMillis());
+                        writeLastUpdate(editor, latestUpdate(locations, new Timestamp(0, 0)));
+                        editor.apply();
+                        cache.postToMain(() -> result.complete(null));
+                    });
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    Log.e("LocationSearchRepo", "Error downloading locations for the search index", e);
+                    result.fail(e);
+                }
+            });
+        } else {
+            // The full timestamp is kept, so the location written last is not downloaded again
+            AsyncResult<List<Location>> download = locationsRepository.getLocationsUpdatedAfter(lastUpdate);
+            result.onCancel(download::cancel);
+            download.observe(new FirestoreCallback<List<Location>>() {
+                @Override
+                public void onSuccess(List<Location> locations) {
+                    if (locations.isEmpty()) {
+                        result.complete(null);
+                        return;
+                    }
+                    cache.execute(() -> {
+                        cache.putNow(locations);
+                        SharedPreferences.Editor editor = preferences.edit();
+                        writeLastUpdate(editor, latestUpdate(locations, lastUpdate));
+                        editor.apply();
+                        cache.postToMain(() -> result.complete(null));
+                    });
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    Log.e("LocationSearchRepo", "Error downloading updated locations", e);
+                    result.fail(e);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Opens the pagination session of a search, ranked by relevance. A search opened again within
+     * a minute resumes its session, with the pages already read.
+     * The matches are ranked once per session; each page then only reads its own locations.
+     *
+     * @param searchQuery The text typed by the user.
+     * @param categoryId  The category to filter by, or null for all categories.
+     * @return The session.
+     */
+    public PagingSession<Location> openSession(String searchQuery, String categoryId) {
+        String match = toMatchExpression(searchQuery);
+        String key = "rank|" + categoryId + "|" + match;
+        return sessions.open(key, () -> {
+            RankedSearch ranked = new RankedSearch(match, categoryId);
+            return (after, offset, pageSize) -> ranked.page(offset, pageSize);
+        }, Location::getId);
+    }
+
+    /**
+     * Returns the most recent "updatedAt" among the given locations and the current one.
+     */
+    private static Timestamp latestUpdate(List<Location> locations, Timestamp current) {
+        Timestamp latest = current;
+        for (Location location : locations) {
+            if (location.getUpdatedAt() != null && location.getUpdatedAt().compareTo(latest) > 0) {
+                latest = location.getUpdatedAt();
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Reads the "updatedAt" of the location written last at the previous sync, with its full precision.
+     * The milliseconds stored by older versions are used until the next sync replaces them.
+     */
+    private Timestamp readLastUpdate() {
+        if (preferences.contains(KEY_LAST_UPDATE_SECONDS)) {
+            return new Timestamp(preferences.getLong(KEY_LAST_UPDATE_SECONDS, 0),
+                    preferences.getInt(KEY_LAST_UPDATE_NANOS, 0));
+        }
+        return new Timestamp(new Date(preferences.getLong(KEY_LAST_UPDATE, 0)));
+    }
+
+    /**
+     * Stores the "updatedAt" of the location written last, with its seconds and nanoseconds.
+     */
+    private static void writeLastUpdate(SharedPreferences.Editor editor, Timestamp lastUpdate) {
+        editor.putLong(KEY_LAST_UPDATE_SECONDS, lastUpdate.getSeconds())
+                .putInt(KEY_LAST_UPDATE_NANOS, lastUpdate.getNanoseconds())
+                .remove(KEY_LAST_UPDATE);
+    }
+
+    /**
+     * Converts a user query into an FTS4 match expression where every word is a prefix term.
+     * For example, "Torre Belém" becomes "torre* belem*".
+     */
+    private static String toMatchExpression(String searchQuery) {
+        String normalized = TextNormalizer.normalize(searchQuery);
+        if (normalized.isEmpty()) {
+            return "";
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : normalized.split(" ")) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.toString();
+    }
+
+    /**
+     * Computes a relevance score from the output of matchinfo(..., 'pcx').
+     * Each phrase hit in a column adds the column weight, divided by how common
+     * the phrase is in that column across all rows, so rare and name matches rank first.
+     */
+    private static double rank(byte[] matchInfo) {
+        if (matchInfo == null) {
+            return 0;
+        }
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount && column < COLUMN_WEIGHTS.length; column++) {
+                int base = 2 + 3 * (phrase * columnCount + column);
+                int hitsInRow = info.get(base);
+                int hitsInAllRows = info.get(base + 1);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    score += COLUMN_WEIGHTS[column] * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Matches of one search, ranked once and read page by page.
+     * The ranking only reads the ID, name and match information of each match; a page then reads
+     * its own locations by ID, so its cost depends on the page size and not on the number of matches.
+     * The matches are ranked again if the local copy was written since (e.g. after a sync).
+     */
+    private class RankedSearch {
+        private final String match;
+        private final String categoryId;
+
+        // Ranked IDs of the matches and the write version of the cache they were computed from
+        private List<String> rankedIds;
+        private long rankedVersion;
+
+        RankedSearch(String match, String categoryId) {
+            this.match = match;
+            this.categoryId = categoryId;
+        }
+
+        /**
+         * Reads a page of the ranked matches.
+         *
+         * @param offset Number of ranked results to skip.
+         * @param limit  Maximum number of results to return.
+         * @return The locations of the page, delivered on the main thread.
+         */
+        AsyncResult<List<Location>> page(int offset, int limit) {
+            if (match.isEmpty()) {
+                return AsyncResult.success(new ArrayList<>());
+            }
+
+            AsyncResult<List<Location>> result = new AsyncResult<>();
+            Future<?> search = cache.execute(() -> {
+                try {
+                    List<String> ids = rankedIds();
+                    List<String> pageIds = ids.subList(Math.min(offset, ids.size()), Math.min(offset + limit, ids.size()));
+                    List<Location> page = readInOrder(pageIds);
+                    cache.postToMain(() -> result.complete(page));
+                } catch (Exception e) {
+                    Log.e("LocationSearchRepo", "Error searching local index", e);
+                    cache.postToMain(() -> result.fail(e));
+                }
+            });
+            result.onCancel(() -> search.cancel(false));
+            return result;
+        }
+
+        /**
+         * Returns the ranked IDs of the matches, ranking them if the cache changed since the last time.
+         * Runs on the cache threads; pages read in parallel wait for a single ranking.
+         */
+        private synchronized List<String> rankedIds() {
+            long version = cache.getWriteVersion();
+            if (rankedIds == null || rankedVersion != version) {
+                List<LocationSearchResult> results = cache.getDao().search(match, categoryId);
+                List<ScoredLocation> scored = new ArrayList<>(results.size());
+                for (LocationSearchResult result : results) {
+                    scored.add(new ScoredLocation(result.locationId, result.name, rank(result.matchInfo)));
+                }
+                Collections.sort(scored);
+
+                List<String> ids = new ArrayList<>(scored.size());
+                for (ScoredLocation location : scored) {
+                    ids.add(location.id);
+                }
+                rankedIds = ids;
+                rankedVersion = version;
+            }
+            return rankedIds;
+        }
+
+        /**
+         * Reads the locations with the given IDs, in the order of the IDs.
+         * Locations removed from the cache since the ranking are skipped.
+         */
+        private List<Location> readInOrder(List<String> ids) {
+            if (ids.isEmpty()) {
+                return new ArrayList<>();
+            }
+            Map<String, LocationEntity> byId = new HashMap<>();
+            for (LocationEntity entity : cache.getDao().getByIds(ids)) {
+                byId.put(entity.getId(), entity);
+            }
+            List<Location> locations = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                LocationEntity entity = byId.get(id);
+                if (entity != null) {
+                    locations.add(entity.toLocation());
+                }
+            }
+            return locations;
+        }
+    }
+
+    /**
+     * Matched location ID paired with its relevance score, ordered by descending score and then by name.
+     */
+    private static class ScoredLocation implements Comparable<ScoredLocation> {
+        final String id;
+        final String name;
+        final double score;
+
+        ScoredLocation(String id, String name, double score) {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredLocation other) {
+            int byScore = Double.compare(other.score, score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            String name = this.name != null ? this.name : "";
+            String otherName = other.name != null ? other.name : "";
+            return name.compareTo(otherName);
+        }
+    }
+}
@@ -1,22 +1,52 @@
 package com.example.pdm2_projeto.repositories;
 
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.LocationDataSource;
 import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.query.TextNormalizer;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.example.pdm2_projeto.utils.GeoHash;
+import com.example.pdm2_projeto.utils.InFlightRequests;
+import com.example.pdm2_projeto.utils.PagingSession;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.CollectionReference;
-import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 /**
  * Repository class for managing locations in Firestore.
  * This class provides methods to fetch all locations, retrieve paginated results,
  * and filter locations based on a specific category.
+ * When created with a LocationCache, unfiltered reads are served from a local Room cache first
+ * and revalidated in the background (stale-while-revalidate).
+ * Pages, single locations and lists by ID are read through a {@link LocationDataSource}
+ * (Firestore, or an in-memory stand-in for offline load tests).
+ * Every read returns an {@link AsyncResult}: identical reads in flight at the same time share a single
+ * Firestore query, and cancelled results skip their remaining work (cache reads, revalidation, parsing).
+ * Only used on the main thread, where Firestore delivers its results.
  */
 public class LocationsRepository {
 
@@ -26,239 +56,720 @@ public class LocationsRepository {
     private final CollectionReference locationCollection;
 
     /**
-     * Keeps track of the last document snapshot retrieved in paginated queries.
-     * Used to determine where the next batch of results should start.
+     * Maximum number of writes allowed in a single Firestore batch.
      */
-    public DocumentSnapshot lastDocumentSnapshot = null;
+    private static final int MAX_BATCH_WRITES = 500;
 
     /**
-     * Constructor initializes the Firestore instance and points to the "locations" collection.
+     * Mean radius of the Earth in meters, used to convert distances into degrees.
      */
-    public LocationsRepository() {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private static final double EARTH_RADIUS_M = 6371008.8;
+
+    /**
+     * Local cache of locations, or null if this repository only reads from Firestore.
+     */
+    private final LocationCache cache;
+
+    /**
+     * Store the pages and single locations are read from (Firestore, or an in-memory stand-in).
+     */
+    private final LocationDataSource dataSource;
+
+    /**
+     * Reads of location lists in flight (all locations, locations by IDs), by request key.
+     */
+    private final InFlightRequests<String, List<Location>> listRequests = new InFlightRequests<>();
+
+    /**
+     * Reads of single locations in flight, by location ID.
+     */
+    private final InFlightRequests<String, Location> locationRequests = new InFlightRequests<>();
+
+    /**
+     * Number of recent queries whose pagination sessions are kept, and how long their pages are reused.
+     */
+    private static final int MAX_SESSIONS = 16;
+    private static final long SESSION_TTL_MS = 60 * 1000L;
+
+    /**
+     * Pagination sessions of the recent queries, by filter, search keyword and order.
+     */
+    private final PagingSession.Cache<Location> sessions = new PagingSession.Cache<>(MAX_SESSIONS, SESSION_TTL_MS);
+
+    /**
+     * Constructor that reads pages and single locations from the given data source
+     * (Firestore, or an in-memory stand-in to exercise large datasets offline).
+     * Locations are shown immediately from the local cache and refreshed in the background.
+     * Writes, map areas and synchronization go to the given Firestore database.
+     *
+     * @param db         The Firestore database.
+     * @param cache      The local cache of locations.
+     * @param dataSource The store the locations are read from.
+     */
+    public LocationsRepository(FirebaseFirestore db, LocationCache cache, LocationDataSource dataSource) {
         this.locationCollection = db.collection("locations");
+        this.cache = cache;
+        this.dataSource = dataSource;
     }
 
     /**
-     * Fetches all Location objects from the Firestore database.
-     * Results are ordered alphabetically by name.
+     * Fetches the Locations inside the given map bounds, sorted by distance from the center of the bounds.
      *
-     * @param callback Callback interface to handle the results or errors.
-     */
-    public void getAllLocations(LocationCallback callback) {
-        locationCollection.orderBy("name").get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<Location> locations = new ArrayList<>();
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            try {
-                                Location location = document.toObject(Location.class);
-
-                                // Ensure required fields are present before adding to the list
-                                if (location.getName() != null && location.getDescription() != null) {
-                                    locations.add(location);
-                                } else {
-                                    Log.w("LocationsRepository", "Skipping document due to missing required fields: " + document.getId());
-                                }
-                            } catch (Exception e) {
-                                Log.e("LocationsRepository", "Error parsing location document: " + document.getId(), e);
-                            }
-                        }
-                        callback.onSuccess(locations);
-                    } else {
-                        Exception e = task.getException();
-                        Log.e("LocationsRepository", "Error fetching locations", e);
-                        callback.onFailure(e);
-                    }
-                });
+     * @param bounds The visible region of the map (optionally with a margin).
+     * @return The locations inside the bounds, or the error.
+     * @see #getLocationsWithinBounds(LatLngBounds, LatLng)
+     */
+    public AsyncResult<List<Location>> getLocationsWithinBounds(LatLngBounds bounds) {
+        return getLocationsWithinBounds(bounds, null);
     }
 
     /**
-     * Fetches a paginated list of Locations from Firestore.
+     * Fetches the Locations inside the given map bounds, sorted by distance from the given origin.
+     * Firestore is queried with the few geohash ranges that cover the bounds (in parallel),
+     * and the locations of those cells that fall outside the bounds are filtered out on the device.
+     * If the cache holds the complete collection, it answers first; when it is older than its TTL,
+     * Firestore is queried in the background and onUpdated is called only if the locations changed.
      *
-     * This method retrieves a fixed number of locations, sorted alphabetically by name,
-     * starting after the last retrieved document for pagination purposes.
+     * @param bounds The visible region of the map (optionally with a margin).
+     * @param origin The position to sort by (e.g. the user's location), or null for the center of the bounds.
+     * @return The locations inside the bounds, or the error.
+     */
+    public AsyncResult<List<Location>> getLocationsWithinBounds(LatLngBounds bounds, LatLng origin) {
+        LatLng from = origin != null ? origin : bounds.getCenter();
+        List<String[]> ranges = GeoHash.coveringRanges(bounds.southwest.latitude, bounds.southwest.longitude,
+                bounds.northeast.latitude, bounds.northeast.longitude);
+
+        return getLocationsInArea(bounds.southwest.latitude, bounds.northeast.latitude, ranges,
+                location -> bounds.contains(new LatLng(location.getLatitude(), location.getLongitude())),
+                from);
+    }
+
+    /**
+     * Fetches the Locations within a given distance of a position, sorted by distance (closest first).
+     * Firestore is queried with the geohash ranges that cover the circle (in parallel),
+     * and the results are filtered by their exact distance.
+     * If the cache holds the complete collection, it answers first; when it is older than its TTL,
+     * Firestore is queried in the background and onUpdated is called only if the locations changed.
      *
-     * @param pageSize  The number of locations to fetch per request.
-     * @param callback  Callback interface to handle the result or errors.
+     * @param latitude     The latitude of the position.
+     * @param longitude    The longitude of the position.
+     * @param radiusMeters The maximum distance, in meters.
+     * @return The nearby locations, or the error.
      */
-    public void getPaginatedLocations(int pageSize, LocationCallback callback) {
-        Query query = locationCollection.orderBy("name").limit(pageSize);
+    public AsyncResult<List<Location>> getNearby(double latitude, double longitude, double radiusMeters) {
+        // Bounding box of the circle
+        double latitudeDelta = Math.toDegrees(radiusMeters / EARTH_RADIUS_M);
+        double south = Math.max(-90, latitude - latitudeDelta);
+        double north = Math.min(90, latitude + latitudeDelta);
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(south), Math.abs(north))));
+        double longitudeDelta = cos > 0 ? latitudeDelta / cos : 180;
 
-        if (lastDocumentSnapshot != null) {
-            query = query.startAfter(lastDocumentSnapshot);
+        double west;
+        double east;
+        if (longitudeDelta >= 180) {
+            west = -180;
+            east = 180;
+        } else {
+            west = longitude - longitudeDelta < -180 ? longitude - longitudeDelta + 360 : longitude - longitudeDelta;
+            east = longitude + longitudeDelta > 180 ? longitude + longitudeDelta - 360 : longitude + longitudeDelta;
         }
 
-        query.get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                List<Location> locations = new ArrayList<>();
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    try {
-                        Location location = document.toObject(Location.class);
+        List<String[]> ranges = GeoHash.coveringRanges(south, west, north, east);
+        return getLocationsInArea(south, north, ranges,
+                location -> GeoHash.distanceMeters(latitude, longitude,
+                        location.getLatitude(), location.getLongitude()) <= radiusMeters,
+                new LatLng(latitude, longitude));
+    }
 
-                        if (location.getName() != null && location.getDescription() != null) {
-                            locations.add(location);
-                        }
-                    } catch (Exception e) {
-                        Log.e("LocationsRepository", "Erro ao analisar o documento: " + document.getId(), e);
-                    }
+    /**
+     * Fetches the Locations of an area, from the cache first if it holds the complete collection.
+     *
+     * @param south  The minimum latitude of the area (used to read the cache).
+     * @param north  The maximum latitude of the area (used to read the cache).
+     * @param ranges The geohash ranges that cover the area (used to query Firestore).
+     * @param filter Keeps only the locations that are exactly inside the area.
+     * @param origin The position used to sort the results.
+     * @return The locations of the area, or the error.
+     */
+    private AsyncResult<List<Location>> getLocationsInArea(double south, double north, List<String[]> ranges,
+                                                           Predicate<Location> filter, LatLng origin) {
+        AsyncResult<List<Location>> result = new AsyncResult<>();
+        if (cache == null || !cache.isComplete()) {
+            if (cache != null) {
+                LocationCache.recordMiss();
+            }
+            fetchLocationsInArea(south, north, ranges, filter, origin, null, result);
+            return result;
+        }
+
+        Future<?> read = cache.getInLatitudeRange(south, north, band -> {
+            if (result.isCancelled()) return;
+            List<Location> cached = filterByDistance(band, filter, origin);
+            if (cache.isCollectionFresh()) {
+                LocationCache.recordHit();
+                result.complete(cached);
+            } else {
+                LocationCache.recordStaleHit();
+                result.deliver(cached);
+                fetchLocationsInArea(south, north, ranges, filter, origin, cached, result);
+            }
+        });
+        result.onCancel(() -> read.cancel(false));
+        return result;
+    }
+
+    /**
+     * Runs one Firestore query per geohash range, in parallel, and stores the results in the cache.
+     * While some documents lack their geohash (see {@link LocationFieldsBackfill}), a single query on
+     * the latitude band of the area is run instead, so those documents are not missed.
+     * Cancelling the result drops the queries that have not answered yet.
+     *
+     * @param south  The minimum latitude of the area.
+     * @param north  The maximum latitude of the area.
+     * @param ranges The geohash ranges that cover the area.
+     * @param filter Keeps only the locations that are exactly inside the area.
+     * @param origin The position used to sort the results.
+     * @param cached The locations already delivered from the cache, or null if none were.
+     * @param result The result to deliver the locations to.
+     */
+    private void fetchLocationsInArea(double south, double north, List<String[]> ranges, Predicate<Location> filter,
+                                      LatLng origin, List<Location> cached, AsyncResult<List<Location>> result) {
+        if (result.isCancelled()) return;
+        long start = SystemClock.elapsedRealtime();
+        List<Query> queries = new ArrayList<>();
+        AsyncResult<List<List<Location>>> all = LocationFieldsBackfill.isComplete(locationCollection).then(complete -> {
+            if (complete) {
+                for (String[] range : ranges) {
+                    queries.add(locationCollection.orderBy("geohash").startAt(range[0]).endAt(range[1]));
                 }
+            } else {
+                queries.add(locationCollection.whereGreaterThanOrEqualTo("latitude", south)
+                        .whereLessThanOrEqualTo("latitude", north));
+            }
 
-                if (!task.getResult().isEmpty()) {
-                    lastDocumentSnapshot = task.getResult().getDocuments().get(task.getResult().size() - 1);
+            List<AsyncResult<List<Location>>> reads = new ArrayList<>();
+            for (Query query : queries) {
+                reads.add(AsyncResult.fromTask(FirestoreMetrics.track("LocationsRepository.getLocationsInArea",
+                        query.get())).map(FirestoreLocationDataSource::toLocations));
+            }
+            return AsyncResult.all(reads);
+        });
+        result.onCancel(all::cancel);
+        all.observe(new FirestoreCallback<List<List<Location>>>() {
+            @Override
+            public void onSuccess(List<List<Location>> results) {
+                // Neighbouring ranges never overlap, but merge by ID to be safe
+                Map<String, Location> byId = new LinkedHashMap<>();
+                for (List<Location> rangeLocations : results) {
+                    for (Location location : rangeLocations) {
+                        byId.put(location.getId(), location);
+                    }
+                }
+                List<Location> fetched = new ArrayList<>(byId.values());
+                if (cache != null) {
+                    cache.put(fetched);
                 }
 
-                callback.onSuccess(locations);
-            } else {
-                callback.onFailure(task.getException());
+                List<Location> locations = filterByDistance(fetched, filter, origin);
+                Log.d("LocationsRepository", "Read " + fetched.size() + " locations (" + locations.size()
+                        + " inside the area) with " + queries.size() + " queries in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                deliver(cached, locations, result);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("LocationsRepository", "Error fetching locations in area", e);
+                result.fail(e);
             }
         });
     }
 
+    /**
+     * Keeps the locations accepted by the filter, sorted by distance from the origin (then by ID,
+     * so the cached and fresh results of the same area are in the same order).
+     */
+    private static List<Location> filterByDistance(List<Location> locations, Predicate<Location> filter, LatLng origin) {
+        List<Location> inside = new ArrayList<>();
+        Map<String, Double> distances = new HashMap<>();
+        for (Location location : locations) {
+            if (filter.test(location)) {
+                inside.add(location);
+                distances.put(location.getId(), GeoHash.distanceMeters(origin.latitude, origin.longitude,
+                        location.getLatitude(), location.getLongitude()));
+            }
+        }
+        Collections.sort(inside, (first, second) -> {
+            int byDistance = Double.compare(distances.get(first.getId()), distances.get(second.getId()));
+            return byDistance != 0 ? byDistance : first.getId().compareTo(second.getId());
+        });
+        return inside;
+    }
 
     /**
-     * Fetches a paginated list of Locations from Firestore filtered by category.
+     * Fetches a page of Locations, sorted alphabetically by name then ID.
      *
-     * This method retrieves a set number of locations that belong to a specific category,
-     * starting after the last retrieved document for pagination.
+     * The page starts after the given location (its name and ID are the cursor), so any page can be
+     * read again, from the local cache or from Firestore.
+     * Pages found in the cache are delivered immediately; when they are older than the TTL of the cache,
+     * Firestore is queried in the background and onUpdated is called only if the locations changed.
      *
-     * @param categoryId The unique ID of the category to filter locations.
-     * @param searchQuery The search query to filter locations.
-     * @param pageSize   The number of locations to fetch per request.
-     * @param callback   Callback interface to handle the result or errors.
+     * @param after    The last location of the previous page, or null for the first page.
+     * @param pageSize The number of locations to fetch per request.
+     * @return The locations of the page, or the error.
      */
-    public void getLocationsByCategoryPaginated(String categoryId, String searchQuery, int pageSize, int currentPage, LocationCallback callback) {
-        Query query = locationCollection;
+    public AsyncResult<List<Location>> getPaginatedLocations(Location after, int pageSize) {
+        AsyncResult<List<Location>> result = new AsyncResult<>();
 
-        if (categoryId != null && !categoryId.isEmpty()) {
-            query = query.whereEqualTo("category_id", categoryId);
+        if (cache == null) {
+            fetchPage(after, pageSize, null, result);
+            return result;
         }
 
-        query.get().addOnCompleteListener(task -> {
-            if (task.isSuccessful() && task.getResult() != null) {
-                List<Location> allLocations = new ArrayList<>();
-                for (QueryDocumentSnapshot document : task.getResult()) {
-                    try {
-                        Location location = document.toObject(Location.class);
-                        allLocations.add(location);
-                    } catch (Exception e) {
-                        Log.e("LocationsRepository", "Erro ao processar localizações", e);
-                    }
-                }
+        Future<?> read = cache.getPage(after, pageSize, (cached, fresh) -> {
+            if (result.isCancelled()) return;
+            if (cached.isEmpty()) {
+                LocationCache.recordMiss();
+                fetchPage(after, pageSize, null, result);
+                return;
+            }
 
-                List<Location> filteredLocations = new ArrayList<>();
-                for (Location location : allLocations) {
-                    if (location.getName() != null && location.getNameEn() != null) {
-                        if (searchQuery == null || searchQuery.trim().isEmpty() ||
-                                location.getName().toLowerCase().contains(searchQuery.toLowerCase()) ||
-                                location.getNameEn().toLowerCase().contains(searchQuery.toLowerCase())) {
-                            filteredLocations.add(location);
-                        }
-                    }
+            if (fresh) {
+                LocationCache.recordHit();
+                result.complete(cached);
+            } else {
+                LocationCache.recordStaleHit();
+                result.deliver(cached);
+                fetchPage(after, pageSize, cached, result);
+            }
+        });
+        result.onCancel(() -> read.cancel(false));
+        return result;
+    }
+
+    /**
+     * Fetches a page of locations from the data source, ordered by name and document ID,
+     * and stores it in the cache.
+     *
+     * @param after    The last location of the previous page, or null for the first page.
+     * @param pageSize The number of locations to fetch.
+     * @param cached   The page already delivered from the cache, or null if none was.
+     * @param result   The result to deliver the page to.
+     */
+    private void fetchPage(Location after, int pageSize, List<Location> cached, AsyncResult<List<Location>> result) {
+        if (result.isCancelled()) return;
+        LocationQuery query = new LocationQuery(null, null, pageSize);
+        if (after != null) {
+            query = query.after(after);
+        }
+
+        // Not cancelled with the result: the page is still worth keeping in the cache.
+        // The data source may answer twice (its own cache, then the server): each answer updates the page shown
+        AsyncResult<List<Location>> read = dataSource.getPage(query);
+        read.observe(new FirestoreCallback<List<Location>>() {
+            // Version of the page last delivered, or the one from the local cache
+            private List<Location> shown = cached;
+
+            @Override
+            public void onSuccess(List<Location> locations) {
+                List<Location> previous = shown;
+                shown = locations;
+                if (cache != null) {
+                    cache.put(locations);
                 }
+                if (result.isCancelled()) return; // The page is no longer shown
 
-                filteredLocations.sort(Comparator.comparing(Location::getName));
+                if (previous == null) {
+                    result.deliver(locations);
+                } else if (LocationCache.hasChanged(previous, locations)) {
+                    LocationCache.recordUpdate();
+                    result.deliver(locations);
+                }
+            }
 
-                int start = (currentPage - 1) * pageSize;
-                int end = Math.min(start + pageSize, filteredLocations.size());
+            @Override
+            public void onUpdated(List<Location> locations) {
+                onSuccess(locations);
+            }
 
-                List<Location> paginatedLocations = filteredLocations.subList(start, end);
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("LocationsRepository", "Error fetching paginated locations", e);
+                result.fail(e);
+            }
+        });
+        read.whenDone(() -> {
+            if (cache != null && cached != null) {
+                // Compare with the final answer only (a finished result hands its last value to late observers)
+                read.observe(new FirestoreCallback<List<Location>>() {
+                    @Override
+                    public void onSuccess(List<Location> locations) {
+                        removeMissing(cached, locations, locations.size() < pageSize);
+                    }
 
-                callback.onSuccess(paginatedLocations);
-            } else {
-                callback.onFailure(task.getException());
+                    @Override
+                    public void onFailure(Exception e) {}
+                });
             }
+            result.finish();
         });
     }
 
     /**
-     * Fetches a single Location by its ID from the Firestore database.
+     * Removes from the cache the locations of a cached page that are no longer returned by Firestore
+     * (i.e. were deleted on the server).
      *
-     * @param id       The unique ID of the Location document.
-     * @param callback Callback interface to handle the result or errors.
-     */
-    public void getLocationById(String id, final SingleLocationCallback callback) {
-        locationCollection
-                .document(id)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Location location = documentSnapshot.toObject(Location.class);
-                        if (location != null) {
-                            location.setId(documentSnapshot.getId()); // Set the Firestore document ID
-                            callback.onSuccess(location);
-                        } else {
-                            callback.onFailure(new Exception("Location not found"));
+     * @param cached   The page delivered from the cache, or null if none was.
+     * @param fresh    The same page retrieved from Firestore.
+     * @param lastPage True if Firestore returned fewer documents than requested.
+     */
+    private void removeMissing(List<Location> cached, List<Location> fresh, boolean lastPage) {
+        if (cached == null || (fresh.isEmpty() && !lastPage)) {
+            return;
+        }
+        Set<String> freshIds = new HashSet<>();
+        for (Location location : fresh) {
+            freshIds.add(location.getId());
+        }
+        Location freshLast = fresh.isEmpty() ? null : fresh.get(fresh.size() - 1);
+
+        for (Location location : cached) {
+            // Only locations inside the range covered by the fresh page can be known to be gone
+            boolean inRange = lastPage || compareByNameAndId(location, freshLast) <= 0;
+            if (inRange && !freshIds.contains(location.getId())) {
+                cache.remove(location.getId());
+            }
+        }
+    }
+
+    /**
+     * Compares two locations in the order used by the paginated query (name, then document ID).
+     */
+    private static int compareByNameAndId(Location a, Location b) {
+        int byName = a.getName().compareTo(b.getName());
+        return byName != 0 ? byName : a.getId().compareTo(b.getId());
+    }
+
+    /**
+     * Completes a result with the locations retrieved from Firestore.
+     * If a cached result was already delivered, the new locations are only delivered (as an update)
+     * when the data changed.
+     *
+     * @param cached    The locations already delivered from the cache, or null if none were.
+     * @param locations The locations retrieved from Firestore.
+     * @param result    The result to complete.
+     */
+    private static void deliver(List<Location> cached, List<Location> locations, AsyncResult<List<Location>> result) {
+        if (cached == null) {
+            result.complete(locations);
+        } else if (LocationCache.hasChanged(cached, locations)) {
+            LocationCache.recordUpdate();
+            result.complete(locations);
+        } else {
+            result.finish();
+        }
+    }
+
+    /**
+     * Fetches a paginated list of Locations filtered by category and/or search query.
+     *
+     * The filtering is done by the data source (server-side with Firestore): the category is matched
+     * on "category_id" and the search query against the normalized name prefixes stored in "searchKeywords".
+     * Results are ordered by name and ID and paginated with a cursor (the last location of the
+     * previous page), so each page only reads as many documents as the page size.
+     *
+     * @param categoryId  The unique ID of the category to filter locations (null for all categories).
+     * @param searchQuery The search query to filter locations (null or empty for no search).
+     * @param after       The last location of the previous page, or null for the first page.
+     * @param pageSize    The number of locations to fetch per request.
+     * @return The locations of the page, or the error.
+     */
+    public AsyncResult<List<Location>> getLocationsByCategoryPaginated(String categoryId, String searchQuery,
+                                                                       Location after, int pageSize) {
+        LocationQuery query = new LocationQuery(categoryId, searchQuery, pageSize);
+        if (after != null) {
+            query = query.after(after);
+        }
+        return dataSource.getPage(query);
+    }
+
+    /**
+     * Opens the pagination session of a query, ordered by name then ID. Each query has its own
+     * cursor, pages and reads in flight, so several lists can be paginated at the same time.
+     * A query opened again within a minute resumes its session, with the pages already read.
+     *
+     * @param categoryId  The unique ID of the category to filter locations (null for all categories).
+     * @param searchQuery The search query to filter locations (null or empty for no search).
+     * @return The session; without filter nor search its pages go through the local cache,
+     *         as in {@link #getPaginatedLocations(Location, int)}.
+     */
+    public PagingSession<Location> openSession(String categoryId, String searchQuery) {
+        String keyword = TextNormalizer.toSearchKeyword(searchQuery);
+        String key = "name|" + categoryId + "|" + keyword;
+        return sessions.open(key, () -> {
+            if (categoryId == null && keyword.isEmpty()) {
+                return (after, offset, pageSize) -> getPaginatedLocations(after, pageSize);
+            }
+            return (after, offset, pageSize) -> getLocationsByCategoryPaginated(categoryId, searchQuery, after, pageSize);
+        }, Location::getId);
+    }
+
+    /**
+     * Fetches every location from Firestore, including its document ID and category.
+     * Used to (re)build the local copy of the collection.
+     *
+     * @return The locations, or the error.
+     */
+    public AsyncResult<List<Location>> getAllLocationsForSync() {
+        return AsyncResult.fromTask(FirestoreMetrics.track("LocationsRepository.getAllLocationsForSync", locationCollection.get()))
+                .map(FirestoreLocationDataSource::toLocations);
+    }
+
+    /**
+     * Fetches the locations written after the given timestamp, ordered by update time.
+     * Used to incrementally synchronize the local copy of the collection.
+     *
+     * @param since Only locations with an "updatedAt" later than this are returned.
+     * @return The updated locations, or the error.
+     */
+    public AsyncResult<List<Location>> getLocationsUpdatedAfter(Timestamp since) {
+        return AsyncResult.fromTask(FirestoreMetrics.track("LocationsRepository.getLocationsUpdatedAfter",
+                locationCollection.whereGreaterThan("updatedAt", since)
+                        .orderBy("updatedAt")
+                        .get())).map(FirestoreLocationDataSource::toLocations);
+    }
+
+    /**
+     * Recomputes the normalized search fields and the geohash of every location stored in Firestore.
+     * Used once to backfill documents created before these fields existed (run from the debug entry
+     * of the settings screen). Until it has run, searches and area queries use slower queries that
+     * also find those documents (see {@link LocationFieldsBackfill}).
+     * Also stamps each document with "updatedAt" so it is picked up by incremental syncs.
+     *
+     * @return The result of the operation.
+     */
+    public AsyncResult<Void> rebuildSearchFields() {
+        AsyncResult<Void> result = new AsyncResult<>();
+        FirestoreMetrics.track("LocationsRepository.rebuildSearchFields", locationCollection.get())
+                .addOnSuccessListener(queryDocumentSnapshots -> {
+                    List<Task<Void>> commits = new ArrayList<>();
+                    WriteBatch batch = locationCollection.getFirestore().batch();
+                    int pending = 0;
+
+                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
+                        Location location = document.toObject(Location.class);
+                        location.updateSearchFields();
+                        location.updateGeohash();
+
+                        Map<String, Object> fields = new HashMap<>();
+                        fields.put("searchName", location.getSearchName());
+                        fields.put("searchNameEn", location.getSearchNameEn());
+                        fields.put("searchKeywords", location.getSearchKeywords());
+                        fields.put("geohash", location.getGeohash());
+                        fields.put("updatedAt", FieldValue.serverTimestamp());
+                        batch.update(document.getReference(), fields);
+
+                        // Firestore batches are limited to 500 writes
+                        if (++pending == MAX_BATCH_WRITES) {
+                            commits.add(FirestoreMetrics.track("LocationsRepository.rebuildSearchFields.commit", batch.commit()));
+                            batch = locationCollection.getFirestore().batch();
+                            pending = 0;
                         }
-                    } else {
-                        callback.onFailure(new Exception("Document does not exist"));
                     }
+                    if (pending > 0) {
+                        commits.add(FirestoreMetrics.track("LocationsRepository.rebuildSearchFields.commit", batch.commit()));
+                    }
+
+                    Tasks.whenAll(commits)
+                            .addOnSuccessListener(unused -> {
+                                LocationFieldsBackfill.markComplete(); // The fast queries can be used from now on
+                                result.complete(null);
+                            })
+                            .addOnFailureListener(result::fail);
                 })
-                .addOnFailureListener(callback::onFailure);
+                .addOnFailureListener(result::fail);
+        return result;
     }
 
     /**
-     * Adds a new Location to the Firestore database.
+     * Fetches a single Location by its ID from the Firestore database.
+     * A cached copy is delivered immediately and revalidated in the background when it is older than its TTL.
+     * Concurrent calls for the same ID share the same read.
      *
-     * @param location The Location object to be added.
-     * @param callback Callback interface to handle success or errors.
+     * @param id The unique ID of the Location document.
+     * @return The location, or the error.
      */
-    public void addLocation(Location location, final OperationCallback callback) {
-        locationCollection
-                .add(location)
-                .addOnSuccessListener(documentReference -> callback.onSuccess())
-                .addOnFailureListener(callback::onFailure);
+    public AsyncResult<Location> getLocationById(String id) {
+        return locationRequests.run(id, () -> {
+            AsyncResult<Location> result = new AsyncResult<>();
+            if (cache == null) {
+                fetchLocationById(id, null, result);
+                return result;
+            }
+
+            Future<?> read = cache.getById(id, (cached, fresh) -> {
+                if (result.isCancelled()) return;
+                if (cached == null) {
+                    LocationCache.recordMiss();
+                    fetchLocationById(id, null, result);
+                    return;
+                }
+
+                if (fresh) {
+                    LocationCache.recordHit();
+                    result.complete(cached);
+                } else {
+                    LocationCache.recordStaleHit();
+                    result.deliver(cached);
+                    fetchLocationById(id, cached, result);
+                }
+            });
+            result.onCancel(() -> read.cancel(false));
+            return result;
+        });
     }
 
     /**
-     * Updates an existing Location in the Firestore database.
+     * Fetches a single Location from the data source and stores it in the cache.
      *
-     * @param location The Location object with updated data.
-     * @param callback Callback interface to handle success or errors.
+     * @param id     The unique ID of the Location document.
+     * @param cached The location already delivered from the cache, or null if none was.
+     * @param result The result to deliver the location to.
      */
-    public void updateLocation(Location location, final OperationCallback callback) {
-        locationCollection
-                .document(location.getId())
-                .set(location)
-                .addOnSuccessListener(unused -> callback.onSuccess())
-                .addOnFailureListener(callback::onFailure);
+    private void fetchLocationById(String id, Location cached, AsyncResult<Location> result) {
+        if (result.isCancelled()) return;
+        // The data source may answer twice (its own cache, then the server): each answer updates the location shown
+        AsyncResult<Location> read = dataSource.getById(id);
+        read.observe(new FirestoreCallback<Location>() {
+            // Version of the location last delivered, or the one from the local cache
+            private Location shown = cached;
+
+            @Override
+            public void onSuccess(Location location) {
+                if (location == null) {
+                    if (cache != null) {
+                        cache.remove(id); // The location was deleted on the server
+                    }
+                    result.fail(new Exception("Document does not exist"));
+                    return;
+                }
+
+                if (cache != null) {
+                    cache.put(Collections.singletonList(location));
+                }
+                if (shown == null) {
+                    result.deliver(location);
+                } else if (LocationCache.hasChanged(shown, location)) {
+                    LocationCache.recordUpdate();
+                    result.deliver(location);
+                }
+                shown = location;
+            }
+
+            @Override
+            public void onUpdated(Location location) {
+                onSuccess(location);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (cached != null) {
+                    Log.w("LocationsRepository", "Could not revalidate cached location: " + id, e);
+                }
+                result.fail(e);
+            }
+        });
+        read.whenDone(result::finish);
     }
 
     /**
-     * Deletes a Location from the Firestore database.
+     * Fetches several Locations by their IDs in a single call.
+     * With Firestore, the IDs are split into chunks queried in parallel with a "whereIn" filter on the
+     * document ID. The result is delivered once, in the same order as the given IDs.
+     * Locations that no longer exist are left out. Concurrent calls with the same IDs share the same queries.
      *
-     * @param id       The ID of the Location document to delete.
-     * @param callback Callback interface to handle success or errors.
-     */
-    public void deleteLocation(String id, final OperationCallback callback) {
-        locationCollection
-                .document(id)
-                .delete()
-                .addOnSuccessListener(unused -> callback.onSuccess())
-                .addOnFailureListener(callback::onFailure);
+     * @param ids The IDs of the locations to fetch.
+     * @return The locations found, or the error.
+     */
+    public AsyncResult<List<Location>> getLocationsByIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            return AsyncResult.success(new ArrayList<>());
+        }
+
+        return listRequests.run("ids:" + String.join(",", ids), () -> {
+            long start = SystemClock.elapsedRealtime();
+            return dataSource.getByIds(ids).map(found -> {
+                Map<String, Location> byId = new HashMap<>();
+                for (Location location : found) {
+                    byId.put(location.getId(), location);
+                }
+
+                // Keep the order of the requested IDs
+                List<Location> locations = new ArrayList<>();
+                for (String id : ids) {
+                    Location location = byId.get(id);
+                    if (location != null) {
+                        locations.add(location);
+                    }
+                }
+                if (cache != null) {
+                    cache.put(locations);
+                }
+
+                Log.d("LocationsRepository", "Fetched " + locations.size() + "/" + ids.size()
+                        + " locations in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                return locations;
+            });
+        });
     }
 
     /**
-     * Callback interface for operations that return a list of Location objects.
+     * Adds a new Location to the Firestore database.
+     *
+     * @param location The Location object to be added.
+     * @return The result of the operation.
      */
-    public interface LocationCallback {
-        void onSuccess(List<Location> locations);
-        void onFailure(Exception e);
+    public AsyncResult<Void> addLocation(Location location) {
+        location.updateSearchFields();
+        location.updateGeohash();
+        location.setUpdatedAt(null); // Let the server set the update timestamp
+        return AsyncResult.fromTask(FirestoreMetrics.track("LocationsRepository.addLocation", locationCollection.add(location)))
+                .map(documentReference -> null);
     }
 
     /**
-     * Callback interface for operations that return a single Location object.
+     * Updates an existing Location in the Firestore database.
+     *
+     * @param location The Location object with updated data.
+     * @return The result of the operation.
      */
-    public interface SingleLocationCallback {
-        void onSuccess(Location location);
-        void onFailure(Exception e);
+    public AsyncResult<Void> updateLocation(Location location) {
+        location.updateSearchFields();
+        location.updateGeohash();
+        location.setUpdatedAt(null); // Let the server set the update timestamp
+        return AsyncResult.fromTask(FirestoreMetrics.track("LocationsRepository.updateLocation", locationCollection
+                .document(location.getId())
+                .set(location)));
     }
 
     /**
-     * Callback interface for operations that perform a single success or failure action.
+     * Deletes a Location from the Firestore database.
+     *
+     * @param id The ID of the Location document to delete.
+     * @return The result of the operation.
      */
-    public interface OperationCallback {
-        void onSuccess();
-        void onFailure(Exception e);
+    public AsyncResult<Void> deleteLocation(String id) {
+        AsyncResult<Void> result = new AsyncResult<>();
+        FirestoreMetrics.track("LocationsRepository.deleteLocation", locationCollection
+                        .document(id)
+                        .delete())
+                .addOnSuccessListener(unused -> {
+                    if (cache != null) {
+                        cache.remove(id);
+                    }
+                    result.complete(null);
+                })
+                .addOnFailureListener(result::fail);
+        return result;
     }
 }
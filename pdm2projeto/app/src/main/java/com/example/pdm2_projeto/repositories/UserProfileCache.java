@@ -0,0 +1,270 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.models.User;
+import com.example.pdm2_projeto.utils.AsyncResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory cache of user profiles shared by the whole app.
+ * Keeps the most recently used profiles (LRU) for a limited time (TTL), and coalesces
+ * concurrent requests for the same user into a single Firestore read.
+ * Only accessed on the main thread, where Firestore delivers its results.
+ */
+public class UserProfileCache {
+
+    /**
+     * Maximum number of profiles kept in memory.
+     */
+    private static final int MAX_ENTRIES = 200;
+
+    /**
+     * Time after which a cached profile is read again from Firestore.
+     */
+    private static final long TTL_MS = 10 * 60 * 1000L;
+
+    /**
+     * Shared instance of the cache.
+     */
+    private static UserProfileCache instance;
+
+    /**
+     * Cached profiles in access order, so the least recently used one is evicted first.
+     */
+    private final LinkedHashMap<String, CachedUser> users = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Reads in flight, by user ID. Every caller receives a shared view of the read.
+     */
+    private final Map<String, AsyncResult<User>> pending = new HashMap<>();
+
+    /**
+     * Observer that keeps the reads started by {@link #prefetch(Collection)} alive.
+     */
+    private static final FirestoreCallback<User> BATCH_READ = new FirestoreCallback<User>() {
+        @Override
+        public void onSuccess(User result) {}
+
+        @Override
+        public void onFailure(Exception e) {}
+    };
+
+    private final UsersRepository usersRepository;
+
+    /**
+     * Private constructor; use {@link #getInstance()}.
+     */
+    private UserProfileCache(UsersRepository usersRepository) {
+        this.usersRepository = usersRepository;
+    }
+
+    /**
+     * Makes the shared cache read the profiles through the given repository (e.g. one backed by an
+     * in-memory data source). Replaces the previous instance and the profiles it cached.
+     *
+     * @param usersRepository The repository used to read the profiles.
+     */
+    public static void initialize(UsersRepository usersRepository) {
+        instance = new UserProfileCache(usersRepository);
+    }
+
+    /**
+     * Returns the shared instance of the cache.
+     *
+     * @return The user profile cache.
+     */
+    public static UserProfileCache getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("UserProfileCache.initialize() must be called first (see AppContainer)");
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a cached profile without going to the network.
+     *
+     * @param userId The ID of the user.
+     * @return The cached user, or null if it is not cached or has expired.
+     */
+    public User getCached(String userId) {
+        CachedUser cached = users.get(userId);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.cachedAt > TTL_MS) {
+            users.remove(userId);
+            return null;
+        }
+        return cached.user;
+    }
+
+    /**
+     * Retrieves a user profile, from the cache if possible.
+     * If the same user is already being read, the caller shares that read instead of starting another.
+     * The read is dropped when every caller cancelled its result (e.g. the rows showing the user were recycled).
+     *
+     * @param userId The ID of the user.
+     * @return The user, or the error.
+     */
+    public AsyncResult<User> getUser(String userId) {
+        User cached = getCached(userId);
+        if (cached != null) {
+            return AsyncResult.success(cached);
+        }
+
+        AsyncResult<User> read = pending.get(userId);
+        if (read == null || !read.isActive()) {
+            read = new AsyncResult<>();
+            pending.put(userId, read);
+
+            AsyncResult<User> request = usersRepository.getUserById(userId);
+            read.onCancel(request::cancel);
+            request.observe(new FirestoreCallback<User>() {
+                @Override
+                public void onSuccess(User user) {
+                    put(userId, user);
+                    complete(userId, user, null);
+                }
+
+                @Override
+                public void onUpdated(User user) {
+                    put(userId, user); // The profile first read from the local cache was outdated
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    complete(userId, null, e);
+                }
+            });
+        }
+        return read.share();
+    }
+
+    /**
+     * Loads the profiles that are not cached yet, in as few Firestore reads as possible.
+     * Used when a list of comments is shown, so their authors are fetched in batches instead of per row.
+     *
+     * @param userIds The IDs of the users that are about to be shown.
+     */
+    public void prefetch(Collection<String> userIds) {
+        Set<String> missing = new HashSet<>();
+        for (String userId : userIds) {
+            if (userId != null && getCached(userId) == null && !isPending(userId)) {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        // Later requests for these users wait for the batch read, which is not dropped
+        // when the rows waiting for it are recycled (it is shared by the whole list)
+        for (String userId : missing) {
+            AsyncResult<User> read = new AsyncResult<>();
+            read.observe(BATCH_READ);
+            pending.put(userId, read);
+        }
+
+        // The first answer may come from the local cache and miss some users: they wait for the server one
+        AsyncResult<List<User>> batch = usersRepository.getUsersByIds(new ArrayList<>(missing));
+        batch.observe(new FirestoreCallback<List<User>>() {
+            @Override
+            public void onSuccess(List<User> result) {
+                for (User user : result) {
+                    put(user.getId(), user);
+                    if (missing.remove(user.getId())) {
+                        complete(user.getId(), user, null);
+                    }
+                }
+            }
+
+            @Override
+            public void onUpdated(List<User> result) {
+                onSuccess(result); // Also replaces the profiles that were outdated in the local cache
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e("UserProfileCache", "Error prefetching users", e);
+                for (String userId : missing) {
+                    complete(userId, null, e);
+                }
+                missing.clear();
+            }
+        });
+        batch.whenDone(() -> {
+            for (String userId : missing) {
+                complete(userId, null, new Exception("User not found."));
+            }
+        });
+    }
+
+    /**
+     * Removes a profile from the cache, e.g. after it was edited.
+     *
+     * @param userId The ID of the user.
+     */
+    public void invalidate(String userId) {
+        users.remove(userId);
+    }
+
+    /**
+     * Stores a profile in the cache.
+     */
+    private void put(String userId, User user) {
+        if (user != null) {
+            users.put(userId, new CachedUser(user, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Indicates whether a read of the user is in flight.
+     */
+    private boolean isPending(String userId) {
+        AsyncResult<User> read = pending.get(userId);
+        return read != null && read.isActive();
+    }
+
+    /**
+     * Delivers the result of a read to every caller waiting for it.
+     */
+    private void complete(String userId, User user, Exception error) {
+        AsyncResult<User> read = pending.remove(userId);
+        if (read == null) {
+            return;
+        }
+        if (error == null) {
+            read.complete(user);
+        } else {
+            read.fail(error);
+        }
+    }
+
+    /**
+     * User profile paired with the time it was cached.
+     */
+    private static class CachedUser {
+        final User user;
+        final long cachedAt;
+
+        CachedUser(User user, long cachedAt) {
+            this.user = user;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -1,22 +1,48 @@
 package com.example.pdm2_projeto.repositories;
 
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.UploadProgressListener;
+import com.example.pdm2_projeto.interfaces.UserDataSource;
 import com.example.pdm2_projeto.models.User;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.FirestoreMetrics;
+import com.example.pdm2_projeto.utils.ImageResizer;
+import com.example.pdm2_projeto.utils.InFlightRequests;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
 import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Repository class for managing user-related operations in Firestore.
  * This class provides methods to register, retrieve, update, delete users, and manage profile pictures.
+ * Profile pictures are downscaled on the device before being uploaded, together with a small
+ * avatar for comment lists; an upload interrupted (e.g. the app was closed) can be resumed.
  */
 public class UsersRepository {
 
@@ -36,56 +62,118 @@ public class UsersRepository {
     private final FirebaseStorage storage;
 
     /**
-     * Constructor initializes Firebase Auth, Firestore, and Firebase Storage instances.
+     * Store the user profiles are read from.
      */
-    public UsersRepository() {
-        this.auth = FirebaseAuth.getInstance();
-        this.db = FirebaseFirestore.getInstance();
-        this.storage = FirebaseStorage.getInstance();
+    private final UserDataSource dataSource;
+
+    /**
+     * Maximum length in pixels of the longest side of an uploaded profile picture.
+     */
+    public static final int PICTURE_SIZE = 512;
+
+    /**
+     * Size budget of an uploaded profile picture.
+     */
+    private static final int PICTURE_MAX_BYTES = 120 * 1024;
+
+    /**
+     * Length in pixels of the side of the avatar shown in comment lists.
+     */
+    public static final int AVATAR_SIZE = 128;
+
+    /**
+     * Size budget of an uploaded avatar.
+     */
+    private static final int AVATAR_MAX_BYTES = 16 * 1024;
+
+    /**
+     * Name of the SharedPreferences file where the upload in progress is recorded, so it can be resumed.
+     */
+    private static final String UPLOAD_PREFERENCES = "profile_upload";
+    private static final String KEY_UPLOAD_USER = "user_id";
+    private static final String KEY_UPLOAD_SESSION = "session_uri";
+
+    /**
+     * Name of the file, in the cache directory, holding the downscaled picture until it is uploaded.
+     */
+    private static final String UPLOAD_FILE = "profile_upload.jpg";
+
+    /**
+     * Observer that keeps the upload in progress alive when the screen that started it is closed.
+     */
+    private static final FirestoreCallback<User> UPLOAD_IN_PROGRESS = new FirestoreCallback<User>() {
+        @Override
+        public void onSuccess(User result) {}
+
+        @Override
+        public void onFailure(Exception e) {}
+    };
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Reads of user documents in flight, by user ID.
+     */
+    private final InFlightRequests<String, User> userRequests = new InFlightRequests<>();
+
+    /**
+     * Context used to read the pictures and store the upload in progress.
+     */
+    private final Context context;
+    private final ExecutorService executor;
+    private final SharedPreferences uploadPreferences;
+
+    // Upload of a profile picture in progress, and the listener of its progress
+    private AsyncResult<User> runningUpload;
+    private UploadProgressListener progressListener;
+
+    /**
+     * Constructor that reads the user profiles from the given data source.
+     * Writes go to the given Firestore database, and profile pictures to the given Firebase Storage.
+     *
+     * @param db         The Firestore database.
+     * @param auth       The authentication of the current user.
+     * @param storage    The storage of the profile pictures.
+     * @param context    Context used to read the pictures and store the upload in progress.
+     * @param executor   Background executor used to downscale the pictures.
+     * @param dataSource Store the user profiles are read from.
+     */
+    public UsersRepository(FirebaseFirestore db, FirebaseAuth auth, FirebaseStorage storage,
+                           Context context, ExecutorService executor, UserDataSource dataSource) {
+        this.auth = auth;
+        this.db = db;
+        this.storage = storage;
+        this.dataSource = dataSource;
+        this.context = context.getApplicationContext();
+        this.executor = executor;
+        this.uploadPreferences = this.context.getSharedPreferences(UPLOAD_PREFERENCES, Context.MODE_PRIVATE);
     }
 
     /**
      * Registers a user in Firestore using the User model.
      *
-     * @param user     The User model to be saved.
-     * @param callback Callback to indicate the success or failure of the operation.
+     * @param user The User model to be saved.
+     * @return The result of the operation.
      */
-    public void registerUser(User user, FirestoreCallback<Void> callback) {
-        db.collection("users")
+    public AsyncResult<Void> registerUser(User user) {
+        return AsyncResult.fromTask(FirestoreMetrics.track("UsersRepository.registerUser", db.collection("users")
                 .document(user.getId())
-                .set(user) // Uses the User model directly
-                .addOnSuccessListener(unused -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+                .set(user))); // Uses the User model directly
     }
 
     /**
      * Retrieves the current user's information as a User object.
+     * Concurrent calls share the same read.
      *
-     * @param callback Callback to return the user or an error.
+     * @return The user, or the error.
      */
-    public void getCurrentUser(FirestoreCallback<User> callback) {
+    public AsyncResult<User> getCurrentUser() {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
-            callback.onFailure(new Exception("No authenticated user."));
-            return;
+            return AsyncResult.failure(new Exception("No authenticated user."));
         }
 
-        String userId = currentUser.getUid();
-        db.collection("users")
-                .document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            user.setId(userId);
-                        }
-                        callback.onSuccess(user);
-                    } else {
-                        callback.onFailure(new Exception("User data not found."));
-                    }
-                })
-                .addOnFailureListener(callback::onFailure);
+        return getUser(currentUser.getUid(), "User data not found.");
     }
 
     /**
@@ -100,65 +188,234 @@ public class UsersRepository {
     /**
      * Deletes a user document from Firestore.
      *
-     * @param userId   The unique ID of the user to be deleted.
-     * @param callback Callback to indicate the success or failure of the operation.
+     * @param userId The unique ID of the user to be deleted.
+     * @return The result of the operation.
      */
-    public void deleteUser(String userId, FirestoreCallback<Void> callback) {
-        db.collection("users")
+    public AsyncResult<Void> deleteUser(String userId) {
+        return AsyncResult.fromTask(FirestoreMetrics.track("UsersRepository.deleteUser", db.collection("users")
                 .document(userId)
-                .delete()
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+                .delete()));
     }
 
     /**
      * Uploads a profile picture to Firebase Storage and updates the Firestore document.
+     * The picture is downscaled to {@link #PICTURE_SIZE} and re-encoded as JPEG before it is sent,
+     * and a square avatar of {@link #AVATAR_SIZE} is uploaded with it.
+     *
+     * The upload continues if the result is cancelled; only the notification is dropped.
      *
      * @param imageUri The Uri of the image to upload.
-     * @param callback Callback to indicate success or failure.
+     * @param listener Listener of the upload progress (replaces the listener of a previous upload).
+     * @return The updated user, with the new picture and its version, or the error.
      */
-    public void uploadProfilePicture(Uri imageUri, FirestoreCallback<String> callback) {
+    public AsyncResult<User> uploadProfilePicture(Uri imageUri, UploadProgressListener listener) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
-            callback.onFailure(new Exception("No authenticated user."));
-            return;
+            return AsyncResult.failure(new Exception("No authenticated user."));
         }
 
+        progressListener = listener;
+        AsyncResult<User> upload = startUpload();
         String userId = currentUser.getUid();
-        StorageReference storageRef = storage.getReference().child("profile_pictures/" + userId + ".jpg");
+        ContentResolver resolver = context.getContentResolver();
+        File file = new File(context.getCacheDir(), UPLOAD_FILE);
+        executor.execute(() -> {
+            try {
+                // Downscale the picture and keep it in a file, so an interrupted upload can resume
+                Bitmap picture = ImageResizer.decodeScaled(resolver, imageUri, PICTURE_SIZE);
+                byte[] pictureData = ImageResizer.toJpeg(picture, PICTURE_MAX_BYTES);
+                picture.recycle();
+                try (FileOutputStream output = new FileOutputStream(file)) {
+                    output.write(pictureData);
+                }
+                mainHandler.post(() -> uploadFile(userId, file, null, upload));
+            } catch (IOException e) {
+                mainHandler.post(() -> upload.fail(e));
+            }
+        });
+        return upload.share();
+    }
 
-        storageRef.putFile(imageUri)
-                .addOnSuccessListener(taskSnapshot -> storageRef.getDownloadUrl()
-                        .addOnSuccessListener(uri -> {
-                            String downloadUrl = uri.toString();
-                            db.collection("users")
+    /**
+     * Indicates whether an upload of the current user's profile picture was interrupted and can be resumed.
+     *
+     * @return True if {@link #resumeProfilePictureUpload(UploadProgressListener)} has an upload to continue.
+     */
+    public boolean hasPendingProfilePictureUpload() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            return false;
+        }
+        if (runningUpload != null && runningUpload.isActive()) {
+            return true;
+        }
+        return currentUser.getUid().equals(uploadPreferences.getString(KEY_UPLOAD_USER, null))
+                && new File(context.getCacheDir(), UPLOAD_FILE).exists();
+    }
+
+    /**
+     * Continues the upload of a profile picture that was interrupted, from the last byte received
+     * by Firebase Storage, or follows the upload still in progress.
+     *
+     * @param listener Listener of the upload progress.
+     * @return The updated user, with the new picture and its version, or the error.
+     */
+    public AsyncResult<User> resumeProfilePictureUpload(UploadProgressListener listener) {
+        if (!hasPendingProfilePictureUpload()) {
+            return AsyncResult.failure(new Exception("No upload to resume."));
+        }
+        progressListener = listener;
+        if (runningUpload != null && runningUpload.isActive()) {
+            return runningUpload.share();
+        }
+
+        String userId = auth.getCurrentUser().getUid();
+        String session = uploadPreferences.getString(KEY_UPLOAD_SESSION, null);
+        AsyncResult<User> upload = startUpload();
+        uploadFile(userId, new File(context.getCacheDir(), UPLOAD_FILE), session != null ? Uri.parse(session) : null, upload);
+        return upload.share();
+    }
+
+    /**
+     * Creates the result of a new upload, kept alive until the upload ends.
+     */
+    private AsyncResult<User> startUpload() {
+        AsyncResult<User> upload = new AsyncResult<>();
+        upload.observe(UPLOAD_IN_PROGRESS);
+        runningUpload = upload;
+        return upload;
+    }
+
+    /**
+     * Uploads the downscaled picture and its avatar, then stores their URLs in the user document.
+     *
+     * @param userId  The ID of the user.
+     * @param file    The downscaled picture.
+     * @param session Upload session to resume, or null to start a new one.
+     * @param upload  The result of the upload.
+     */
+    private void uploadFile(String userId, File file, Uri session, AsyncResult<User> upload) {
+        StorageReference pictureRef = storage.getReference().child("profile_pictures/" + userId + ".jpg");
+        StorageReference avatarRef = storage.getReference().child("profile_pictures/" + userId + "_avatar.jpg");
+        StorageMetadata metadata = new StorageMetadata.Builder().setContentType("image/jpeg").build();
+
+        // putFile uses a resumable session; record it so the upload can continue after the app is closed
+        Uri fileUri = Uri.fromFile(file);
+        UploadTask pictureUpload = session != null
+                ? pictureRef.putFile(fileUri, metadata, session)
+                : pictureRef.putFile(fileUri, metadata);
+        FirestoreMetrics.track("UsersRepository.uploadProfilePicture.picture", pictureUpload);
+        uploadPreferences.edit().putString(KEY_UPLOAD_USER, userId).remove(KEY_UPLOAD_SESSION).apply();
+        pictureUpload.addOnProgressListener(snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(uploadPreferences.getString(KEY_UPLOAD_SESSION, null))) {
+                uploadPreferences.edit().putString(KEY_UPLOAD_SESSION, sessionUri.toString()).apply();
+            }
+            if (progressListener != null && upload.isActive()) {
+                progressListener.onProgress(snapshot.getBytesTransferred(), snapshot.getTotalByteCount());
+            }
+        });
+        Task<Uri> pictureUrl = pictureUpload.continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return pictureRef.getDownloadUrl();
+        });
+
+        // The avatar is cut from the downscaled picture, a few KB sent in a single request
+        Task<Uri> avatarUrl = Tasks.call(executor, () -> {
+            Bitmap picture = ImageResizer.decodeScaled(context.getContentResolver(), fileUri, PICTURE_SIZE);
+            Bitmap avatar = ImageResizer.cropSquare(picture, AVATAR_SIZE);
+            byte[] avatarData = ImageResizer.toJpeg(avatar, AVATAR_MAX_BYTES);
+            picture.recycle();
+            avatar.recycle();
+            return avatarData;
+        }).continueWithTask(task -> FirestoreMetrics.track("UsersRepository.uploadProfilePicture.avatar",
+                avatarRef.putBytes(task.getResult(), metadata)))
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    return avatarRef.getDownloadUrl();
+                });
+
+        Tasks.whenAllSuccess(pictureUrl, avatarUrl)
+                .addOnSuccessListener(urls -> {
+                    // The URLs stay the same when a picture is replaced: the new version invalidates the cached images
+                    Map<String, Object> updates = new HashMap<>();
+                    updates.put("profilePictureUrl", urls.get(0).toString());
+                    updates.put("avatarUrl", urls.get(1).toString());
+                    updates.put("profilePictureVersion", System.currentTimeMillis());
+                    FirestoreMetrics.track("UsersRepository.uploadProfilePicture.update", db.collection("users")
                                     .document(userId)
-                                    .update("profilePictureUrl", downloadUrl)
-                                    .addOnSuccessListener(aVoid -> callback.onSuccess(downloadUrl))
-                                    .addOnFailureListener(callback::onFailure);
-                        }))
-                .addOnFailureListener(callback::onFailure);
+                                    .update(updates))
+                            .addOnSuccessListener(aVoid -> {
+                                clearPendingUpload(file);
+                                UserProfileCache.getInstance().invalidate(userId);
+                                // Read the document again (not shared with a read started before the update)
+                                AsyncResult.fromTask(FirestoreMetrics.track("UsersRepository.uploadProfilePicture.read",
+                                        db.collection("users").document(userId).get()))
+                                        .then(documentSnapshot -> toUser(documentSnapshot, "User data not found."))
+                                        .observe(new FirestoreCallback<User>() {
+                                            @Override
+                                            public void onSuccess(User user) {
+                                                upload.complete(user);
+                                            }
+
+                                            @Override
+                                            public void onFailure(Exception e) {
+                                                upload.fail(e);
+                                            }
+                                        });
+                            })
+                            .addOnFailureListener(upload::fail);
+                })
+                .addOnFailureListener(e -> {
+                    // The file and the session are kept, so the upload can be resumed later.
+                    // A resumed session that failed may have expired: the next attempt starts a new one
+                    Log.e("UsersRepository", "Error uploading profile picture", e);
+                    if (session != null) {
+                        uploadPreferences.edit().remove(KEY_UPLOAD_SESSION).apply();
+                    }
+                    upload.fail(e);
+                });
+    }
+
+    /**
+     * Forgets the upload that just ended and deletes its file.
+     */
+    private void clearPendingUpload(File file) {
+        uploadPreferences.edit().clear().apply();
+        if (!file.delete()) {
+            Log.w("UsersRepository", "Could not delete " + file);
+        }
     }
 
     /**
      * Updates the profile picture URL of the current user in Firestore.
      *
      * @param profilePictureUrl The new profile picture URL (null to remove the picture).
-     * @param callback Callback to indicate the success or failure of the operation.
+     * @return The result of the operation.
      */
-    public void updateProfilePicture(String profilePictureUrl, FirestoreCallback<Void> callback) {
+    public AsyncResult<Void> updateProfilePicture(String profilePictureUrl) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
-            callback.onFailure(new Exception("No authenticated user."));
-            return;
+            return AsyncResult.failure(new Exception("No authenticated user."));
         }
 
         String userId = currentUser.getUid();
-        db.collection("users")
-                .document(userId)
-                .update("profilePictureUrl", profilePictureUrl)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        AsyncResult<Void> result = new AsyncResult<>();
+        FirestoreMetrics.track("UsersRepository.updateProfilePicture", db.collection("users")
+                        .document(userId)
+                        .update("profilePictureUrl", profilePictureUrl,
+                                "avatarUrl", null, // The avatar is only created with an uploaded picture
+                                "profilePictureVersion", System.currentTimeMillis()))
+                .addOnSuccessListener(aVoid -> {
+                    UserProfileCache.getInstance().invalidate(userId);
+                    result.complete(null);
+                })
+                .addOnFailureListener(result::fail);
+        return result;
     }
 
     /**
@@ -167,41 +424,103 @@ public class UsersRepository {
      * @param userId   The ID of the user to be updated.
      * @param newName  The new name for the user.
      * @param newEmail The new email for the user.
-     * @param callback Callback to indicate the success or failure of the operation.
+     * @return The result of the operation.
      */
-    public void updateUserDetails(String userId, String newName, String newEmail, FirestoreCallback<Void> callback) {
+    public AsyncResult<Void> updateUserDetails(String userId, String newName, String newEmail) {
         DocumentReference userRef = db.collection("users").document(userId);
 
         Map<String, Object> updates = new HashMap<>();
         updates.put("name", newName);
         updates.put("email", newEmail);
 
-        userRef.update(updates)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(null))
-                .addOnFailureListener(callback::onFailure);
+        AsyncResult<Void> result = new AsyncResult<>();
+        FirestoreMetrics.track("UsersRepository.updateUserDetails", userRef.update(updates))
+                .addOnSuccessListener(aVoid -> {
+                    UserProfileCache.getInstance().invalidate(userId);
+                    result.complete(null);
+                })
+                .addOnFailureListener(result::fail);
+        return result;
     }
 
     /**
      * Fetches a user by their unique ID from Firestore.
+     * Concurrent calls for the same user share the same read.
      *
-     * @param userId   The ID of the user to retrieve.
-     * @param callback Callback to return the user or an error.
+     * @param userId The ID of the user to retrieve.
+     * @return The user, or the error.
      */
-    public void getUserById(String userId, FirestoreCallback<User> callback) {
-        db.collection("users")
-                .document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            user.setId(userId);
-                        }
-                        callback.onSuccess(user);
+    public AsyncResult<User> getUserById(String userId) {
+        return getUser(userId, "User not found.");
+    }
+
+    /**
+     * Reads a user from the data source, sharing the read with the other requests for the same user in flight.
+     *
+     * @param userId          The ID of the user to retrieve.
+     * @param notFoundMessage Message of the error returned if the user does not exist.
+     * @return The user, or the error.
+     */
+    private AsyncResult<User> getUser(String userId, String notFoundMessage) {
+        return userRequests.run(userId, () -> {
+            AsyncResult<User> read = dataSource.getUser(userId);
+            AsyncResult<User> result = new AsyncResult<>();
+            result.onCancel(read::cancel);
+            read.observe(new FirestoreCallback<User>() {
+                @Override
+                public void onSuccess(User user) {
+                    if (user == null) {
+                        result.fail(new Exception(notFoundMessage));
                     } else {
-                        callback.onFailure(new Exception("User not found."));
+                        result.deliver(user);
                     }
-                })
-                .addOnFailureListener(callback::onFailure);
+                }
+
+                @Override
+                public void onUpdated(User user) {
+                    // The cached profile was outdated (kept if the user was deleted meanwhile)
+                    if (user != null) {
+                        result.deliver(user);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    result.fail(e);
+                }
+            });
+            read.whenDone(result::finish);
+            return result;
+        });
+    }
+
+    /**
+     * Converts a user document into a User object.
+     */
+    private static AsyncResult<User> toUser(DocumentSnapshot documentSnapshot, String notFoundMessage) {
+        if (!documentSnapshot.exists()) {
+            return AsyncResult.failure(new Exception(notFoundMessage));
+        }
+        User user = documentSnapshot.toObject(User.class);
+        if (user != null) {
+            user.setId(documentSnapshot.getId());
+        }
+        return AsyncResult.success(user);
+    }
+
+    /**
+     * Fetches several users by their IDs from the data source
+     * (in Firestore, with one query per 10 users instead of one read per user).
+     * Users that do not exist are not included in the result.
+     *
+     * @param userIds The IDs of the users to retrieve.
+     * @return The users found, or the error.
+     */
+    public AsyncResult<List<User>> getUsersByIds(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return AsyncResult.success(new ArrayList<>());
+        }
+
+        return dataSource.getUsersByIds(userIds);
     }
 }
@@ -4,15 +4,23 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.pdm2_projeto.models.Account;
+import com.example.pdm2_projeto.models.LocationCategoryEntity;
+import com.example.pdm2_projeto.models.LocationEntity;
+import com.example.pdm2_projeto.models.LocationFts;
 import com.example.pdm2_projeto.roomdb.Daos.AccountDao;
+import com.example.pdm2_projeto.roomdb.Daos.LocationCategoryDao;
+import com.example.pdm2_projeto.roomdb.Daos.LocationDao;
 
 /**
  * Room Database class for managing the local SQLite database.
  * This class follows the Singleton pattern to ensure a single instance of the database.
  */
-@Database(entities = {Account.class}, version = 1, exportSchema = false)
+@Database(entities = {Account.class, LocationEntity.class, LocationFts.class, LocationCategoryEntity.class},
+        version = 5, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     /**
@@ -27,6 +35,69 @@ public abstract class AppDatabase extends RoomDatabase {
      */
     public abstract AccountDao accountDao();
 
+    /**
+     * Abstract method to access the LocationDao interface for the local copy of locations.
+     *
+     * @return Instance of LocationDao.
+     */
+    public abstract LocationDao locationDao();
+
+    /**
+     * Abstract method to access the LocationCategoryDao interface for the local copy of categories.
+     *
+     * @return Instance of LocationCategoryDao.
+     */
+    public abstract LocationCategoryDao locationCategoryDao();
+
+    /**
+     * Migration from version 1 to 2: adds the local locations table and its full-text search index.
+     * Keeps the existing account data instead of recreating the database.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `locations` (`id` TEXT NOT NULL, `name` TEXT, `nameEn` TEXT, "
+                    + "`description` TEXT, `descriptionEn` TEXT, `address` TEXT, `latitude` REAL NOT NULL, "
+                    + "`longitude` REAL NOT NULL, `categoryId` TEXT, `imageUrl` TEXT, `country` TEXT, "
+                    + "`countryEn` TEXT, `updatedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `locations_fts` USING FTS4(`locationId` TEXT, "
+                    + "`name` TEXT, `nameEn` TEXT, `description` TEXT, `descriptionEn` TEXT, `country` TEXT, "
+                    + "`countryEn` TEXT)");
+        }
+    };
+
+    /**
+     * Migration from version 2 to 3: records when each local location was downloaded,
+     * so cached locations can be revalidated once they are older than the cache TTL.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `locations` ADD COLUMN `cachedAt` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Migration from version 3 to 4: adds the local copy of the location categories.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `location_categories` (`id` TEXT NOT NULL, "
+                    + "`description` TEXT, `descriptionEn` TEXT, `cachedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+
+    /**
+     * Migration from version 4 to 5: stores the thumbnail shown in the location lists.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `locations` ADD COLUMN `thumbnailUrl` TEXT");
+        }
+    };
+
     /**
      * Returns the singleton instance of the database.
      * If the instance does not exist, it initializes the database with Room.
@@ -40,7 +111,7 @@ public abstract class AppDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "account_database")
-                            .fallbackToDestructiveMigration() // Allows migration strategy for database schema changes.
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5) // Keeps existing data when the schema changes.
                             .build();
                 }
             }
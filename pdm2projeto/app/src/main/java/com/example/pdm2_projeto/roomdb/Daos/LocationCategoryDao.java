@@ -0,0 +1,50 @@
+package com.example.pdm2_projeto.roomdb.Daos;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Upsert;
+
+import com.example.pdm2_projeto.models.LocationCategoryEntity;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) interface for managing the local copy of location categories in Room Database.
+ */
+@Dao
+public interface LocationCategoryDao {
+
+    /**
+     * Retrieves all stored categories, ordered by ID (the order of the Firestore collection).
+     *
+     * @return The stored categories.
+     */
+    @Query("SELECT * FROM location_categories ORDER BY id")
+    List<LocationCategoryEntity> getAll();
+
+    /**
+     * Inserts or updates category records.
+     *
+     * @param categories The categories to be stored.
+     */
+    @Upsert
+    void upsertCategories(List<LocationCategoryEntity> categories);
+
+    /**
+     * Removes all category records.
+     */
+    @Query("DELETE FROM location_categories")
+    void clearCategories();
+
+    /**
+     * Replaces every stored category with the given ones.
+     *
+     * @param categories The complete list of categories.
+     */
+    @Transaction
+    default void replaceAll(List<LocationCategoryEntity> categories) {
+        clearCategories();
+        upsertCategories(categories);
+    }
+}
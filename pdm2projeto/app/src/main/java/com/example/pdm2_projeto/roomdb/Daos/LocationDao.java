@@ -0,0 +1,180 @@
+package com.example.pdm2_projeto.roomdb.Daos;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Upsert;
+
+import com.example.pdm2_projeto.models.LocationEntity;
+import com.example.pdm2_projeto.models.LocationFts;
+import com.example.pdm2_projeto.models.LocationSearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) interface for managing the local copy of locations in Room Database.
+ * Keeps the "locations" table and its full-text search index ("locations_fts") in sync.
+ */
+@Dao
+public interface LocationDao {
+
+    /**
+     * Inserts or updates location records.
+     *
+     * @param locations The locations to be stored.
+     */
+    @Upsert
+    void upsertLocations(List<LocationEntity> locations);
+
+    /**
+     * Inserts full-text search entries.
+     *
+     * @param entries The search entries to be stored.
+     */
+    @Insert
+    void insertSearchEntries(List<LocationFts> entries);
+
+    /**
+     * Removes the full-text search entries of the given locations.
+     *
+     * @param locationIds The IDs of the locations whose entries should be removed.
+     */
+    @Query("DELETE FROM locations_fts WHERE locationId IN (:locationIds)")
+    void deleteSearchEntries(List<String> locationIds);
+
+    /**
+     * Removes all location records.
+     */
+    @Query("DELETE FROM locations")
+    void clearLocations();
+
+    /**
+     * Removes all full-text search entries.
+     */
+    @Query("DELETE FROM locations_fts")
+    void clearSearchEntries();
+
+    /**
+     * Counts the locations stored locally.
+     *
+     * @return The number of stored locations.
+     */
+    @Query("SELECT COUNT(*) FROM locations")
+    int countLocations();
+
+    /**
+     * Retrieves all stored locations, ordered by name.
+     *
+     * @return The stored locations.
+     */
+    @Query("SELECT * FROM locations WHERE name IS NOT NULL ORDER BY name, id")
+    List<LocationEntity> getAll();
+
+    /**
+     * Retrieves a page of stored locations ordered by name, starting after the given name and ID
+     * (the same order as the Firestore query, so pages from both sources line up).
+     *
+     * @param afterName Name of the last location of the previous page ("" for the first page).
+     * @param afterId   ID of the last location of the previous page ("" for the first page).
+     * @param limit     Maximum number of locations to return.
+     * @return The stored locations of the page.
+     */
+    @Query("SELECT * FROM locations WHERE name > :afterName OR (name = :afterName AND id > :afterId) "
+            + "ORDER BY name, id LIMIT :limit")
+    List<LocationEntity> getPageAfter(String afterName, String afterId, int limit);
+
+    /**
+     * Retrieves the stored locations between two latitudes, ordered by latitude.
+     * Used to answer area queries, which are then filtered by the exact area on the device.
+     *
+     * @param south The minimum latitude.
+     * @param north The maximum latitude.
+     * @return The stored locations in the latitude band.
+     */
+    @Query("SELECT * FROM locations WHERE latitude BETWEEN :south AND :north ORDER BY latitude, id")
+    List<LocationEntity> getInLatitudeRange(double south, double north);
+
+    /**
+     * Retrieves a stored location by its ID.
+     *
+     * @param id The ID of the location.
+     * @return The stored location, or null if it is not stored.
+     */
+    @Query("SELECT * FROM locations WHERE id = :id")
+    LocationEntity getById(String id);
+
+    /**
+     * Removes a location record.
+     *
+     * @param id The ID of the location to remove.
+     */
+    @Query("DELETE FROM locations WHERE id = :id")
+    void deleteLocation(String id);
+
+    /**
+     * Retrieves the stored locations with the given IDs.
+     *
+     * @param ids The IDs of the locations (at most 999, SQLite's limit of parameters).
+     * @return The stored locations, in any order; IDs that are not stored are skipped.
+     */
+    @Query("SELECT * FROM locations WHERE id IN (:ids)")
+    List<LocationEntity> getByIds(List<String> ids);
+
+    /**
+     * Searches the full-text index and returns the ID and name of the matching locations with their match information.
+     *
+     * @param match      The FTS4 match expression (e.g. "torre* bel*").
+     * @param categoryId The category to filter by, or null for all categories.
+     * @return The matches (unranked).
+     */
+    @Query("SELECT locations.id AS locationId, locations.name AS name, matchinfo(locations_fts, 'pcx') AS matchInfo FROM locations_fts "
+            + "JOIN locations ON locations.id = locations_fts.locationId "
+            + "WHERE locations_fts MATCH :match "
+            + "AND (:categoryId IS NULL OR locations.categoryId = :categoryId)")
+    List<LocationSearchResult> search(String match, String categoryId);
+
+    /**
+     * Inserts or updates locations together with their full-text search entries.
+     *
+     * @param locations The locations to be stored.
+     * @param entries   The search entries of those locations.
+     */
+    @Transaction
+    default void upsertWithSearchEntries(List<LocationEntity> locations, List<LocationFts> entries) {
+        List<String> ids = new ArrayList<>();
+        for (LocationEntity location : locations) {
+            ids.add(location.getId());
+        }
+        deleteSearchEntries(ids);
+        upsertLocations(locations);
+        insertSearchEntries(entries);
+    }
+
+    /**
+     * Removes a location together with its full-text search entry.
+     *
+     * @param id The ID of the location to remove.
+     */
+    @Transaction
+    default void deleteWithSearchEntry(String id) {
+        deleteSearchEntries(Collections.singletonList(id));
+        deleteLocation(id);
+    }
+
+    /**
+     * Replaces every stored location and search entry with the given ones.
+     *
+     * @param locations The complete list of locations.
+     * @param entries   The search entries of those locations.
+     */
+    @Transaction
+    default void replaceAll(List<LocationEntity> locations, List<LocationFts> entries) {
+        clearSearchEntries();
+        clearLocations();
+        upsertLocations(locations);
+        insertSearchEntries(entries);
+    }
+}
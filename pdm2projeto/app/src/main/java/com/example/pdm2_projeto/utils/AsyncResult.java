@@ -0,0 +1,446 @@
+package com.example.pdm2_projeto.utils;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Result of an asynchronous repository operation, returned instead of taking a callback.
+ *
+ * The repository produces values with {@link #deliver(Object)} / {@link #complete(Object)} or an error
+ * with {@link #fail(Exception)}; callers observe it with a {@link FirestoreCallback}. The first value is
+ * delivered through onSuccess and later ones (e.g. after a cached value was revalidated) through onUpdated.
+ * Observers added late receive the last value or error immediately.
+ *
+ * A result can be cancelled, which stops delivering values and runs the actions registered by the
+ * repository with {@link #onCancel(Runnable)} (cancelling background reads, skipping follow-up queries).
+ * Results observed with {@link #observe(LifecycleOwner, FirestoreCallback)} are cancelled automatically
+ * when the owner (usually the fragment's view) is destroyed and nobody else observes them.
+ *
+ * Only used on the main thread, where Firestore delivers its results.
+ *
+ * @param <T> The type of the value.
+ */
+public class AsyncResult<T> {
+
+    private final List<FirestoreCallback<T>> observers = new ArrayList<>();
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private final List<Runnable> doneActions = new ArrayList<>();
+
+    private T value;
+    private boolean hasValue = false;
+    private Exception error;
+    private boolean done = false;
+    private boolean cancelled = false;
+
+    /**
+     * Returns a result that already holds a value.
+     *
+     * @param value The value.
+     * @return The completed result.
+     */
+    public static <T> AsyncResult<T> success(T value) {
+        AsyncResult<T> result = new AsyncResult<>();
+        result.complete(value);
+        return result;
+    }
+
+    /**
+     * Returns a result that already failed.
+     *
+     * @param e The error.
+     * @return The failed result.
+     */
+    public static <T> AsyncResult<T> failure(Exception e) {
+        AsyncResult<T> result = new AsyncResult<>();
+        result.fail(e);
+        return result;
+    }
+
+    /**
+     * Wraps a Firebase task. Cancelling the result does not stop the task (Firebase tasks cannot be
+     * cancelled), but its outcome is then ignored.
+     *
+     * @param task The task.
+     * @return A result completed with the outcome of the task.
+     */
+    public static <T> AsyncResult<T> fromTask(Task<T> task) {
+        AsyncResult<T> result = new AsyncResult<>();
+        task.addOnCompleteListener(completed -> {
+            if (completed.isSuccessful()) {
+                result.complete(completed.getResult());
+            } else {
+                result.fail(completed.getException());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs several operations in parallel and combines their values, in the same order.
+     * Fails as soon as one of them fails, cancelling the others; cancelling the combined result
+     * cancels every operation. If an operation delivers an updated value, the combined value is
+     * delivered again.
+     *
+     * @param results The operations to combine.
+     * @return A result holding the values of every operation.
+     */
+    public static <T> AsyncResult<List<T>> all(List<AsyncResult<T>> results) {
+        AsyncResult<List<T>> combined = new AsyncResult<>();
+        if (results.isEmpty()) {
+            combined.complete(new ArrayList<>());
+            return combined;
+        }
+
+        List<T> values = new ArrayList<>(Collections.nCopies(results.size(), null));
+        boolean[] received = new boolean[results.size()];
+        int[] pending = {results.size(), results.size()}; // Without a value, not finished
+
+        for (int i = 0; i < results.size(); i++) {
+            final int index = i;
+            AsyncResult<T> part = results.get(i);
+            combined.onCancel(part::cancel);
+            part.observe(new FirestoreCallback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    values.set(index, result);
+                    if (!received[index]) {
+                        received[index] = true;
+                        pending[0]--;
+                    }
+                    if (pending[0] == 0) {
+                        combined.deliver(new ArrayList<>(values));
+                    }
+                }
+
+                @Override
+                public void onUpdated(T result) {
+                    onSuccess(result);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    combined.fail(e);
+                    for (AsyncResult<T> other : results) {
+                        other.cancel();
+                    }
+                }
+            });
+            part.whenDone(() -> {
+                if (part.isCancelled()) {
+                    combined.cancel();
+                } else if (--pending[1] == 0 && pending[0] == 0) {
+                    combined.finish();
+                }
+            });
+        }
+        return combined;
+    }
+
+    // ---- Producer side ----
+
+    /**
+     * Delivers a value: the first one through onSuccess, later ones through onUpdated.
+     * Ignored once the result is finished or cancelled.
+     *
+     * @param value The value.
+     */
+    public void deliver(T value) {
+        if (done || cancelled) return;
+        boolean first = !hasValue;
+        this.value = value;
+        hasValue = true;
+        for (FirestoreCallback<T> observer : new ArrayList<>(observers)) {
+            if (first) {
+                observer.onSuccess(value);
+            } else {
+                observer.onUpdated(value);
+            }
+        }
+    }
+
+    /**
+     * Delivers a last value and finishes the result.
+     *
+     * @param value The value.
+     */
+    public void complete(T value) {
+        deliver(value);
+        finish();
+    }
+
+    /**
+     * Finishes the result with an error. Observers are only told if no value was delivered before
+     * (an error while revalidating a cached value keeps the cached value).
+     *
+     * @param e The error.
+     */
+    public void fail(Exception e) {
+        if (done || cancelled) return;
+        if (!hasValue) {
+            error = e;
+            for (FirestoreCallback<T> observer : new ArrayList<>(observers)) {
+                observer.onFailure(e);
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Finishes the result without a new value: no more updates will be delivered.
+     */
+    public void finish() {
+        if (done || cancelled) return;
+        done = true;
+        observers.clear();
+        cancelActions.clear();
+        runDoneActions();
+    }
+
+    /**
+     * Indicates whether the result was cancelled; producers check it before starting more work.
+     *
+     * @return True if the result was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Indicates whether the result can still deliver values.
+     *
+     * @return False once the result is finished or cancelled.
+     */
+    public boolean isActive() {
+        return !done && !cancelled;
+    }
+
+    /**
+     * Registers an action that stops the work behind the result when it is cancelled
+     * (e.g. cancelling a background read). Runs immediately if the result is already cancelled.
+     *
+     * @param action The action to run.
+     * @return This result.
+     */
+    public AsyncResult<T> onCancel(Runnable action) {
+        if (cancelled) {
+            action.run();
+        } else if (!done) {
+            cancelActions.add(action);
+        }
+        return this;
+    }
+
+    /**
+     * Registers an action to run once the result is finished, failed or cancelled.
+     * Runs immediately if it already is.
+     *
+     * @param action The action to run.
+     * @return This result.
+     */
+    public AsyncResult<T> whenDone(Runnable action) {
+        if (done || cancelled) {
+            action.run();
+        } else {
+            doneActions.add(action);
+        }
+        return this;
+    }
+
+    // ---- Consumer side ----
+
+    /**
+     * Observes the result. The callback receives the last value or error immediately if there is one.
+     * Nothing is delivered after the result is cancelled.
+     *
+     * @param callback Callback to receive the values or the error.
+     * @return This result, so it can be cancelled later.
+     */
+    public AsyncResult<T> observe(FirestoreCallback<T> callback) {
+        if (cancelled) return this;
+        if (hasValue) {
+            callback.onSuccess(value);
+        } else if (error != null) {
+            callback.onFailure(error);
+        }
+        if (!done) {
+            observers.add(callback);
+        }
+        return this;
+    }
+
+    /**
+     * Observes the result until the owner is destroyed. When the last observer goes away before the
+     * result is finished, the result is cancelled, so the repository stops working for a screen that is gone.
+     * Fragments should pass {@code getViewLifecycleOwner()}.
+     *
+     * @param owner    The lifecycle the observation is bound to.
+     * @param callback Callback to receive the values or the error.
+     * @return This result.
+     */
+    public AsyncResult<T> observe(LifecycleOwner owner, FirestoreCallback<T> callback) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            if (observers.isEmpty()) {
+                cancel();
+            }
+            return this;
+        }
+
+        LifecycleEventObserver lifecycleObserver = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                removeObserver(callback);
+            }
+        };
+        lifecycle.addObserver(lifecycleObserver);
+        whenDone(() -> lifecycle.removeObserver(lifecycleObserver));
+        return observe(callback);
+    }
+
+    /**
+     * Stops delivering values to a callback. The result is cancelled if it was the last observer
+     * and the result is not finished.
+     *
+     * @param callback The callback passed to observe.
+     */
+    public void removeObserver(FirestoreCallback<T> callback) {
+        if (observers.remove(callback) && observers.isEmpty()) {
+            cancel();
+        }
+    }
+
+    /**
+     * Cancels the result: observers are no longer called and the work behind it is stopped.
+     * Has no effect once the result is finished.
+     */
+    public void cancel() {
+        if (done || cancelled) return;
+        cancelled = true;
+        observers.clear();
+        List<Runnable> actions = new ArrayList<>(cancelActions);
+        cancelActions.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+        runDoneActions();
+    }
+
+    /**
+     * Returns a view of this result with its own cancellation, used to give the same in-flight
+     * operation to several callers: cancelling the view only detaches it, and the operation is
+     * cancelled when every view was cancelled.
+     *
+     * @return A new result delivering the same values.
+     */
+    public AsyncResult<T> share() {
+        return map(Function.identity());
+    }
+
+    /**
+     * Returns a result whose values are transformed by the given function.
+     * Cancelling it cancels this result if nothing else observes it.
+     *
+     * @param mapper The transformation, run on the main thread.
+     * @return The transformed result.
+     */
+    public <R> AsyncResult<R> map(Function<T, R> mapper) {
+        AsyncResult<R> mapped = new AsyncResult<>();
+        FirestoreCallback<T> forward = new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                mapped.deliver(mapper.apply(result));
+            }
+
+            @Override
+            public void onUpdated(T result) {
+                mapped.deliver(mapper.apply(result));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                mapped.fail(e);
+            }
+        };
+        mapped.onCancel(() -> removeObserver(forward));
+        // Observe first: a result already completed replays its value before it finishes the mapped one
+        observe(forward);
+        whenDone(() -> {
+            if (cancelled) {
+                mapped.cancel();
+            } else {
+                mapped.finish();
+            }
+        });
+        return mapped;
+    }
+
+    /**
+     * Starts a second operation with the first value of this result, e.g. reading the locations of the
+     * user's favorites once the favorites are known. Cancelling the returned result cancels whichever
+     * operation is running. Updated values of this result do not restart the second operation.
+     *
+     * @param next Starts the second operation.
+     * @return The result of the second operation.
+     */
+    public <R> AsyncResult<R> then(Function<T, AsyncResult<R>> next) {
+        AsyncResult<R> chained = new AsyncResult<>();
+        chained.onCancel(this::cancel);
+        observe(new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                if (!chained.isActive()) return;
+                AsyncResult<R> second = next.apply(result);
+                chained.onCancel(second::cancel);
+                second.observe(new FirestoreCallback<R>() {
+                    @Override
+                    public void onSuccess(R value) {
+                        chained.deliver(value);
+                    }
+
+                    @Override
+                    public void onUpdated(R value) {
+                        chained.deliver(value);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        chained.fail(e);
+                    }
+                });
+                second.whenDone(chained::finish);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                chained.fail(e);
+            }
+        });
+        whenDone(() -> {
+            if (cancelled) {
+                chained.cancel();
+            } else if (!hasValue) {
+                chained.finish();
+            }
+        });
+        return chained;
+    }
+
+    /**
+     * Runs the actions registered with {@link #whenDone(Runnable)}.
+     */
+    private void runDoneActions() {
+        List<Runnable> actions = new ArrayList<>(doneActions);
+        doneActions.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+}
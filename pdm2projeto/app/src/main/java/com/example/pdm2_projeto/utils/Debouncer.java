@@ -0,0 +1,46 @@
+package com.example.pdm2_projeto.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Utility class that delays an action until no new action has been submitted for a given time.
+ * Used to wait for the user to stop typing before running a search.
+ * Must be used from the main thread.
+ */
+public class Debouncer {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long delayMs;
+    private Runnable pending;
+
+    /**
+     * Creates a debouncer with the given delay.
+     *
+     * @param delayMs Time in milliseconds to wait after the last submitted action.
+     */
+    public Debouncer(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    /**
+     * Schedules the action, replacing any action that has not run yet.
+     *
+     * @param action The action to run after the delay.
+     */
+    public void submit(Runnable action) {
+        cancel();
+        pending = action;
+        handler.postDelayed(action, delayMs);
+    }
+
+    /**
+     * Cancels the scheduled action, if any.
+     */
+    public void cancel() {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+}
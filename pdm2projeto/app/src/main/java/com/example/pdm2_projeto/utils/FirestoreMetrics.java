@@ -0,0 +1,278 @@
+package com.example.pdm2_projeto.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records what each repository call costs: how long it takes (as a latency histogram), how many
+ * documents it reads, whether they came from the local cache or the server, and how often it fails.
+ * Calls are grouped by call site (e.g. "LocationsRepository.getPaginatedLocations").
+ *
+ * Collection is off by default and only switched on from the performance panel of the settings.
+ * While it is off, {@link #track(String, Task)} returns the task untouched, so repositories can wrap
+ * every call without cost.
+ */
+public class FirestoreMetrics {
+
+    /**
+     * Upper bounds (in ms) of the latency histogram buckets; the last bucket holds slower calls.
+     */
+    private static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500};
+
+    private static volatile boolean enabled = false;
+
+    // Counters by call site, in the order the call sites were first seen
+    private static final Map<String, CallSiteStats> statsByCallSite = new LinkedHashMap<>();
+    private static long since = System.currentTimeMillis();
+
+    private FirestoreMetrics() {}
+
+    /**
+     * Switches the collection on or off. The counters already recorded are kept.
+     *
+     * @param enabled Whether calls should be recorded.
+     */
+    public static void setEnabled(boolean enabled) {
+        FirestoreMetrics.enabled = enabled;
+    }
+
+    /**
+     * Indicates whether calls are being recorded.
+     *
+     * @return True if the collection is on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the outcome of a Firestore or Storage task once it completes.
+     * Query and document results also count the documents read and whether they came from the cache.
+     *
+     * @param callSite Name of the repository method that started the task.
+     * @param task     The task.
+     * @return The same task, so the call can be wrapped in place.
+     */
+    public static <T> Task<T> track(String callSite, Task<T> task) {
+        if (!enabled) return task;
+        long start = SystemClock.elapsedRealtime();
+        task.addOnCompleteListener(completed -> {
+            long latencyMs = SystemClock.elapsedRealtime() - start;
+            if (completed.isSuccessful()) {
+                record(callSite, latencyMs, completed.getResult(), false);
+            } else {
+                record(callSite, latencyMs, null, true);
+                Log.w("FirestoreMetrics", callSite + " failed after " + latencyMs + " ms", completed.getException());
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Records an event of a snapshot listener. Only the changed documents are counted, since they are
+     * the ones read again; listener events have no latency.
+     *
+     * @param callSite Name of the repository method that registered the listener.
+     * @param snapshot The snapshot received, or null if the listener failed.
+     */
+    public static void recordSnapshot(String callSite, QuerySnapshot snapshot) {
+        if (!enabled) return;
+        if (snapshot == null) {
+            record(callSite, -1, null, true);
+            return;
+        }
+        synchronized (statsByCallSite) {
+            CallSiteStats stats = statsFor(callSite);
+            stats.calls++;
+            stats.documents += snapshot.getDocumentChanges().size();
+            countSource(stats, snapshot.getMetadata().isFromCache());
+        }
+    }
+
+    /**
+     * Clears every counter.
+     */
+    public static void reset() {
+        synchronized (statsByCallSite) {
+            statsByCallSite.clear();
+            since = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns a readable summary of the counters, one block per call site, for the performance panel.
+     *
+     * @return The summary, or an empty string if nothing was recorded.
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        synchronized (statsByCallSite) {
+            for (Map.Entry<String, CallSiteStats> entry : statsByCallSite.entrySet()) {
+                CallSiteStats stats = entry.getValue();
+                summary.append(entry.getKey()).append('\n')
+                        .append(String.format(Locale.ROOT, "  calls=%d failures=%d docs=%d cache=%d server=%d%n",
+                                stats.calls, stats.failures, stats.documents, stats.fromCache, stats.fromServer));
+                if (stats.timedCalls > 0) {
+                    summary.append(String.format(Locale.ROOT, "  avg=%dms max=%dms  %s%n",
+                            stats.totalMs / stats.timedCalls, stats.maxMs, histogramText(stats)));
+                }
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Exports the counters as JSON, so they can be shared and compared between builds.
+     *
+     * @return The counters as a JSON document.
+     */
+    public static String toJson() {
+        try {
+            JSONObject root = new JSONObject();
+            JSONArray callSites = new JSONArray();
+            synchronized (statsByCallSite) {
+                root.put("since", since);
+                root.put("exportedAt", System.currentTimeMillis());
+                for (Map.Entry<String, CallSiteStats> entry : statsByCallSite.entrySet()) {
+                    CallSiteStats stats = entry.getValue();
+                    JSONObject json = new JSONObject();
+                    json.put("callSite", entry.getKey());
+                    json.put("calls", stats.calls);
+                    json.put("failures", stats.failures);
+                    json.put("documents", stats.documents);
+                    json.put("fromCache", stats.fromCache);
+                    json.put("fromServer", stats.fromServer);
+                    json.put("avgMs", stats.timedCalls > 0 ? stats.totalMs / stats.timedCalls : 0);
+                    json.put("maxMs", stats.maxMs);
+
+                    JSONArray histogram = new JSONArray();
+                    for (int i = 0; i < stats.histogram.length; i++) {
+                        JSONObject bucket = new JSONObject();
+                        bucket.put("upToMs", i < LATENCY_BUCKETS_MS.length ? LATENCY_BUCKETS_MS[i] : JSONObject.NULL);
+                        bucket.put("count", stats.histogram[i]);
+                        histogram.put(bucket);
+                    }
+                    json.put("latencyHistogram", histogram);
+                    callSites.put(json);
+                }
+            }
+            root.put("callSites", callSites);
+            return root.toString(2);
+        } catch (JSONException e) {
+            Log.e("FirestoreMetrics", "Error exporting metrics", e);
+            return "{}";
+        }
+    }
+
+    /**
+     * Adds a completed call to the counters of its call site.
+     *
+     * @param latencyMs Duration of the call, or -1 if it has none.
+     * @param result    Result of the call, used to count the documents read.
+     * @param failed    Whether the call failed.
+     */
+    private static void record(String callSite, long latencyMs, Object result, boolean failed) {
+        synchronized (statsByCallSite) {
+            CallSiteStats stats = statsFor(callSite);
+            stats.calls++;
+            if (failed) {
+                stats.failures++;
+            }
+            if (latencyMs >= 0) {
+                stats.timedCalls++;
+                stats.totalMs += latencyMs;
+                stats.maxMs = Math.max(stats.maxMs, latencyMs);
+                stats.histogram[bucketFor(latencyMs)]++;
+            }
+
+            if (result instanceof QuerySnapshot) {
+                QuerySnapshot snapshot = (QuerySnapshot) result;
+                stats.documents += snapshot.size();
+                countSource(stats, snapshot.getMetadata().isFromCache());
+            } else if (result instanceof DocumentSnapshot) {
+                DocumentSnapshot snapshot = (DocumentSnapshot) result;
+                stats.documents++; // A missing document is still billed as one read
+                countSource(stats, snapshot.getMetadata().isFromCache());
+            }
+        }
+    }
+
+    /**
+     * Counts a result as coming from the local cache or from the server.
+     */
+    private static void countSource(CallSiteStats stats, boolean fromCache) {
+        if (fromCache) {
+            stats.fromCache++;
+        } else {
+            stats.fromServer++;
+        }
+    }
+
+    /**
+     * Returns the counters of a call site, creating them the first time it is seen.
+     */
+    private static CallSiteStats statsFor(String callSite) {
+        CallSiteStats stats = statsByCallSite.get(callSite);
+        if (stats == null) {
+            stats = new CallSiteStats();
+            statsByCallSite.put(callSite, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the index of the histogram bucket of a latency.
+     */
+    private static int bucketFor(long latencyMs) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (latencyMs <= LATENCY_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    /**
+     * Formats the histogram of a call site, e.g. "≤50:3 ≤100:1 >2500:0".
+     */
+    private static String histogramText(CallSiteStats stats) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < stats.histogram.length; i++) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(i < LATENCY_BUCKETS_MS.length
+                    ? "≤" + LATENCY_BUCKETS_MS[i]
+                    : ">" + LATENCY_BUCKETS_MS[LATENCY_BUCKETS_MS.length - 1]);
+            text.append(':').append(stats.histogram[i]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Counters of one call site.
+     */
+    private static class CallSiteStats {
+        long calls;
+        long failures;
+        long documents;
+        long fromCache;
+        long fromServer;
+        long timedCalls;
+        long totalMs;
+        long maxMs;
+        final long[] histogram = new long[LATENCY_BUCKETS_MS.length + 1];
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.pdm2_projeto.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Utility class for geohashes, used as a spatial index of the locations in Firestore.
+ * A geohash encodes a coordinate as a base-32 string in which nearby points share a prefix,
+ * so the locations inside an area can be found with a few range queries on a single field.
+ * Does not use any Android class.
+ */
+public final class GeoHash {
+
+    /**
+     * Number of characters of the geohash stored with each location (cells of about 5 x 5 meters).
+     */
+    public static final int STORED_PRECISION = 9;
+
+    /**
+     * Maximum number of grid cells used to cover an area. The cells are merged into ranges,
+     * so the number of queries is at most this.
+     */
+    private static final int MAX_CELLS = 9;
+
+    /**
+     * Mean radius of the Earth in meters.
+     */
+    private static final double EARTH_RADIUS_M = 6371008.8;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private GeoHash() {}
+
+    /**
+     * Encodes a coordinate as a geohash.
+     *
+     * @param latitude  The latitude, between -90 and 90.
+     * @param longitude The longitude, between -180 and 180.
+     * @param precision The number of characters of the geohash.
+     * @return The geohash of the coordinate.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true; // Bits alternate between longitude and latitude, starting with longitude
+        int bit = 0;
+        int value = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLng = mid;
+                } else {
+                    value <<= 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(value));
+                bit = 0;
+                value = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Returns the geohash ranges that cover a rectangular area, merged where the cells are consecutive.
+     * The precision is the finest one that covers the area with at most {@link #MAX_CELLS} cells,
+     * so every range is a prefix query that reads few documents outside the area.
+     * An area whose west edge is greater than its east edge crosses the antimeridian.
+     *
+     * @param south The minimum latitude.
+     * @param west  The western longitude.
+     * @param north The maximum latitude.
+     * @param east  The eastern longitude.
+     * @return The ranges as {start, end} pairs, to be queried with startAt(start).endAt(end).
+     */
+    public static List<String[]> coveringRanges(double south, double west, double north, double east) {
+        TreeSet<String> cells = new TreeSet<>();
+        if (west > east) {
+            int precision = Math.min(coveringPrecision(south, west, north, 180),
+                    coveringPrecision(south, -180, north, east));
+            addCells(cells, south, west, north, 180, precision);
+            addCells(cells, south, -180, north, east, precision);
+        } else {
+            addCells(cells, south, west, north, east, coveringPrecision(south, west, north, east));
+        }
+
+        // Consecutive cells (e.g. "u0" and "u1") are read with a single query
+        List<String[]> ranges = new ArrayList<>();
+        String start = null;
+        String last = null;
+        for (String cell : cells) {
+            if (last != null && cell.equals(next(last))) {
+                last = cell;
+                continue;
+            }
+            if (start != null) {
+                ranges.add(new String[]{start, last + "~"});
+            }
+            start = cell;
+            last = cell;
+        }
+        if (start != null) {
+            ranges.add(new String[]{start, last + "~"});
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the great-circle distance between two coordinates (haversine formula).
+     *
+     * @return The distance in meters.
+     */
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLng = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Returns the finest precision at which the area is covered by at most {@link #MAX_CELLS} cells.
+     */
+    private static int coveringPrecision(double south, double west, double north, double east) {
+        int precision = 1;
+        for (int candidate = 1; candidate <= STORED_PRECISION; candidate++) {
+            long rows = cellIndex(north, -90, 180, cellHeight(candidate)) - cellIndex(south, -90, 180, cellHeight(candidate)) + 1;
+            long columns = cellIndex(east, -180, 360, cellWidth(candidate)) - cellIndex(west, -180, 360, cellWidth(candidate)) + 1;
+            if (rows * columns > MAX_CELLS) {
+                break;
+            }
+            precision = candidate;
+        }
+        return precision;
+    }
+
+    /**
+     * Adds the geohash of every cell of the given precision that intersects the area.
+     */
+    private static void addCells(TreeSet<String> cells, double south, double west, double north, double east, int precision) {
+        double height = cellHeight(precision);
+        double width = cellWidth(precision);
+        long firstRow = cellIndex(south, -90, 180, height);
+        long lastRow = cellIndex(north, -90, 180, height);
+        long firstColumn = cellIndex(west, -180, 360, width);
+        long lastColumn = cellIndex(east, -180, 360, width);
+
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                // Encode the center of the cell
+                cells.add(encode(-90 + (row + 0.5) * height, -180 + (column + 0.5) * width, precision));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the cell that contains the coordinate along one axis.
+     */
+    private static long cellIndex(double coordinate, double origin, double span, double cellSize) {
+        long cellCount = Math.round(span / cellSize);
+        return Math.max(0, Math.min(cellCount - 1, (long) Math.floor((coordinate - origin) / cellSize)));
+    }
+
+    /**
+     * Returns the height in degrees of a cell of the given precision.
+     */
+    private static double cellHeight(int precision) {
+        int latitudeBits = (5 * precision) / 2;
+        return 180 / Math.pow(2, latitudeBits);
+    }
+
+    /**
+     * Returns the width in degrees of a cell of the given precision.
+     */
+    private static double cellWidth(int precision) {
+        int longitudeBits = (5 * precision + 1) / 2;
+        return 360 / Math.pow(2, longitudeBits);
+    }
+
+    /**
+     * Returns the geohash that follows the given one in sort order, at the same precision,
+     * or null if it is the last one.
+     */
+    private static String next(String hash) {
+        int last = hash.length() - 1;
+        int index = BASE32.indexOf(hash.charAt(last));
+        if (index < BASE32.length() - 1) {
+            return hash.substring(0, last) + BASE32.charAt(index + 1);
+        }
+        if (last == 0) {
+            return null;
+        }
+        String prefix = next(hash.substring(0, last));
+        return prefix == null ? null : prefix + BASE32.charAt(0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.pdm2_projeto.utils;
+
+import com.example.pdm2_projeto.models.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class that groups nearby locations into clusters for the map.
+ * Locations are projected to screen pixels at the current zoom level (Web Mercator)
+ * and grouped by square grid cells, so the work is linear in the number of locations.
+ * Does not use any Android class and can run on a background thread.
+ */
+public final class GridClusterer {
+
+    /**
+     * Size in pixels of a map tile at zoom level 0.
+     */
+    private static final double TILE_SIZE = 256;
+
+    private GridClusterer() {}
+
+    /**
+     * Groups the locations that fall in the same grid cell at the given zoom level.
+     *
+     * @param locations  The locations to group.
+     * @param zoom       The current zoom level of the map.
+     * @param cellSizePx The size of a grid cell, in pixels.
+     * @return The clusters, in a stable order. Cells with a single location produce a cluster of size 1.
+     */
+    public static List<Cluster> cluster(List<Location> locations, float zoom, int cellSizePx) {
+        int zoomLevel = (int) Math.floor(zoom);
+        double worldSize = TILE_SIZE * Math.pow(2, zoomLevel);
+
+        Map<String, List<Location>> cells = new LinkedHashMap<>();
+        for (Location location : locations) {
+            long cellX = (long) Math.floor(toPixelX(location.getLongitude(), worldSize) / cellSizePx);
+            long cellY = (long) Math.floor(toPixelY(location.getLatitude(), worldSize) / cellSizePx);
+            String cellKey = zoomLevel + ":" + cellX + ":" + cellY;
+
+            List<Location> cell = cells.get(cellKey);
+            if (cell == null) {
+                cell = new ArrayList<>();
+                cells.put(cellKey, cell);
+            }
+            cell.add(location);
+        }
+
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for (Map.Entry<String, List<Location>> cell : cells.entrySet()) {
+            List<Location> items = cell.getValue();
+            if (items.size() == 1) {
+                Location location = items.get(0);
+                clusters.add(new Cluster("location:" + location.getId(),
+                        location.getLatitude(), location.getLongitude(), items));
+            } else {
+                double latitude = 0;
+                double longitude = 0;
+                for (Location location : items) {
+                    latitude += location.getLatitude();
+                    longitude += location.getLongitude();
+                }
+                clusters.add(new Cluster("cluster:" + cell.getKey(),
+                        latitude / items.size(), longitude / items.size(), items));
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Converts a longitude into a horizontal pixel coordinate.
+     */
+    private static double toPixelX(double longitude, double worldSize) {
+        return (longitude + 180) / 360 * worldSize;
+    }
+
+    /**
+     * Converts a latitude into a vertical pixel coordinate.
+     */
+    private static double toPixelY(double latitude, double worldSize) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85.05, Math.min(85.05, latitude))));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+    }
+
+    /**
+     * Group of locations shown as a single marker.
+     */
+    public static class Cluster {
+
+        /**
+         * Identifies the cluster across recomputations, so its marker can be reused.
+         */
+        public final String key;
+        public final double latitude;
+        public final double longitude;
+        public final List<Location> locations;
+
+        Cluster(String key, double latitude, double longitude, List<Location> locations) {
+            this.key = key;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.locations = Collections.unmodifiableList(locations);
+        }
+
+        /**
+         * Returns the number of locations in the cluster.
+         *
+         * @return The size of the cluster.
+         */
+        public int size() {
+            return locations.size();
+        }
+    }
+}
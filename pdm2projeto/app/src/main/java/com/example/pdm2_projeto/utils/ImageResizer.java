@@ -0,0 +1,168 @@
+package com.example.pdm2_projeto.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Utility class that shrinks pictures before they are uploaded.
+ * Camera pictures are decoded with subsampling (never at full resolution), rotated according to
+ * their EXIF orientation, scaled down and re-encoded as JPEG within a size budget.
+ * Does I/O and decoding, so it must be used from a background thread.
+ */
+public class ImageResizer {
+
+    /**
+     * Lowest JPEG quality used to fit a picture in its size budget.
+     */
+    private static final int MIN_QUALITY = 50;
+
+    /**
+     * JPEG quality tried first.
+     */
+    private static final int START_QUALITY = 85;
+
+    private ImageResizer() {}
+
+    /**
+     * Decodes a picture so that its longest side is at most the given size.
+     * The picture is first subsampled by a power of two while it stays larger than the target,
+     * then scaled to the exact size.
+     *
+     * @param resolver Resolver used to open the picture.
+     * @param uri      The picture (e.g. from the camera or the gallery).
+     * @param maxSize  Maximum length in pixels of the longest side.
+     * @return The decoded picture, upright.
+     * @throws IOException If the picture cannot be read or decoded.
+     */
+    public static Bitmap decodeScaled(ContentResolver resolver, Uri uri, int maxSize) throws IOException {
+        // Read only the dimensions to choose the subsampling
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream input = open(resolver, uri)) {
+            BitmapFactory.decodeStream(input, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unsupported image.");
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(Math.max(bounds.outWidth, bounds.outHeight), maxSize);
+        Bitmap bitmap;
+        try (InputStream input = open(resolver, uri)) {
+            bitmap = BitmapFactory.decodeStream(input, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Unsupported image.");
+        }
+
+        Matrix matrix = new Matrix();
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest > maxSize) {
+            float scale = (float) maxSize / longest;
+            matrix.postScale(scale, scale);
+        }
+        int rotation = readRotation(resolver, uri);
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+        return transformed;
+    }
+
+    /**
+     * Crops the center square of a picture and scales it to the given size, e.g. for an avatar.
+     *
+     * @param bitmap The picture (not modified).
+     * @param size   Length in pixels of the side of the square.
+     * @return The square picture.
+     */
+    public static Bitmap cropSquare(Bitmap bitmap, int size) {
+        int side = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        int x = (bitmap.getWidth() - side) / 2;
+        int y = (bitmap.getHeight() - side) / 2;
+        Matrix matrix = new Matrix();
+        if (side > size) {
+            float scale = (float) size / side;
+            matrix.postScale(scale, scale);
+        }
+        return Bitmap.createBitmap(bitmap, x, y, side, side, matrix, true);
+    }
+
+    /**
+     * Encodes a picture as JPEG, lowering the quality until it fits in the size budget.
+     *
+     * @param bitmap   The picture.
+     * @param maxBytes Size budget in bytes; exceeded only if the lowest quality is still too large.
+     * @return The JPEG data.
+     */
+    public static byte[] toJpeg(Bitmap bitmap, int maxBytes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int quality = START_QUALITY;
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, output);
+        while (output.size() > maxBytes && quality > MIN_QUALITY) {
+            quality = Math.max(MIN_QUALITY, quality - 10);
+            output.reset();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, output);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the largest power of two that keeps the subsampled picture at least as large as the target.
+     */
+    private static int sampleSize(int longest, int maxSize) {
+        int sampleSize = 1;
+        while (longest / (sampleSize * 2) >= maxSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Reads the rotation to apply from the EXIF orientation of the picture (0 if unknown).
+     */
+    private static int readRotation(ContentResolver resolver, Uri uri) {
+        try (InputStream input = open(resolver, uri)) {
+            int orientation = new ExifInterface(input)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Opens the picture, failing if the resolver cannot.
+     */
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return input;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.pdm2_projeto.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates identical requests that are in flight at the same time.
+ * While a request with a given key is running, later callers receive a shared view of it
+ * instead of starting another Firestore read. The request is only cancelled when every caller
+ * cancelled its view (or its screen was destroyed).
+ * Only used on the main thread.
+ *
+ * @param <K> The type of the request key (e.g. a document ID).
+ * @param <T> The type of the result.
+ */
+public class InFlightRequests<K, T> {
+
+    private final Map<K, AsyncResult<T>> running = new HashMap<>();
+
+    /**
+     * Returns the request in flight with the given key, or starts a new one.
+     *
+     * @param key     Identifies the request; requests with equal keys return the same data.
+     * @param request Starts the request when none is in flight.
+     * @return A view of the request, cancellable independently of the other callers.
+     */
+    public AsyncResult<T> run(K key, Supplier<AsyncResult<T>> request) {
+        AsyncResult<T> result = running.get(key);
+        if (result == null || !result.isActive()) {
+            result = request.get();
+            if (!result.isActive()) {
+                return result; // Answered immediately, nothing to share
+            }
+            AsyncResult<T> started = result;
+            running.put(key, started);
+            started.whenDone(() -> {
+                if (running.get(key) == started) {
+                    running.remove(key);
+                }
+            });
+        }
+        return result.share();
+    }
+
+    /**
+     * Indicates whether a request with the given key is in flight.
+     *
+     * @param key The request key.
+     * @return True if the request is running.
+     */
+    public boolean isRunning(K key) {
+        AsyncResult<T> result = running.get(key);
+        return result != null && result.isActive();
+    }
+
+    /**
+     * Indicates whether any request is in flight.
+     *
+     * @return True if no request is running.
+     */
+    public boolean isEmpty() {
+        return running.isEmpty();
+    }
+
+    /**
+     * Cancels every request in flight, and with them the views given to the callers.
+     */
+    public void cancelAll() {
+        for (AsyncResult<T> result : new ArrayList<>(running.values())) {
+            result.cancel();
+        }
+        running.clear();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.pdm2_projeto.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool with a bounded queue that measures how it is used.
+ * Records the queue depth, the time tasks wait in the queue and the time they take to run,
+ * so slow or piling-up background work (database reads, clustering, ...) can be spotted in the logs.
+ * Tasks that exceed the queue capacity are rejected instead of growing the queue without limit.
+ */
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    /**
+     * Tasks that wait longer than this in the queue are logged.
+     */
+    private static final long SLOW_WAIT_MS = 250;
+
+    private final String name;
+
+    // Counters since the executor was created
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitMs = new AtomicLong();
+    private final AtomicLong maxWaitMs = new AtomicLong();
+    private final AtomicLong totalRunMs = new AtomicLong();
+    private final AtomicLong maxRunMs = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * Creates an executor with a fixed number of background threads.
+     *
+     * @param name          Name of the executor, used for its threads and logs.
+     * @param threadCount   Number of threads.
+     * @param queueCapacity Maximum number of tasks waiting to run.
+     */
+    public InstrumentedExecutor(String name, int threadCount, int queueCapacity) {
+        super(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new BackgroundThreadFactory(name));
+        this.name = name;
+    }
+
+    /**
+     * Queues a task, recording when it was queued so its wait time can be measured.
+     *
+     * @param task The task to run.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    @Override
+    public void execute(Runnable task) {
+        submitted.incrementAndGet();
+        try {
+            super.execute(new TimedTask(task, SystemClock.elapsedRealtime()));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            Log.e("InstrumentedExecutor", name + " queue is full, task rejected (" + getStats() + ")");
+            throw e;
+        }
+        updateMax(maxQueueDepth, getQueue().size());
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns a summary of the counters of the executor, for logs and debugging.
+     *
+     * @return The executor statistics.
+     */
+    public String getStats() {
+        long done = completed.get();
+        return "queued=" + getQueue().size() + " (max " + maxQueueDepth.get() + ")"
+                + ", active=" + getActiveCount()
+                + ", submitted=" + submitted.get()
+                + ", completed=" + done
+                + ", rejected=" + rejected.get()
+                + ", avgWaitMs=" + (done > 0 ? totalWaitMs.get() / done : 0) + " (max " + maxWaitMs.get() + ")"
+                + ", avgRunMs=" + (done > 0 ? totalRunMs.get() / done : 0) + " (max " + maxRunMs.get() + ")";
+    }
+
+    /**
+     * Logs the current counters of the executor.
+     */
+    public void logStats() {
+        Log.d("InstrumentedExecutor", name + ": " + getStats());
+    }
+
+    /**
+     * Records the wait and run time of a task.
+     */
+    private void record(long waitMs, long runMs) {
+        completed.incrementAndGet();
+        totalWaitMs.addAndGet(waitMs);
+        totalRunMs.addAndGet(runMs);
+        updateMax(maxWaitMs, waitMs);
+        updateMax(maxRunMs, runMs);
+
+        if (waitMs > SLOW_WAIT_MS) {
+            Log.w("InstrumentedExecutor", name + " task waited " + waitMs + " ms in the queue ("
+                    + getQueue().size() + " still queued)");
+        }
+    }
+
+    /**
+     * Raises a maximum counter to the given value if it is higher.
+     */
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Retry until the maximum is updated or another thread set a higher one
+        }
+    }
+
+    /**
+     * Raises a maximum counter to the given value if it is higher.
+     */
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Retry until the maximum is updated or another thread set a higher one
+        }
+    }
+
+    /**
+     * Task wrapper that measures the time spent in the queue and running.
+     */
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long queuedAt;
+
+        TimedTask(Runnable task, long queuedAt) {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = SystemClock.elapsedRealtime();
+            try {
+                task.run();
+            } finally {
+                record(startedAt - queuedAt, SystemClock.elapsedRealtime() - startedAt);
+            }
+        }
+    }
+
+    /**
+     * Creates named threads with background priority, so they do not compete with the UI thread.
+     */
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.pdm2_projeto.utils;
+
+import android.util.Log;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Loads a list page by page as the user scrolls, keeping only a window of pages in memory.
+ *
+ * <ul>
+ *     <li>Prefetch: the next page is requested while at least {@code prefetchDistance} items remain
+ *     below the last visible one, so pages are usually loaded before the user reaches them.</li>
+ *     <li>Placeholders: the items of a page being loaded or dropped are null, so the list keeps its
+ *     length and scroll position, and the adapter can show empty cells instead of a spinner.</li>
+ *     <li>Window: at most {@code maxLoadedPages} pages keep their items. Pages far from the viewport
+ *     are dropped (their size and last item are kept) and read again when the user scrolls back.</li>
+ * </ul>
+ * Pages are read from a {@link PageSource} with the last item of the previous page as cursor
+ * and their position as offset, so a dropped page can be read again on its own.
+ * A source may deliver a page twice (cached, then up to date): the page is then replaced.
+ * Only used on the main thread.
+ *
+ * @param <T> The type of the items.
+ */
+public class PagingEngine<T> {
+
+    /**
+     * Reads one page of the list.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface PageSource<T> {
+
+        /**
+         * Reads the page that starts after the given item.
+         *
+         * @param after    The last item of the previous page, or null for the first page.
+         * @param offset   The position of the first item of the page (for sources without cursors).
+         * @param pageSize The number of items to read.
+         * @return The items of the page; fewer than the page size on the last page.
+         */
+        AsyncResult<List<T>> loadPage(T after, int offset, int pageSize);
+    }
+
+    /**
+     * Receives the list every time it changes.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Listener<T> {
+
+        /**
+         * Called when pages were loaded, replaced or dropped.
+         *
+         * @param items The whole list, with null for the items that are not loaded.
+         */
+        void onItemsChanged(List<T> items);
+
+        /**
+         * Called when a page could not be read. It is requested again on the next scroll.
+         *
+         * @param e The error.
+         */
+        default void onLoadFailed(Exception e) {}
+    }
+
+    private final PageSource<T> source;
+    private final Function<T, ?> itemKey;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxLoadedPages;
+    private Listener<T> listener;
+
+    private final List<Page<T>> pages = new ArrayList<>();
+    private boolean complete = false; // Whether the last page has been read
+    private AsyncResult<List<T>> append; // Read of the next page in progress
+
+    // Last visible range reported by the list
+    private int firstVisible = 0;
+    private int lastVisible = 0;
+
+    /**
+     * Creates an engine. Nothing is read until {@link #onViewportChanged(int, int)} or {@link #start()} is called.
+     *
+     * @param source           Reads the pages.
+     * @param itemKey          Identifies an item across reads (e.g. its ID), to tell whether a page read again
+     *                         still ends with the same item.
+     * @param pageSize         The number of items per page.
+     * @param prefetchDistance The number of items to have loaded below the last visible one.
+     * @param maxLoadedPages   The maximum number of pages kept in memory; must also hold the visible
+     *                         pages and the prefetched ones.
+     */
+    public PagingEngine(PageSource<T> source, Function<T, ?> itemKey, int pageSize, int prefetchDistance, int maxLoadedPages) {
+        if (pageSize <= 0 || prefetchDistance < 0) {
+            throw new IllegalArgumentException("Invalid page size or prefetch distance");
+        }
+        if (maxLoadedPages < pagesFor(prefetchDistance, pageSize) + 2) {
+            throw new IllegalArgumentException("maxLoadedPages is too small for the prefetch distance: " + maxLoadedPages);
+        }
+        this.source = source;
+        this.itemKey = itemKey;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.maxLoadedPages = maxLoadedPages;
+    }
+
+    /**
+     * Sets the listener notified of the changes of the list (e.g. the screen showing it).
+     *
+     * @param listener The listener, or null to stop notifying.
+     */
+    public void setListener(Listener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the first pages, as if the top of the list was visible.
+     */
+    public void start() {
+        onViewportChanged(firstVisible, lastVisible);
+    }
+
+    /**
+     * Tells the engine which items are visible. Requests the next page if the end is near,
+     * drops the pages outside the window and reloads the dropped pages that are back inside it.
+     *
+     * @param first Position of the first visible item (negative if unknown).
+     * @param last  Position of the last visible item (negative if unknown).
+     */
+    public void onViewportChanged(int first, int last) {
+        if (first >= 0 && last >= first) {
+            firstVisible = first;
+            lastVisible = last;
+        }
+
+        // Window of pages to keep: from the prefetched pages back, at most maxLoadedPages
+        int firstPage = firstVisible / pageSize;
+        int lastPage = (lastVisible + prefetchDistance) / pageSize;
+        int windowStart = Math.max(0, Math.min(firstPage, lastPage - maxLoadedPages + 1));
+        int windowEnd = windowStart + maxLoadedPages - 1;
+
+        boolean changed = false;
+        for (int i = 0; i < pages.size(); i++) {
+            Page<T> page = pages.get(i);
+            if (i < windowStart || i > windowEnd) {
+                changed |= drop(page);
+            } else if (page.items == null && page.request == null) {
+                reload(i);
+            }
+        }
+        if (changed) {
+            notifyChanged();
+        }
+
+        if (!complete && append == null && loadedEnd() <= lastVisible + prefetchDistance) {
+            appendPage();
+        }
+    }
+
+    /**
+     * Cancels the reads in progress. The list is kept; reads start again on the next viewport change.
+     */
+    public void cancel() {
+        if (append != null) {
+            append.cancel();
+            append = null;
+        }
+        for (Page<T> page : pages) {
+            if (page.request != null) {
+                page.request.cancel();
+                page.request = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the whole list, with null for the items that are not loaded.
+     * While the next page is being read, its items are included as placeholders.
+     *
+     * @return A new list.
+     */
+    public List<T> getItems() {
+        List<T> items = new ArrayList<>();
+        for (Page<T> page : pages) {
+            if (page.items != null) {
+                items.addAll(page.items);
+            } else {
+                items.addAll(Collections.nCopies(page.size, null));
+            }
+        }
+        if (append != null) {
+            items.addAll(Collections.nCopies(pageSize, null));
+        }
+        return items;
+    }
+
+    /**
+     * Indicates whether the last page has been read.
+     *
+     * @return True if the list is complete.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the number of pages whose items are in memory.
+     *
+     * @return The number of loaded pages.
+     */
+    public int getLoadedPageCount() {
+        int loaded = 0;
+        for (Page<T> page : pages) {
+            if (page.items != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the page after the last one.
+     */
+    private void appendPage() {
+        int index = pages.size();
+        T after = index == 0 ? null : pages.get(index - 1).last;
+        AsyncResult<List<T>> request = source.loadPage(after, index * pageSize, pageSize);
+        append = request;
+        notifyChanged(); // Shows the placeholders of the page
+
+        request.observe(new FirestoreCallback<List<T>>() {
+            @Override
+            public void onSuccess(List<T> items) {
+                if (append != request) return; // Cancelled or replaced
+                append = null;
+                Page<T> page = new Page<>();
+                pages.add(page);
+                // Keep listening for an up-to-date version, like for the reloaded pages
+                page.request = request.isActive() ? request : null;
+                setItems(index, items);
+                notifyChanged();
+                onViewportChanged(-1, -1); // Continue prefetching if the end is still near
+            }
+
+            @Override
+            public void onUpdated(List<T> items) {
+                updatePage(index, request, items);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (append != request) return;
+                append = null;
+                Log.e("PagingEngine", "Error loading page " + index, e);
+                notifyChanged(); // Removes the placeholders
+                if (listener != null) {
+                    listener.onLoadFailed(e);
+                }
+            }
+        });
+        request.whenDone(() -> {
+            if (index < pages.size() && pages.get(index).request == request) {
+                pages.get(index).request = null;
+            }
+        });
+    }
+
+    /**
+     * Reads again a page that was dropped. Its placeholders stay until it arrives.
+     */
+    private void reload(int index) {
+        Page<T> page = pages.get(index);
+        T after = index == 0 ? null : pages.get(index - 1).last;
+        AsyncResult<List<T>> request = source.loadPage(after, index * pageSize, pageSize);
+        page.request = request;
+
+        request.observe(new FirestoreCallback<List<T>>() {
+            @Override
+            public void onSuccess(List<T> items) {
+                updatePage(index, request, items);
+            }
+
+            @Override
+            public void onUpdated(List<T> items) {
+                updatePage(index, request, items);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                if (index < pages.size() && pages.get(index).request == request) {
+                    pages.get(index).request = null;
+                    Log.e("PagingEngine", "Error reloading page " + index, e);
+                    if (listener != null) {
+                        listener.onLoadFailed(e);
+                    }
+                }
+            }
+        });
+        request.whenDone(() -> {
+            if (index < pages.size() && pages.get(index).request == request) {
+                pages.get(index).request = null;
+            }
+        });
+    }
+
+    /**
+     * Replaces the items of a page with a new version read by the given request.
+     */
+    private void updatePage(int index, AsyncResult<List<T>> request, List<T> items) {
+        if (index >= pages.size() || pages.get(index).request != request) return; // Outdated
+        setItems(index, items);
+        notifyChanged();
+        onViewportChanged(-1, -1);
+    }
+
+    /**
+     * Sets the items of a page. If its size or last item changed, the pages after it no longer
+     * start at the right place and are removed, to be read again.
+     */
+    private void setItems(int index, List<T> items) {
+        Page<T> page = pages.get(index);
+        T newLast = items.isEmpty() ? null : items.get(items.size() - 1);
+        boolean boundaryChanged = page.size != items.size()
+                || (page.last != null && newLast != null && !Objects.equals(itemKey.apply(page.last), itemKey.apply(newLast)));
+        page.items = new ArrayList<>(items);
+        page.size = items.size();
+        page.last = newLast;
+
+        if (boundaryChanged || page.size < pageSize) {
+            for (int i = pages.size() - 1; i > index; i--) {
+                Page<T> removed = pages.remove(i);
+                if (removed.request != null) {
+                    removed.request.cancel();
+                }
+            }
+            if (append != null) {
+                append.cancel();
+                append = null;
+            }
+            complete = page.size < pageSize;
+        }
+    }
+
+    /**
+     * Drops the items of a page, keeping its size and last item.
+     *
+     * @return True if the page had items.
+     */
+    private boolean drop(Page<T> page) {
+        if (page.request != null) {
+            page.request.cancel();
+            page.request = null;
+        }
+        if (page.items == null) {
+            return false;
+        }
+        page.items = null;
+        return true;
+    }
+
+    /**
+     * Returns the number of items of the pages read so far (loaded or dropped).
+     */
+    private int loadedEnd() {
+        int end = 0;
+        for (Page<T> page : pages) {
+            end += page.size;
+        }
+        return end;
+    }
+
+    private void notifyChanged() {
+        if (listener != null) {
+            listener.onItemsChanged(getItems());
+        }
+    }
+
+    private static int pagesFor(int items, int pageSize) {
+        return (items + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * One page of the list.
+     */
+    private static class Page<T> {
+        List<T> items; // Null while dropped
+        int size; // Number of items, kept while dropped
+        T last; // Last item, the cursor of the next page; kept while dropped
+        AsyncResult<List<T>> request; // Read in progress (reload, or updates of the first read)
+    }
+}
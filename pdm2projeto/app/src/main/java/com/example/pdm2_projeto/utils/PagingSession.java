@@ -0,0 +1,221 @@
+package com.example.pdm2_projeto.utils;
+
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Pagination of one query (filter, search text and order), independent of the other queries.
+ *
+ * A session holds its own cursor (the last item read in order), the history of the pages it read
+ * and the reads in flight, so several lists can be paginated at the same time without sharing any state.
+ * Pages found in the history are answered immediately: going back to a query resumes where it stopped.
+ * Identical page reads in flight at the same time are shared.
+ *
+ * A session is a {@link PagingEngine.PageSource}, so an engine can read its pages;
+ * simple lists can use {@link #loadNextPage(int)} instead. Only used on the main thread.
+ *
+ * @param <T> The type of the items.
+ */
+public class PagingSession<T> implements PagingEngine.PageSource<T> {
+
+    /**
+     * Maximum number of pages kept in the history; the least recently read are forgotten first.
+     */
+    private static final int MAX_CACHED_PAGES = 10;
+
+    private final String key;
+    private final PagingEngine.PageSource<T> reader;
+    private final Function<T, ?> itemKey;
+    private final long createdAt = System.currentTimeMillis();
+
+    // Pages read so far, by offset, in access order
+    private final LinkedHashMap<Integer, Page<T>> history = new LinkedHashMap<Integer, Page<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page<T>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final InFlightRequests<String, List<T>> inFlight = new InFlightRequests<>();
+
+    // Cursor: the last item read in order, and the offset of the next page
+    private T cursor;
+    private int nextOffset = 0;
+    private boolean complete = false;
+
+    /**
+     * Creates a session. Sessions are usually obtained from a {@link Cache}.
+     *
+     * @param key     Identifies the query (e.g. its filter, search text and order).
+     * @param reader  Reads the pages of the query from the data source.
+     * @param itemKey Identifies an item across reads (e.g. its ID), to match pages with their cursor.
+     */
+    public PagingSession(String key, PagingEngine.PageSource<T> reader, Function<T, ?> itemKey) {
+        this.key = key;
+        this.reader = reader;
+        this.itemKey = itemKey;
+    }
+
+    /**
+     * Reads a page, from the history if it was read after the same item, otherwise from the data source.
+     * Pages read from the data source are added to the history, and replaced there when updated.
+     */
+    @Override
+    public AsyncResult<List<T>> loadPage(T after, int offset, int pageSize) {
+        Object afterKey = after != null ? itemKey.apply(after) : null;
+        Page<T> page = history.get(offset);
+        if (page != null && page.pageSize == pageSize && Objects.equals(page.afterKey, afterKey)) {
+            return AsyncResult.success(new ArrayList<>(page.items));
+        }
+
+        return inFlight.run(offset + "|" + afterKey + "|" + pageSize,
+                () -> reader.loadPage(after, offset, pageSize).map(items -> {
+                    remember(afterKey, offset, pageSize, items);
+                    return items;
+                }));
+    }
+
+    /**
+     * Reads the page after the cursor, i.e. the next page of the list.
+     *
+     * @param pageSize The number of items to read.
+     * @return The items of the page, or an empty list once the last page was read.
+     */
+    public AsyncResult<List<T>> loadNextPage(int pageSize) {
+        if (complete) {
+            return AsyncResult.success(new ArrayList<>());
+        }
+        return loadPage(cursor, nextOffset, pageSize);
+    }
+
+    /**
+     * Cancels the reads in flight. The history and cursor are kept.
+     */
+    public void cancel() {
+        inFlight.cancelAll();
+    }
+
+    /**
+     * Indicates whether a page is being read.
+     *
+     * @return True if a read is in flight.
+     */
+    public boolean isLoading() {
+        return !inFlight.isEmpty();
+    }
+
+    /**
+     * Indicates whether the last page has been read in order.
+     *
+     * @return True if the list is complete.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the key of the query of this session.
+     *
+     * @return The key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Records a page read from the data source and moves the cursor if it is the next page.
+     * If a page already passed by the cursor changed its size or last item, the pages after it
+     * are forgotten and the cursor moves back to its end.
+     */
+    private void remember(Object afterKey, int offset, int pageSize, List<T> items) {
+        Page<T> previous = history.get(offset);
+        history.put(offset, new Page<>(afterKey, pageSize, new ArrayList<>(items)));
+
+        T last = items.isEmpty() ? null : items.get(items.size() - 1);
+        Object cursorKey = cursor != null ? itemKey.apply(cursor) : null;
+        boolean isNext = offset == nextOffset && Objects.equals(afterKey, cursorKey);
+        boolean boundaryChanged = previous != null && (previous.items.size() != items.size()
+                || !Objects.equals(keyOfLast(previous.items), last != null ? itemKey.apply(last) : null));
+
+        if (isNext || (boundaryChanged && offset < nextOffset)) {
+            if (!isNext) {
+                for (Iterator<Integer> it = history.keySet().iterator(); it.hasNext(); ) {
+                    if (it.next() > offset) {
+                        it.remove();
+                    }
+                }
+            }
+            if (last != null) {
+                cursor = last;
+            }
+            nextOffset = offset + items.size();
+            complete = items.size() < pageSize;
+        }
+    }
+
+    private Object keyOfLast(List<T> items) {
+        return items.isEmpty() ? null : itemKey.apply(items.get(items.size() - 1));
+    }
+
+    /**
+     * One page of the history.
+     */
+    private static class Page<T> {
+        final Object afterKey; // Key of the item the page was read after, null for the first page
+        final int pageSize;
+        final List<T> items;
+
+        Page(Object afterKey, int pageSize, List<T> items) {
+            this.afterKey = afterKey;
+            this.pageSize = pageSize;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Keeps the sessions of the recent queries, so returning to a query resumes its session.
+     * Sessions older than the time to live are replaced, so their pages are read again.
+     *
+     * @param <T> The type of the items.
+     */
+    public static class Cache<T> {
+        private final LruCache<String, PagingSession<T>> sessions;
+        private final long ttlMs;
+
+        /**
+         * Creates a cache.
+         *
+         * @param maxSessions Maximum number of sessions kept.
+         * @param ttlMs       Time after which a session is replaced, in milliseconds.
+         */
+        public Cache(int maxSessions, long ttlMs) {
+            this.sessions = new LruCache<>(maxSessions);
+            this.ttlMs = ttlMs;
+        }
+
+        /**
+         * Returns the session of a query, or creates it if there is none or it expired.
+         *
+         * @param key     Identifies the query.
+         * @param reader  Reads the pages of the query, used if a new session is created.
+         * @param itemKey Identifies an item across reads.
+         * @return The session.
+         */
+        public PagingSession<T> open(String key, Supplier<PagingEngine.PageSource<T>> reader, Function<T, ?> itemKey) {
+            PagingSession<T> session = sessions.get(key);
+            if (session == null || System.currentTimeMillis() - session.createdAt > ttlMs) {
+                // An expired session is only forgotten: a list still reading it keeps working
+                session = new PagingSession<>(key, reader.get(), itemKey);
+                sessions.put(key, session);
+            }
+            return session;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.pdm2_projeto;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.pdm2_projeto.interfaces.CommentStream;
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.models.Comment;
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.repositories.InMemoryDataSource;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.example.pdm2_projeto.utils.PagingSession;
+import com.google.firebase.Timestamp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.FirebaseStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Builds the app's container over an in-memory data source and reads through its repositories,
+ * as the screens do, without Firebase. The Firebase instances are stand-ins that are never called.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class) // PdmApplication would configure the real Firestore
+public class AppContainerTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final long TIMEOUT_MS = 10_000;
+
+    private ExecutorService executor;
+    private InMemoryDataSource dataSource;
+    private AppContainer container;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        executor = Executors.newSingleThreadExecutor();
+        dataSource = InMemoryDataSource.synthetic(2000, 4000, 50, 42).withExecutor(executor, 0);
+        container = new AppContainer(context, mock(FirebaseFirestore.class, RETURNS_DEEP_STUBS),
+                mock(FirebaseAuth.class), mock(FirebaseStorage.class), dataSource, dataSource, dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        container.getBackgroundExecutor().shutdownNow();
+    }
+
+    @Test
+    public void openSession_pagesThroughEveryMatchInOrder() {
+        PagingSession<Location> session = container.getLocationsRepository().openSession("category-3", "Ca");
+
+        List<Location> read = new ArrayList<>();
+        while (!session.isComplete()) {
+            read.addAll(await(session.loadNextPage(PAGE_SIZE)));
+        }
+
+        List<Location> expected = await(dataSource.getPage(new LocationQuery("category-3", "Ca", 10_000)));
+        assertFalse(expected.isEmpty());
+        assertEquals(ids(expected), ids(read));
+    }
+
+    @Test
+    public void openSession_resumesTheSessionOfTheSameQuery() {
+        PagingSession<Location> session = container.getLocationsRepository().openSession("category-1", null);
+        List<Location> first = await(session.loadNextPage(PAGE_SIZE));
+
+        PagingSession<Location> reopened = container.getLocationsRepository().openSession("category-1", "");
+
+        assertSame(session, reopened);
+        // The first page is answered from the history of the session, without a read
+        AsyncResult<List<Location>> again = reopened.loadPage(null, 0, PAGE_SIZE);
+        assertFalse(again.isActive());
+        assertEquals(ids(first), ids(await(again)));
+    }
+
+    @Test
+    public void streamCommentsByLocation_readsAndWritesThroughTheDataSource() {
+        List<List<Comment>> deliveries = new ArrayList<>();
+        CommentStream stream = container.getCommentsRepository().streamCommentsByLocation("loc0000000", PAGE_SIZE,
+                new CommentStream.Listener() {
+                    @Override
+                    public void onCommentsChanged(List<Comment> comments) {
+                        deliveries.add(comments);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        fail(e.getMessage());
+                    }
+                });
+        stream.start();
+        idleUntil(() -> !deliveries.isEmpty());
+        List<Comment> firstPage = deliveries.get(deliveries.size() - 1);
+        assertEquals(2, firstPage.size()); // 4000 comments over 2000 locations
+        assertFalse(stream.hasMore());
+
+        Comment comment = new Comment("user00001", "loc0000000", "Muito bonito",
+                new Timestamp(firstPage.get(0).getCreatedAt().getSeconds() + 60, 0));
+        await(container.getCommentsRepository().addComment(comment));
+        idleUntil(() -> deliveries.get(deliveries.size() - 1).size() == 3);
+        assertEquals("Muito bonito", deliveries.get(deliveries.size() - 1).get(0).getComment());
+
+        await(container.getCommentsRepository().deleteComment(firstPage.get(1)));
+        idleUntil(() -> deliveries.get(deliveries.size() - 1).size() == 2);
+        stream.stop();
+    }
+
+    /**
+     * Runs the main looper until the result is done, and returns its value.
+     */
+    private static <T> T await(AsyncResult<T> result) {
+        AtomicReference<T> value = new AtomicReference<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        boolean[] done = {false};
+        result.observe(new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T v) {
+                value.set(v);
+                done[0] = true;
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                error.set(e);
+                done[0] = true;
+            }
+        });
+        idleUntil(() -> done[0]);
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        return value.get();
+    }
+
+    /**
+     * Runs the tasks posted to the main looper (the results of the background reads) until the condition holds.
+     */
+    private static void idleUntil(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting on the main looper");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.yield();
+        }
+    }
+
+    private static List<String> ids(List<Location> locations) {
+        List<String> ids = new ArrayList<>();
+        for (Location location : locations) {
+            ids.add(location.getId());
+        }
+        return ids;
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.pdm2_projeto.repositories;
+
+import android.app.Application;
+import android.os.Looper;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+import com.example.pdm2_projeto.interfaces.LocationDataSource;
+import com.example.pdm2_projeto.models.Location;
+import com.example.pdm2_projeto.utils.AsyncResult;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateQuery;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests of the map area reads over a stand-in of the "locations" collection whose queries answer with
+ * every document, as the area filter is applied on the device anyway.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class) // PdmApplication would configure the real Firestore
+public class LocationsRepositoryTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final List<Location> documents = Arrays.asList(
+            location("lisboa", 38.7223, -9.1393),
+            location("porto", 41.1579, -8.6291),
+            location("faro", 37.0194, -7.9322));
+
+    private CollectionReference locations;
+    private LocationsRepository repository;
+
+    @Before
+    public void setUp() {
+        // Every query built on the collection is the collection itself; get() answers with all the documents
+        locations = mock(CollectionReference.class, RETURNS_SELF);
+        when(locations.get()).thenAnswer(invocation -> Tasks.forResult(snapshotOf(documents)));
+
+        // Every document has its search fields and geohash, so the geohash ranges are queried
+        AggregateQuery count = mock(AggregateQuery.class);
+        AggregateQuerySnapshot counted = mock(AggregateQuerySnapshot.class);
+        when(counted.getCount()).thenReturn((long) documents.size());
+        when(count.get(AggregateSource.SERVER)).thenAnswer(invocation -> Tasks.forResult(counted));
+        when(locations.count()).thenReturn(count);
+
+        FirebaseFirestore db = mock(FirebaseFirestore.class);
+        when(db.collection("locations")).thenReturn(locations);
+        repository = new LocationsRepository(db, null, mock(LocationDataSource.class));
+    }
+
+    @Test
+    public void getLocationsWithinBounds_answersEveryAreaReadInTurn() {
+        LatLngBounds lisbon = new LatLngBounds(new LatLng(38.6, -9.3), new LatLng(38.8, -9.0));
+        LatLngBounds porto = new LatLngBounds(new LatLng(41.0, -8.8), new LatLng(41.3, -8.5));
+
+        // Like the map moving from one region to the next once the first markers are shown
+        assertEquals(Arrays.asList("lisboa"), ids(await(repository.getLocationsWithinBounds(lisbon))));
+        assertEquals(Arrays.asList("porto"), ids(await(repository.getLocationsWithinBounds(porto))));
+        assertEquals(Arrays.asList("lisboa"), ids(await(repository.getLocationsWithinBounds(lisbon))));
+
+        // The three counts of the backfill check are only made for the first read
+        verify(locations, times(3)).count();
+    }
+
+    private static Location location(String id, double latitude, double longitude) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(id);
+        location.setNameEn(id);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.updateGeohash();
+        return location;
+    }
+
+    private static QuerySnapshot snapshotOf(List<Location> locations) {
+        List<QueryDocumentSnapshot> documents = new ArrayList<>();
+        for (Location location : locations) {
+            QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+            when(document.getId()).thenReturn(location.getId());
+            when(document.toObject(Location.class)).thenReturn(location);
+            documents.add(document);
+        }
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.iterator()).thenAnswer(invocation -> documents.iterator());
+        when(snapshot.size()).thenReturn(documents.size());
+        return snapshot;
+    }
+
+    /**
+     * Runs the main looper, where the Firestore tasks report, until the result is done, and returns its value.
+     */
+    private static <T> T await(AsyncResult<T> result) {
+        AtomicReference<T> value = new AtomicReference<>();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        boolean[] done = {false};
+        result.observe(new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T v) {
+                value.set(v);
+                done[0] = true;
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                error.set(e);
+                done[0] = true;
+            }
+        });
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!done[0]) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The area read never answered");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        return value.get();
+    }
+
+    private static List<String> ids(List<Location> locations) {
+        List<String> ids = new ArrayList<>();
+        for (Location location : locations) {
+            ids.add(location.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.pdm2_projeto.utils;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the derived results (map, share, then) of results that are already finished or still running.
+ */
+public class AsyncResultTest {
+
+    @Test
+    public void map_ofACompletedResult_deliversTheMappedValue() {
+        AsyncResult<Integer> mapped = AsyncResult.success(2).map(value -> value * 10);
+
+        assertFalse(mapped.isActive());
+        assertEquals(Arrays.asList(20), valuesOf(mapped));
+    }
+
+    @Test
+    public void share_ofACompletedResult_deliversTheValue() {
+        AsyncResult<String> shared = AsyncResult.success("page").share();
+
+        assertFalse(shared.isActive());
+        assertEquals(Arrays.asList("page"), valuesOf(shared));
+    }
+
+    @Test
+    public void then_ofACompletedResult_deliversTheValueOfTheSecondOperation() {
+        AsyncResult<String> chained = AsyncResult.success(true).then(done -> AsyncResult.success("ready"));
+
+        assertFalse(chained.isActive());
+        assertEquals(Arrays.asList("ready"), valuesOf(chained));
+    }
+
+    @Test
+    public void then_ofASharedCompletedResult_deliversEveryTime() {
+        AsyncResult<Boolean> check = AsyncResult.success(true);
+
+        // Like a flag checked once and then shared with every later caller
+        for (int i = 0; i < 3; i++) {
+            AsyncResult<String> chained = check.share().then(done -> AsyncResult.success("page"));
+            assertEquals(Arrays.asList("page"), valuesOf(chained));
+        }
+    }
+
+    @Test
+    public void map_ofARunningResult_deliversTheValueAndItsUpdates() {
+        AsyncResult<Integer> source = new AsyncResult<>();
+        AsyncResult<Integer> mapped = source.map(value -> value + 1);
+        List<Integer> values = new ArrayList<>();
+        mapped.observe(callback(values));
+
+        source.deliver(1);
+        source.complete(2);
+
+        assertEquals(Arrays.asList(2, 3), values);
+        assertFalse(mapped.isActive());
+    }
+
+    @Test
+    public void map_ofACompletedResultThatFailed_deliversTheError() {
+        Exception error = new Exception("offline");
+        List<Exception> errors = new ArrayList<>();
+
+        AsyncResult.<Integer>failure(error).map(value -> value + 1).observe(new FirestoreCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                fail("No value expected");
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                errors.add(e);
+            }
+        });
+
+        assertEquals(Arrays.asList(error), errors);
+    }
+
+    @Test
+    public void share_cancelsTheSourceOnlyWhenEveryViewIsCancelled() {
+        AsyncResult<String> source = new AsyncResult<>();
+        AsyncResult<String> first = source.share();
+        AsyncResult<String> second = source.share();
+
+        first.cancel();
+        assertTrue(source.isActive());
+
+        second.cancel();
+        assertTrue(source.isCancelled());
+    }
+
+    private static <T> List<T> valuesOf(AsyncResult<T> result) {
+        List<T> values = new ArrayList<>();
+        result.observe(callback(values));
+        return values;
+    }
+
+    private static <T> FirestoreCallback<T> callback(List<T> values) {
+        return new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                values.add(result);
+            }
+
+            @Override
+            public void onUpdated(T result) {
+                values.add(result);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                throw new AssertionError(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.pdm2_projeto.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page source over a list of strings whose reads stay pending until a test answers them,
+ * so the tests decide when and in which order pages arrive.
+ */
+class FakePageSource implements PagingEngine.PageSource<String> {
+
+    /**
+     * One read made by the code under test.
+     */
+    static class Request {
+        final String after;
+        final int offset;
+        final int pageSize;
+        final AsyncResult<List<String>> result = new AsyncResult<>();
+
+        Request(String after, int offset, int pageSize) {
+            this.after = after;
+            this.offset = offset;
+            this.pageSize = pageSize;
+        }
+    }
+
+    final List<String> items = new ArrayList<>();
+    final List<Request> requests = new ArrayList<>();
+
+    /**
+     * Creates a source of the items "item000", "item001", ...
+     *
+     * @param count The number of items.
+     */
+    FakePageSource(int count) {
+        for (int i = 0; i < count; i++) {
+            items.add(String.format("item%03d", i));
+        }
+    }
+
+    @Override
+    public AsyncResult<List<String>> loadPage(String after, int offset, int pageSize) {
+        Request request = new Request(after, offset, pageSize);
+        requests.add(request);
+        return request.result;
+    }
+
+    /**
+     * Returns the items of the page read by a request, by cursor when it has one.
+     */
+    List<String> pageOf(Request request) {
+        int start = request.after != null ? items.indexOf(request.after) + 1 : request.offset;
+        return new ArrayList<>(items.subList(start, Math.min(items.size(), start + request.pageSize)));
+    }
+
+    /**
+     * Answers the oldest pending request with its page.
+     *
+     * @return The request answered.
+     */
+    Request completeNext() {
+        Request request = nextPending();
+        request.result.complete(pageOf(request));
+        return request;
+    }
+
+    /**
+     * Answers the pending requests, including the ones made while answering, until none is left.
+     */
+    void completeAll() {
+        while (nextPending() != null) {
+            completeNext();
+        }
+    }
+
+    /**
+     * Returns the oldest request that is neither answered nor cancelled.
+     */
+    Request nextPending() {
+        for (Request request : requests) {
+            if (request.result.isActive()) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of requests that are neither answered nor cancelled.
+     */
+    int pendingCount() {
+        int pending = 0;
+        for (Request request : requests) {
+            if (request.result.isActive()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    Request lastRequest() {
+        return requests.get(requests.size() - 1);
+    }
+}
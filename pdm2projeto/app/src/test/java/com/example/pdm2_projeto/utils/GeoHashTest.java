@@ -0,0 +1,102 @@
+package com.example.pdm2_projeto.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the geohash encoding and of the ranges used to query an area.
+ */
+public class GeoHashTest {
+
+    @Test
+    public void encode_matchesReferenceHashes() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+        assertEquals("s", GeoHash.encode(0, 0, 1));
+    }
+
+    @Test
+    public void encode_sharesPrefixWithLowerPrecision() {
+        String stored = GeoHash.encode(38.6916, -9.2160, GeoHash.STORED_PRECISION);
+
+        assertEquals(GeoHash.STORED_PRECISION, stored.length());
+        assertTrue(stored.startsWith(GeoHash.encode(38.6916, -9.2160, 5)));
+    }
+
+    @Test
+    public void coveringRanges_containEveryPointOfTheArea() {
+        double south = 38.60, west = -9.30, north = 38.80, east = -9.05;
+        List<String[]> ranges = GeoHash.coveringRanges(south, west, north, east);
+        assertTrue(ranges.size() <= 9);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            double latitude = south + random.nextDouble() * (north - south);
+            double longitude = west + random.nextDouble() * (east - west);
+            String hash = GeoHash.encode(latitude, longitude, GeoHash.STORED_PRECISION);
+            assertTrue(latitude + "," + longitude, isCovered(ranges, hash));
+        }
+    }
+
+    @Test
+    public void coveringRanges_areSortedAndDisjoint() {
+        List<String[]> ranges = GeoHash.coveringRanges(40.0, -8.9, 42.1, -6.2);
+
+        for (int i = 0; i < ranges.size(); i++) {
+            assertTrue(ranges.get(i)[0].compareTo(ranges.get(i)[1]) < 0);
+            if (i > 0) {
+                assertTrue(ranges.get(i - 1)[1].compareTo(ranges.get(i)[0]) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void coveringRanges_mergeConsecutiveCells() {
+        // The whole world is covered by the 32 cells of precision 1, which are all consecutive
+        List<String[]> ranges = GeoHash.coveringRanges(-90, -180, 90, 180);
+
+        assertEquals(1, ranges.size());
+        assertEquals("0", ranges.get(0)[0]);
+        assertEquals("z~", ranges.get(0)[1]);
+    }
+
+    @Test
+    public void coveringRanges_smallAreaUsesFinePrecision() {
+        List<String[]> ranges = GeoHash.coveringRanges(38.6915, -9.2161, 38.6917, -9.2159);
+
+        for (String[] range : ranges) {
+            assertTrue(range[0].length() >= 6);
+        }
+        assertTrue(isCovered(ranges, GeoHash.encode(38.6916, -9.2160, GeoHash.STORED_PRECISION)));
+    }
+
+    @Test
+    public void coveringRanges_splitAtTheAntimeridian() {
+        List<String[]> ranges = GeoHash.coveringRanges(-1, 179.5, 1, -179.5);
+
+        assertTrue(isCovered(ranges, GeoHash.encode(0.5, 179.9, GeoHash.STORED_PRECISION)));
+        assertTrue(isCovered(ranges, GeoHash.encode(-0.5, -179.9, GeoHash.STORED_PRECISION)));
+        assertFalse(isCovered(ranges, GeoHash.encode(0, 0, GeoHash.STORED_PRECISION)));
+    }
+
+    @Test
+    public void distanceMeters_matchesKnownDistances() {
+        assertEquals(0, GeoHash.distanceMeters(38.7, -9.1, 38.7, -9.1), 1e-6);
+        assertEquals(111195, GeoHash.distanceMeters(0, 0, 1, 0), 5);
+        // Lisbon to Porto, about 274 km
+        assertEquals(274000, GeoHash.distanceMeters(38.7223, -9.1393, 41.1579, -8.6291), 2000);
+    }
+
+    private static boolean isCovered(List<String[]> ranges, String hash) {
+        for (String[] range : ranges) {
+            if (hash.compareTo(range[0]) >= 0 && hash.compareTo(range[1]) <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
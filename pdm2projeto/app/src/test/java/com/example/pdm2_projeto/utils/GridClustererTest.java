@@ -0,0 +1,90 @@
+package com.example.pdm2_projeto.utils;
+
+import com.example.pdm2_projeto.models.Location;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the grouping of map locations into clusters.
+ */
+public class GridClustererTest {
+
+    private static final int CELL_SIZE_PX = 100;
+
+    @Test
+    public void cluster_groupsNearbyLocationsAtLowZoom() {
+        List<Location> locations = Arrays.asList(
+                location("a", 38.6916, -9.2160),
+                location("b", 38.6979, -9.2068));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(locations, 5, CELL_SIZE_PX);
+
+        assertEquals(1, clusters.size());
+        GridClusterer.Cluster cluster = clusters.get(0);
+        assertEquals(2, cluster.size());
+        assertTrue(cluster.key.startsWith("cluster:"));
+        assertEquals((38.6916 + 38.6979) / 2, cluster.latitude, 1e-9);
+        assertEquals((-9.2160 + -9.2068) / 2, cluster.longitude, 1e-9);
+    }
+
+    @Test
+    public void cluster_separatesLocationsAtHighZoom() {
+        List<Location> locations = Arrays.asList(
+                location("a", 38.6916, -9.2160),
+                location("b", 38.6979, -9.2068));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(locations, 18, CELL_SIZE_PX);
+
+        assertEquals(2, clusters.size());
+        assertEquals("location:a", clusters.get(0).key);
+        assertEquals("location:b", clusters.get(1).key);
+        assertEquals(38.6916, clusters.get(0).latitude, 0);
+        assertEquals(-9.2160, clusters.get(0).longitude, 0);
+    }
+
+    @Test
+    public void cluster_keepsDistantLocationsApart() {
+        List<Location> locations = Arrays.asList(
+                location("lisbon", 38.7223, -9.1393),
+                location("porto", 41.1579, -8.6291),
+                location("belem", 38.6916, -9.2160));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(locations, 6, CELL_SIZE_PX);
+
+        assertEquals(2, clusters.size());
+        // In the order the cells were first seen
+        assertEquals(2, clusters.get(0).size());
+        assertEquals("location:porto", clusters.get(1).key);
+    }
+
+    @Test
+    public void cluster_keysAreStableAcrossCalls() {
+        List<Location> locations = Arrays.asList(
+                location("a", 38.6916, -9.2160),
+                location("b", 38.6979, -9.2068),
+                location("c", 41.1579, -8.6291));
+
+        List<GridClusterer.Cluster> first = GridClusterer.cluster(locations, 6.2f, CELL_SIZE_PX);
+        List<GridClusterer.Cluster> second = GridClusterer.cluster(locations, 6.8f, CELL_SIZE_PX);
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).key, second.get(i).key);
+        }
+    }
+
+    @Test
+    public void cluster_emptyListHasNoClusters() {
+        assertTrue(GridClusterer.cluster(Collections.emptyList(), 10, CELL_SIZE_PX).isEmpty());
+    }
+
+    private static Location location(String id, double latitude, double longitude) {
+        return new Location(id, id, id, null, null, null, latitude, longitude, null, null, null, null);
+    }
+}
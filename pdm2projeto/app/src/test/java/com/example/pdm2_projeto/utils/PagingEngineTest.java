@@ -0,0 +1,188 @@
+package com.example.pdm2_projeto.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the page loading of the lists: prefetch, window of loaded pages and pages delivered twice.
+ */
+public class PagingEngineTest {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int PREFETCH_DISTANCE = 20;
+    private static final int MAX_LOADED_PAGES = 5;
+
+    private FakePageSource source;
+    private PagingEngine<String> engine;
+    private final List<List<String>> notified = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        source = new FakePageSource(200);
+        engine = newEngine(source);
+    }
+
+    @Test
+    public void start_readsThePagesUpToThePrefetchDistance() {
+        engine.start();
+
+        assertEquals(1, source.requests.size());
+        assertNull(source.requests.get(0).after);
+        assertEquals(0, source.requests.get(0).offset);
+        assertEquals(Collections.nCopies(PAGE_SIZE, null), engine.getItems()); // Placeholders of the page
+
+        source.completeAll();
+
+        // Pages 0 and 1 leave at most 20 items below the top, so page 2 is read as well
+        assertEquals(3, source.requests.size());
+        assertEquals("item009", source.requests.get(1).after);
+        assertEquals(20, source.requests.get(2).offset);
+        assertEquals(source.items.subList(0, 30), engine.getItems());
+        assertEquals(engine.getItems(), lastNotified());
+        assertFalse(engine.isComplete());
+    }
+
+    @Test
+    public void onViewportChanged_readsTheNextPageWhenTheEndIsNear() {
+        engine.start();
+        source.completeAll();
+
+        engine.onViewportChanged(0, 9);
+        assertEquals(3, source.requests.size());
+
+        engine.onViewportChanged(5, 10);
+        assertEquals(4, source.requests.size());
+        assertEquals("item029", source.lastRequest().after);
+        assertEquals(30, source.lastRequest().offset);
+        assertEquals(40, engine.getItems().size()); // With the placeholders of the page being read
+
+        // Only one page is appended at a time
+        engine.onViewportChanged(6, 12);
+        assertEquals(4, source.requests.size());
+    }
+
+    @Test
+    public void onViewportChanged_dropsThePagesOutsideTheWindowAndReadsThemAgain() {
+        engine.start();
+        source.completeAll();
+        engine.onViewportChanged(60, 69);
+        source.completeAll();
+
+        // Pages 0 to 8 were read; only the window around the viewport (pages 4 to 8) keeps its items
+        List<String> items = engine.getItems();
+        assertEquals(90, items.size());
+        assertEquals(MAX_LOADED_PAGES, engine.getLoadedPageCount());
+        assertNull(items.get(0));
+        assertNull(items.get(39));
+        assertEquals(source.items.subList(40, 90), items.subList(40, 90));
+        int readsBeforeScrollingBack = source.requests.size();
+
+        engine.onViewportChanged(0, 9);
+
+        // Pages 0 to 3 are read again after the last item of the page before them
+        List<FakePageSource.Request> reloads = source.requests.subList(readsBeforeScrollingBack, source.requests.size());
+        assertEquals(4, reloads.size());
+        assertNull(reloads.get(0).after);
+        assertEquals("item009", reloads.get(1).after);
+        assertEquals("item029", reloads.get(3).after);
+        assertEquals(30, reloads.get(3).offset);
+
+        source.completeAll();
+
+        items = engine.getItems();
+        assertEquals(90, items.size());
+        assertEquals(MAX_LOADED_PAGES, engine.getLoadedPageCount());
+        assertEquals(source.items.subList(0, 50), items.subList(0, 50));
+        assertNull(items.get(50));
+        assertEquals(items, lastNotified());
+    }
+
+    @Test
+    public void pageDeliveredTwice_removesTheNextPagesWhenItsLastItemChanged() {
+        engine.start();
+        FakePageSource.Request first = source.requests.get(0);
+        first.result.deliver(source.pageOf(first)); // Cached version, an up-to-date one follows
+        FakePageSource.Request second = source.requests.get(1);
+        second.result.complete(source.pageOf(second));
+        FakePageSource.Request third = source.requests.get(2);
+        assertEquals(20, third.offset);
+
+        List<String> updated = new ArrayList<>(source.items.subList(0, 9));
+        updated.add("item009b");
+        first.result.complete(updated);
+
+        // Page 1 started after an item that is no longer the last of page 0: it is read again after the new one
+        assertTrue(third.result.isCancelled());
+        assertEquals("item009b", source.lastRequest().after);
+        assertEquals(10, source.lastRequest().offset);
+        List<String> items = engine.getItems();
+        assertEquals(20, items.size());
+        assertEquals(updated, items.subList(0, 10));
+        assertNull(items.get(10));
+        assertEquals(items, lastNotified());
+    }
+
+    @Test
+    public void pageDeliveredTwice_keepsTheNextPagesWhenItsLastItemIsTheSame() {
+        engine.start();
+        FakePageSource.Request first = source.requests.get(0);
+        first.result.deliver(source.pageOf(first));
+        FakePageSource.Request second = source.requests.get(1);
+        second.result.complete(source.pageOf(second));
+        FakePageSource.Request third = source.requests.get(2);
+
+        List<String> updated = source.pageOf(first);
+        updated.set(5, "item005b");
+        first.result.complete(updated);
+
+        assertTrue(third.result.isActive());
+        assertEquals(3, source.requests.size());
+        List<String> items = engine.getItems();
+        assertEquals(30, items.size());
+        assertEquals("item005b", items.get(5));
+        assertEquals("item019", items.get(19));
+    }
+
+    @Test
+    public void emptyFirstPage_completesTheList() {
+        engine.start();
+        source.requests.get(0).result.complete(new ArrayList<>());
+
+        assertTrue(engine.isComplete());
+        assertTrue(engine.getItems().isEmpty());
+        assertTrue(lastNotified().isEmpty());
+
+        engine.onViewportChanged(0, 0);
+        assertEquals(1, source.requests.size());
+    }
+
+    @Test
+    public void shortPage_completesTheList() {
+        source = new FakePageSource(15);
+        engine = newEngine(source);
+
+        engine.start();
+        source.completeAll();
+
+        assertEquals(2, source.requests.size());
+        assertTrue(engine.isComplete());
+        assertEquals(source.items, engine.getItems());
+    }
+
+    private PagingEngine<String> newEngine(FakePageSource source) {
+        PagingEngine<String> engine = new PagingEngine<>(source, Function.identity(), PAGE_SIZE, PREFETCH_DISTANCE, MAX_LOADED_PAGES);
+        engine.setListener(notified::add);
+        return engine;
+    }
+
+    private List<String> lastNotified() {
+        return notified.get(notified.size() - 1);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.pdm2_projeto.utils;
+
+import com.example.pdm2_projeto.interfaces.FirestoreCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the pagination of one query: history of the pages, cursor and shared reads.
+ */
+public class PagingSessionTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private FakePageSource source;
+    private PagingSession<String> session;
+
+    @Before
+    public void setUp() {
+        source = new FakePageSource(25);
+        session = new PagingSession<>("category-1|", source, Function.identity());
+    }
+
+    @Test
+    public void loadPage_answersAPageOfTheHistoryImmediately() {
+        AsyncResult<List<String>> first = session.loadPage(null, 0, PAGE_SIZE);
+        assertTrue(first.isActive());
+        source.completeNext();
+        assertEquals(source.items.subList(0, 10), valueOf(first));
+
+        AsyncResult<List<String>> again = session.loadPage(null, 0, PAGE_SIZE);
+
+        assertFalse(again.isActive());
+        assertEquals(source.items.subList(0, 10), valueOf(again));
+        assertEquals(1, source.requests.size());
+    }
+
+    @Test
+    public void loadPage_readsAgainAfterAnotherItemOrWithAnotherSize() {
+        session.loadPage(null, 0, PAGE_SIZE);
+        source.completeNext();
+
+        session.loadPage("item004", 0, PAGE_SIZE);
+        session.loadPage(null, 0, 2 * PAGE_SIZE);
+
+        assertEquals(3, source.requests.size());
+    }
+
+    @Test
+    public void loadPage_sharesIdenticalReadsInFlight() {
+        AsyncResult<List<String>> a = session.loadPage("item009", 10, PAGE_SIZE);
+        AsyncResult<List<String>> b = session.loadPage("item009", 10, PAGE_SIZE);
+        assertEquals(1, source.requests.size());
+
+        // Cancelling one caller does not cancel the read of the other
+        a.cancel();
+        assertTrue(source.requests.get(0).result.isActive());
+
+        source.completeNext();
+        assertEquals(source.items.subList(10, 20), valueOf(b));
+    }
+
+    @Test
+    public void loadNextPage_followsTheCursorUntilTheLastPage() {
+        AsyncResult<List<String>> page;
+        for (int offset = 0; offset < 25; offset += PAGE_SIZE) {
+            page = session.loadNextPage(PAGE_SIZE);
+            FakePageSource.Request request = source.completeNext();
+            assertEquals(offset, request.offset);
+            assertEquals(offset == 0 ? null : source.items.get(offset - 1), request.after);
+            assertEquals(source.pageOf(request), valueOf(page));
+        }
+        assertTrue(session.isComplete());
+
+        page = session.loadNextPage(PAGE_SIZE);
+
+        assertFalse(page.isActive());
+        assertTrue(valueOf(page).isEmpty());
+        assertEquals(3, source.requests.size());
+    }
+
+    @Test
+    public void loadNextPage_movesBackWhenAnEarlierPageChangedItsLastItem() {
+        session.loadNextPage(PAGE_SIZE);
+        FakePageSource.Request first = source.requests.get(0);
+        first.result.deliver(source.pageOf(first)); // Cached version, an up-to-date one follows
+        session.loadNextPage(PAGE_SIZE);
+        FakePageSource.Request second = source.requests.get(1);
+        assertEquals("item009", second.after);
+        second.result.complete(source.pageOf(second));
+
+        List<String> updated = new ArrayList<>(source.items.subList(0, 9));
+        updated.add("item009b");
+        first.result.complete(updated);
+
+        // The pages after page 0 are forgotten and the cursor moves to its new last item
+        assertFalse(session.isComplete());
+        session.loadNextPage(PAGE_SIZE);
+        assertEquals("item009b", source.lastRequest().after);
+        assertEquals(10, source.lastRequest().offset);
+        session.loadPage("item009", 10, PAGE_SIZE);
+        assertEquals("item009", source.lastRequest().after);
+    }
+
+    @Test
+    public void loadNextPage_acceptsAReaderThatAnswersImmediately() {
+        // Like a reader answering from a cache or the local index
+        PagingSession<String> immediate = new PagingSession<>("local|", (after, offset, pageSize) ->
+                AsyncResult.success(source.pageOf(new FakePageSource.Request(after, offset, pageSize))), Function.identity());
+
+        assertEquals(source.items.subList(0, 10), valueOf(immediate.loadNextPage(PAGE_SIZE)));
+        assertEquals(source.items.subList(10, 20), valueOf(immediate.loadNextPage(PAGE_SIZE)));
+        assertEquals(source.items.subList(20, 25), valueOf(immediate.loadNextPage(PAGE_SIZE)));
+        assertTrue(immediate.isComplete());
+        assertFalse(immediate.isLoading());
+    }
+
+    @Test
+    public void engine_showsThePagesOfAReaderThatAnswersImmediately() {
+        PagingSession<String> immediate = new PagingSession<>("local|", (after, offset, pageSize) ->
+                AsyncResult.success(source.pageOf(new FakePageSource.Request(after, offset, pageSize))), Function.identity());
+        PagingEngine<String> engine = new PagingEngine<>(immediate, Function.identity(), PAGE_SIZE, 2 * PAGE_SIZE, 5);
+
+        engine.start();
+
+        // No placeholders left: every page arrived while it was requested
+        assertEquals(source.items, engine.getItems());
+        assertTrue(engine.isComplete());
+    }
+
+    @Test
+    public void cancel_stopsTheReadsInFlight() {
+        AsyncResult<List<String>> page = session.loadNextPage(PAGE_SIZE);
+        assertTrue(session.isLoading());
+
+        session.cancel();
+
+        assertFalse(session.isLoading());
+        assertTrue(page.isCancelled());
+        assertTrue(source.requests.get(0).result.isCancelled());
+    }
+
+    /**
+     * Returns the value of a result that already has one.
+     */
+    private static <T> T valueOf(AsyncResult<T> result) {
+        List<T> values = new ArrayList<>();
+        result.observe(new FirestoreCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                values.add(value);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals(1, values.size());
+        return values.get(0);
+    }
+}
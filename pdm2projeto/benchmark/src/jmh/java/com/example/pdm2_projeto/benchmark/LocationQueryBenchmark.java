@@ -0,0 +1,246 @@
+package com.example.pdm2_projeto.benchmark;
+
+import com.example.pdm2_projeto.query.LocationQuery;
+import com.example.pdm2_projeto.query.QueryableLocation;
+import com.example.pdm2_projeto.query.TextNormalizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the filter, sort and page logic of the location list over synthetic datasets.
+ *
+ * Each query is run by {@link LocationQuery} and by {@code baseline}, a port of the code the app used
+ * before it (lowercase "contains" on both names of every location of the category, sort by name,
+ * then the page by its number) kept as the reference, so a regression shows up as a change of the
+ * ratio between the two. Run with the gc profiler (configured in
+ * build.gradle) to also get the bytes allocated per query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationQueryBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int CATEGORY_COUNT = 8;
+
+    private static final String[] SYLLABLES = {
+            "bel", "tor", "sa", "pa", "lá", "cio", "mon", "te", "ri", "o", "ca", "sé",
+            "al", "fa", "ma", "cas", "te", "lo", "por", "to", "ju", "de", "vi", "la"
+    };
+
+    /**
+     * Number of locations in the dataset.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Filters of the query: none, a category, a search text, or both.
+     */
+    @Param({"none", "category", "search", "category+search"})
+    public String filter;
+
+    private List<SyntheticLocation> locations;
+    private LocationQuery firstPage;
+    private LocationQuery middlePage;
+    private String categoryId;
+    private String searchQuery;
+    private int middlePageNumber; // Page number of the middle page, for the baseline (starting at 1)
+
+    /**
+     * Builds the dataset (always the same for a given size) and the queries.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        locations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            locations.add(SyntheticLocation.random(i, random));
+        }
+
+        categoryId = filter.contains("category") ? "category-3" : null;
+        searchQuery = filter.contains("search") ? "Ca" : null;
+        firstPage = new LocationQuery(categoryId, searchQuery, PAGE_SIZE);
+
+        // Cursor in the middle of the matches, like a user who scrolled half the list
+        List<SyntheticLocation> matches = locations.stream()
+                .filter(firstPage::matches)
+                .sorted(LocationQuery.ORDER)
+                .collect(Collectors.toList());
+        SyntheticLocation middleCursor = matches.isEmpty() ? null : matches.get(matches.size() / 2);
+        middlePage = middleCursor == null ? firstPage : firstPage.after(middleCursor);
+        middlePageNumber = (matches.size() / 2 + 1) / PAGE_SIZE + 1; // The page after the cursor
+    }
+
+    /**
+     * First page with {@link LocationQuery}.
+     */
+    @Benchmark
+    public List<SyntheticLocation> firstPage() {
+        return firstPage.page(locations);
+    }
+
+    /**
+     * Page in the middle of the list with {@link LocationQuery}.
+     */
+    @Benchmark
+    public List<SyntheticLocation> middlePage() {
+        return middlePage.page(locations);
+    }
+
+    /**
+     * First page with the baseline implementation.
+     */
+    @Benchmark
+    public List<SyntheticLocation> baselineFirstPage() {
+        return baseline(categoryId, searchQuery, PAGE_SIZE, 1);
+    }
+
+    /**
+     * Page in the middle of the list with the baseline implementation.
+     */
+    @Benchmark
+    public List<SyntheticLocation> baselineMiddlePage() {
+        return baseline(categoryId, searchQuery, PAGE_SIZE, middlePageNumber);
+    }
+
+    /**
+     * Resolves the name and country of a page in the app's language, as the list does for each row.
+     */
+    @Benchmark
+    public void resolveNames(Blackhole blackhole) {
+        for (SyntheticLocation location : firstPage.page(locations)) {
+            blackhole.consume(location.nameIn(true));
+            blackhole.consume(location.countryIn(true));
+        }
+    }
+
+    /**
+     * Port of LocationsRepository.getLocationsByCategoryPaginated as it was before {@link LocationQuery}:
+     * the locations of the category (read with a whereEqualTo query in the app), a lowercase "contains"
+     * on both names of each of them, a sort of all the matches by name, then the page by its number.
+     */
+    private List<SyntheticLocation> baseline(String categoryId, String searchQuery, int pageSize, int currentPage) {
+        List<SyntheticLocation> allLocations = new ArrayList<>();
+        for (SyntheticLocation location : locations) {
+            if (categoryId == null || categoryId.isEmpty() || categoryId.equals(location.getCategoryId())) {
+                allLocations.add(location);
+            }
+        }
+
+        List<SyntheticLocation> filteredLocations = new ArrayList<>();
+        for (SyntheticLocation location : allLocations) {
+            if (location.getName() != null && location.getNameEn() != null) {
+                if (searchQuery == null || searchQuery.trim().isEmpty() ||
+                        location.getName().toLowerCase().contains(searchQuery.toLowerCase()) ||
+                        location.getNameEn().toLowerCase().contains(searchQuery.toLowerCase())) {
+                    filteredLocations.add(location);
+                }
+            }
+        }
+
+        filteredLocations.sort(Comparator.comparing(SyntheticLocation::getName));
+
+        int start = (currentPage - 1) * pageSize;
+        int end = Math.min(start + pageSize, filteredLocations.size());
+
+        return filteredLocations.subList(start, end);
+    }
+
+    /**
+     * Location with random names, used as benchmark data.
+     */
+    public static class SyntheticLocation implements QueryableLocation {
+        private final String id;
+        private final String name;
+        private final String nameEn;
+        private final String categoryId;
+        private final List<String> searchKeywords;
+
+        SyntheticLocation(String id, String name, String nameEn, String categoryId, List<String> searchKeywords) {
+            this.id = id;
+            this.name = name;
+            this.nameEn = nameEn;
+            this.categoryId = categoryId;
+            this.searchKeywords = searchKeywords;
+        }
+
+        /**
+         * Creates a location with a random name of two words and a random category.
+         */
+        static SyntheticLocation random(int index, Random random) {
+            String name = word(random) + " " + word(random);
+            String nameEn = word(random) + " " + word(random);
+            return new SyntheticLocation(String.format("loc%07d", index), name, nameEn,
+                    "category-" + random.nextInt(CATEGORY_COUNT),
+                    TextNormalizer.buildSearchKeywords(name, nameEn));
+        }
+
+        private static String word(Random random) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            return word.toString();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getNameEn() {
+            return nameEn;
+        }
+
+        @Override
+        public String getCountry() {
+            return "Portugal";
+        }
+
+        @Override
+        public String getCountryEn() {
+            return "Portugal";
+        }
+
+        @Override
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public List<String> getSearchKeywords() {
+            return searchKeywords;
+        }
+    }
+}
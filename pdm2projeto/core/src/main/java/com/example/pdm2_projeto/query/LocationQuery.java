@@ -0,0 +1,188 @@
+package com.example.pdm2_projeto.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Filter, sort order and page of the location list, applied in memory.
+ * Has the same meaning as the Firestore query of the home screen: locations of a category whose
+ * search keywords contain the normalized query, ordered by name then ID, one page after a cursor.
+ * Does not depend on Firestore or Android, so it can run over locally stored locations and be benchmarked.
+ *
+ * A page is selected in a single pass that keeps only the best {@code pageSize} candidates,
+ * so a page costs O(n log pageSize) time and O(pageSize) memory instead of sorting every match.
+ */
+public final class LocationQuery {
+
+    /**
+     * Order of the list: by name, then by ID (like Firestore, which breaks ties by document ID).
+     */
+    public static final Comparator<QueryableLocation> ORDER = LocationQuery::compare;
+
+    private final String categoryId;
+    private final String keyword;
+    private final int pageSize;
+
+    // Cursor: the page starts after this name and ID, or at the beginning if the name is null
+    private final String afterName;
+    private final String afterId;
+
+    /**
+     * Creates a query for the first page.
+     *
+     * @param categoryId  The category to keep (null or empty for every category).
+     * @param searchQuery The raw search text (null or empty for no search); normalized like the stored keywords.
+     * @param pageSize    The number of locations per page.
+     */
+    public LocationQuery(String categoryId, String searchQuery, int pageSize) {
+        this(categoryId == null || categoryId.isEmpty() ? null : categoryId,
+                TextNormalizer.toSearchKeyword(searchQuery), pageSize, null, null);
+    }
+
+    private LocationQuery(String categoryId, String keyword, int pageSize, String afterName, String afterId) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.categoryId = categoryId;
+        this.keyword = keyword;
+        this.pageSize = pageSize;
+        this.afterName = afterName;
+        this.afterId = afterId;
+    }
+
+    /**
+     * Returns the same query for the page that follows the given location.
+     *
+     * @param last The last location of the previous page.
+     * @return The query of the next page.
+     */
+    public LocationQuery after(QueryableLocation last) {
+        return new LocationQuery(categoryId, keyword, pageSize, last.getName(), last.getId());
+    }
+
+    /**
+     * Indicates whether a location passes the category and search filters (ignoring the page).
+     *
+     * @param location The location.
+     * @return True if the location matches.
+     */
+    public boolean matches(QueryableLocation location) {
+        if (location.getName() == null) {
+            return false; // Firestore leaves documents without the sort field out of ordered queries
+        }
+        if (categoryId != null && !categoryId.equals(location.getCategoryId())) {
+            return false;
+        }
+        if (!keyword.isEmpty()) {
+            List<String> keywords = location.getSearchKeywords();
+            return keywords != null && keywords.contains(keyword);
+        }
+        return true;
+    }
+
+    /**
+     * Selects the page of this query from the given locations, in any order.
+     *
+     * @param locations The locations to search.
+     * @return The locations of the page, in list order; fewer than the page size on the last page.
+     */
+    public <T extends QueryableLocation> List<T> page(Iterable<T> locations) {
+        // Max-heap of the best candidates so far: its head is the one to drop when a better one comes
+        PriorityQueue<T> best = new PriorityQueue<>(pageSize + 1, Collections.reverseOrder(ORDER));
+        for (T location : locations) {
+            if (!matches(location) || !isAfterCursor(location)) {
+                continue;
+            }
+            if (best.size() < pageSize) {
+                best.add(location);
+            } else if (compare(location, best.peek()) < 0) {
+                best.poll();
+                best.add(location);
+            }
+        }
+
+        List<T> page = new ArrayList<>(best);
+        page.sort(ORDER);
+        return page;
+    }
+
+    /**
+     * Returns the category kept by the query.
+     *
+     * @return The category ID, or null for every category.
+     */
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Returns the normalized search keyword the locations must contain.
+     *
+     * @return The keyword, or an empty string for no search.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Returns the number of locations per page.
+     *
+     * @return The page size.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the name of the location the page starts after.
+     *
+     * @return The name, or null for the first page.
+     */
+    public String getAfterName() {
+        return afterName;
+    }
+
+    /**
+     * Returns the ID of the location the page starts after.
+     *
+     * @return The ID, or null for the first page.
+     */
+    public String getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Compares two locations in list order.
+     *
+     * @param a The first location.
+     * @param b The second location.
+     * @return A negative number, zero or a positive number if a comes before, with or after b.
+     */
+    public static int compare(QueryableLocation a, QueryableLocation b) {
+        return compare(a.getName(), a.getId(), b.getName(), b.getId());
+    }
+
+    /**
+     * Indicates whether a location comes after the cursor of the page.
+     */
+    private boolean isAfterCursor(QueryableLocation location) {
+        return afterName == null || compare(location.getName(), location.getId(), afterName, afterId) > 0;
+    }
+
+    /**
+     * Compares by name then by ID; a null ID sorts first.
+     */
+    private static int compare(String nameA, String idA, String nameB, String idB) {
+        int byName = nameA.compareTo(nameB);
+        if (byName != 0) {
+            return byName;
+        }
+        if (idA == null || idB == null) {
+            return idA == null ? (idB == null ? 0 : -1) : 1;
+        }
+        return idA.compareTo(idB);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.pdm2_projeto.query;
+
+import java.util.List;
+
+/**
+ * Fields of a location used to filter, sort and show it in lists.
+ * Implemented by the app's Location model, and by plain objects in the benchmarks.
+ */
+public interface QueryableLocation {
+
+    /**
+     * Retrieves the unique ID of the location.
+     *
+     * @return The location ID.
+     */
+    String getId();
+
+    /**
+     * Retrieves the name of the location in the default language.
+     *
+     * @return The name of the location.
+     */
+    String getName();
+
+    /**
+     * Retrieves the name of the location in English.
+     *
+     * @return The English name.
+     */
+    String getNameEn();
+
+    /**
+     * Retrieves the country of the location in the default language.
+     *
+     * @return The country.
+     */
+    String getCountry();
+
+    /**
+     * Retrieves the country of the location in English.
+     *
+     * @return The English country name.
+     */
+    String getCountryEn();
+
+    /**
+     * Retrieves the ID of the category of the location.
+     *
+     * @return The category ID.
+     */
+    String getCategoryId();
+
+    /**
+     * Retrieves the search keywords (normalized name prefixes) of the location.
+     *
+     * @return The search keywords, or null if they were never computed.
+     */
+    List<String> getSearchKeywords();
+
+    /**
+     * Returns the name to show in the given language.
+     *
+     * @param english Whether the English name should be shown.
+     * @return The name in that language.
+     */
+    default String nameIn(boolean english) {
+        return english ? getNameEn() : getName();
+    }
+
+    /**
+     * Returns the country to show in the given language.
+     *
+     * @param english Whether the English name should be shown.
+     * @return The country in that language.
+     */
+    default String countryIn(boolean english) {
+        return english ? getCountryEn() : getCountry();
+    }
+}
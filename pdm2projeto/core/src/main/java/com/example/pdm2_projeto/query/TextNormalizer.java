@@ -0,0 +1,99 @@
+package com.example.pdm2_projeto.query;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class for normalizing text used in location searches.
+ * Folds case and accents so that Portuguese and English names can be matched
+ * with the same query (e.g. "belem" matches "Belém").
+ */
+public final class TextNormalizer {
+
+    /**
+     * Maximum length of a keyword stored in the search index.
+     * Longer queries are truncated to this length before being matched.
+     */
+    public static final int MAX_KEYWORD_LENGTH = 40;
+
+    /**
+     * Matches combining diacritical marks left over after NFD decomposition.
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Matches any run of characters that are not letters or digits.
+     */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextNormalizer() {}
+
+    /**
+     * Lowercases the text, removes accents and collapses separators into single spaces.
+     *
+     * @param text The text to normalize (may be null).
+     * @return The normalized text, or an empty string if the input is null.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String folded = DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+        return SEPARATORS.matcher(folded).replaceAll(" ").trim();
+    }
+
+    /**
+     * Normalizes a search query so it can be compared against the stored keywords.
+     *
+     * @param query The raw query typed by the user.
+     * @return The normalized keyword, truncated to {@link #MAX_KEYWORD_LENGTH}.
+     */
+    public static String toSearchKeyword(String query) {
+        String normalized = normalize(query);
+        return normalized.length() > MAX_KEYWORD_LENGTH
+                ? normalized.substring(0, MAX_KEYWORD_LENGTH).trim()
+                : normalized;
+    }
+
+    /**
+     * Builds the list of keywords stored on a document for prefix searches.
+     * Contains every prefix of every word and every prefix of the whole normalized text,
+     * so both "bel" and "torre de b" match "Torre de Belém".
+     *
+     * @param texts The texts to index (null values are ignored).
+     * @return A list of unique keywords.
+     */
+    public static List<String> buildSearchKeywords(String... texts) {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (String text : texts) {
+            String normalized = normalize(text);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            addPrefixes(keywords, normalized);
+            for (String word : normalized.split(" ")) {
+                addPrefixes(keywords, word);
+            }
+        }
+        return new ArrayList<>(keywords);
+    }
+
+    /**
+     * Adds all prefixes of the given value (up to {@link #MAX_KEYWORD_LENGTH}) to the set.
+     */
+    private static void addPrefixes(Set<String> keywords, String value) {
+        int length = Math.min(value.length(), MAX_KEYWORD_LENGTH);
+        for (int i = 1; i <= length; i++) {
+            String prefix = value.substring(0, i);
+            if (!prefix.endsWith(" ")) {
+                keywords.add(prefix);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.pdm2_projeto.query;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the in-memory filter, order and pagination of the location list.
+ */
+public class LocationQueryTest {
+
+    private static final String[] WORDS = {"Torre", "Belém", "Sé", "Castelo", "Praça", "Mosteiro", "Ponte", "Museu"};
+
+    @Test
+    public void page_matchesFullSortOfEveryMatch() {
+        List<TestLocation> locations = randomLocations(2000, new Random(7));
+
+        for (String categoryId : new String[]{null, "c1"}) {
+            for (String search : new String[]{null, "to", "Pra"}) {
+                for (int pageSize : new int[]{1, 7, 50}) {
+                    LocationQuery query = new LocationQuery(categoryId, search, pageSize);
+                    List<TestLocation> expected = locations.stream()
+                            .filter(query::matches)
+                            .sorted(LocationQuery.ORDER)
+                            .collect(Collectors.toList());
+
+                    assertEquals(expected, readAllPages(query, locations));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void page_keepsOnlyTheBestCandidatesInAnyInputOrder() {
+        List<TestLocation> locations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            locations.add(location(String.format("id%03d", i), String.format("Name %03d", i), null));
+        }
+        Collections.shuffle(locations, new Random(1));
+
+        List<TestLocation> page = new LocationQuery(null, null, 3).page(locations);
+
+        assertEquals(Arrays.asList("id000", "id001", "id002"), ids(page));
+    }
+
+    @Test
+    public void page_breaksNameTiesById() {
+        List<TestLocation> locations = Arrays.asList(
+                location("d", "Sé", null),
+                location("b", "Sé", null),
+                location("a", "Belém", null),
+                location("c", "Sé", null),
+                location("e", "Torre", null));
+        LocationQuery query = new LocationQuery(null, null, 2);
+
+        List<TestLocation> first = query.page(locations);
+        List<TestLocation> second = query.after(first.get(1)).page(locations);
+        List<TestLocation> third = query.after(second.get(1)).page(locations);
+
+        // The cursor falls between locations with the same name; none is skipped or repeated
+        assertEquals(Arrays.asList("a", "b"), ids(first));
+        assertEquals(Arrays.asList("c", "d"), ids(second));
+        assertEquals(Collections.singletonList("e"), ids(third));
+    }
+
+    @Test
+    public void after_startsAfterTheCursorEvenIfItIsGone() {
+        List<TestLocation> locations = Arrays.asList(
+                location("1", "Alfama", null),
+                location("2", "Belém", null),
+                location("4", "Sintra", null));
+        LocationQuery query = new LocationQuery(null, null, 10);
+
+        LocationQuery next = query.after(location("3", "Castelo", null)); // Deleted since the previous page
+
+        assertEquals("Castelo", next.getAfterName());
+        assertEquals("3", next.getAfterId());
+        assertEquals(Collections.singletonList("4"), ids(next.page(locations)));
+        assertNull(query.getAfterName());
+    }
+
+    @Test
+    public void after_keepsTheFilters() {
+        LocationQuery next = new LocationQuery("c1", "  Torre ", 5).after(location("1", "Torre", "c1"));
+
+        assertEquals("c1", next.getCategoryId());
+        assertEquals("torre", next.getKeyword());
+        assertEquals(5, next.getPageSize());
+    }
+
+    @Test
+    public void page_isEmptyAfterTheLastLocation() {
+        List<TestLocation> locations = Arrays.asList(location("1", "Alfama", null), location("2", "Belém", null));
+        LocationQuery query = new LocationQuery(null, null, 2);
+
+        assertTrue(query.after(locations.get(1)).page(locations).isEmpty());
+        assertTrue(query.page(Collections.<TestLocation>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void matches_foldsAccentsOfTheQuery() {
+        TestLocation belem = location("1", "Torre de Belém", null);
+
+        assertTrue(new LocationQuery(null, "BELEM", 10).matches(belem));
+        assertTrue(new LocationQuery(null, "belém", 10).matches(belem));
+        assertTrue(new LocationQuery(null, "torre de b", 10).matches(belem));
+        assertFalse(new LocationQuery(null, "lem", 10).matches(belem)); // Prefixes of words only
+    }
+
+    @Test
+    public void matches_filtersByCategory() {
+        TestLocation location = location("1", "Sé", "c1");
+
+        assertTrue(new LocationQuery("c1", null, 10).matches(location));
+        assertTrue(new LocationQuery("", null, 10).matches(location));
+        assertFalse(new LocationQuery("c2", null, 10).matches(location));
+    }
+
+    @Test
+    public void matches_leavesOutLocationsWithoutNameOrKeywords() {
+        TestLocation noName = new TestLocation("1", null, "c1", TextNormalizer.buildSearchKeywords("Sé"));
+        TestLocation noKeywords = new TestLocation("2", "Sé", "c1", null);
+
+        assertFalse(new LocationQuery(null, null, 10).matches(noName));
+        assertTrue(new LocationQuery(null, null, 10).matches(noKeywords));
+        assertFalse(new LocationQuery(null, "se", 10).matches(noKeywords));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptyPages() {
+        new LocationQuery(null, null, 0);
+    }
+
+    /**
+     * Reads every page of a query, each one after the last location of the previous one.
+     */
+    private static List<TestLocation> readAllPages(LocationQuery query, List<TestLocation> locations) {
+        List<TestLocation> all = new ArrayList<>();
+        LocationQuery current = query;
+        while (true) {
+            List<TestLocation> page = current.page(locations);
+            all.addAll(page);
+            if (page.size() < query.getPageSize()) {
+                return all;
+            }
+            current = query.after(page.get(page.size() - 1));
+        }
+    }
+
+    private static List<TestLocation> randomLocations(int count, Random random) {
+        List<TestLocation> locations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Few distinct names, so many locations share a name and are ordered by ID
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            locations.add(location("id" + i, name, "c" + random.nextInt(3)));
+        }
+        Collections.shuffle(locations, random);
+        return locations;
+    }
+
+    private static TestLocation location(String id, String name, String categoryId) {
+        return new TestLocation(id, name, categoryId, TextNormalizer.buildSearchKeywords(name));
+    }
+
+    private static List<String> ids(List<TestLocation> locations) {
+        return locations.stream().map(TestLocation::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Location with only the fields used by the query.
+     */
+    private static class TestLocation implements QueryableLocation {
+        private final String id;
+        private final String name;
+        private final String categoryId;
+        private final List<String> searchKeywords;
+
+        TestLocation(String id, String name, String categoryId, List<String> searchKeywords) {
+            this.id = id;
+            this.name = name;
+            this.categoryId = categoryId;
+            this.searchKeywords = searchKeywords;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getNameEn() {
+            return name;
+        }
+
+        @Override
+        public String getCountry() {
+            return "Portugal";
+        }
+
+        @Override
+        public String getCountryEn() {
+            return "Portugal";
+        }
+
+        @Override
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        @Override
+        public List<String> getSearchKeywords() {
+            return searchKeywords;
+        }
+    }
+}
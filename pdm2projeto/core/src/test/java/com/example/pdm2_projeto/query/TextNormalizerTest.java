@@ -0,0 +1,87 @@
+package com.example.pdm2_projeto.query;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the normalization of location names and search queries.
+ */
+public class TextNormalizerTest {
+
+    @Test
+    public void normalize_foldsCaseAndAccents() {
+        assertEquals("torre de belem", TextNormalizer.normalize("Torre de Belém"));
+        assertEquals("sao joao", TextNormalizer.normalize("SÃO JOÃO"));
+        assertEquals("acores", TextNormalizer.normalize("Açores"));
+        assertEquals("praca do comercio", TextNormalizer.normalize("Praça do Comércio"));
+    }
+
+    @Test
+    public void normalize_foldsAccentsOfOtherLanguages() {
+        assertEquals("nandu uber", TextNormalizer.normalize("Ñandú Über"));
+        assertEquals("cote d azur", TextNormalizer.normalize("Côte d'Azur"));
+        // Decomposed accents (combining marks) fold like the precomposed ones
+        assertEquals(TextNormalizer.normalize("Belém"), TextNormalizer.normalize("Bele\u0301m"));
+    }
+
+    @Test
+    public void normalize_collapsesSeparators() {
+        assertEquals("porto foz do douro", TextNormalizer.normalize("  Porto -- Foz do  Douro! "));
+        assertEquals("lisboa 2025", TextNormalizer.normalize("Lisboa, 2025"));
+    }
+
+    @Test
+    public void normalize_nullIsEmpty() {
+        assertEquals("", TextNormalizer.normalize(null));
+        assertEquals("", TextNormalizer.normalize("   "));
+    }
+
+    @Test
+    public void toSearchKeyword_matchesNormalizedName() {
+        assertEquals("belem", TextNormalizer.toSearchKeyword("  BELÉM "));
+    }
+
+    @Test
+    public void toSearchKeyword_truncatesLongQueries() {
+        String longQuery = "abcdefghij abcdefghij abcdefghij abcdefghij abcdefghij";
+        String keyword = TextNormalizer.toSearchKeyword(longQuery);
+
+        assertTrue(keyword.length() <= TextNormalizer.MAX_KEYWORD_LENGTH);
+        assertTrue(longQuery.startsWith(keyword));
+        assertFalse(keyword.endsWith(" "));
+    }
+
+    @Test
+    public void buildSearchKeywords_containsPrefixesOfWordsAndWholeText() {
+        List<String> keywords = TextNormalizer.buildSearchKeywords("Torre de Belém");
+
+        assertTrue(keywords.contains("t"));
+        assertTrue(keywords.contains("torre de b"));
+        assertTrue(keywords.contains("torre de belem"));
+        assertTrue(keywords.contains("bel"));
+        assertTrue(keywords.contains("belem"));
+        assertTrue(keywords.contains("de"));
+        assertFalse(keywords.contains("torre ")); // Prefixes never end with the separator
+    }
+
+    @Test
+    public void buildSearchKeywords_everyQueryPrefixMatches() {
+        List<String> keywords = TextNormalizer.buildSearchKeywords("Mosteiro dos Jerónimos", "Jerónimos Monastery");
+
+        for (String query : new String[]{"Jeró", "jeronimos", "MOSTEIRO DOS J", "monast"}) {
+            assertTrue(query, keywords.contains(TextNormalizer.toSearchKeyword(query)));
+        }
+    }
+
+    @Test
+    public void buildSearchKeywords_isUniqueAndIgnoresNull() {
+        List<String> keywords = TextNormalizer.buildSearchKeywords("Sé", null, "Se", "");
+
+        assertEquals(new HashSet<>(keywords).size(), keywords.size());
+        assertEquals(2, keywords.size()); // "s" and "se"
+    }
+}